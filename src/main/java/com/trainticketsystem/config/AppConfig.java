@@ -1,20 +1,29 @@
 package com.trainticketsystem.config;
 
-import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.controller.TrafficRecordingFilter;
 import com.trainticketsystem.model.User;
+import com.trainticketsystem.service.PaymentGateway;
+import com.trainticketsystem.service.SimulatedPaymentGateway;
+import com.trainticketsystem.service.TrafficRecorder;
+import com.trainticketsystem.service.WalletPaymentGateway;
+import com.trainticketsystem.store.SeatStore;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.FastJsonModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 /**
  * Configuration class for initializing application beans and data structures.
  * Sets up initial users and seats with thread-safe collections.
+ * Beans switched by a property read it when they are created rather than through a
+ * bean condition, since an AOT-processed context fixes its conditions at build time.
  */
 @Configuration
 @RequiredArgsConstructor
@@ -25,32 +34,31 @@ public class AppConfig {
 	private final AppProperties appProperties;
 
 	/**
-	 * Creates and initializes the seat map with available seats.
+	 * Creates the seat map with available seats.
 	 * Creates seats for sections A and B based on configured seat count.
+	 * Seat objects are built lazily per block on first use and compacted again
+	 * once they go cold, so heap use follows the seats in use.
 	 * 
+	 * @param userMap Users that compacted seats resolve their holders from
 	 * @return Map of seat numbers to Seat objects
 	 */
 	@Bean
-	public Map<String, Seat> seatMap() {
-		Map<String, Seat> seats = new ConcurrentHashMap<>();
-		IntStream.range(1, appProperties.getSeatCount()+1).forEach(i -> {
-			String sA = "A" + i;  // Section A seats
-			String sB = "B" + i;  // Section B seats
-			seats.put(sA, new Seat(sA, true));  // true means available
-			seats.put(sB, new Seat(sB, true));
-		});
-		return seats;
+	public SeatStore seatMap(UserStore userMap) {
+		AppProperties.Inventory inventory = appProperties.getInventory();
+		return new SeatStore("AB", appProperties.getSeatCount(), inventory.getBlockSize(),
+				inventory.getResidentSeats(), userMap::get);
 	}
 
 	/**
 	 * Creates and initializes the user map with pre-configured users.
 	 * Creates users based on configured user count with initial balance.
+	 * Backed by a compact int-keyed UserStore rather than a map of User objects.
 	 * 
 	 * @return Map of user IDs to User objects
 	 */
 	@Bean
-	public Map<Integer, User> userMap() {
-		Map<Integer, User> users = new ConcurrentHashMap<>();
+	public UserStore userMap() {
+		UserStore users = new UserStore(appProperties.getUserCount());
 		IntStream.range(1, appProperties.getUserCount()+1).forEach(i -> {
 			User user = User.builder()
 					.id(userIdGenerator.getAndIncrement())
@@ -64,4 +72,53 @@ public class AppConfig {
 		});
 		return users;
 	}
+
+	/**
+	 * Creates the payment gateway chosen by app.payment.gateway: "wallet" (the default)
+	 * or "simulated".
+	 *
+	 * @return Gateway bookings and refunds are paid through
+	 */
+	@Bean
+	public PaymentGateway paymentGateway() {
+		String gateway = appProperties.getPayment().getGateway();
+		if (gateway == null || gateway.equals("wallet")) {
+			return new WalletPaymentGateway();
+		}
+		if (gateway.equals("simulated")) {
+			return new SimulatedPaymentGateway(appProperties);
+		}
+		throw new IllegalStateException("Unknown app.payment.gateway: " + gateway);
+	}
+
+	/**
+	 * Registers the hand-written serializers of the most common response types with
+	 * the ObjectMapper Spring MVC writes responses with, if app.json.fast-serializers is set.
+	 *
+	 * @return Customizer of the ObjectMapper built by the Jackson auto-configuration
+	 */
+	@Bean
+	public Jackson2ObjectMapperBuilderCustomizer fastJsonModule() {
+		boolean enabled = appProperties.getJson().isFastSerializers();
+		return builder -> {
+			if (enabled) {
+				builder.postConfigurer(objectMapper -> objectMapper.registerModule(new FastJsonModule()));
+			}
+		};
+	}
+
+	/**
+	 * Records the requests the controller serves for replay against another build.
+	 * The filter is registered disabled unless app.recording.enabled is set.
+	 *
+	 * @param recorder Recorder writing the request logs
+	 * @return Filter registration for the API paths
+	 */
+	@Bean
+	public FilterRegistrationBean<TrafficRecordingFilter> trafficRecordingFilter(TrafficRecorder recorder) {
+		FilterRegistrationBean<TrafficRecordingFilter> registration = new FilterRegistrationBean<>(new TrafficRecordingFilter(recorder));
+		registration.addUrlPatterns("/api/train/*");
+		registration.setEnabled(appProperties.getRecording().isEnabled());
+		return registration;
+	}
 }
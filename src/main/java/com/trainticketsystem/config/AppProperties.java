@@ -1,9 +1,16 @@
 package com.trainticketsystem.config;
 
+import com.trainticketsystem.model.BookingPriority;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration properties class for train ticket system.
  * Maps properties from application.yml with prefix 'app'.
@@ -19,6 +26,20 @@ public class AppProperties {
 	 */
 	private int ticketPrice;
 
+	/**
+	 * Base ticket price per section letter, overriding ticketPrice for that section.
+	 * Configured in application.yml as app.section-prices, e.g. app.section-prices.A: 30.
+	 */
+	private Map<String, Integer> sectionPrices = new HashMap<>();
+
+	/**
+	 * Occupancy price tiers. A section is priced at the price-percent of the highest
+	 * tier whose occupancy-percent its occupancy has reached; without tiers every
+	 * section stays at its base price.
+	 * Configured in application.yml as app.price-tiers.
+	 */
+	private List<PriceTier> priceTiers = new ArrayList<>();
+
 	/**
 	 * Total number of users to be pre-created in the system.
 	 * Configured in application.yml as app.user-count.
@@ -38,4 +59,376 @@ public class AppProperties {
 	 * Used when creating new users in the system.
 	 */
 	private int walletBalance;
+
+	/**
+	 * Default time budget, in milliseconds, for a booking request.
+	 * Clients may ask for less with the X-Request-Timeout header, never more.
+	 * Zero means the built-in default of 5 seconds.
+	 * Configured in application.yml as app.request-timeout-millis.
+	 */
+	private long requestTimeoutMillis = 5000;
+
+	/**
+	 * Number of seats each fork-join partition releases and refunds as one batch
+	 * during a bulk cancellation.
+	 * Configured in application.yml as app.cancellation-batch-size.
+	 */
+	private int cancellationBatchSize = 1024;
+
+	/**
+	 * Worker threads used for bulk cancellations. Zero means one per available processor.
+	 * Cancellations run on their own pool so they never starve the booking threads.
+	 * Configured in application.yml as app.cancellation-parallelism.
+	 */
+	private int cancellationParallelism;
+
+	/**
+	 * How long, in milliseconds, a finished bulk cancellation can still be looked up.
+	 * Finished jobs older than this are forgotten; running jobs are always kept.
+	 * Configured in application.yml as app.cancellation-job-retention-millis.
+	 */
+	private long cancellationJobRetentionMillis = 3_600_000;
+
+	/**
+	 * How often, in milliseconds, coalesced seat changes are pushed to seat stream subscribers.
+	 * Configured in application.yml as app.stream-flush-interval-millis.
+	 */
+	private long streamFlushIntervalMillis = 100;
+
+	/**
+	 * Threads shared by all seat stream subscribers for sending events.
+	 * Configured in application.yml as app.stream-sender-threads.
+	 */
+	private int streamSenderThreads = 4;
+
+	/**
+	 * Booking cycles run on a shadow inventory at startup, before the instance reports
+	 * ready, so the booking path is compiled before real traffic arrives. Zero disables it.
+	 * Configured in application.yml as app.warmup-iterations.
+	 */
+	private int warmupIterations;
+
+	/**
+	 * How much of the seat inventory is kept as Seat objects.
+	 * Configured in application.yml under app.inventory.
+	 */
+	private Inventory inventory = new Inventory();
+
+	/**
+	 * Asynchronous export of booking events to columnar files for analytics.
+	 * Configured in application.yml under app.export.
+	 */
+	private Export export = new Export();
+
+	/**
+	 * Which payment gateway bookings are charged through, and how its calls are limited.
+	 * Configured in application.yml under app.payment.
+	 */
+	private Payment payment = new Payment();
+
+	/**
+	 * Optional micro-batching of single-seat bookings.
+	 * Configured in application.yml under app.batching.
+	 */
+	private Batching batching = new Batching();
+
+	/**
+	 * Priority lanes in front of the booking path.
+	 * Configured in application.yml under app.scheduling.
+	 */
+	private Scheduling scheduling = new Scheduling();
+
+	/**
+	 * Primary/standby replication of users and bookings.
+	 * Configured in application.yml under app.replication.
+	 */
+	private Replication replication = new Replication();
+
+	/**
+	 * How responses are written as JSON.
+	 * Configured in application.yml under app.json.
+	 */
+	private Json json = new Json();
+
+	/**
+	 * Bulk loading of users through POST /api/train/user/import.
+	 * Configured in application.yml under app.user-import.
+	 */
+	private UserImport userImport = new UserImport();
+
+	/**
+	 * Recording of API requests for replay against another build.
+	 * Configured in application.yml under app.recording.
+	 */
+	private Recording recording = new Recording();
+
+	/**
+	 * Refunds of cancelled, moved and deleted tickets.
+	 * Configured in application.yml under app.refunds.
+	 */
+	private Refunds refunds = new Refunds();
+
+	@Data
+	public static class PriceTier {
+		/**
+		 * Share of the section's seats, in percent, that must be booked for this tier to apply.
+		 */
+		private int occupancyPercent;
+
+		/**
+		 * Price in this tier as a percentage of the section's base price.
+		 */
+		private int pricePercent;
+	}
+
+	@Data
+	public static class Inventory {
+		/**
+		 * Seats of one section that are materialized and compacted together.
+		 */
+		private int blockSize = 1024;
+
+		/**
+		 * Most seats kept as objects with their own lock; colder blocks are compacted
+		 * to one int per seat and rebuilt on their next use. Zero means no limit.
+		 */
+		private int residentSeats = 262_144;
+	}
+
+	@Data
+	public static class Export {
+		/**
+		 * Whether booking, modify and cancel events are exported. Off by default.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Directory the export files are written to, created if missing.
+		 */
+		private String directory = "export";
+
+		/**
+		 * Events that may wait for the writer. Once full, further events are dropped
+		 * and counted rather than holding up the booking thread.
+		 */
+		private int queueCapacity = 65536;
+
+		/**
+		 * Most events written as one columnar block.
+		 */
+		private int batchSize = 4096;
+
+		/**
+		 * Longest time, in milliseconds, an event waits for its block to fill before it is written.
+		 */
+		private long flushIntervalMillis = 1000;
+
+		/**
+		 * Events per file before the writer rolls over to a new one.
+		 */
+		private int rollRows = 1_000_000;
+
+		/**
+		 * Age, in milliseconds, at which a file is completed even if it has fewer rows.
+		 */
+		private long rollIntervalMillis = 3_600_000;
+	}
+
+	@Data
+	public static class Payment {
+		/**
+		 * Payment gateway: "wallet" pays from the in-memory wallet, "simulated" does the
+		 * same after a fixed latency, for load tests.
+		 */
+		private String gateway = "wallet";
+
+		/**
+		 * Most payment calls in flight at once. Bookings, and refunds paid while a request
+		 * waits, beyond that fail straight away instead of queueing behind a slow payment
+		 * provider.
+		 */
+		private int maxConcurrent = 256;
+
+		/**
+		 * Longest time, in milliseconds, a booking or refund waits for its payment. A
+		 * request also never waits past its own deadline.
+		 */
+		private long timeoutMillis = 2000;
+
+		/**
+		 * Latency, in milliseconds, of each call to the simulated gateway.
+		 */
+		private long simulatedLatencyMillis = 50;
+	}
+
+	@Data
+	public static class Batching {
+		/**
+		 * Whether single-seat bookings are collected into batches and applied by one
+		 * thread. Off by default, so each booking locks its seat on its own.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Longest time, in microseconds, the first booking of a batch waits for more to join it.
+		 */
+		private long windowMicros = 200;
+
+		/**
+		 * Most bookings in one batch; a full batch is applied without waiting out the window.
+		 */
+		private int maxSize = 256;
+	}
+
+	@Data
+	public static class Scheduling {
+		/**
+		 * Bookings, purchases, seat changes and group purchases alike, running at once;
+		 * the rest wait in their priority lane.
+		 */
+		private int maxInFlight = 64;
+
+		/**
+		 * Whether lanes share the booking capacity by weight. When off, every booking
+		 * waits in one queue in arrival order, whatever its priority.
+		 */
+		private boolean fairQueuing = true;
+
+		/**
+		 * Most bookings waiting in one lane; beyond that new bookings of the lane are refused.
+		 */
+		private int queueCapacity = 10_000;
+
+		/**
+		 * Share of the booking capacity of each lane while several are backlogged.
+		 */
+		private Map<BookingPriority, Integer> weights = new EnumMap<>(Map.of(
+				BookingPriority.INTERACTIVE, 8,
+				BookingPriority.PARTNER, 3,
+				BookingPriority.BULK, 1));
+	}
+
+	@Data
+	public static class Replication {
+		/**
+		 * none, primary (ships changes to a standby) or standby (applies them and
+		 * refuses writes until promoted).
+		 */
+		private String role = "none";
+
+		/**
+		 * async answers a write at once; semi-sync waits until the standby has
+		 * acknowledged it, or for semi-sync-timeout-millis at most.
+		 */
+		private String mode = "async";
+
+		/**
+		 * Port a primary, or a promoted standby, accepts its standby on; 0 picks a free port.
+		 */
+		private int listenPort = 9899;
+
+		/**
+		 * Host of the primary a standby replicates from.
+		 */
+		private String primaryHost = "localhost";
+
+		/**
+		 * Port of the primary a standby replicates from.
+		 */
+		private int primaryPort = 9899;
+
+		/**
+		 * Longest time a semi-sync write waits for the standby before it is answered anyway.
+		 */
+		private long semiSyncTimeoutMillis = 1000;
+
+		/**
+		 * Pause before a standby reconnects to a primary it lost or could not reach.
+		 */
+		private long reconnectMillis = 500;
+	}
+
+	@Data
+	public static class Json {
+		/**
+		 * Whether tickets, users, seats and ticket responses are written by the
+		 * hand-written serializers of FastJsonModule instead of Jackson's bean
+		 * serializers. Both write the same JSON. Off by default.
+		 */
+		private boolean fastSerializers;
+	}
+
+	@Data
+	public static class UserImport {
+		/**
+		 * Threads parsing and inserting rows; 0 uses one per available processor.
+		 */
+		private int parallelism;
+
+		/**
+		 * Rows handed to a parsing thread at a time.
+		 */
+		private int chunkRows = 4096;
+
+		/**
+		 * Chunks read ahead of the parsing threads, per thread. Bounds the memory an
+		 * import holds however large the upload is.
+		 */
+		private int chunksPerThread = 2;
+
+		/**
+		 * Rejected rows described in the import report; the rest are only counted.
+		 */
+		private int maxReportedErrors = 20;
+	}
+
+	@Data
+	public static class Recording {
+		/**
+		 * Whether requests to /api/train are recorded. Off by default.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Directory the request logs are written to, created if missing.
+		 */
+		private String directory = "recording";
+
+		/**
+		 * Requests that may wait for the writer. Once full, further requests are not
+		 * recorded but counted, rather than holding up the request thread.
+		 */
+		private int queueCapacity = 65536;
+
+		/**
+		 * Largest request body recorded, in bytes. Requests with larger bodies, such as
+		 * user imports, are logged without their body and skipped on replay.
+		 */
+		private int maxBodyBytes = 16384;
+
+		/**
+		 * Requests per log before the writer rolls over to a new one.
+		 */
+		private int rollRequests = 1_000_000;
+	}
+
+	@Data
+	public static class Refunds {
+		/**
+		 * Whether refunds are queued and paid by a background thread. Off, each refund
+		 * is paid on the thread that cancelled the ticket.
+		 */
+		private boolean async = true;
+
+		/**
+		 * Most refunds paid together. Refunds in a batch owed to the same user are
+		 * paid as one payment.
+		 */
+		private int batchSize = 256;
+
+		/**
+		 * Payments tried per refund before it is given up and counted as failed.
+		 */
+		private int maxAttempts = 3;
+	}
 }
@@ -0,0 +1,89 @@
+package com.trainticketsystem.controller;
+
+import com.trainticketsystem.model.RecordedRequest;
+import com.trainticketsystem.service.TrafficRecorder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Hands every request the controller serves to the {@link TrafficRecorder} once its
+ * response is complete, asynchronous purchases and modifications included.
+ * The body is kept as the controller reads it, up to app.recording.max-body-bytes,
+ * so recording adds a copy of small bodies and one queue append per request.
+ * Only registered while recording is enabled.
+ */
+public class TrafficRecordingFilter extends OncePerRequestFilter {
+
+	private final TrafficRecorder recorder;
+
+	public TrafficRecordingFilter(TrafficRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		Instant arrival = Instant.now();
+		long start = System.nanoTime();
+		ContentCachingRequestWrapper cached = new ContentCachingRequestWrapper(request, recorder.getMaxBodyBytes());
+		try {
+			chain.doFilter(cached, response);
+		} finally {
+			if (cached.isAsyncStarted()) {
+				cached.getAsyncContext().addListener(new AsyncListener() {
+					@Override
+					public void onComplete(AsyncEvent event) {
+						record(cached, response, arrival, start);
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				record(cached, response, arrival, start);
+			}
+		}
+	}
+
+	private void record(ContentCachingRequestWrapper request, HttpServletResponse response, Instant arrival, long start) {
+		long latencyMicros = (System.nanoTime() - start) / 1_000;
+		byte[] body = request.getContentAsByteArray();
+		long length = request.getContentLengthLong();
+		// A body of unknown length that filled the cache may have been cut off
+		boolean omitted = length > recorder.getMaxBodyBytes()
+				|| (length < 0 && body.length >= recorder.getMaxBodyBytes());
+		String query = request.getQueryString();
+		recorder.record(RecordedRequest.builder()
+				.arrivalMicros(arrival.getEpochSecond() * 1_000_000 + arrival.getNano() / 1_000)
+				.method(request.getMethod())
+				.path(query != null ? request.getRequestURI() + "?" + query : request.getRequestURI())
+				.contentType(request.getContentType())
+				.accept(request.getHeader(HttpHeaders.ACCEPT))
+				.ifNoneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH))
+				.requestTimeout(request.getHeader(TrainController.REQUEST_TIMEOUT_HEADER))
+				.body(omitted || body.length == 0 ? null : body)
+				.bodyOmitted(omitted)
+				.status(response.getStatus())
+				.latencyMicros(latencyMicros)
+				.build());
+	}
+}
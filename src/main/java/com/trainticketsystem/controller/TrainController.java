@@ -1,17 +1,45 @@
 package com.trainticketsystem.controller;
 
+import com.trainticketsystem.response.ExportStatus;
+import com.trainticketsystem.response.ImportStatus;
+import com.trainticketsystem.response.LaneStatus;
+import com.trainticketsystem.response.RecordingStatus;
+import com.trainticketsystem.response.RefundStatus;
+import com.trainticketsystem.response.ReplicationStatus;
 import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.service.BookingExporter;
+import com.trainticketsystem.service.BookingScheduler;
+import com.trainticketsystem.service.CancellationService;
+import com.trainticketsystem.service.GroupBookingService;
 import com.trainticketsystem.service.ModifySeatService;
+import com.trainticketsystem.service.PricingEngine;
 import com.trainticketsystem.service.PurchaseTicketService;
 import com.trainticketsystem.model.*;
+import com.trainticketsystem.request.GroupTicketRequest;
 import com.trainticketsystem.request.TicketRequest;
 import com.trainticketsystem.service.ReceiptService;
+import com.trainticketsystem.service.RefundProcessor;
+import com.trainticketsystem.service.ReplicationService;
+import com.trainticketsystem.service.SeatBitmap;
+import com.trainticketsystem.service.SeatManager;
+import com.trainticketsystem.service.SeatStreamService;
+import com.trainticketsystem.service.TrafficRecorder;
 import com.trainticketsystem.service.UserDetailService;
+import com.trainticketsystem.service.UserImportService;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.TicketResponseBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
+import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,17 +51,62 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class TrainController {
 
+    public static final String SEAT_MAP_BINARY = "application/vnd.trainticket.seatmap.v1";
+    public static final String SEAT_MAP_BASE64 = "application/vnd.trainticket.seatmap.v1+base64";
+    // Optional client budget in milliseconds, capped at app.request-timeout-millis
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
     private final PurchaseTicketService purchaseTicketService;
     private final ReceiptService receiptService;
     private final UserDetailService userInfoService;
     private final ModifySeatService modifySeatService;
+    private final CancellationService cancellationService;
+    private final GroupBookingService groupBookingService;
+    private final SeatStreamService seatStreamService;
+    private final SeatBitmap seatBitmap;
+    private final SeatManager seatManager;
+    private final PricingEngine pricingEngine;
+    private final BookingExporter bookingExporter;
+    private final TrafficRecorder trafficRecorder;
+    private final RefundProcessor refundProcessor;
+    private final BookingScheduler bookingScheduler;
+    private final ReplicationService replicationService;
+    private final UserImportService userImportService;
+    private final TicketResponseBuilder ticketResponseBuilder;
     private final Map<Integer, User> userMap;
     private final Map<String, Seat> seatMap;
 
     @PostMapping("/purchase")
     public CompletableFuture<ResponseEntity<TicketResponse>> purchaseTicket(
-            @RequestBody TicketRequest request) {
-        return purchaseTicketService.purchaseTicket(request.getUserId(), request.getSeatId())
+            @RequestBody TicketRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(readOnly());
+        }
+        Deadline deadline = seatManager.requestDeadline(timeoutMillis);
+        return bookingScheduler.submit(request.getPriority(), deadline,
+                        () -> purchaseTicketService.purchaseTicket(request.getUserId(), request.getSeatId(), deadline))
+                .thenCompose(replicationService::replicated)
+                .thenApply(response -> {
+                    if (response.isTransactionStatus()) {
+                        return ResponseEntity.ok(response);
+                    }
+                    return ResponseEntity.badRequest().body(response);
+                });
+    }
+
+    // Books a run of adjacent seats, one per user, all or nothing
+    @PostMapping("/group/purchase")
+    public CompletableFuture<ResponseEntity<TicketResponse>> purchaseGroup(
+            @RequestBody GroupTicketRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(readOnly());
+        }
+        Deadline deadline = seatManager.requestDeadline(timeoutMillis);
+        return bookingScheduler.submit(request.getPriority(), deadline,
+                        () -> groupBookingService.purchaseAdjacent(request.getUserIds(), request.getSection(), deadline))
+                .thenCompose(replicationService::replicated)
                 .thenApply(response -> {
                     if (response.isTransactionStatus()) {
                         return ResponseEntity.ok(response);
@@ -43,26 +116,122 @@ public class TrainController {
     }
 
     @GetMapping("/receipt/{userId}")
-    public ResponseEntity<TicketResponse> getReceiptDetails(@PathVariable String userId) {
+    public ResponseEntity<TicketResponse> getReceiptDetails(@PathVariable String userId, WebRequest request) {
+        String eTag = userETag("receipt", userId);
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
         log.info("Fetching receipt for userId: {}", userId);
-        return ResponseEntity.ok(receiptService.generateReceipt(userId));
+        return withETag(receiptService.generateReceipt(userId), eTag);
+    }
+
+    // One page of a user's tickets in issue order, optionally for a single journey
+    @GetMapping("/user/{userId}/tickets")
+    public ResponseEntity<TicketResponse> getUserTickets(@PathVariable String userId,
+                                                         @RequestParam(required = false) Integer journey,
+                                                         @RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "20") int size,
+                                                         WebRequest request) {
+        String eTag = userETag("tickets", userId);
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
+        TicketResponse response = receiptService.listTickets(userId, journey, page, size);
+        if (!response.isTransactionStatus()) {
+            return ResponseEntity.badRequest().body(response);
+        }
+        return withETag(response, eTag);
+    }
+
+    @GetMapping("/receipt/ticket/{ticketId}")
+    public ResponseEntity<TicketResponse> getReceiptByTicketId(@PathVariable Long ticketId) {
+        return ResponseEntity.ok(receiptService.generateReceiptByTicketId(ticketId));
+    }
+
+    @GetMapping("/user/email/{email}")
+    public ResponseEntity<TicketResponse> getUserByEmail(@PathVariable String email) {
+        return ResponseEntity.ok(userInfoService.getUserByEmail(email));
+    }
+
+    @GetMapping("/seat/{seatId}/user")
+    public ResponseEntity<TicketResponse> getUserBySeat(@PathVariable String seatId) {
+        return ResponseEntity.ok(userInfoService.getUserBySeat(seatId));
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<TicketResponse> getUserDetails(@PathVariable String userId) {
-        return ResponseEntity.ok(userInfoService.getUserDetails(userId));
+    public ResponseEntity<TicketResponse> getUserDetails(@PathVariable String userId, WebRequest request) {
+        String eTag = userETag("user", userId);
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
+        return withETag(userInfoService.getUserDetails(userId), eTag);
+    }
+
+    // Read before the body is built, so a change racing the read can only make the tag stale, never ahead
+    private String userETag(String view, String userId) {
+        User user = userMap.get(Integer.valueOf(userId));
+        return user != null ? "\"" + view + "-" + userId + "-" + user.getVersion() + "\"" : null;
+    }
+
+    private static ResponseEntity<TicketResponse> withETag(TicketResponse response, String eTag) {
+        return eTag != null ? ResponseEntity.ok().eTag(eTag).body(response) : ResponseEntity.ok(response);
     }
 
     @DeleteMapping("/user/{userId}")
-    public ResponseEntity<Void> removeUser(@PathVariable String userId) {
-        userInfoService.deleteUser(userId);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<Void>> removeUser(@PathVariable String userId) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        // 503 if the user was kept: a seat was busy or a refund is unpaid; retrying finishes the delete
+        boolean deleted = userInfoService.deleteUser(userId);
+        return replicationService.replicated(deleted
+                ? ResponseEntity.ok().<Void>build()
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).<Void>build());
+    }
+
+    // Streams users in from NDJSON (application/x-ndjson) or CSV with a header row (text/csv)
+    @PostMapping("/user/import")
+    public CompletableFuture<ResponseEntity<ImportStatus>> importUsers(
+            InputStream body,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        String format = importFormat(contentType);
+        if (format == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build());
+        }
+        return replicationService.replicated(ResponseEntity.ok(userImportService.importUsers(body, format)));
+    }
+
+    private static String importFormat(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        MediaType type;
+        try {
+            type = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return switch (type.getType() + "/" + type.getSubtype()) {
+            case "application/x-ndjson", "application/ndjson" -> UserImportService.NDJSON;
+            case "text/csv" -> UserImportService.CSV;
+            default -> null;
+        };
     }
 
     @PutMapping("/user/{userId}/seat")
     public CompletableFuture<ResponseEntity<TicketResponse>> modifyUserSeat(
-            @RequestBody TicketRequest request) {
-        return modifySeatService.modifySeating(request.getUserId(), request.getSeatId())
+            @RequestBody TicketRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(readOnly());
+        }
+        Deadline deadline = seatManager.requestDeadline(timeoutMillis);
+        return bookingScheduler.submit(request.getPriority(), deadline,
+                        () -> modifySeatService.modifySeating(request.getUserId(), request.getTicketId(), request.getSeatId(), deadline))
+                .thenCompose(replicationService::replicated)
                 .thenApply(response -> {
                     if (response.isTransactionStatus()) {
                         return ResponseEntity.ok(response);
@@ -71,16 +240,160 @@ public class TrainController {
                 });
     }
 
+    // Cancels one ticket; the seat is free straight away and the refund is queued
+    @DeleteMapping("/user/{userId}/ticket/{ticketId}")
+    public CompletableFuture<ResponseEntity<TicketResponse>> cancelTicket(
+            @PathVariable String userId,
+            @PathVariable long ticketId,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        if (replicationService.isReadOnly()) {
+            return CompletableFuture.completedFuture(readOnly());
+        }
+        TicketResponse response = cancellationService.cancelTicket(userId, ticketId, seatManager.requestDeadline(timeoutMillis));
+        return replicationService.replicated(response)
+                .thenApply(replicated -> {
+                    if (replicated.isTransactionStatus()) {
+                        return ResponseEntity.ok(replicated);
+                    }
+                    return ResponseEntity.badRequest().body(replicated);
+                });
+    }
+
+    @PostMapping("/journey/{journeyId}/cancel")
+    public ResponseEntity<CancellationJob> cancelJourney(@PathVariable int journeyId,
+                                                         @RequestParam(required = false) String section) {
+        if (replicationService.isReadOnly()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        CancellationJob job = cancellationService.cancelJourney(journeyId, section);
+        if (job == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.accepted().body(job);
+    }
+
+    // Progress of a bulk cancellation; finished jobs are kept for app.cancellation-job-retention-millis, then 404
+    @GetMapping("/cancellation/{jobId}")
+    public ResponseEntity<CancellationJob> getCancellation(@PathVariable long jobId) {
+        CancellationJob job = cancellationService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
     @GetMapping("/user")
     public ResponseEntity<List<User>> getAllUsers() {
         LinkedHashMap<Integer, User> userList = new LinkedHashMap<>(userMap);
         return ResponseEntity.ok(userList.entrySet().stream().map(Map.Entry::getValue).toList());
     }
 
-    @GetMapping("/seat")
+    @GetMapping(value = "/seat", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<List<Seat>> getAllSeat() {
         LinkedHashMap<String, Seat> userList = new LinkedHashMap<>(seatMap);
         return ResponseEntity.ok(userList.entrySet().stream().map(Map.Entry::getValue).toList());
     }
 
-} 
\ No newline at end of file
+    // First runs of count adjacent free seats; nothing is held until a group purchase
+    @GetMapping("/seat/adjacent")
+    public ResponseEntity<List<List<String>>> findAdjacentSeats(@RequestParam String section,
+                                                                @RequestParam int count,
+                                                                @RequestParam(defaultValue = "1") int limit) {
+        List<List<String>> runs = count > 0 && limit > 0 ? groupBookingService.findAdjacent(section, count, limit) : null;
+        if (runs == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(runs);
+    }
+
+    @GetMapping(value = "/seat", produces = SEAT_MAP_BINARY)
+    public ResponseEntity<byte[]> getSeatBitmap(@RequestParam(required = false) String section, WebRequest request) {
+        if (section != null && !seatBitmap.hasSection(section)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(seatMapETag(section, seatBitmap.getVersion(), "bin"))) {
+            return null;
+        }
+        byte[] seatMap = seatBitmap.encode(section);
+        return ResponseEntity.ok()
+                .eTag(seatMapETag(section, SeatBitmap.versionOf(seatMap), "bin"))
+                .contentType(MediaType.parseMediaType(SEAT_MAP_BINARY))
+                .body(seatMap);
+    }
+
+    @GetMapping(value = "/seat", produces = SEAT_MAP_BASE64)
+    public ResponseEntity<String> getSeatBitmapBase64(@RequestParam(required = false) String section, WebRequest request) {
+        if (section != null && !seatBitmap.hasSection(section)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.checkNotModified(seatMapETag(section, seatBitmap.getVersion(), "b64"))) {
+            return null;
+        }
+        byte[] seatMap = seatBitmap.encode(section);
+        return ResponseEntity.ok()
+                .eTag(seatMapETag(section, SeatBitmap.versionOf(seatMap), "b64"))
+                .contentType(MediaType.parseMediaType(SEAT_MAP_BASE64))
+                .body(Base64.getEncoder().encodeToString(seatMap));
+    }
+
+    private static String seatMapETag(String section, long version, String encoding) {
+        return "\"seatmap-v" + SeatBitmap.FORMAT_VERSION + "-" + (section != null ? section : "all")
+                + "-" + version + "-" + encoding + "\"";
+    }
+
+    @GetMapping("/price")
+    public ResponseEntity<PriceSnapshot> getPrices() {
+        return ResponseEntity.ok(pricingEngine.getSnapshot());
+    }
+
+    // Backlog and progress of the analytics export
+    @GetMapping("/export")
+    public ResponseEntity<ExportStatus> getExportStatus() {
+        return ResponseEntity.ok(bookingExporter.getStatus());
+    }
+
+    // Backlog and progress of request recording
+    @GetMapping("/recording")
+    public ResponseEntity<RecordingStatus> getRecordingStatus() {
+        return ResponseEntity.ok(trafficRecorder.getStatus());
+    }
+
+    // Backlog and throughput of refunds for cancelled, moved and deleted tickets
+    @GetMapping("/refunds")
+    public ResponseEntity<RefundStatus> getRefundStatus() {
+        return ResponseEntity.ok(refundProcessor.getStatus());
+    }
+
+    // Queue depth, throughput and latency of each booking priority lane
+    @GetMapping("/lanes")
+    public ResponseEntity<List<LaneStatus>> getLanes() {
+        return ResponseEntity.ok(bookingScheduler.getLaneStatus());
+    }
+
+    // Role, connection and lag of primary to standby replication
+    @GetMapping("/replication")
+    public ResponseEntity<ReplicationStatus> getReplication() {
+        return ResponseEntity.ok(replicationService.getStatus());
+    }
+
+    // Turns a standby into the primary; it stops following its old primary for good
+    @PostMapping("/replication/promote")
+    public ResponseEntity<ReplicationStatus> promote() {
+        if (!replicationService.promote()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(replicationService.getStatus());
+        }
+        return ResponseEntity.ok(replicationService.getStatus());
+    }
+
+    @GetMapping(value = "/seat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSeats() {
+        return seatStreamService.subscribe();
+    }
+
+    // Writes go to the primary while this instance is a standby
+    private ResponseEntity<TicketResponse> readOnly() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ticketResponseBuilder.sendFailedResponse(BookingResult.failed(ReplicationService.READ_ONLY), null));
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.trainticketsystem.model;
+
+import com.trainticketsystem.utils.SeatCodes;
+import lombok.Getter;
+
+/**
+ * One change to a booking, as published to booking event listeners and exported for analytics.
+ * Encoded as primitives only, like {@link TicketRecord}, so publishing from the
+ * booking path costs a single small allocation.
+ */
+@Getter
+public final class BookingEvent {
+
+	public enum Type {
+		BOOKED,
+		MODIFIED,
+		CANCELLED
+	}
+
+	private final Type type;
+	private final long timestamp;
+	private final long ticketId;
+	private final int userId;
+	private final int seatCode;
+	// Seat held before a modification, zero if there was none
+	private final int previousSeatCode;
+	private final int journeyId;
+	private final int price;
+
+	public BookingEvent(Type type, long timestamp, long ticketId, int userId, int seatCode,
+	                    int previousSeatCode, int journeyId, int price) {
+		this.type = type;
+		this.timestamp = timestamp;
+		this.ticketId = ticketId;
+		this.userId = userId;
+		this.seatCode = seatCode;
+		this.previousSeatCode = previousSeatCode;
+		this.journeyId = journeyId;
+		this.price = price;
+	}
+
+	/**
+	 * Event for a ticket, stamped with the current time.
+	 *
+	 * @param type What happened to the ticket
+	 * @param ticket Ticket issued or cancelled
+	 * @param previous Ticket replaced by a modification, or null
+	 * @return New event
+	 */
+	public static BookingEvent of(Type type, TicketRecord ticket, TicketRecord previous) {
+		return new BookingEvent(type, System.currentTimeMillis(), ticket.getId(), ticket.getUserId(),
+				ticket.getSeatCode(), previous != null ? previous.getSeatCode() : 0, ticket.getJourneyId(),
+				ticket.getPrice());
+	}
+
+	public String getSeatNumber() {
+		return SeatCodes.decode(seatCode);
+	}
+
+	public String getPreviousSeatNumber() {
+		return previousSeatCode != 0 ? SeatCodes.decode(previousSeatCode) : null;
+	}
+
+	@Override
+	public String toString() {
+		return "BookingEvent{" +
+				"type=" + type +
+				", timestamp=" + timestamp +
+				", ticketId=" + ticketId +
+				", userId=" + userId +
+				", seat=" + getSeatNumber() +
+				", previousSeat=" + getPreviousSeatNumber() +
+				", journeyId=" + journeyId +
+				", price=" + price +
+				'}';
+	}
+}
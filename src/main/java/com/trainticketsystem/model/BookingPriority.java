@@ -0,0 +1,26 @@
+package com.trainticketsystem.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Locale;
+
+/**
+ * Scheduling class of a booking request. Each class waits in its own lane, and the
+ * lanes share booking capacity by weight, so a bulk backfill cannot starve customers.
+ */
+public enum BookingPriority {
+	INTERACTIVE,
+	PARTNER,
+	BULK;
+
+	/**
+	 * Reads a priority regardless of case, as clients send it in requests.
+	 *
+	 * @param value Priority name such as "bulk", or null
+	 * @return Priority, or null if none was given
+	 */
+	@JsonCreator
+	public static BookingPriority of(String value) {
+		return value == null ? null : valueOf(value.trim().toUpperCase(Locale.ROOT));
+	}
+}
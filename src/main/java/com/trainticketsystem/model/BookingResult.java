@@ -7,16 +7,56 @@ import java.util.List;
 
 @Data
 public class BookingResult {
+
+	/**
+	 * Why a booking failed, for callers that act on the kind of failure rather than its message.
+	 */
+	public enum Failure {
+		// Another booking holds or took a seat
+		SEAT_TAKEN,
+		// A seat's lock was not free in time
+		SEAT_BUSY,
+		SEAT_NOT_FOUND,
+		DEADLINE_EXCEEDED,
+		// A payment was declined, refused by the bulkhead, timed out or failed
+		PAYMENT,
+		// Anything else, such as an invalid request or an interrupted thread
+		OTHER
+	}
+
 	private final boolean success;
 	private final String message;
+	// Null for a successful booking
+	private final Failure failure;
 	private final int totalPrice;
 	private final List<String> bookedSeats;
+	// Price charged for each booked seat, in the order of bookedSeats
+	private final List<Integer> seatPrices;
+	// Tickets issued for the booked seats, in the same order
+	private final List<TicketRecord> tickets;
 
 	public BookingResult(boolean success, String message, int totalPrice, List<String> bookedSeats) {
+		this(success, message, totalPrice, bookedSeats, Collections.emptyList());
+	}
+
+	public BookingResult(boolean success, String message, int totalPrice, List<String> bookedSeats, List<Integer> seatPrices) {
+		this(success, message, totalPrice, bookedSeats, seatPrices, Collections.emptyList());
+	}
+
+	public BookingResult(boolean success, String message, int totalPrice, List<String> bookedSeats, List<Integer> seatPrices,
+			List<TicketRecord> tickets) {
+		this(success, message, success ? null : Failure.OTHER, totalPrice, bookedSeats, seatPrices, tickets);
+	}
+
+	private BookingResult(boolean success, String message, Failure failure, int totalPrice, List<String> bookedSeats,
+			List<Integer> seatPrices, List<TicketRecord> tickets) {
 		this.success = success;
 		this.message = message;
+		this.failure = failure;
 		this.totalPrice = totalPrice;
 		this.bookedSeats = bookedSeats;
+		this.seatPrices = seatPrices;
+		this.tickets = tickets;
 	}
 
 	// Factory methods
@@ -24,8 +64,30 @@ public class BookingResult {
 		return new BookingResult(true, "Booking successful", 0, Collections.emptyList());
 	}
 
+	public static BookingResult success(int totalPrice) {
+		return new BookingResult(true, "Booking successful", totalPrice, Collections.emptyList());
+	}
+
+	public static BookingResult success(int totalPrice, TicketRecord ticket) {
+		return new BookingResult(true, "Booking successful", totalPrice, Collections.emptyList(), Collections.emptyList(),
+				List.of(ticket));
+	}
+
+	public static BookingResult success(List<String> bookedSeats, List<Integer> seatPrices) {
+		return success(bookedSeats, seatPrices, Collections.emptyList());
+	}
+
+	public static BookingResult success(List<String> bookedSeats, List<Integer> seatPrices, List<TicketRecord> tickets) {
+		return new BookingResult(true, "Booking successful", seatPrices.stream().mapToInt(Integer::intValue).sum(),
+				List.copyOf(bookedSeats), List.copyOf(seatPrices), List.copyOf(tickets));
+	}
+
 	public static BookingResult failed(String reason) {
-		return new BookingResult(false, reason, 0, List.of());
+		return failed(Failure.OTHER, reason);
+	}
+
+	public static BookingResult failed(Failure failure, String reason) {
+		return new BookingResult(false, reason, failure, 0, List.of(), Collections.emptyList(), Collections.emptyList());
 	}
 
 	public boolean isSuccess() {
@@ -36,6 +98,13 @@ public class BookingResult {
 		return bookedSeats;
 	}
 
+	/**
+	 * @return Ticket issued for a single booked seat, or null if none was
+	 */
+	public TicketRecord getTicket() {
+		return tickets.isEmpty() ? null : tickets.get(0);
+	}
+
 	@Override
 	public String toString() {
 		return "BookingResult{" +
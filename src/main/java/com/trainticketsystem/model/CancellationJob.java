@@ -0,0 +1,58 @@
+package com.trainticketsystem.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a bulk cancellation. Counters are updated by the worker
+ * threads as partitions complete and can be polled while the job runs.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CancellationJob {
+
+	public enum Status {
+		RUNNING,
+		COMPLETED,
+		FAILED
+	}
+
+	private final long id;
+	private final int journeyId;
+	private final String section;
+	private final int totalSeats;
+	private final AtomicInteger processedSeats = new AtomicInteger();
+	private final AtomicInteger releasedSeats = new AtomicInteger();
+	private final AtomicInteger failedSeats = new AtomicInteger();
+	private final AtomicInteger refundedTickets = new AtomicInteger();
+	private final AtomicLong refundedAmount = new AtomicLong();
+	private final long startedAt = System.currentTimeMillis();
+	private volatile long finishedAt;
+	private volatile Status status = Status.RUNNING;
+	private volatile String message;
+
+	public CancellationJob(long id, int journeyId, String section, int totalSeats) {
+		this.id = id;
+		this.journeyId = journeyId;
+		this.section = section;
+		this.totalSeats = totalSeats;
+	}
+
+	public long getElapsedMillis() {
+		return (finishedAt != 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+	}
+
+	public void complete() {
+		finishedAt = System.currentTimeMillis();
+		status = Status.COMPLETED;
+	}
+
+	public void fail(Throwable throwable) {
+		finishedAt = System.currentTimeMillis();
+		message = throwable.getMessage();
+		status = Status.FAILED;
+	}
+}
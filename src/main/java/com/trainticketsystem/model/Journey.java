@@ -0,0 +1,33 @@
+package com.trainticketsystem.model;
+
+/**
+ * Journeys served by the system. A ticket stores only the journey id
+ * (the ordinal); the location strings are shared by every ticket.
+ */
+public enum Journey {
+	LONDON_TO_FRANCE("London", "France");
+
+	private final String fromLocation;
+	private final String toLocation;
+
+	Journey(String fromLocation, String toLocation) {
+		this.fromLocation = fromLocation;
+		this.toLocation = toLocation;
+	}
+
+	public int getId() {
+		return ordinal();
+	}
+
+	public String getFromLocation() {
+		return fromLocation;
+	}
+
+	public String getToLocation() {
+		return toLocation;
+	}
+
+	public static Journey of(int id) {
+		return values()[id];
+	}
+}
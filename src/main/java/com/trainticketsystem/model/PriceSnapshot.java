@@ -0,0 +1,76 @@
+package com.trainticketsystem.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable view of the current ticket price and occupancy tier of every section.
+ * A new snapshot replaces the old one only when a section crosses a tier, so
+ * bookings read prices from a single volatile reference without locking.
+ */
+public final class PriceSnapshot {
+
+	private final long version;
+	private final int defaultPrice;
+	// Indexed by section letter; zero means no such section
+	private final int[] prices;
+	private final int[] tiers;
+
+	public PriceSnapshot(long version, int defaultPrice, int[] prices, int[] tiers) {
+		this.version = version;
+		this.defaultPrice = defaultPrice;
+		this.prices = prices;
+		this.tiers = tiers;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Current price of a seat, looked up by its section letter.
+	 *
+	 * @param seatId Seat number such as "A12"
+	 * @return Price to charge for the seat
+	 */
+	public int priceOf(String seatId) {
+		char section = seatId.charAt(0);
+		return section < prices.length && prices[section] > 0 ? prices[section] : defaultPrice;
+	}
+
+	public int tierOf(char section) {
+		return tiers[section];
+	}
+
+	/**
+	 * Current price per section, for display.
+	 *
+	 * @return Section letter to price, in section order
+	 */
+	public Map<String, Integer> getPrices() {
+		Map<String, Integer> bySection = new TreeMap<>();
+		for (char c = 0; c < prices.length; c++) {
+			if (prices[c] > 0) {
+				bySection.put(String.valueOf(c), prices[c]);
+			}
+		}
+		return bySection;
+	}
+
+	/**
+	 * Copies this snapshot with one section moved to another tier.
+	 *
+	 * @param section Section letter
+	 * @param tier New tier of the section
+	 * @param price Price of the section in that tier
+	 * @return New snapshot with the next version
+	 */
+	public PriceSnapshot withTier(char section, int tier, int price) {
+		int[] nextPrices = Arrays.copyOf(prices, prices.length);
+		int[] nextTiers = Arrays.copyOf(tiers, tiers.length);
+		nextPrices[section] = price;
+		nextTiers[section] = tier;
+		return new PriceSnapshot(version + 1, defaultPrice, nextPrices, nextTiers);
+	}
+}
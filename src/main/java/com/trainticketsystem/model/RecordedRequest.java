@@ -0,0 +1,28 @@
+package com.trainticketsystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * One API request as recorded for replay: what was asked, when, and how it went.
+ * Only the headers that change what the controller does are kept.
+ */
+@Value
+@Builder
+public class RecordedRequest {
+	// Arrival time, in microseconds since the epoch
+	long arrivalMicros;
+	String method;
+	// Path below the servlet context, with the query string if there was one
+	String path;
+	String contentType;
+	String accept;
+	String ifNoneMatch;
+	String requestTimeout;
+	// Null if the request had no body or its body was not recorded
+	byte[] body;
+	// True if the body was larger than app.recording.max-body-bytes and left out
+	boolean bodyOmitted;
+	int status;
+	long latencyMicros;
+}
@@ -2,7 +2,10 @@ package com.trainticketsystem.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -16,6 +19,18 @@ public class Seat {
 	@JsonIgnore
 	private final ReentrantLock lock = new ReentrantLock();
 
+	// Set, under the lock, once a seat store has replaced this instance
+	@JsonIgnore
+	@EqualsAndHashCode.Exclude
+	@Setter(AccessLevel.NONE)
+	private volatile boolean retired;
+
+	// Booking whose payment is still outstanding, or zero once the seat is confirmed or free
+	@JsonIgnore
+	@EqualsAndHashCode.Exclude
+	@Setter(AccessLevel.NONE)
+	private volatile long pendingBooking;
+
 	public Seat(String id, boolean isAvailable) {
 		this.id = id;
 		this.isAvailable = isAvailable;
@@ -33,4 +48,52 @@ public class Seat {
 	public boolean isAvailable(){
 		return isAvailable;
 	}
+
+	/**
+	 * Reserves the seat for a user until the payment of the booking is settled.
+	 * Must be called with the lock held.
+	 *
+	 * @param user User the seat is held for
+	 * @param booking Non-zero id of the booking
+	 * @return false if the seat was not available
+	 */
+	public boolean hold(User user, long booking) {
+		if (!reserve(user)) {
+			return false;
+		}
+		pendingBooking = booking;
+		return true;
+	}
+
+	/**
+	 * Keeps a held seat once its payment has gone through. Must be called with the lock held.
+	 */
+	public void confirm() {
+		pendingBooking = 0;
+	}
+
+	/**
+	 * @return true while the seat is held for a booking whose payment is outstanding
+	 */
+	@JsonIgnore
+	public boolean isPending() {
+		return pendingBooking != 0;
+	}
+
+	/**
+	 * Makes the seat available again, dropping any hold. Must be called with the lock held.
+	 */
+	public void release() {
+		isAvailable = true;
+		reservedBy = null;
+		pendingBooking = 0;
+	}
+
+	/**
+	 * Marks this instance as superseded. Must be called with the lock held; whoever
+	 * locks it afterwards has to look the seat up again.
+	 */
+	public void retire() {
+		retired = true;
+	}
 }
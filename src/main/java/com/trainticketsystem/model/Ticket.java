@@ -1,29 +1,65 @@
 package com.trainticketsystem.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
-@JsonIgnoreProperties(ignoreUnknown = true)
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Flyweight JSON view of a {@link TicketRecord}.
+ * Holds only the record and its holder; every field of the ticket JSON is
+ * resolved from them when the response is serialized, so a booking allocates
+ * no copies of the holder's name, email, locations or section.
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "fromLocation", "toLocation", "price", "seatNumber", "section",
+		"userFirstName", "userLastName", "userEmail"})
 public class Ticket {
-	private Long id;
-	private String fromLocation;
-	private String toLocation;
-	private int price;
-	private String seatNumber;
-	private String section;
-	private String userFirstName;
-	private String userLastName;
-	private String userEmail;
-	
+	private final TicketRecord record;
+	private final User user;
+
+	public Ticket(TicketRecord record, User user) {
+		this.record = record;
+		this.user = user;
+	}
+
+	@JsonIgnore
+	public TicketRecord getRecord() {
+		return record;
+	}
+
+	public Long getId() {
+		return record.getId();
+	}
+
+	public String getFromLocation() {
+		return record.getJourney().getFromLocation();
+	}
+
+	public String getToLocation() {
+		return record.getJourney().getToLocation();
+	}
+
+	public int getPrice() {
+		return record.getPrice();
+	}
+
+	public String getSeatNumber() {
+		return record.getSeatNumber();
+	}
+
+	public String getSection() {
+		return record.getSection();
+	}
+
+	public String getUserFirstName() {
+		return user.getFirstName();
+	}
+
+	public String getUserLastName() {
+		return user.getLastName();
+	}
 
+	public String getUserEmail() {
+		return user.getEmail();
+	}
 }
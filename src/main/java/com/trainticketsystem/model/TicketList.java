@@ -0,0 +1,276 @@
+package com.trainticketsystem.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable list of one user's tickets, stored as parallel primitive arrays.
+ * Tickets are kept in issue order, i.e. ascending ticket id, so a lookup by id is a
+ * binary search and a page is a range of the arrays. A permutation sorted by journey
+ * and then id gives the same for the tickets of one journey.
+ * {@link TicketRecord}s are built only for the tickets a caller asks for; each ticket
+ * otherwise costs 20 bytes plus a 4-byte journey slot, with no object per ticket.
+ * Changes return a new list, so a reference read once is a consistent view.
+ */
+public final class TicketList {
+
+	public static final TicketList EMPTY = new TicketList(0, new long[0], new int[0], new int[0], new int[0], new int[0]);
+
+	private final int userId;
+	private final long[] ids;
+	private final int[] seatCodes;
+	private final int[] journeyIds;
+	private final int[] prices;
+	// Indexes into the arrays above, sorted by journey id, then ticket id
+	private final int[] byJourney;
+
+	private TicketList(int userId, long[] ids, int[] seatCodes, int[] journeyIds, int[] prices, int[] byJourney) {
+		this.userId = userId;
+		this.ids = ids;
+		this.seatCodes = seatCodes;
+		this.journeyIds = journeyIds;
+		this.prices = prices;
+		this.byJourney = byJourney;
+	}
+
+	/**
+	 * @param ticket Single ticket, or null
+	 * @return List holding just that ticket, or the empty list
+	 */
+	public static TicketList of(TicketRecord ticket) {
+		return ticket == null ? EMPTY : EMPTY.with(ticket);
+	}
+
+	/**
+	 * @param tickets Tickets of one user in ascending id order
+	 * @return List holding those tickets, or the empty list
+	 */
+	public static TicketList copyOf(List<TicketRecord> tickets) {
+		int n = tickets.size();
+		if (n == 0) {
+			return EMPTY;
+		}
+		long[] ids = new long[n];
+		int[] seatCodes = new int[n];
+		int[] journeyIds = new int[n];
+		int[] prices = new int[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			TicketRecord ticket = tickets.get(i);
+			if (i > 0 && ticket.getId() <= ids[i - 1]) {
+				throw new IllegalArgumentException("Ticket " + ticket.getId() + " is not newer than ticket " + ids[i - 1]);
+			}
+			ids[i] = ticket.getId();
+			seatCodes[i] = ticket.getSeatCode();
+			journeyIds[i] = ticket.getJourneyId();
+			prices[i] = ticket.getPrice();
+			order[i] = i;
+		}
+		// Stable, so tickets of one journey stay in id order
+		Arrays.sort(order, (a, b) -> Integer.compare(journeyIds[a], journeyIds[b]));
+		int[] byJourney = new int[n];
+		for (int i = 0; i < n; i++) {
+			byJourney[i] = order[i];
+		}
+		return new TicketList(tickets.get(0).getUserId(), ids, seatCodes, journeyIds, prices, byJourney);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public boolean isEmpty() {
+		return ids.length == 0;
+	}
+
+	/**
+	 * @param index Position in issue order
+	 * @return Ticket at that position
+	 */
+	public TicketRecord get(int index) {
+		return new TicketRecord(ids[index], userId, seatCodes[index], journeyIds[index], prices[index]);
+	}
+
+	/**
+	 * @return Most recently issued ticket, or null if there is none
+	 */
+	public TicketRecord latest() {
+		return ids.length == 0 ? null : get(ids.length - 1);
+	}
+
+	/**
+	 * @param ticketId Ticket id to look up
+	 * @return Ticket with that id, or null if this list does not hold it
+	 */
+	public TicketRecord find(long ticketId) {
+		int index = Arrays.binarySearch(ids, ticketId);
+		return index >= 0 ? get(index) : null;
+	}
+
+	public boolean contains(long ticketId) {
+		return Arrays.binarySearch(ids, ticketId) >= 0;
+	}
+
+	/**
+	 * @param seatCode Seat code as produced by SeatCodes
+	 * @return Most recent ticket for that seat, or null
+	 */
+	public TicketRecord findBySeat(int seatCode) {
+		for (int i = ids.length - 1; i >= 0; i--) {
+			if (seatCodes[i] == seatCode) {
+				return get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param offset Tickets to skip, in issue order
+	 * @param limit Most tickets to return
+	 * @return Tickets in issue order
+	 */
+	public List<TicketRecord> page(int offset, int limit) {
+		int from = Math.max(0, offset);
+		int to = (int) Math.min(ids.length, (long) from + Math.max(0, limit));
+		List<TicketRecord> page = new ArrayList<>(Math.max(0, to - from));
+		for (int i = from; i < to; i++) {
+			page.add(get(i));
+		}
+		return page;
+	}
+
+	/**
+	 * @param journeyId Journey id
+	 * @return Number of tickets for that journey
+	 */
+	public int countForJourney(int journeyId) {
+		return journeyEnd(journeyId) - journeyStart(journeyId);
+	}
+
+	/**
+	 * @param journeyId Journey id
+	 * @param offset Tickets of the journey to skip, in issue order
+	 * @param limit Most tickets to return
+	 * @return Tickets of that journey in issue order
+	 */
+	public List<TicketRecord> pageForJourney(int journeyId, int offset, int limit) {
+		int start = journeyStart(journeyId);
+		int end = journeyEnd(journeyId);
+		int from = (int) Math.min(end, (long) start + Math.max(0, offset));
+		int to = (int) Math.min(end, (long) from + Math.max(0, limit));
+		List<TicketRecord> page = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			page.add(get(byJourney[i]));
+		}
+		return page;
+	}
+
+	/**
+	 * Adds a ticket, which must have a higher id than every ticket already held.
+	 *
+	 * @param ticket Newly issued ticket
+	 * @return List including the ticket
+	 */
+	public TicketList with(TicketRecord ticket) {
+		int n = ids.length;
+		if (n > 0 && ticket.getId() <= ids[n - 1]) {
+			throw new IllegalArgumentException("Ticket " + ticket.getId() + " is not newer than ticket " + ids[n - 1]);
+		}
+		long[] newIds = Arrays.copyOf(ids, n + 1);
+		int[] newSeats = Arrays.copyOf(seatCodes, n + 1);
+		int[] newJourneys = Arrays.copyOf(journeyIds, n + 1);
+		int[] newPrices = Arrays.copyOf(prices, n + 1);
+		newIds[n] = ticket.getId();
+		newSeats[n] = ticket.getSeatCode();
+		newJourneys[n] = ticket.getJourneyId();
+		newPrices[n] = ticket.getPrice();
+		// The newest ticket goes last among the tickets of its journey
+		int at = journeyEnd(ticket.getJourneyId());
+		int[] newOrder = new int[n + 1];
+		System.arraycopy(byJourney, 0, newOrder, 0, at);
+		newOrder[at] = n;
+		System.arraycopy(byJourney, at, newOrder, at + 1, n - at);
+		return new TicketList(ticket.getUserId(), newIds, newSeats, newJourneys, newPrices, newOrder);
+	}
+
+	/**
+	 * @param ticketId Ticket to drop
+	 * @return List without the ticket, or this list if it does not hold it
+	 */
+	public TicketList without(long ticketId) {
+		int index = Arrays.binarySearch(ids, ticketId);
+		if (index < 0) {
+			return this;
+		}
+		int n = ids.length;
+		if (n == 1) {
+			return EMPTY;
+		}
+		int[] newOrder = new int[n - 1];
+		int j = 0;
+		for (int position : byJourney) {
+			if (position != index) {
+				newOrder[j++] = position > index ? position - 1 : position;
+			}
+		}
+		return new TicketList(userId, remove(ids, index), remove(seatCodes, index),
+				remove(journeyIds, index), remove(prices, index), newOrder);
+	}
+
+	/**
+	 * @return Every ticket in issue order
+	 */
+	public List<TicketRecord> toList() {
+		return page(0, ids.length);
+	}
+
+	// First position in byJourney of the journey's tickets
+	private int journeyStart(int journeyId) {
+		int low = 0;
+		int high = byJourney.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (journeyIds[byJourney[mid]] < journeyId) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	// Position in byJourney just past the journey's tickets
+	private int journeyEnd(int journeyId) {
+		int low = 0;
+		int high = byJourney.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (journeyIds[byJourney[mid]] <= journeyId) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static long[] remove(long[] values, int index) {
+		long[] result = new long[values.length - 1];
+		System.arraycopy(values, 0, result, 0, index);
+		System.arraycopy(values, index + 1, result, index, result.length - index);
+		return result;
+	}
+
+	private static int[] remove(int[] values, int index) {
+		int[] result = new int[values.length - 1];
+		System.arraycopy(values, 0, result, 0, index);
+		System.arraycopy(values, index + 1, result, index, result.length - index);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "TicketList{userId=" + userId + ", ids=" + Arrays.toString(ids) + '}';
+	}
+}
@@ -0,0 +1,66 @@
+package com.trainticketsystem.model;
+
+import com.trainticketsystem.utils.SeatCodes;
+import lombok.Getter;
+
+/**
+ * Internal ticket state, encoded as primitives only.
+ * Holder details and location strings are not copied in; the {@link Ticket}
+ * view resolves them from the user and the {@link Journey} when serialized.
+ * Records are immutable values; the per-user {@link TicketList} rebuilds them on
+ * demand, so they are compared by their fields rather than by identity. Ticket ids
+ * are never reused, so each issuance is still distinct.
+ */
+@Getter
+public final class TicketRecord {
+	private final long id;
+	private final int userId;
+	private final int seatCode;
+	private final int journeyId;
+	private final int price;
+
+	public TicketRecord(long id, int userId, int seatCode, int journeyId, int price) {
+		this.id = id;
+		this.userId = userId;
+		this.seatCode = seatCode;
+		this.journeyId = journeyId;
+		this.price = price;
+	}
+
+	public String getSeatNumber() {
+		return SeatCodes.decode(seatCode);
+	}
+
+	public String getSection() {
+		return SeatCodes.section(seatCode);
+	}
+
+	public Journey getJourney() {
+		return Journey.of(journeyId);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		return o instanceof TicketRecord other && id == other.id && userId == other.userId
+				&& seatCode == other.seatCode && journeyId == other.journeyId && price == other.price;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(id);
+	}
+
+	@Override
+	public String toString() {
+		return "TicketRecord{" +
+				"id=" + id +
+				", userId=" + userId +
+				", seat=" + getSeatNumber() +
+				", journeyId=" + journeyId +
+				", price=" + price +
+				'}';
+	}
+}
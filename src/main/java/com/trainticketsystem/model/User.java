@@ -2,9 +2,11 @@ package com.trainticketsystem.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Data
@@ -12,6 +14,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"firstName", "lastName", "email", "seatNumber", "ticketCount"})
 public class User {
 	@JsonIgnore
 	private Integer id;
@@ -22,14 +25,100 @@ public class User {
 	@JsonIgnore
 	private int walletBalance;
 	
+	/**
+	 * Every ticket the user holds, in issue order.
+	 */
 	@JsonIgnore
-	private Ticket ticket;
+	@Builder.Default
+	private TicketList tickets = TicketList.EMPTY;
 
-	private String seatNumber;
+	/**
+	 * Bumped whenever the tickets change, so an unchanged version means the user
+	 * and receipt reads would return the same body. Only differences between
+	 * versions carry meaning; the store may advance it by more than one per change.
+	 */
+	@JsonIgnore
+	@EqualsAndHashCode.Exclude
+	private long version;
+
+	/**
+	 * @return Most recently issued ticket, or null if the user holds none
+	 */
+	@JsonIgnore
+	public TicketRecord getTicket() {
+		return getTickets().latest();
+	}
+
+	/**
+	 * @return Seat of the most recently issued ticket, or null
+	 */
+	public String getSeatNumber() {
+		TicketRecord ticket = getTicket();
+		return ticket != null ? ticket.getSeatNumber() : null;
+	}
+
+	public int getTicketCount() {
+		return getTickets().size();
+	}
+
+	public void setTickets(TicketList tickets) {
+		this.tickets = tickets != null ? tickets : TicketList.EMPTY;
+		this.version++;
+	}
+
+	/**
+	 * Adds a newly issued ticket.
+	 *
+	 * @param ticket Ticket to add
+	 */
+	public void addTicket(TicketRecord ticket) {
+		replaceTicket(null, ticket);
+	}
+
+	/**
+	 * Swaps one ticket for another in a single change, as a seat modification does.
+	 *
+	 * @param previous Ticket to drop, or null to only add
+	 * @param ticket Ticket to add, or null to only drop
+	 */
+	public void replaceTicket(TicketRecord previous, TicketRecord ticket) {
+		TicketList updated = previous != null ? tickets.without(previous.getId()) : tickets;
+		this.tickets = ticket != null ? updated.with(ticket) : updated;
+		this.version++;
+	}
+
+	/**
+	 * Drops a ticket if the user still holds it.
+	 *
+	 * @param ticket Ticket to drop
+	 * @return true if the user held the ticket and it has been dropped
+	 */
+	public boolean removeTicket(TicketRecord ticket) {
+		TicketList updated = tickets.without(ticket.getId());
+		if (updated == tickets) {
+			return false;
+		}
+		this.tickets = updated;
+		this.version++;
+		return true;
+	}
 
-	public void setTicket(Ticket ticket) {
-		this.ticket = ticket;
-		this.seatNumber = ticket != null ? ticket.getSeatNumber() : null;
+	/**
+	 * Copies this user's state as of a single instant, for building read responses
+	 * that must not mix fields from different updates.
+	 *
+	 * @return Detached copy of the user
+	 */
+	public User snapshot() {
+		return User.builder()
+				.id(id)
+				.firstName(firstName)
+				.lastName(lastName)
+				.email(email)
+				.walletBalance(walletBalance)
+				.tickets(tickets)
+				.version(version)
+				.build();
 	}
 
 	public boolean deductBalance(int amount) {
@@ -0,0 +1,31 @@
+package com.trainticketsystem.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.trainticketsystem.model.BookingPriority;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Purchase of adjacent seats in one section, one seat for each user.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GroupTicketRequest {
+	@NotEmpty
+	private List<String> userIds;
+
+	@NotNull
+	private String section;
+
+	// Scheduling lane of the booking; interactive when left out
+	private BookingPriority priority;
+}
@@ -3,6 +3,7 @@ package com.trainticketsystem.request;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.trainticketsystem.model.BookingPriority;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -21,6 +22,12 @@ public class TicketRequest {
 	@NotNull
 	private String seatId;
 
+	// Ticket to move when modifying; may be left out by a user holding a single ticket
+	private Long ticketId;
+
+	// Scheduling lane of the booking; interactive when left out
+	private BookingPriority priority;
+
 	private String from;
 	private String to;
 
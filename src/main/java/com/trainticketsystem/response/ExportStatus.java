@@ -0,0 +1,31 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of the booking export: how far the writer is behind the booking path
+ * and what it has accepted, dropped and written so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportStatus {
+	private boolean enabled;
+	// Events waiting for the writer
+	private int backlog;
+	private int capacity;
+	private long accepted;
+	// Events refused because the queue was full or the exporter had stopped
+	private long dropped;
+	private long written;
+	// Events lost to write errors
+	private long failed;
+	private int completedFiles;
+	private String currentFile;
+}
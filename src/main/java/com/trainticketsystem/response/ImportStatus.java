@@ -0,0 +1,30 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk user import: rows read, imported and rejected, and how fast.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportStatus {
+	private String format;
+	// False if the upload ended early or could not be read; rows imported until then are kept
+	private boolean complete;
+	private long rows;
+	private long imported;
+	private long rejected;
+	private long millis;
+	private long rowsPerSecond;
+	// The first rejected rows, as "line N: reason"
+	private List<String> errors;
+}
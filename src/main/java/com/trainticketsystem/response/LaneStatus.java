@@ -0,0 +1,34 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.trainticketsystem.model.BookingPriority;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Load and service level of one booking priority lane. Latencies run from the moment
+ * a booking is queued to the moment it completes, over roughly the last minute.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LaneStatus {
+	private BookingPriority priority;
+	private int weight;
+	// Bookings waiting for a slot
+	private int queued;
+	private long completed;
+	// Bookings completed during the last full second
+	private long completedPerSecond;
+	// Bookings refused because the lane was full
+	private long rejected;
+	// Bookings whose deadline passed while they were queued
+	private long expired;
+	private long p50Micros;
+	private long p99Micros;
+	private long p999Micros;
+}
@@ -0,0 +1,33 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of request recording: how far the writer is behind the request threads
+ * and what it has recorded, dropped and written so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordingStatus {
+	private boolean enabled;
+	// Requests waiting for the writer
+	private int backlog;
+	private int capacity;
+	private long accepted;
+	// Requests not recorded because the queue was full or the recorder had stopped
+	private long dropped;
+	private long written;
+	// Requests lost to write errors
+	private long failed;
+	// Requests recorded without their body because it was too large
+	private long bodiesOmitted;
+	private int completedFiles;
+	private String currentFile;
+}
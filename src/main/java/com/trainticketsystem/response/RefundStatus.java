@@ -0,0 +1,36 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of refunds: how many are still owed, how fast they are being paid and
+ * what has been paid, retried and given up so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RefundStatus {
+	// False if refunds are paid on the thread that cancelled the ticket
+	private boolean async;
+	// Refunds queued but not yet paid or given up
+	private int backlog;
+	// How long the oldest queued refund has waited
+	private long oldestWaitingMillis;
+	private long refundedLastSecond;
+	private long queued;
+	private long refunded;
+	private long refundedAmount;
+	// Payments tried again after the payment provider failed them
+	private long retried;
+	// Refunds given up after every attempt failed
+	private long failed;
+	// Calls to the payment provider; refunds owed to one user in a batch share a call
+	private long payments;
+	private long batches;
+}
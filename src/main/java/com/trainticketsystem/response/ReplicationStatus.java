@@ -0,0 +1,38 @@
+package com.trainticketsystem.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Replication state of this instance. Primary counters describe what was shipped to
+ * the standby, standby counters what was applied; fields of the other role are left out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReplicationStatus {
+	private String role;
+	private String mode;
+	private boolean connected;
+	// Frames shipped or applied, the first of each connection being a full snapshot
+	private long frames;
+	// User rows shipped or applied
+	private long users;
+	private Long bytes;
+	// Changes made on the primary that the standby has not acknowledged yet
+	private Long pendingChanges;
+	// How far the standby's state is behind the primary, in milliseconds
+	private long lagMillis;
+	// Time from reading a frame's rows to the standby acknowledging them
+	private Long roundTripP50Micros;
+	private Long roundTripP99Micros;
+	private Long semiSyncWaits;
+	private Long semiSyncTimeouts;
+	// Port a standby connects to, while this instance is a primary
+	private Integer listenPort;
+}
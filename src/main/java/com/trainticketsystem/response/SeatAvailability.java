@@ -0,0 +1,14 @@
+package com.trainticketsystem.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Availability of a single seat, as sent in seat stream snapshots and deltas.
+ */
+@Data
+@AllArgsConstructor
+public class SeatAvailability {
+	private String seat;
+	private boolean available;
+}
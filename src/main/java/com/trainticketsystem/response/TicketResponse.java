@@ -9,6 +9,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,5 +21,9 @@ public class TicketResponse {
 	private boolean transactionStatus;
 	private String message;
 	private Ticket ticket;
+	// Tickets of a group purchase in seat order, or a page of a user's tickets in issue order
+	private List<Ticket> tickets;
+	// Tickets matching a paged listing, across all pages
+	private Integer totalTickets;
 	private User user;
 }
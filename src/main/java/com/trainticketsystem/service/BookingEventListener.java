@@ -0,0 +1,16 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.BookingEvent;
+
+/**
+ * Callback for bookings, modifications and cancellations recorded through {@link BookingIndex}.
+ * Invoked on the booking thread, so implementations must be cheap and non-blocking.
+ */
+@FunctionalInterface
+public interface BookingEventListener {
+
+	/**
+	 * @param event Booking change that was just recorded
+	 */
+	void onBookingEvent(BookingEvent event);
+}
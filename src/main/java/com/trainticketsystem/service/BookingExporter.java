@@ -0,0 +1,240 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingEvent;
+import com.trainticketsystem.response.ExportStatus;
+import com.trainticketsystem.utils.BookingExportFormat;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports booking, modify and cancel events to rolling gzip-compressed columnar files,
+ * so analytics can read bookings without scraping the user endpoints.
+ * The booking thread only appends the event to a lock-free queue bounded by a counter;
+ * once the queue is full, events are dropped and counted instead of waiting.
+ * A single writer thread drains the queue into blocks of up to batch-size events,
+ * writing each column contiguously (see {@link BookingExportFormat}). Files are written
+ * with a ".part" suffix and renamed once complete, so readers only ever see whole files.
+ */
+@Service
+@Slf4j
+public class BookingExporter implements BookingEventListener {
+
+	private static final DateTimeFormatter FILE_TIME =
+			DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+	private static final String PART_SUFFIX = ".part";
+
+	private final AppProperties.Export config;
+	private final Path directory;
+	private final Queue<BookingEvent> queue = new ConcurrentLinkedQueue<>();
+	// Events accepted but not yet written or failed, including the batch being written
+	private final AtomicInteger backlog = new AtomicInteger();
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicInteger completedFiles = new AtomicInteger();
+	private final Thread writer;
+	private volatile boolean running;
+	private volatile Path currentFile;
+
+	// Owned by the writer thread
+	private DataOutputStream out;
+	private long fileRows;
+	private long fileOpenedAt;
+	private int fileSequence;
+
+	public BookingExporter(BookingIndex bookingIndex, AppProperties appProperties) {
+		this.config = appProperties.getExport();
+		this.directory = Path.of(config.getDirectory());
+		if (!config.isEnabled()) {
+			this.writer = null;
+			return;
+		}
+		this.running = true;
+		this.writer = new Thread(this::writeLoop, "booking-export-writer");
+		writer.setDaemon(true);
+		writer.start();
+		bookingIndex.addListener(this);
+		log.info("Exporting booking events to {}", directory.toAbsolutePath());
+	}
+
+	/**
+	 * Queues an event for the writer without ever waiting.
+	 *
+	 * @param event Booking change to export
+	 */
+	@Override
+	public void onBookingEvent(BookingEvent event) {
+		if (running) {
+			if (backlog.incrementAndGet() <= config.getQueueCapacity()) {
+				queue.offer(event);
+				accepted.incrementAndGet();
+				return;
+			}
+			backlog.decrementAndGet();
+		}
+		dropped.incrementAndGet();
+	}
+
+	/**
+	 * @return Current backlog, counters and file progress of the export
+	 */
+	public ExportStatus getStatus() {
+		Path file = currentFile;
+		return ExportStatus.builder()
+				.enabled(config.isEnabled())
+				.backlog(backlog.get())
+				.capacity(config.getQueueCapacity())
+				.accepted(accepted.get())
+				.dropped(dropped.get())
+				.written(written.get())
+				.failed(failed.get())
+				.completedFiles(completedFiles.get())
+				.currentFile(file != null ? file.getFileName().toString() : null)
+				.build();
+	}
+
+	/**
+	 * Stops accepting events, then waits for the writer to drain the queue and complete
+	 * the current file.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (writer == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(writer);
+		writer.join(TimeUnit.SECONDS.toMillis(30));
+		if (writer.isAlive()) {
+			log.warn("Booking export writer still busy at shutdown with {} events queued", backlog.get());
+		}
+	}
+
+	private void writeLoop() {
+		int batchSize = Math.max(1, config.getBatchSize());
+		long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Math.min(10, config.getFlushIntervalMillis())));
+		List<BookingEvent> batch = new ArrayList<>(batchSize);
+		long batchDeadline = 0;
+		while (running || backlog.get() > 0) {
+			BookingEvent event;
+			while (batch.size() < batchSize && (event = queue.poll()) != null) {
+				if (batch.isEmpty()) {
+					batchDeadline = System.currentTimeMillis() + config.getFlushIntervalMillis();
+				}
+				batch.add(event);
+			}
+			long now = System.currentTimeMillis();
+			if (!batch.isEmpty() && (batch.size() >= batchSize || now >= batchDeadline || !running)) {
+				write(batch);
+				batch.clear();
+			} else {
+				if (out != null && now - fileOpenedAt >= config.getRollIntervalMillis()) {
+					complete();
+				}
+				LockSupport.parkNanos(idleNanos);
+			}
+		}
+		if (out != null) {
+			complete();
+		}
+		log.info("Booking export stopped after writing {} events to {} files", written.get(), completedFiles.get());
+	}
+
+	/**
+	 * Writes a batch as one block, split across files where it crosses the roll size.
+	 */
+	private void write(List<BookingEvent> batch) {
+		long rollRows = Math.max(1, config.getRollRows());
+		int from = 0;
+		try {
+			while (from < batch.size()) {
+				if (out == null) {
+					open();
+				}
+				int to = (int) Math.min(batch.size(), from + rollRows - fileRows);
+				BookingExportFormat.writeBlock(out, batch, from, to);
+				fileRows += to - from;
+				written.addAndGet(to - from);
+				from = to;
+				if (fileRows >= rollRows) {
+					complete();
+				}
+			}
+		} catch (IOException e) {
+			log.error("Booking export write to {} failed: {}", currentFile, e.getMessage());
+			failed.addAndGet(batch.size() - from);
+			abandon();
+		} finally {
+			backlog.addAndGet(-batch.size());
+		}
+	}
+
+	private void open() throws IOException {
+		Files.createDirectories(directory);
+		fileOpenedAt = System.currentTimeMillis();
+		String name = "bookings-" + FILE_TIME.format(Instant.ofEpochMilli(fileOpenedAt))
+				+ String.format("-%06d", ++fileSequence) + BookingExportFormat.FILE_SUFFIX;
+		Path file = directory.resolve(name + PART_SUFFIX);
+		out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 65536)));
+		BookingExportFormat.writeHeader(out);
+		fileRows = 0;
+		currentFile = file;
+	}
+
+	/**
+	 * Ends the current file and renames it to its final name.
+	 */
+	private void complete() {
+		Path file = currentFile;
+		try {
+			BookingExportFormat.writeEnd(out);
+			out.close();
+			String name = file.getFileName().toString();
+			Files.move(file, file.resolveSibling(name.substring(0, name.length() - PART_SUFFIX.length())),
+					StandardCopyOption.ATOMIC_MOVE);
+			completedFiles.incrementAndGet();
+		} catch (IOException e) {
+			log.error("Booking export could not complete {}: {}", file, e.getMessage());
+		} finally {
+			out = null;
+			currentFile = null;
+		}
+	}
+
+	/**
+	 * Gives up on a file after a write error, leaving the partial file for inspection.
+	 */
+	private void abandon() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// Already broken
+			}
+		}
+		out = null;
+		currentFile = null;
+	}
+}
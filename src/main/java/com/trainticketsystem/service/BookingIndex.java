@@ -0,0 +1,206 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.BookingEvent;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Secondary indexes over the user map for O(1) lookups by email, seat and ticket id.
+ * Entries hold user ids rather than User references so a lookup always resolves
+ * against the current user map. Removals are conditional on the current owner,
+ * which keeps the indexes consistent when a seat changes hands concurrently.
+ * Every ticket issued, moved or released through here is also published to the
+ * registered {@link BookingEventListener}s.
+ */
+@Component
+@Slf4j
+public class BookingIndex {
+
+	private final Map<Integer, User> userMap;
+	private final Map<String, Integer> emailIndex = new ConcurrentHashMap<>();
+	private final Map<String, Integer> seatIndex = new ConcurrentHashMap<>();
+	private final Map<Long, TicketRecord> ticketIndex = new ConcurrentHashMap<>();
+	private final List<BookingEventListener> listeners = new CopyOnWriteArrayList<>();
+
+	public BookingIndex(Map<Integer, User> userMap) {
+		this.userMap = userMap;
+		// Seed the email index (and any pre-existing tickets) from the current users
+		userMap.values().forEach(user -> {
+			userAdded(user);
+			user.getTickets().toList().forEach(ticket -> index(user, ticket));
+		});
+	}
+
+	/**
+	 * Registers a listener for booking events.
+	 *
+	 * @param listener Listener to notify on the booking thread
+	 */
+	public void addListener(BookingEventListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Registers a user's email in the index.
+	 *
+	 * @param user User to index
+	 */
+	public void userAdded(User user) {
+		if (user.getEmail() != null) {
+			emailIndex.put(normalize(user.getEmail()), user.getId());
+		}
+	}
+
+	/**
+	 * Registers a user's email unless another user already has it, atomically, so
+	 * users added concurrently cannot end up sharing an email.
+	 *
+	 * @param user User to index
+	 * @return Id of the user already holding the email, or null if it is now claimed for this user
+	 */
+	public Integer claimEmail(User user) {
+		return emailIndex.putIfAbsent(normalize(user.getEmail()), user.getId());
+	}
+
+	/**
+	 * Gives up an email claimed for a user that was not added after all.
+	 *
+	 * @param user User the email was claimed for
+	 */
+	public void releaseEmail(User user) {
+		emailIndex.remove(normalize(user.getEmail()), user.getId());
+	}
+
+	/**
+	 * Removes a user and everything they own from the indexes.
+	 *
+	 * @param user User being removed
+	 */
+	public void userRemoved(User user) {
+		if (user.getEmail() != null) {
+			emailIndex.remove(normalize(user.getEmail()), user.getId());
+		}
+		user.getTickets().toList().forEach(ticket -> ticketReleased(user, ticket));
+	}
+
+	/**
+	 * Records a newly issued ticket against its seat and id.
+	 *
+	 * @param user User holding the ticket
+	 * @param ticket Ticket that was issued
+	 */
+	public void ticketIssued(User user, TicketRecord ticket) {
+		if (ticket == null) {
+			return;
+		}
+		index(user, ticket);
+		publish(BookingEvent.Type.BOOKED, ticket, null);
+	}
+
+	/**
+	 * Replaces one of a user's tickets with the one issued by a seat modification.
+	 *
+	 * @param user User holding the ticket
+	 * @param previous Ticket given up, or null if the user had none
+	 * @param ticket Ticket that was issued in its place
+	 */
+	public void ticketMoved(User user, TicketRecord previous, TicketRecord ticket) {
+		if (ticket == null) {
+			return;
+		}
+		if (previous != null) {
+			unindex(user, previous);
+		}
+		index(user, ticket);
+		publish(BookingEvent.Type.MODIFIED, ticket, previous);
+	}
+
+	/**
+	 * Drops a ticket from the indexes, but only where it is still owned by this user.
+	 *
+	 * @param user User that held the ticket
+	 * @param ticket Ticket being released
+	 */
+	public void ticketReleased(User user, TicketRecord ticket) {
+		if (ticket == null) {
+			return;
+		}
+		unindex(user, ticket);
+		publish(BookingEvent.Type.CANCELLED, ticket, null);
+	}
+
+	/**
+	 * Finds a user by email, ignoring case.
+	 *
+	 * @param email Email to look up
+	 * @return User with that email, or null
+	 */
+	public User findByEmail(String email) {
+		if (email == null) {
+			return null;
+		}
+		return resolve(emailIndex.get(normalize(email)));
+	}
+
+	/**
+	 * Finds the user currently holding a seat.
+	 *
+	 * @param seatNumber Seat to look up
+	 * @return User holding the seat, or null
+	 */
+	public User findBySeat(String seatNumber) {
+		if (seatNumber == null) {
+			return null;
+		}
+		return resolve(seatIndex.get(seatNumber));
+	}
+
+	/**
+	 * Finds a ticket by id.
+	 *
+	 * @param ticketId Ticket id to look up
+	 * @return Ticket with that id, or null
+	 */
+	public TicketRecord findTicket(Long ticketId) {
+		if (ticketId == null) {
+			return null;
+		}
+		return ticketIndex.get(ticketId);
+	}
+
+	private void index(User user, TicketRecord ticket) {
+		seatIndex.put(ticket.getSeatNumber(), user.getId());
+		ticketIndex.put(ticket.getId(), ticket);
+	}
+
+	private void unindex(User user, TicketRecord ticket) {
+		seatIndex.remove(ticket.getSeatNumber(), user.getId());
+		ticketIndex.remove(ticket.getId(), ticket);
+	}
+
+	private void publish(BookingEvent.Type type, TicketRecord ticket, TicketRecord previous) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		BookingEvent event = BookingEvent.of(type, ticket, previous);
+		for (BookingEventListener listener : listeners) {
+			listener.onBookingEvent(event);
+		}
+	}
+
+	private User resolve(Integer userId) {
+		return userId != null ? userMap.get(userId) : null;
+	}
+
+	private static String normalize(String email) {
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,361 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingPriority;
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.response.LaneStatus;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the booking path. At most max-in-flight bookings run
+ * at once; the rest wait in one lane per {@link BookingPriority}. When a slot frees up
+ * the lanes are served by stride scheduling, a form of weighted fair queuing: each
+ * lane advances its pass by the inverse of its weight per booking started, and the
+ * backlogged lane with the lowest pass goes next. A lane that was idle restarts at
+ * the current pass instead of claiming the turns it skipped, so a bulk backlog can
+ * take at most its weighted share from interactive bookings, however deep it gets.
+ * A booking whose deadline passes while it waits fails without running.
+ * Bookings are started on a pool of booking-starter threads, one per slot, never on
+ * the thread that submitted or completed another booking: a booking that blocks, such
+ * as a seat change waiting for the lock of the seat it gives up, then holds only its
+ * own slot instead of stalling dispatch for every lane.
+ * Latency, from queueing to completion, and throughput are recorded per lane in the
+ * Micrometer registry under booking.lane.*.
+ */
+@Service
+@Slf4j
+public class BookingScheduler {
+
+	public static final String LANE_FULL = "Too many bookings waiting. Try again later.";
+	// Pass advance of a lane with weight 1; divisible by the usual weights
+	private static final long STRIDE_UNIT = 720_720;
+	private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+	private final TicketResponseBuilder ticketResponseBuilder;
+	private final Lane[] lanes;
+	private final boolean fairQueuing;
+	private final int maxInFlight;
+	private final int queueCapacity;
+	// Runs the bookings; dispatch only picks them
+	private final Executor starter;
+	// Every waiting booking in arrival order, used instead of the lanes when fair queuing is off
+	private final ArrayDeque<Task> shared = new ArrayDeque<>();
+	// Dispatch requests not yet served; only the caller that raises it from zero dispatches
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+	// Guarded by this
+	private int inFlight;
+	private long virtualTime;
+
+	@Autowired
+	public BookingScheduler(AppProperties appProperties, MeterRegistry meterRegistry,
+							TicketResponseBuilder ticketResponseBuilder) {
+		// At most max-in-flight bookings start at once, so a booking never waits for a starter thread
+		this(appProperties, meterRegistry, ticketResponseBuilder,
+				Executors.newFixedThreadPool(Math.max(1, appProperties.getScheduling().getMaxInFlight()), daemon("booking-starter")));
+	}
+
+	/**
+	 * @param starter Runs each booking once it leaves its lane
+	 */
+	BookingScheduler(AppProperties appProperties, MeterRegistry meterRegistry,
+					 TicketResponseBuilder ticketResponseBuilder, Executor starter) {
+		AppProperties.Scheduling config = appProperties.getScheduling();
+		this.ticketResponseBuilder = ticketResponseBuilder;
+		this.starter = starter;
+		this.fairQueuing = config.isFairQueuing();
+		this.maxInFlight = Math.max(1, config.getMaxInFlight());
+		this.queueCapacity = Math.max(1, config.getQueueCapacity());
+		BookingPriority[] priorities = BookingPriority.values();
+		this.lanes = new Lane[priorities.length];
+		for (BookingPriority priority : priorities) {
+			int weight = Math.max(1, config.getWeights().getOrDefault(priority, 1));
+			lanes[priority.ordinal()] = new Lane(priority, weight, meterRegistry);
+		}
+		Gauge.builder("booking.in.flight", this, BookingScheduler::getInFlight).register(meterRegistry);
+		log.info("Booking lanes: {} in flight, {}", maxInFlight, fairQueuing ? "weighted fair queuing" : "single FIFO queue");
+	}
+
+	/**
+	 * Runs a booking once a slot is free and its lane's turn has come.
+	 *
+	 * @param priority Lane to wait in; null is interactive
+	 * @param deadline Deadline of the request, checked again when the booking leaves the queue
+	 * @param booking Starts the booking and returns its response
+	 * @return Response of the booking, or a failed response if it was refused or expired while queued
+	 */
+	public CompletableFuture<TicketResponse> submit(BookingPriority priority, Deadline deadline,
+													Supplier<CompletableFuture<TicketResponse>> booking) {
+		Lane lane = lanes[(priority != null ? priority : BookingPriority.INTERACTIVE).ordinal()];
+		Task task = new Task(lane, deadline, booking);
+		if (!enqueue(task)) {
+			lane.rejected.increment();
+			return CompletableFuture.completedFuture(ticketResponseBuilder.sendFailedResponse(BookingResult.failed(LANE_FULL), null));
+		}
+		dispatch();
+		return task.result;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (starter instanceof ExecutorService pool) {
+			pool.shutdown();
+		}
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return Load and latency of every lane, in priority order
+	 */
+	public List<LaneStatus> getLaneStatus() {
+		List<LaneStatus> status = new ArrayList<>(lanes.length);
+		for (Lane lane : lanes) {
+			LaneStatus.LaneStatusBuilder builder = LaneStatus.builder()
+					.priority(lane.priority)
+					.weight(lane.weight)
+					.queued(queued(lane))
+					.completed(lane.latency.count())
+					.completedPerSecond(lane.completedLastSecond())
+					.rejected((long) lane.rejected.count())
+					.expired((long) lane.expired.count());
+			for (ValueAtPercentile value : lane.latency.takeSnapshot().percentileValues()) {
+				long micros = (long) value.value(TimeUnit.MICROSECONDS);
+				if (value.percentile() == 0.5) {
+					builder.p50Micros(micros);
+				} else if (value.percentile() == 0.99) {
+					builder.p99Micros(micros);
+				} else if (value.percentile() == 0.999) {
+					builder.p999Micros(micros);
+				}
+			}
+			status.add(builder.build());
+		}
+		return status;
+	}
+
+	private synchronized int queued(Lane lane) {
+		return lane.queued;
+	}
+
+	private synchronized boolean enqueue(Task task) {
+		Lane lane = task.lane;
+		if (lane.queued >= queueCapacity) {
+			return false;
+		}
+		if (fairQueuing) {
+			if (lane.tasks.isEmpty()) {
+				// No credit for the turns the lane left unused while it was idle
+				lane.pass = Math.max(lane.pass, virtualTime);
+			}
+			lane.tasks.add(task);
+		} else {
+			shared.add(task);
+		}
+		lane.queued++;
+		return true;
+	}
+
+	/**
+	 * Hands waiting bookings to the starter threads while slots are free. Completions and
+	 * submissions on other threads only leave a request behind, so one thread dispatches
+	 * at a time and a booking that completes inline does not recurse back in here.
+	 */
+	private void dispatch() {
+		if (dispatchRequests.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			Task task;
+			while ((task = next()) != null) {
+				Task next = task;
+				try {
+					starter.execute(() -> start(next));
+				} catch (RejectedExecutionException e) {
+					// Shutting down
+					complete(next, null, e);
+				}
+			}
+			missed = dispatchRequests.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * Takes a slot and the booking to run in it.
+	 *
+	 * @return Next booking to start, or null if no slot is free or nothing waits
+	 */
+	private synchronized Task next() {
+		if (inFlight >= maxInFlight) {
+			return null;
+		}
+		Task task;
+		if (fairQueuing) {
+			Lane next = null;
+			for (Lane lane : lanes) {
+				// Ties go to the higher priority, which comes first
+				if (!lane.tasks.isEmpty() && (next == null || lane.pass < next.pass)) {
+					next = lane;
+				}
+			}
+			if (next == null) {
+				return null;
+			}
+			virtualTime = next.pass;
+			next.pass += next.stride;
+			task = next.tasks.poll();
+		} else {
+			task = shared.poll();
+			if (task == null) {
+				return null;
+			}
+		}
+		task.lane.queued--;
+		inFlight++;
+		return task;
+	}
+
+	private void start(Task task) {
+		Lane lane = task.lane;
+		lane.waiting.record(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+		if (task.deadline.isExpired()) {
+			lane.expired.increment();
+			complete(task, ticketResponseBuilder.sendFailedResponse(BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, SeatManager.DEADLINE_EXCEEDED), null), null);
+			return;
+		}
+		CompletableFuture<TicketResponse> booking;
+		try {
+			booking = task.booking.get();
+		} catch (RuntimeException e) {
+			booking = CompletableFuture.failedFuture(e);
+		}
+		booking.whenComplete((response, failure) -> complete(task, response, failure));
+	}
+
+	private void complete(Task task, TicketResponse response, Throwable failure) {
+		synchronized (this) {
+			inFlight--;
+		}
+		task.lane.completed(System.nanoTime() - task.queuedAt);
+		if (failure != null) {
+			task.result.completeExceptionally(failure);
+		} else {
+			task.result.complete(response);
+		}
+		dispatch();
+	}
+
+	private static ThreadFactory daemon(String name) {
+		AtomicLong counter = new AtomicLong(1);
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static final class Task {
+		private final Lane lane;
+		private final Deadline deadline;
+		private final Supplier<CompletableFuture<TicketResponse>> booking;
+		private final CompletableFuture<TicketResponse> result = new CompletableFuture<>();
+		private final long queuedAt = System.nanoTime();
+
+		Task(Lane lane, Deadline deadline, Supplier<CompletableFuture<TicketResponse>> booking) {
+			this.lane = lane;
+			this.deadline = deadline;
+			this.booking = booking;
+		}
+	}
+
+	private static final class Lane {
+		private final BookingPriority priority;
+		private final int weight;
+		private final long stride;
+		private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+		private final Timer latency;
+		private final Timer waiting;
+		private final Counter rejected;
+		private final Counter expired;
+
+		// Guarded by the scheduler
+		private int queued;
+		private long pass;
+
+		// Guarded by this
+		private long second;
+		private long completedThisSecond;
+		private long completedLastSecond;
+
+		Lane(BookingPriority priority, int weight, MeterRegistry meterRegistry) {
+			String name = priority.name().toLowerCase(Locale.ROOT);
+			this.priority = priority;
+			this.weight = weight;
+			this.stride = STRIDE_UNIT / weight;
+			this.latency = Timer.builder("booking.lane.latency")
+					.description("Time from queueing a booking to its completion")
+					.tag("lane", name)
+					.publishPercentiles(PERCENTILES)
+					.distributionStatisticExpiry(Duration.ofMinutes(1))
+					.register(meterRegistry);
+			this.waiting = Timer.builder("booking.lane.wait")
+					.description("Time a booking waited for a slot")
+					.tag("lane", name)
+					.register(meterRegistry);
+			this.rejected = Counter.builder("booking.lane.rejected").tag("lane", name).register(meterRegistry);
+			this.expired = Counter.builder("booking.lane.expired").tag("lane", name).register(meterRegistry);
+		}
+
+		void completed(long latencyNanos) {
+			latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+			synchronized (this) {
+				roll();
+				completedThisSecond++;
+			}
+		}
+
+		synchronized long completedLastSecond() {
+			roll();
+			return completedLastSecond;
+		}
+
+		private void roll() {
+			long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+			if (now != second) {
+				completedLastSecond = now == second + 1 ? completedThisSecond : 0;
+				completedThisSecond = 0;
+				second = now;
+			}
+		}
+	}
+}
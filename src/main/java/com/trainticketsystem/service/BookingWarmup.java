@@ -0,0 +1,152 @@
+package com.trainticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exercises the booking path before the instance takes traffic, so the first real
+ * requests run compiled code instead of the interpreter.
+ * Works on a shadow inventory of its own users, seats, index and ticket numbers;
+ * nothing it books is visible to the real services, listeners or ticket ids.
+ * Application logging is held at WARN while it runs, so the warm-up does not
+ * flood the startup log.
+ */
+@Component
+@Slf4j
+public class BookingWarmup {
+
+	private static final String APP_LOGGER = "com.trainticketsystem";
+	private static final int SHADOW_USERS = 64;
+	private static final int SHADOW_SEATS = 64;
+
+	private final AppProperties appProperties;
+	private final ObjectMapper objectMapper;
+	private final LoggingSystem loggingSystem;
+
+	public BookingWarmup(AppProperties appProperties, ObjectMapper objectMapper, LoggingSystem loggingSystem) {
+		this.appProperties = appProperties;
+		this.objectMapper = objectMapper;
+		this.loggingSystem = loggingSystem;
+	}
+
+	/**
+	 * Runs purchase, modify, receipt and user reads, and release cycles on the shadow
+	 * inventory, serializing every response as the controller would.
+	 *
+	 * @param iterations Number of booking cycles to run
+	 * @return Number of cycles that completed without error
+	 */
+	public int run(int iterations) {
+		long start = System.nanoTime();
+		LoggerConfiguration configured = loggingSystem.getLoggerConfiguration(APP_LOGGER);
+		LogLevel previous = configured != null ? configured.getConfiguredLevel() : null;
+		loggingSystem.setLogLevel(APP_LOGGER, LogLevel.WARN);
+		int completed = 0;
+		Shadow shadow = null;
+		try {
+			shadow = new Shadow();
+			for (int i = 0; i < iterations && !Thread.currentThread().isInterrupted(); i++) {
+				if (shadow.cycle(i)) {
+					completed++;
+				}
+			}
+		} finally {
+			if (shadow != null) {
+				shadow.seatManager.shutdown();
+			}
+			loggingSystem.setLogLevel(APP_LOGGER, previous);
+		}
+		log.info("Warm-up completed {} of {} booking cycles in {} ms", completed, iterations,
+				(System.nanoTime() - start) / 1_000_000);
+		return completed;
+	}
+
+	/**
+	 * The real services wired to a private inventory.
+	 */
+	private final class Shadow {
+		private final Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+		private final UserStore userMap = new UserStore(SHADOW_USERS);
+		private final SeatManager seatManager;
+		private final BookingIndex bookingIndex;
+		private final PurchaseTicketService purchaseTicketService;
+		private final ModifySeatService modifySeatService;
+		private final ReceiptService receiptService;
+		private final UserDetailService userDetailService;
+
+		Shadow() {
+			for (int i = 1; i <= SHADOW_SEATS; i++) {
+				seatMap.put("A" + i, new Seat("A" + i, true));
+				seatMap.put("B" + i, new Seat("B" + i, true));
+			}
+			for (int i = 1; i <= SHADOW_USERS; i++) {
+				userMap.put(User.builder()
+						.id(i)
+						.firstName("Warmup_" + i)
+						.lastName("warmup" + i)
+						.email("warmup_" + i + "@warmup.invalid")
+						.walletBalance(Integer.MAX_VALUE / 2)
+						.build());
+			}
+			TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+			seatManager = new SeatManager(seatMap, appProperties, new PricingEngine(seatMap, appProperties));
+			bookingIndex = new BookingIndex(userMap);
+			purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+			RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+			modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+			receiptService = new ReceiptService(userMap, responseBuilder, bookingIndex);
+			userDetailService = new UserDetailService(userMap, responseBuilder, seatMap, bookingIndex, seatManager, refundProcessor);
+		}
+
+		boolean cycle(int i) {
+			String userId = String.valueOf(1 + i % SHADOW_USERS);
+			int seat = 1 + i % SHADOW_SEATS;
+			try {
+				serialize(purchaseTicketService.purchaseTicket(userId, "A" + seat).join());
+				serialize(modifySeatService.modifySeating(userId, "B" + seat).join());
+				serialize(receiptService.generateReceipt(userId));
+				serialize(userDetailService.getUserDetails(userId));
+				return release(userMap.get(Integer.parseInt(userId)));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException | JsonProcessingException e) {
+				log.warn("Warm-up cycle {} failed: {}", i, e.getMessage());
+			}
+			return false;
+		}
+
+		private void serialize(Object response) throws JsonProcessingException {
+			objectMapper.writeValueAsBytes(response);
+		}
+
+		/**
+		 * Frees the user's seat for the next cycle.
+		 *
+		 * @return false if the cycle left the user without a ticket, i.e. a booking failed
+		 */
+		private boolean release(User user) throws InterruptedException {
+			TicketRecord ticket = user.getTicket();
+			if (ticket == null) {
+				return false;
+			}
+			bookingIndex.ticketReleased(user, ticket);
+			seatManager.releaseSeat(seatMap.get(ticket.getSeatNumber()), user);
+			user.removeTicket(ticket);
+			return true;
+		}
+	}
+}
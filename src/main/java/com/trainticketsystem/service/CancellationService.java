@@ -0,0 +1,240 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.CancellationJob;
+import com.trainticketsystem.model.Journey;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service for cancelling tickets, one at a time or in bulk for a journey or one of
+ * its sections. A cancelled ticket is dropped and its seat released under the seat's
+ * lock, and the exact price charged is handed to the {@link RefundProcessor}, so
+ * cancelling never waits for the payment provider.
+ * Bulk cancellations split the seats into partitions on a dedicated fork-join pool;
+ * each partition releases its seats under their own locks, clears the holders'
+ * tickets and then queues their refunds.
+ */
+@Service
+@Slf4j
+public class CancellationService {
+
+	private final SeatManager seatManager;
+	private final Map<Integer, User> userMap;
+	private final Map<String, Seat> seatMap;
+	private final BookingIndex bookingIndex;
+	private final TicketResponseBuilder responseBuilder;
+	private final RefundProcessor refundProcessor;
+	private final int batchSize;
+	private final long jobRetentionMillis;
+	private final ForkJoinPool pool;
+	private final AtomicLong jobIdGenerator = new AtomicLong(1);
+	private final Map<Long, CancellationJob> jobs = new ConcurrentHashMap<>();
+
+	public CancellationService(SeatManager seatManager,
+	                           Map<Integer, User> userMap,
+	                           Map<String, Seat> seatMap,
+	                           BookingIndex bookingIndex,
+	                           TicketResponseBuilder responseBuilder,
+	                           RefundProcessor refundProcessor,
+	                           AppProperties appProperties) {
+		this.seatManager = seatManager;
+		this.userMap = userMap;
+		this.seatMap = seatMap;
+		this.bookingIndex = bookingIndex;
+		this.responseBuilder = responseBuilder;
+		this.refundProcessor = refundProcessor;
+		this.batchSize = Math.max(1, appProperties.getCancellationBatchSize());
+		this.jobRetentionMillis = Math.max(0, appProperties.getCancellationJobRetentionMillis());
+		int parallelism = appProperties.getCancellationParallelism() > 0
+				? appProperties.getCancellationParallelism()
+				: Runtime.getRuntime().availableProcessors();
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Cancels one of a user's tickets. The seat is free again once this returns; the
+	 * refund of the price charged is queued, so the call takes as long however many
+	 * refunds are owed. A ticket cancelled here and elsewhere at the same time, by a
+	 * modification or a journey cancellation, is refunded once.
+	 *
+	 * @param userId ID of the user holding the ticket
+	 * @param ticketId ID of the ticket to cancel
+	 * @param deadline Deadline after which the cancellation is abandoned
+	 * @return Response with the cancelled ticket or error message
+	 */
+	public TicketResponse cancelTicket(String userId, long ticketId, Deadline deadline) {
+		User user = userMap.get(Integer.valueOf(userId));
+		if (user == null) {
+			return responseBuilder.sendFailedResponse(null, "User not found");
+		}
+		TicketRecord ticket = user.getTickets().find(ticketId);
+		if (ticket == null) {
+			return responseBuilder.sendFailedResponse(null, "Ticket not found");
+		}
+
+		Seat seat = seatMap.get(ticket.getSeatNumber());
+		try {
+			boolean cancelled = seat != null
+					? seatManager.cancelTicket(seat, user, ticket, deadline)
+					: user.removeTicket(ticket);
+			if (!cancelled) {
+				return responseBuilder.sendFailedResponse(null, "Ticket not found");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return responseBuilder.sendFailedResponse(null, "Thread interrupted during cancellation");
+		} catch (IllegalStateException e) {
+			return responseBuilder.sendFailedResponse(null, e.getMessage());
+		}
+
+		bookingIndex.ticketReleased(user, ticket);
+		refundProcessor.refund(user, ticket.getPrice());
+		log.info("Cancelled ticket {} of user {}", ticketId, userId);
+		return responseBuilder.sendCancelledResponse(user, ticket);
+	}
+
+	/**
+	 * Starts cancelling every booking on a journey, or on one section of it.
+	 * Returns immediately; progress is tracked on the returned job.
+	 *
+	 * @param journeyId Journey to cancel
+	 * @param section Section letter to cancel, or null for the whole journey
+	 * @return Job tracking the cancellation, or null if the journey does not exist
+	 */
+	public CancellationJob cancelJourney(int journeyId, String section) {
+		if (journeyId < 0 || journeyId >= Journey.values().length) {
+			log.error("Cannot cancel unknown journey {}", journeyId);
+			return null;
+		}
+
+		// All seats currently belong to the single journey, so filter by section only
+		Seat[] seats = seatMap.values().stream()
+				.filter(seat -> section == null || section.equals(SeatCodes.section(SeatCodes.encode(seat.getId()))))
+				.toArray(Seat[]::new);
+
+		CancellationJob job = new CancellationJob(jobIdGenerator.getAndIncrement(), journeyId, section, seats.length);
+		evictFinishedJobs();
+		jobs.put(job.getId(), job);
+		log.info("Cancelling {} seats on journey {} section {} as job {}", seats.length, journeyId, section, job.getId());
+
+		ReleaseTask root = new ReleaseTask(seats, 0, seats.length, job);
+		CompletableFuture.runAsync(root::invoke, pool)
+				.whenComplete((ignored, throwable) -> {
+					if (throwable != null) {
+						log.error("Cancellation job {} failed: {}", job.getId(), throwable.getMessage());
+						job.fail(throwable);
+					} else {
+						job.complete();
+						log.info("Cancellation job {} released {} seats and queued refunds of {} in {} ms",
+								job.getId(), job.getReleasedSeats(), job.getRefundedAmount(), job.getElapsedMillis());
+					}
+				});
+		return job;
+	}
+
+	/**
+	 * Looks up a cancellation job. Jobs are kept while they run and for
+	 * app.cancellation-job-retention-millis after they finish.
+	 *
+	 * @param jobId ID of the job
+	 * @return Job with its current progress, or null if unknown or finished too long ago
+	 */
+	public CancellationJob getJob(long jobId) {
+		evictFinishedJobs();
+		return jobs.get(jobId);
+	}
+
+	// Forgets jobs that finished longer ago than the retention period
+	private void evictFinishedJobs() {
+		long cutoff = System.currentTimeMillis() - jobRetentionMillis;
+		jobs.values().removeIf(job -> job.getFinishedAt() != 0 && job.getFinishedAt() < cutoff);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Releases one partition of seats and queues refunds for its holders.
+	 */
+	private void releasePartition(Seat[] seats, int from, int to, CancellationJob job) {
+		int refundCount = 0;
+		long refunded = 0;
+		int released = 0;
+		int failed = 0;
+
+		for (int i = from; i < to; i++) {
+			Seat seat = seats[i];
+			try {
+				// Found and dropped under the seat's lock, so a ticket issued for the seat is never missed
+				SeatManager.Cancelled cancelled = seatManager.cancelSeat(seat);
+				if (cancelled == null) {
+					continue;
+				}
+				released++;
+				// Only the canceller that dropped the ticket refunds it
+				TicketRecord ticket = cancelled.ticket();
+				if (ticket != null) {
+					User holder = cancelled.holder();
+					bookingIndex.ticketReleased(holder, ticket);
+					refundProcessor.refund(holder, ticket.getPrice());
+					refundCount++;
+					refunded += ticket.getPrice();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failed++;
+			} catch (IllegalStateException e) {
+				log.info("Cancellation job {} skipped seat {}: {}", job.getId(), seat.getId(), e.getMessage());
+				failed++;
+			}
+		}
+
+		job.getReleasedSeats().addAndGet(released);
+		job.getFailedSeats().addAndGet(failed);
+		job.getRefundedTickets().addAndGet(refundCount);
+		job.getRefundedAmount().addAndGet(refunded);
+		job.getProcessedSeats().addAndGet(to - from);
+	}
+
+	private final class ReleaseTask extends RecursiveAction {
+		private final Seat[] seats;
+		private final int from;
+		private final int to;
+		private final CancellationJob job;
+
+		ReleaseTask(Seat[] seats, int from, int to, CancellationJob job) {
+			this.seats = seats;
+			this.from = from;
+			this.to = to;
+			this.job = job;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= batchSize) {
+				releasePartition(seats, from, to, job);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ReleaseTask(seats, from, mid, job), new ReleaseTask(seats, mid, to, job));
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service for finding and booking adjacent seats for a group.
+ * The search reads the availability bitmap, so it never locks a seat; a purchase then
+ * books a found run through SeatManager, all seats or none, and moves on to the next
+ * run if another booking got there first.
+ */
+@Service
+@Slf4j
+public class GroupBookingService {
+
+	// Runs a purchase tries before giving up on a busy section
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final SeatManager seatManager;
+	private final SeatBitmap seatBitmap;
+	private final Map<Integer, User> userMap;
+	private final TicketResponseBuilder responseBuilder;
+	private final BookingIndex bookingIndex;
+
+	public GroupBookingService(SeatManager seatManager,
+	                           SeatBitmap seatBitmap,
+	                           Map<Integer, User> userMap,
+	                           TicketResponseBuilder responseBuilder,
+	                           BookingIndex bookingIndex) {
+		this.seatManager = seatManager;
+		this.seatBitmap = seatBitmap;
+		this.userMap = userMap;
+		this.responseBuilder = responseBuilder;
+		this.bookingIndex = bookingIndex;
+	}
+
+	/**
+	 * Finds the first runs of adjacent free seats in a section.
+	 *
+	 * @param section Section letter
+	 * @param count Number of adjacent seats wanted
+	 * @param limit Most runs to return
+	 * @return Seat numbers of each run, in seat order, or null if the section does not exist
+	 */
+	public List<List<String>> findAdjacent(String section, int count, int limit) {
+		if (!seatBitmap.hasSection(section)) {
+			return null;
+		}
+		List<List<String>> runs = new ArrayList<>();
+		for (int first : seatBitmap.findAdjacent(section, count, limit)) {
+			runs.add(seatNumbers(section, first, count));
+		}
+		return runs;
+	}
+
+	/**
+	 * Purchases adjacent seats in a section, one for each user.
+	 * Validates that every user exists and is listed once.
+	 *
+	 * @param userIds IDs of the users in the group
+	 * @param section Section to seat the group in
+	 * @param deadline Deadline after which the booking is abandoned
+	 * @return CompletableFuture with the group's tickets or error message
+	 */
+	public CompletableFuture<TicketResponse> purchaseAdjacent(List<String> userIds, String section, Deadline deadline) {
+		if (userIds == null || userIds.isEmpty())
+			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "No users given"));
+		if (!seatBitmap.hasSection(section))
+			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "Section not found: " + section));
+
+		List<User> users = new ArrayList<>(userIds.size());
+		Set<Integer> seen = new HashSet<>();
+		for (String userId : userIds) {
+			User user = userMap.get(Integer.valueOf(userId));
+			if (user == null)
+				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "User not found: " + userId));
+			if (!seen.add(user.getId()))
+				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "User listed twice: " + userId));
+			users.add(user);
+		}
+
+		int[] runs = seatBitmap.findAdjacent(section, users.size(), MAX_ATTEMPTS);
+		if (runs.length == 0)
+			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null,
+					"No " + users.size() + " adjacent seats free in section " + section));
+		return attempt(users, section, runs, 0, deadline)
+				.exceptionally(throwable -> {
+					log.error("Error processing group purchase: {}", throwable.getMessage());
+					return responseBuilder.sendFailedResponse(null, "Error processing group purchase: " + throwable.getMessage());
+				});
+	}
+
+	private CompletableFuture<TicketResponse> attempt(List<User> users, String section, int[] runs, int run, Deadline deadline) {
+		List<String> seats = seatNumbers(section, runs[run], users.size());
+		return seatManager.bookSeats(users, seats, deadline)
+				.thenCompose(bookingResult -> {
+					if (bookingResult.isSuccess()) {
+						TicketResponse response = responseBuilder.sendGroupPurchaseSuccessResponse(users, bookingResult.getTickets());
+						for (int i = 0; i < users.size(); i++) {
+							bookingIndex.ticketIssued(users.get(i), response.getTickets().get(i).getRecord());
+						}
+						return CompletableFuture.completedFuture(response);
+					}
+					if (run + 1 < runs.length && isTaken(bookingResult)) {
+						log.info("Seats {} were taken, trying the next run", seats);
+						return attempt(users, section, runs, run + 1, deadline);
+					}
+					return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(bookingResult, null));
+				});
+	}
+
+	// Another booking took or holds a seat of the run; failures of the group itself or of payment end the purchase
+	private static boolean isTaken(BookingResult bookingResult) {
+		BookingResult.Failure failure = bookingResult.getFailure();
+		return failure == BookingResult.Failure.SEAT_TAKEN || failure == BookingResult.Failure.SEAT_BUSY;
+	}
+
+	private static List<String> seatNumbers(String section, int first, int count) {
+		List<String> seats = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			seats.add(section + (first + i));
+		}
+		return seats;
+	}
+}
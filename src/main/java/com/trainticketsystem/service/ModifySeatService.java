@@ -1,8 +1,11 @@
 package com.trainticketsystem.service;
 
 import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
 import com.trainticketsystem.utils.TicketResponseBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,66 +16,192 @@ import java.util.concurrent.CompletableFuture;
 /**
  * Service for handling seat modification operations.
  * Manages the process of changing a user's seat with validation and cleanup.
+ * The ticket being moved is cancelled and its refund paid before the new seat is
+ * charged, so the refund counts towards the new seat and a move costs the difference
+ * in price. If the new seat cannot be booked, the old one is taken back at what its
+ * ticket cost and the user keeps that ticket. The refund is waited for no longer than
+ * the request deadline and the payment timeout allow; if it is not paid by then, the
+ * move is not made and the old seat is taken back where the wallet can pay for it.
  */
 @Service
 @Slf4j
 public class ModifySeatService {
 
+	public static final String REFUND_FAILED = "Could not refund the ticket being moved. Try again later.";
+	public static final String REFUND_PENDING = "The refund for the ticket being moved is still pending. Try again later.";
+	public static final String REFUND_PENDING_CANCELLED = "The ticket being moved was cancelled and its refund is pending.";
+
 	private final SeatManager seatManager;
 	private final Map<Integer, User> userMap;
 	private final TicketResponseBuilder responseBuilder;
 	private final Map<String, Seat> seatMap;
+	private final BookingIndex bookingIndex;
+	private final RefundProcessor refundProcessor;
 
 	public ModifySeatService(SeatManager seatManager,
 	                         Map<Integer, User> userMap,
 	                         TicketResponseBuilder responseBuilder,
-	                         Map<String, Seat> seatMap) {
+	                         Map<String, Seat> seatMap,
+	                         BookingIndex bookingIndex,
+	                         RefundProcessor refundProcessor) {
 		this.seatManager = seatManager;
 		this.userMap = userMap;
 		this.responseBuilder = responseBuilder;
 		this.seatMap = seatMap;
+		this.bookingIndex = bookingIndex;
+		this.refundProcessor = refundProcessor;
+	}
+
+	/**
+	 * Modifies a user's seat assignment within the default request deadline.
+	 * 
+	 * @param userId ID of the user modifying their seat
+	 * @param seatNumber New seat number to be booked
+	 * @return CompletableFuture with modification result or error message
+	 */
+	public CompletableFuture<TicketResponse> modifySeating(String userId, String seatNumber) {
+		return modifySeating(userId, seatNumber, seatManager.defaultDeadline());
 	}
 
 	/**
 	 * Modifies a user's seat assignment.
 	 * Releases the old seat and books a new one if available.
+	 * Nothing is released once the deadline has passed.
 	 * 
 	 * @param userId ID of the user modifying their seat
 	 * @param seatNumber New seat number to be booked
+	 * @param deadline Deadline after which the modification is abandoned
 	 * @return CompletableFuture with modification result or error message
 	 */
-	public CompletableFuture<TicketResponse> modifySeating(String userId, String seatNumber) {
+	public CompletableFuture<TicketResponse> modifySeating(String userId, String seatNumber, Deadline deadline) {
+		return modifySeating(userId, null, seatNumber, deadline);
+	}
+
+	/**
+	 * Moves one of a user's tickets to another seat.
+	 * Without a ticket id, the user's only ticket is moved, and a user holding no
+	 * ticket books the seat as a new one; a user holding several must say which.
+	 * Cancels the old ticket, refunding it, and books a new seat if available; if not,
+	 * the old seat is booked again for its ticket. Nothing is released once the deadline
+	 * has passed.
+	 *
+	 * @param userId ID of the user modifying their seat
+	 * @param ticketId ID of the ticket to move, or null
+	 * @param seatNumber New seat number to be booked
+	 * @param deadline Deadline after which the modification is abandoned
+	 * @return CompletableFuture with modification result or error message
+	 */
+	public CompletableFuture<TicketResponse> modifySeating(String userId, Long ticketId, String seatNumber, Deadline deadline) {
 		// Get user from map
 		User user = userMap.get(Integer.valueOf(userId));
+		if (user == null)
+			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "User not found"));
 
-		// Check if user has existing ticket
-		if (user.getTicket() != null) {
+		// Find the ticket being moved
+		TicketList tickets = user.getTickets();
+		TicketRecord previous;
+		if (ticketId != null) {
+			previous = tickets.find(ticketId);
+			if (previous == null)
+				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "Ticket not found"));
+		} else if (tickets.size() > 1) {
+			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null,
+					"User holds " + tickets.size() + " tickets; give the ticketId to modify"));
+		} else {
+			previous = tickets.latest();
+		}
+
+		if (previous != null) {
 			// Prevent booking same seat again
-			if(user.getTicket().getSeatNumber().equals(seatNumber))
+			if(previous.getSeatNumber().equals(seatNumber))
 				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "Cannot book same ticket again"));
 
-			// Release old seat
-			Seat seat = seatMap.get(user.getTicket().getSeatNumber());
-			if (seat != null) {
-				seat.setAvailable(true);
-				seat.setReservedBy(null);
+			// Cancel old ticket and release its seat; only one canceller of a ticket refunds it
+			Seat seat = seatMap.get(previous.getSeatNumber());
+			try {
+				boolean cancelled = seat != null
+						? seatManager.cancelTicket(seat, user, previous, deadline)
+						: user.removeTicket(previous);
+				if (!cancelled)
+					return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "Ticket not found"));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "Thread interrupted during seat release"));
+			} catch (IllegalStateException e) {
+				return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, e.getMessage()));
+			}
+			// Paid before the new seat is charged, so the user can spend it on that seat
+			switch (refundProcessor.refundNow(user, previous.getPrice(), deadline)) {
+				case FAILED:
+					// Nothing was paid back, so the old seat is taken back free of charge
+					return restore(user, previous, 0)
+							.thenApply(ignored -> responseBuilder.sendFailedResponse(null, REFUND_FAILED));
+				case PENDING:
+					// The refund is still on its way, so the old seat is bought back, if the wallet allows
+					return restore(user, previous, previous.getPrice())
+							.thenApply(restored -> responseBuilder.sendFailedResponse(null,
+									restored ? REFUND_PENDING : REFUND_PENDING_CANCELLED));
+				default:
+					break;
 			}
 		}
 
 		// Book new seat
-		return seatManager.bookSeats(user, seatNumber)
-				.thenApply(bookingResult -> {
+		return seatManager.bookSeats(user, seatNumber, deadline)
+				.thenCompose(bookingResult -> {
 					// Handle successful booking
 					if (bookingResult.isSuccess()) {
-						return responseBuilder.sendPurchaseSuccessResponse(user, seatNumber);
+						// The ticket was issued as the seat was confirmed, under its lock
+						TicketResponse response = responseBuilder.sendPurchaseSuccessResponse(user, bookingResult.getTicket());
+						bookingIndex.ticketMoved(user, previous, response.getTicket().getRecord());
+						return CompletableFuture.completedFuture(response);
 					}
-					// Handle booking failure
-					return responseBuilder.sendFailedResponse(bookingResult, null);
+					// Handle booking failure; the old ticket was cancelled and refunded, so buy it back
+					return restore(user, previous, previous != null ? previous.getPrice() : 0)
+							.thenApply(ignored -> responseBuilder.sendFailedResponse(bookingResult, null));
 				})
 				.exceptionally(throwable -> {
 					// Handle any errors during booking
 					log.error("Error processing ticket purchase: {}", throwable.getMessage());
+					release(user, previous);
 					return responseBuilder.sendFailedResponse(null, "Error processing ticket purchase: " + throwable.getMessage());
 				});
 	}
+
+	/**
+	 * Books the seat of a cancelled ticket for the user again and gives them the ticket
+	 * back under the seat's lock. Runs under a fresh deadline, since the request's own may be what failed the
+	 * move. If the seat has been taken meanwhile the ticket stays cancelled.
+	 *
+	 * @param user User who gave up the ticket
+	 * @param previous Ticket that was cancelled, or null
+	 * @param price Amount to charge for the seat; anything not taken back is refunded
+	 * @return Future completing with true if the user holds the ticket again
+	 */
+	private CompletableFuture<Boolean> restore(User user, TicketRecord previous, int price) {
+		if (previous == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		return seatManager.rebook(user, previous, price, seatManager.defaultDeadline())
+				.thenApply(bookingResult -> {
+					// The seat's lock gave the ticket back as it confirmed the seat
+					if (bookingResult.isSuccess()) {
+						log.info("Restored ticket {} of user {} after a failed seat change", previous.getId(), user.getId());
+						return true;
+					}
+					log.warn("Could not restore ticket {} of user {}: {}", previous.getId(), user.getId(), bookingResult.getMessage());
+					release(user, previous);
+					if (price == 0) {
+						refundProcessor.refund(user, previous.getPrice());
+					}
+					return false;
+				});
+	}
+
+	// Reports the cancellation of a ticket whose modification then failed
+	private void release(User user, TicketRecord previous) {
+		if (previous != null) {
+			bookingIndex.ticketReleased(user, previous);
+		}
+	}
 }
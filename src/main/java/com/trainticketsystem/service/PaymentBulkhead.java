@@ -0,0 +1,51 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the payment gateway calls in flight at once, charges and refunds paid on a
+ * request thread alike, so a slow payment provider fails new calls fast rather than
+ * piling them up. A permit is held for as long as the call really runs, not just as
+ * long as its caller waits for it.
+ */
+@Component
+public class PaymentBulkhead {
+
+	private static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+
+	private final Semaphore permits;
+	private final long timeoutNanos;
+
+	public PaymentBulkhead(AppProperties appProperties) {
+		AppProperties.Payment payment = appProperties.getPayment() != null ? appProperties.getPayment() : new AppProperties.Payment();
+		this.permits = new Semaphore(Math.max(1, payment.getMaxConcurrent()));
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(payment.getTimeoutMillis() > 0
+				? payment.getTimeoutMillis()
+				: DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @return true if a call may go to the gateway, false if the bulkhead is full
+	 */
+	public boolean tryAcquire() {
+		return permits.tryAcquire();
+	}
+
+	/**
+	 * Gives back the permit of a call that has completed.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return Longest a caller waits for one gateway call, in nanoseconds
+	 */
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+}
@@ -0,0 +1,31 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.User;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Takes payment for bookings. Calls return straight away and their future completes
+ * once the payment provider has answered, so a booking waits for payment without
+ * holding any seat lock. Which implementation is used is chosen with app.payment.gateway.
+ */
+public interface PaymentGateway {
+
+	/**
+	 * Charges a user.
+	 *
+	 * @param user User to charge
+	 * @param amount Amount in dollars
+	 * @return Future completing with true once charged, or false if the payment was declined
+	 */
+	CompletableFuture<Boolean> charge(User user, int amount);
+
+	/**
+	 * Returns an earlier charge to a user.
+	 *
+	 * @param user User to refund
+	 * @param amount Amount in dollars
+	 * @return Future completing once refunded
+	 */
+	CompletableFuture<Void> refund(User user, int amount);
+}
@@ -0,0 +1,147 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.PriceSnapshot;
+import com.trainticketsystem.model.Seat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prices seats by section and occupancy.
+ * Each section keeps a counter of booked seats, moved by one on every SeatManager
+ * event. Tier boundaries are precomputed as seat counts, so an event costs one atomic
+ * add and a few comparisons. Only when a section crosses a boundary is a new
+ * {@link PriceSnapshot} built and published; bookings read the current snapshot
+ * without locking.
+ */
+@Component
+@Slf4j
+public class PricingEngine implements SeatAvailabilityListener {
+
+	private final Section[] sectionsByLetter = new Section[128];
+	private final int[] tierPercents;
+	private volatile PriceSnapshot snapshot;
+
+	public PricingEngine(Map<String, Seat> seatMap, AppProperties appProperties) {
+		List<AppProperties.PriceTier> priceTiers = appProperties.getPriceTiers() == null
+				? List.of()
+				: new ArrayList<>(appProperties.getPriceTiers());
+		priceTiers.sort(Comparator.comparingInt(AppProperties.PriceTier::getOccupancyPercent));
+		tierPercents = priceTiers.stream().mapToInt(AppProperties.PriceTier::getPricePercent).toArray();
+
+		// Size and seed each section from the seat map
+		Map<Character, int[]> counts = new TreeMap<>();
+		seatMap.values().forEach(seat -> {
+			int[] count = counts.computeIfAbsent(seat.getId().charAt(0), letter -> new int[2]);
+			count[0]++;
+			if (!seat.isAvailable()) {
+				count[1]++;
+			}
+		});
+
+		Map<String, Integer> sectionPrices = appProperties.getSectionPrices() == null ? Map.of() : appProperties.getSectionPrices();
+		int[] prices = new int[sectionsByLetter.length];
+		int[] tiers = new int[sectionsByLetter.length];
+		counts.forEach((letter, count) -> {
+			int basePrice = sectionPrices.getOrDefault(String.valueOf(letter), appProperties.getTicketPrice());
+			Section section = new Section(letter, basePrice, thresholds(priceTiers, count[0]));
+			section.booked.set(count[1]);
+			sectionsByLetter[letter] = section;
+			tiers[letter] = section.tierFor(count[1]);
+			prices[letter] = priceIn(section, tiers[letter]);
+		});
+		snapshot = new PriceSnapshot(0, appProperties.getTicketPrice(), prices, tiers);
+		log.info("Pricing {} sections over {} occupancy tiers", counts.size(), tierPercents.length);
+	}
+
+	/**
+	 * Seat counts at which each tier starts, rounding up so a tier is never entered early.
+	 */
+	private static int[] thresholds(List<AppProperties.PriceTier> priceTiers, int seats) {
+		return priceTiers.stream()
+				.mapToInt(tier -> (int) ((tier.getOccupancyPercent() * (long) seats + 99) / 100))
+				.toArray();
+	}
+
+	public PriceSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Current price of a seat. Lock-free; reads the published snapshot.
+	 *
+	 * @param seatId Seat to price
+	 * @return Price to charge for the seat now
+	 */
+	public int priceOf(String seatId) {
+		return snapshot.priceOf(seatId);
+	}
+
+	@Override
+	public void onAvailabilityChanged(String seatId, boolean available) {
+		char letter = seatId.charAt(0);
+		Section section = letter < sectionsByLetter.length ? sectionsByLetter[letter] : null;
+		if (section == null) {
+			return;
+		}
+		int booked = section.booked.addAndGet(available ? -1 : 1);
+		if (section.tierFor(booked) != snapshot.tierOf(letter)) {
+			republish(section);
+		}
+	}
+
+	/**
+	 * Publishes the section's tier from its latest count. Rechecks after publishing,
+	 * because a change that raced with the publish may have seen the old snapshot
+	 * still agreeing with it and skipped its own republish.
+	 */
+	private synchronized void republish(Section section) {
+		int tier = section.tierFor(section.booked.get());
+		while (tier != snapshot.tierOf(section.letter)) {
+			snapshot = snapshot.withTier(section.letter, tier, priceIn(section, tier));
+			log.info("Section {} moved to price tier {} at {}", section.letter, tier, snapshot.priceOf(String.valueOf(section.letter)));
+			tier = section.tierFor(section.booked.get());
+		}
+	}
+
+	/**
+	 * Price of a section in a tier; tier 0 is the base price.
+	 */
+	private int priceIn(Section section, int tier) {
+		if (tier == 0) {
+			return section.basePrice;
+		}
+		return Math.max(1, (int) ((section.basePrice * (long) tierPercents[tier - 1] + 50) / 100));
+	}
+
+	private static final class Section {
+		private final char letter;
+		private final int basePrice;
+		private final int[] thresholds;
+		private final AtomicInteger booked = new AtomicInteger();
+
+		Section(char letter, int basePrice, int[] thresholds) {
+			this.letter = letter;
+			this.basePrice = basePrice;
+			this.thresholds = thresholds;
+		}
+
+		/**
+		 * Number of tier thresholds the booked count has reached.
+		 */
+		int tierFor(int bookedSeats) {
+			int tier = 0;
+			while (tier < thresholds.length && bookedSeats >= thresholds[tier]) {
+				tier++;
+			}
+			return tier;
+		}
+	}
+}
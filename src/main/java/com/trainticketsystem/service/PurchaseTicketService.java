@@ -2,6 +2,7 @@ package com.trainticketsystem.service;
 
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
 import com.trainticketsystem.utils.TicketResponseBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,37 +21,53 @@ public class PurchaseTicketService {
 	private final SeatManager seatManager;
 	private final Map<Integer, User> userMap;
 	private final TicketResponseBuilder responseBuilder;
+	private final BookingIndex bookingIndex;
 
-	public PurchaseTicketService(SeatManager seatManager, Map<Integer, User> userMap, TicketResponseBuilder responseBuilder) {
+	public PurchaseTicketService(SeatManager seatManager,
+	                             Map<Integer, User> userMap,
+	                             TicketResponseBuilder responseBuilder,
+	                             BookingIndex bookingIndex) {
 		this.seatManager = seatManager;
 		this.userMap = userMap;
 		this.responseBuilder = responseBuilder;
+		this.bookingIndex = bookingIndex;
 	}
 
 	/**
-	 * Purchases a ticket for a user.
-	 * Validates user existence and current ticket status before booking.
+	 * Purchases a ticket for a user within the default request deadline.
 	 * 
 	 * @param userId ID of the user purchasing the ticket
 	 * @param seatNumber Seat number to be booked
 	 * @return CompletableFuture with booking result or error message
 	 */
 	public CompletableFuture<TicketResponse> purchaseTicket(String userId, String seatNumber) {
+		return purchaseTicket(userId, seatNumber, seatManager.defaultDeadline());
+	}
+
+	/**
+	 * Purchases a ticket for a user.
+	 * Validates user existence before booking; a user may hold any number of tickets.
+	 * 
+	 * @param userId ID of the user purchasing the ticket
+	 * @param seatNumber Seat number to be booked
+	 * @param deadline Deadline after which the booking is abandoned
+	 * @return CompletableFuture with booking result or error message
+	 */
+	public CompletableFuture<TicketResponse> purchaseTicket(String userId, String seatNumber, Deadline deadline) {
 		// Get user and validate existence
 		User user = userMap.get(Integer.valueOf(userId));
 		if(user == null)
 			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "User not found"));
 
-		// Check if user already has a ticket
-		if(user.getTicket() != null)
-			return CompletableFuture.completedFuture(responseBuilder.sendFailedResponse(null, "User already holds ticket " + user.getTicket().getSeatNumber()));
-
 		// Attempt to book the seat
-		return seatManager.bookSeats(user, seatNumber)
+		return seatManager.bookSeats(user, seatNumber, deadline)
 				.thenApply(bookingResult -> {
 					// Handle successful booking
 					if (bookingResult.isSuccess()) {
-						return responseBuilder.sendPurchaseSuccessResponse(user, seatNumber);
+						// The ticket was issued as the seat was confirmed, under its lock
+						TicketResponse response = responseBuilder.sendPurchaseSuccessResponse(user, bookingResult.getTicket());
+						bookingIndex.ticketIssued(user, response.getTicket().getRecord());
+						return response;
 					}
 					// Handle booking failure
 					return responseBuilder.sendFailedResponse(bookingResult, null);
@@ -1,5 +1,7 @@
 package com.trainticketsystem.service;
 
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
 import com.trainticketsystem.utils.TicketResponseBuilder;
@@ -16,24 +18,31 @@ import java.util.Map;
 @Slf4j
 public class ReceiptService {
 
+	public static final int MAX_PAGE_SIZE = 100;
+
 	private final Map<Integer, User> userMap;
 	private final TicketResponseBuilder responseBuilder;
+	private final BookingIndex bookingIndex;
 
-	public ReceiptService(Map<Integer, User> userMap, TicketResponseBuilder responseBuilder) {
+	public ReceiptService(Map<Integer, User> userMap, TicketResponseBuilder responseBuilder, BookingIndex bookingIndex) {
 		this.userMap = userMap;
 		this.responseBuilder = responseBuilder;
+		this.bookingIndex = bookingIndex;
 	}
 
 	/**
-	 * Generates a receipt for a user's ticket.
+	 * Generates a receipt for a user's most recent ticket.
 	 * Validates user existence and ticket ownership.
+	 * Works on a snapshot of the user, so the ticket and holder details in the
+	 * receipt always come from the same update even while a booking changes them.
 	 * 
 	 * @param userId ID of the user to generate receipt for
 	 * @return TicketResponse containing ticket details or error message
 	 */
 	public TicketResponse generateReceipt(String userId) {
-		// Get user and log status
-		User user = userMap.get(Integer.valueOf(userId));
+		// Get a consistent copy of the user and log status
+		User stored = userMap.get(Integer.valueOf(userId));
+		User user = stored != null ? stored.snapshot() : null;
 		log.info("User found: {}", user != null);
 
 		// Validate user exists and has a ticket
@@ -43,6 +52,53 @@ public class ReceiptService {
 		}
 
 		// Return ticket details in response
-		return responseBuilder.sendTicketResponse(user.getTicket());
+		return responseBuilder.sendTicketResponse(user);
+	}
+
+	/**
+	 * Generates a receipt by ticket id through the ticket index.
+	 *
+	 * @param ticketId ID of the ticket to generate receipt for
+	 * @return TicketResponse containing ticket details or error message
+	 */
+	public TicketResponse generateReceiptByTicketId(Long ticketId) {
+		TicketRecord ticket = bookingIndex.findTicket(ticketId);
+		User stored = ticket != null ? userMap.get(ticket.getUserId()) : null;
+		User user = stored != null ? stored.snapshot() : null;
+		if (user == null || !user.getTickets().contains(ticket.getId())) {
+			log.error("Ticket not found for ticketId: {}", ticketId);
+			return responseBuilder.sendFailedResponse(null, "Ticket not found");
+		}
+		return responseBuilder.sendTicketResponse(user, ticket);
+	}
+
+	/**
+	 * Lists one page of a user's tickets, optionally only those of one journey.
+	 * Works on a snapshot of the user and builds tickets for the requested page only,
+	 * so the cost depends on the page size rather than on how many tickets the user holds.
+	 *
+	 * @param userId ID of the user whose tickets to list
+	 * @param journeyId Journey to list tickets of, or null for all
+	 * @param page Zero-based page number
+	 * @param size Tickets per page
+	 * @return TicketResponse containing the page and the number of matching tickets, or error message
+	 */
+	public TicketResponse listTickets(String userId, Integer journeyId, int page, int size) {
+		if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+			return responseBuilder.sendFailedResponse(null, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+		}
+		User stored = userMap.get(Integer.valueOf(userId));
+		User user = stored != null ? stored.snapshot() : null;
+		if (user == null) {
+			log.error("User not found for userId: {}", userId);
+			return responseBuilder.sendFailedResponse(null, "User not found");
+		}
+		TicketList tickets = user.getTickets();
+		int offset = (int) Math.min(Integer.MAX_VALUE, (long) page * size);
+		if (journeyId == null) {
+			return responseBuilder.sendTicketPageResponse(user, tickets.page(offset, size), tickets.size());
+		}
+		return responseBuilder.sendTicketPageResponse(user, tickets.pageForJourney(journeyId, offset, size),
+				tickets.countForJourney(journeyId));
 	}
 }
@@ -0,0 +1,423 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.RefundStatus;
+import com.trainticketsystem.utils.Deadline;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pays refunds for cancelled, moved and deleted tickets away from the thread that
+ * cancelled them, so a cancellation never waits for the payment provider, however
+ * many refunds are owed at once.
+ * Refunds go onto an unbounded lock-free queue; none is ever dropped. A single worker
+ * takes up to batch-size refunds at a time, pays the refunds owed to the same user as
+ * one payment, and waits for the batch's payments together. A refund whose payment
+ * fails goes back on the queue until it has been tried max-attempts times. No wait
+ * for a payment outlasts the payment timeout; a payment still unanswered then is
+ * settled whenever its answer comes, without holding up the queue.
+ * With app.refunds.async off, each refund is paid on the calling thread instead.
+ */
+@Service
+@Slf4j
+public class RefundProcessor {
+
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * Outcome of a refund paid on the calling thread.
+	 */
+	public enum Outcome {
+		// Paid before the call returned
+		PAID,
+		// The payment was not answered in time; it is settled whenever it is, and retried if it failed
+		PENDING,
+		// Nothing was paid: every attempt failed, the payment bulkhead was full or the deadline passed
+		FAILED
+	}
+
+	private final PaymentGateway paymentGateway;
+	private final PaymentBulkhead paymentBulkhead;
+	private final long paymentTimeoutNanos;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final Queue<Refund> queue = new ConcurrentLinkedQueue<>();
+	// Refunds queued but not yet paid or given up, including the batch being paid
+	private final AtomicInteger backlog = new AtomicInteger();
+	// Queued refunds not yet paid or given up, per user id
+	private final Map<Integer, Integer> owed = new ConcurrentHashMap<>();
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong refunded = new AtomicLong();
+	private final AtomicLong refundedAmount = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong payments = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final Thread worker;
+	private volatile boolean running;
+
+	// Guarded by this
+	private long second;
+	private long refundedThisSecond;
+	private long refundedLastSecond;
+
+	/**
+	 * Creates a processor that pays every refund on the calling thread.
+	 *
+	 * @param paymentGateway Gateway refunds are paid through
+	 */
+	public RefundProcessor(PaymentGateway paymentGateway) {
+		this(paymentGateway, synchronous());
+	}
+
+	public RefundProcessor(PaymentGateway paymentGateway, AppProperties appProperties) {
+		this(paymentGateway, appProperties, new PaymentBulkhead(appProperties));
+	}
+
+	@Autowired
+	public RefundProcessor(PaymentGateway paymentGateway, AppProperties appProperties, PaymentBulkhead paymentBulkhead) {
+		AppProperties.Refunds config = appProperties.getRefunds() != null ? appProperties.getRefunds() : new AppProperties.Refunds();
+		this.paymentGateway = paymentGateway;
+		this.paymentBulkhead = paymentBulkhead;
+		this.paymentTimeoutNanos = paymentBulkhead.getTimeoutNanos();
+		this.batchSize = Math.max(1, config.getBatchSize());
+		this.maxAttempts = Math.max(1, config.getMaxAttempts());
+		if (!config.isAsync()) {
+			this.worker = null;
+			return;
+		}
+		this.running = true;
+		this.worker = new Thread(this::payLoop, "refund-processor");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queues a refund without waiting for it to be paid, or pays it straight away if
+	 * refunds are not asynchronous.
+	 *
+	 * @param user User to refund
+	 * @param amount Amount in dollars; nothing is refunded unless positive
+	 */
+	public void refund(User user, int amount) {
+		if (amount <= 0) {
+			return;
+		}
+		queued.incrementAndGet();
+		Refund refund = new Refund(user, amount, System.nanoTime());
+		// Counted first, so a worker that is stopping waits for this refund
+		backlog.incrementAndGet();
+		if (running) {
+			owed.merge(user.getId(), 1, Integer::sum);
+			queue.offer(refund);
+			return;
+		}
+		backlog.decrementAndGet();
+		if (payNow(refund, null) == Outcome.FAILED) {
+			givenUp(refund);
+		}
+	}
+
+	/**
+	 * Pays a refund on the calling thread, whether or not refunds are asynchronous, for a
+	 * caller that needs the money back before it goes on, as a seat change does before
+	 * charging the new seat. Each attempt takes a payment bulkhead permit and is waited
+	 * for no longer than the payment timeout or the deadline, whichever is sooner, and
+	 * failed attempts are retried after a growing pause while the deadline allows.
+	 *
+	 * @param user User to refund
+	 * @param amount Amount in dollars; nothing is refunded unless positive
+	 * @param deadline Deadline after which no more is waited for
+	 * @return Whether the refund was paid, is still pending, or was not paid at all
+	 */
+	public Outcome refundNow(User user, int amount, Deadline deadline) {
+		if (amount <= 0) {
+			return Outcome.PAID;
+		}
+		Outcome outcome = payNow(new Refund(user, amount, System.nanoTime()), deadline);
+		if (outcome != Outcome.FAILED) {
+			// A refund not paid is the caller's to keep or queue
+			queued.incrementAndGet();
+		}
+		return outcome;
+	}
+
+	/**
+	 * Whether a refund queued for a user has yet to be paid or given up, as a deletion
+	 * must know before the user leaves the store.
+	 *
+	 * @param user User to check
+	 * @return true while a queued refund for the user is outstanding
+	 */
+	public boolean isOwed(User user) {
+		return owed.containsKey(user.getId());
+	}
+
+	/**
+	 * @return Current backlog, throughput and counters of the refunds
+	 */
+	public RefundStatus getStatus() {
+		Refund oldest = queue.peek();
+		return RefundStatus.builder()
+				.async(worker != null)
+				.backlog(backlog.get())
+				.oldestWaitingMillis(oldest != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt) : 0)
+				.refundedLastSecond(refundedLastSecond())
+				.queued(queued.get())
+				.refunded(refunded.get())
+				.refundedAmount(refundedAmount.get())
+				.retried(retried.get())
+				.failed(failed.get())
+				.payments(payments.get())
+				.batches(batches.get())
+				.build();
+	}
+
+	/**
+	 * Stops taking refunds onto the queue, then waits for the worker to pay the ones
+	 * already queued. Refunds made after this are paid on the calling thread.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (worker == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(worker);
+		worker.join(TimeUnit.SECONDS.toMillis(30));
+		if (worker.isAlive()) {
+			log.warn("Refund processor still busy at shutdown with {} refunds queued", backlog.get());
+		}
+	}
+
+	private void payLoop() {
+		List<Refund> batch = new ArrayList<>(batchSize);
+		while (running || backlog.get() > 0) {
+			Refund refund;
+			while (batch.size() < batchSize && (refund = queue.poll()) != null) {
+				batch.add(refund);
+			}
+			if (batch.isEmpty()) {
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			boolean anyFailed = pay(batch);
+			batch.clear();
+			if (anyFailed) {
+				// Give a failing payment provider a moment before the retries reach it
+				LockSupport.parkNanos(RETRY_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Pays one batch, one payment per user, and waits for every payment.
+	 *
+	 * @return true if any payment failed
+	 */
+	private boolean pay(List<Refund> batch) {
+		Map<Integer, Payment> byUser = new LinkedHashMap<>();
+		for (Refund refund : batch) {
+			byUser.computeIfAbsent(refund.user.getId(), id -> new Payment(refund.user)).add(refund);
+		}
+		for (Payment payment : byUser.values()) {
+			payment.result = call(payment.user, payment.amount);
+		}
+		boolean anyFailed = false;
+		long waitUntil = System.nanoTime() + paymentTimeoutNanos;
+		for (Payment payment : byUser.values()) {
+			Boolean paid = await(payment.result, waitUntil - System.nanoTime());
+			if (paid == null) {
+				payment.result.whenComplete((ignored, throwable) -> settle(payment.refunds, throwable == null));
+				continue;
+			}
+			anyFailed |= !paid;
+			settle(payment.refunds, paid);
+		}
+		batches.incrementAndGet();
+		return anyFailed;
+	}
+
+	// Pays queued refunds off, or queues them again until they have been tried max-attempts times
+	private void settle(List<Refund> refunds, boolean paid) {
+		if (paid) {
+			payments.incrementAndGet();
+		}
+		for (Refund refund : refunds) {
+			if (paid) {
+				paid(refund);
+			} else if (++refund.attempts < maxAttempts && worker != null && worker.isAlive()) {
+				retried.incrementAndGet();
+				queue.offer(refund);
+				continue;
+			} else {
+				givenUp(refund);
+			}
+			settled(refund);
+		}
+	}
+
+	/**
+	 * Pays a refund on the calling thread, waiting for each attempt no longer than the
+	 * payment timeout or the deadline. A payment still unanswered then joins the backlog
+	 * and is settled whenever its answer comes.
+	 *
+	 * @param deadline Deadline after which no more is waited for, or null for none
+	 */
+	private Outcome payNow(Refund refund, Deadline deadline) {
+		long backoffNanos = RETRY_NANOS;
+		while (true) {
+			long waitNanos = deadline != null ? Math.min(paymentTimeoutNanos, deadline.remainingNanos()) : paymentTimeoutNanos;
+			if (waitNanos <= 0) {
+				log.warn("Refund of {} to user {} not paid before its deadline", refund.amount, refund.user.getId());
+				return Outcome.FAILED;
+			}
+			if (!paymentBulkhead.tryAcquire()) {
+				log.warn("Refund of {} to user {} not paid: payment bulkhead full", refund.amount, refund.user.getId());
+				return Outcome.FAILED;
+			}
+			CompletableFuture<Void> result = call(refund.user, refund.amount);
+			result.whenComplete((ignored, throwable) -> paymentBulkhead.release());
+			Boolean paid = await(result, waitNanos);
+			if (paid == null) {
+				// Owed until the answer comes, as if it had been queued
+				backlog.incrementAndGet();
+				owed.merge(refund.user.getId(), 1, Integer::sum);
+				result.whenComplete((ignored, throwable) -> settle(List.of(refund), throwable == null));
+				return Outcome.PENDING;
+			}
+			if (paid) {
+				payments.incrementAndGet();
+				paid(refund);
+				return Outcome.PAID;
+			}
+			if (++refund.attempts >= maxAttempts
+					|| deadline != null && deadline.remainingNanos() <= backoffNanos) {
+				return Outcome.FAILED;
+			}
+			retried.incrementAndGet();
+			// Give a failing payment provider a moment before trying it again
+			LockSupport.parkNanos(backoffNanos);
+			backoffNanos *= 2;
+		}
+	}
+
+	private CompletableFuture<Void> call(User user, int amount) {
+		try {
+			return paymentGateway.refund(user, amount);
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Waits for a payment no longer than the given time.
+	 *
+	 * @return true if it was paid, false if it failed, null if it has no answer yet
+	 */
+	private static Boolean await(CompletableFuture<Void> result, long waitNanos) {
+		try {
+			result.get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException | CancellationException e) {
+			log.warn("Refund payment failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+			return false;
+		}
+	}
+
+	private void paid(Refund refund) {
+		refunded.incrementAndGet();
+		refundedAmount.addAndGet(refund.amount);
+		synchronized (this) {
+			roll();
+			refundedThisSecond++;
+		}
+	}
+
+	// A queued refund leaves the backlog, paid or given up
+	private void settled(Refund refund) {
+		owed.computeIfPresent(refund.user.getId(), (id, count) -> count > 1 ? count - 1 : null);
+		backlog.decrementAndGet();
+	}
+
+	private void givenUp(Refund refund) {
+		failed.incrementAndGet();
+		log.error("Gave up refunding {} to user {} after {} attempts", refund.amount, refund.user.getId(), refund.attempts);
+	}
+
+	private synchronized long refundedLastSecond() {
+		roll();
+		return refundedLastSecond;
+	}
+
+	private void roll() {
+		long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		if (now != second) {
+			refundedLastSecond = now == second + 1 ? refundedThisSecond : 0;
+			refundedThisSecond = 0;
+			second = now;
+		}
+	}
+
+	private static AppProperties synchronous() {
+		AppProperties appProperties = new AppProperties();
+		appProperties.getRefunds().setAsync(false);
+		return appProperties;
+	}
+
+	private static final class Refund {
+		private final User user;
+		private final int amount;
+		private final long queuedAt;
+		// Only touched by the thread paying the refund
+		private int attempts;
+
+		Refund(User user, int amount, long queuedAt) {
+			this.user = user;
+			this.amount = amount;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	// Refunds in one batch owed to the same user, paid together
+	private static final class Payment {
+		private final User user;
+		private final List<Refund> refunds = new ArrayList<>(1);
+		private int amount;
+		private CompletableFuture<Void> result;
+
+		Payment(User user) {
+			this.user = user;
+		}
+
+		void add(Refund refund) {
+			refunds.add(refund);
+			amount += refund.amount;
+		}
+	}
+}
@@ -0,0 +1,552 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.ReplicationStatus;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.ReplicationFormat;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replicates users and their bookings from a primary to a standby process over TCP.
+ * The primary learns of every changed user from the user store and ships the user's
+ * current row, tickets and balance included, in frames laid out by
+ * {@link ReplicationFormat}. One thread ships a frame, waits for the standby to
+ * acknowledge it and ships everything changed meanwhile as the next, so frames grow
+ * with the write rate instead of the round trips. A standby that connects first gets
+ * a snapshot of every user.
+ * The standby applies rows in order and derives seats from the tickets they hold: a
+ * seat belongs to the newest ticket for it, so rows of two users that traded a seat
+ * can arrive in either order. It refuses writes until promoted, after which it issues
+ * ticket ids above every replicated one.
+ * In async mode writes are answered at once; in semi-sync mode a write's response
+ * waits for the standby to acknowledge the change, for semi-sync-timeout-millis at
+ * most, and not at all while no standby is connected.
+ */
+@Service
+@Slf4j
+public class ReplicationService {
+
+	public static final String READ_ONLY = "This instance is a standby. Send bookings to the primary.";
+	public static final String PRIMARY = "primary";
+	public static final String STANDBY = "standby";
+	public static final String SEMI_SYNC = "semi-sync";
+
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+	private final AppProperties.Replication config;
+	private final UserStore userStore;
+	private final SeatManager seatManager;
+	private final BookingIndex bookingIndex;
+	private final TicketResponseBuilder ticketResponseBuilder;
+	private final boolean semiSync;
+	private final Timer roundTrips;
+	private final Counter semiSyncWaits;
+	private final Counter semiSyncTimeouts;
+
+	private volatile String role;
+	private volatile Shipper shipper;
+	private volatile Receiver receiver;
+
+	public ReplicationService(AppProperties appProperties, UserStore userStore, SeatManager seatManager,
+							  BookingIndex bookingIndex, TicketResponseBuilder ticketResponseBuilder,
+							  MeterRegistry meterRegistry) {
+		this.config = appProperties.getReplication();
+		this.userStore = userStore;
+		this.seatManager = seatManager;
+		this.bookingIndex = bookingIndex;
+		this.ticketResponseBuilder = ticketResponseBuilder;
+		this.semiSync = SEMI_SYNC.equals(config.getMode());
+		this.roundTrips = Timer.builder("replication.round.trip")
+				.description("Time from reading a frame's rows to the standby acknowledging them")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.semiSyncWaits = meterRegistry.counter("replication.semi.sync.waits");
+		this.semiSyncTimeouts = meterRegistry.counter("replication.semi.sync.timeouts");
+		Gauge.builder("replication.pending.changes", this, ReplicationService::pendingChanges).register(meterRegistry);
+		this.role = config.getRole();
+		if (PRIMARY.equals(role)) {
+			shipper = new Shipper(config.getListenPort());
+		} else if (STANDBY.equals(role)) {
+			receiver = new Receiver(config.getPrimaryHost(), config.getPrimaryPort());
+		}
+	}
+
+	/**
+	 * @return true while this instance is a standby, which must not take writes
+	 */
+	public boolean isReadOnly() {
+		return STANDBY.equals(role);
+	}
+
+	/**
+	 * Holds a write's response until the standby has the write, in semi-sync mode.
+	 * Everything changed before the call is covered, the caller's own write included.
+	 *
+	 * @param value Response of the write
+	 * @return The response, once the standby has acknowledged or the wait timed out
+	 */
+	public <T> CompletableFuture<T> replicated(T value) {
+		Shipper current = shipper;
+		if (!semiSync || current == null || !current.connected) {
+			return CompletableFuture.completedFuture(value);
+		}
+		return current.await(current.marked.get()).thenApply(done -> value);
+	}
+
+	/**
+	 * Stops replicating from the primary and starts taking writes. If a listen port is
+	 * configured, the promoted instance then accepts a standby of its own there.
+	 *
+	 * @return false if this instance was not a standby
+	 */
+	public synchronized boolean promote() {
+		if (!STANDBY.equals(role)) {
+			return false;
+		}
+		receiver.stop();
+		role = PRIMARY;
+		log.info("Promoted to primary after applying {} frames", receiver.frames.get());
+		try {
+			shipper = new Shipper(config.getListenPort());
+		} catch (IllegalStateException e) {
+			log.warn("Promoted primary takes writes without a standby: {}", e.getMessage());
+		}
+		return true;
+	}
+
+	public ReplicationStatus getStatus() {
+		ReplicationStatus.ReplicationStatusBuilder status = ReplicationStatus.builder()
+				.role(role)
+				.mode(semiSync ? SEMI_SYNC : "async");
+		Shipper currentShipper = shipper;
+		Receiver currentReceiver = receiver;
+		if (currentShipper != null) {
+			long pending = currentShipper.pendingChanges();
+			status.connected(currentShipper.connected)
+					.frames(currentShipper.frames.get())
+					.users(currentShipper.users.get())
+					.bytes(currentShipper.bytes.get())
+					.pendingChanges(pending)
+					.lagMillis(pending > 0 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentShipper.acknowledgedReadAt) : 0)
+					.semiSyncWaits((long) semiSyncWaits.count())
+					.semiSyncTimeouts((long) semiSyncTimeouts.count())
+					.listenPort(currentShipper.server.getLocalPort());
+			for (ValueAtPercentile value : roundTrips.takeSnapshot().percentileValues()) {
+				long micros = (long) value.value(TimeUnit.MICROSECONDS);
+				if (value.percentile() == 0.5) {
+					status.roundTripP50Micros(micros);
+				} else if (value.percentile() == 0.99) {
+					status.roundTripP99Micros(micros);
+				}
+			}
+		} else if (currentReceiver != null) {
+			status.connected(currentReceiver.connected)
+					.frames(currentReceiver.frames.get())
+					.users(currentReceiver.users.get())
+					.lagMillis(currentReceiver.lagMillis);
+		}
+		return status.build();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (receiver != null) {
+			receiver.stop();
+		}
+		if (shipper != null) {
+			shipper.stop();
+		}
+	}
+
+	private double pendingChanges() {
+		Shipper current = shipper;
+		return current != null ? current.pendingChanges() : 0;
+	}
+
+	/**
+	 * Applies one user row from the primary, then moves the seats of the tickets it
+	 * gained or lost. Only called from the receiver thread.
+	 *
+	 * @param incoming User as on the primary, or null if it was removed there
+	 */
+	private void apply(int id, User incoming, Map<Integer, Long> seatTickets) {
+		User current = userStore.get(id);
+		TicketList before = current != null ? current.getTickets() : TicketList.EMPTY;
+		TicketList after = incoming != null ? incoming.getTickets() : TicketList.EMPTY;
+		if (incoming == null) {
+			if (current == null) {
+				return;
+			}
+			userStore.remove(id);
+			bookingIndex.userRemoved(current);
+		} else {
+			userStore.put(incoming);
+			current = userStore.get(id);
+			bookingIndex.userAdded(current);
+		}
+		// Tickets given up first, so a ticket moved within the user does not free its new seat
+		for (TicketRecord ticket : before.toList()) {
+			if (!after.contains(ticket.getId())) {
+				if (incoming != null) {
+					bookingIndex.ticketReleased(current, ticket);
+				}
+				Long newest = seatTickets.get(ticket.getSeatCode());
+				if (newest != null && newest == ticket.getId()) {
+					seatManager.assignSeat(ticket.getSeatNumber(), null);
+				}
+			}
+		}
+		for (TicketRecord ticket : after.toList()) {
+			if (!before.contains(ticket.getId())) {
+				ticketResponseBuilder.reserveTicketIdsThrough(ticket.getId());
+				Long newest = seatTickets.get(ticket.getSeatCode());
+				// A ticket older than the seat's newest has already been given up on the primary
+				if (newest == null || newest < ticket.getId()) {
+					seatTickets.put(ticket.getSeatCode(), ticket.getId());
+					seatManager.assignSeat(ticket.getSeatNumber(), current);
+					bookingIndex.ticketIssued(current, ticket);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Primary side: accepts one standby at a time and ships changed users to it.
+	 */
+	private final class Shipper {
+		private final ServerSocket server;
+		private final Thread thread;
+		// Users changed since the last frame was read; only marked while a standby is connected
+		private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+		// Changes marked so far; each is added to dirty before it is counted here
+		private final AtomicLong marked = new AtomicLong();
+		private final PriorityBlockingQueue<Waiter> waiters = new PriorityBlockingQueue<>();
+		private final AtomicLong frames = new AtomicLong();
+		private final AtomicLong users = new AtomicLong();
+		private final AtomicLong bytes = new AtomicLong();
+		// Changes covered by acknowledged frames, and when the last of those was read
+		private volatile long acknowledged;
+		private volatile long acknowledgedReadAt = System.nanoTime();
+		private volatile boolean connected;
+		private volatile boolean idle;
+		private volatile boolean running = true;
+		private volatile Socket socket;
+
+		Shipper(int port) {
+			try {
+				server = new ServerSocket(port);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot accept a standby on port " + port + ": " + e.getMessage(), e);
+			}
+			userStore.setChangeListener(this::changed);
+			thread = new Thread(this::run, "replication-shipper");
+			thread.setDaemon(true);
+			thread.start();
+			log.info("Accepting a {} standby on port {}", semiSync ? SEMI_SYNC : "async", server.getLocalPort());
+		}
+
+		void changed(int id) {
+			if (!connected) {
+				return;
+			}
+			dirty.add(id);
+			marked.incrementAndGet();
+			if (idle) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		long pendingChanges() {
+			return connected ? marked.get() - acknowledged : 0;
+		}
+
+		CompletableFuture<Void> await(long mark) {
+			if (acknowledged >= mark) {
+				return CompletableFuture.completedFuture(null);
+			}
+			semiSyncWaits.increment();
+			Waiter waiter = new Waiter(mark);
+			waiters.add(waiter);
+			// The shipper may have moved on, or lost the standby, before the waiter was queued
+			if (acknowledged >= mark || !connected) {
+				waiter.future.complete(null);
+			}
+			return waiter.future
+					.orTimeout(config.getSemiSyncTimeoutMillis(), TimeUnit.MILLISECONDS)
+					.exceptionally(timeout -> {
+						semiSyncTimeouts.increment();
+						return null;
+					});
+		}
+
+		private void run() {
+			while (running) {
+				try (Socket accepted = server.accept()) {
+					socket = accepted;
+					accepted.setTcpNoDelay(true);
+					log.info("Standby connected from {}", accepted.getRemoteSocketAddress());
+					serve(accepted);
+				} catch (IOException e) {
+					if (running) {
+						log.warn("Standby disconnected: {}", e.getMessage());
+					}
+				} finally {
+					connected = false;
+					dirty.clear();
+					release(Long.MAX_VALUE);
+				}
+			}
+		}
+
+		private void serve(Socket accepted) throws IOException {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CountingStream(accepted.getOutputStream()), 1 << 16));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(accepted.getInputStream()));
+			ReplicationFormat.writeHeader(out);
+			// Changes from here on are marked, so each is either in the snapshot or shipped after it
+			connected = true;
+			acknowledgedReadAt = System.nanoTime();
+			long frame = 0;
+			ship(out, in, ++frame, ReplicationFormat.SNAPSHOT);
+			while (running) {
+				if (dirty.isEmpty()) {
+					idle = true;
+					if (dirty.isEmpty()) {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+					idle = false;
+					continue;
+				}
+				ship(out, in, ++frame, ReplicationFormat.CHANGES);
+			}
+		}
+
+		private void ship(DataOutputStream out, DataInputStream in, long frame, byte kind) throws IOException {
+			// Read before the rows, so every change counted here is in them
+			long covered = marked.get();
+			long readAt = System.nanoTime();
+			ReplicationFormat.writeFrameStart(out, kind, frame, System.currentTimeMillis());
+			long shipped = 0;
+			if (kind == ReplicationFormat.SNAPSHOT) {
+				for (Map.Entry<Integer, User> entry : userStore.entrySet()) {
+					ReplicationFormat.writeUser(out, entry.getKey(), entry.getValue().snapshot());
+					shipped++;
+				}
+			} else {
+				Iterator<Integer> ids = dirty.iterator();
+				while (ids.hasNext()) {
+					int id = ids.next();
+					// Removed before the read, so a change made after the read marks the user again
+					ids.remove();
+					User user = userStore.get(id);
+					ReplicationFormat.writeUser(out, id, user != null ? user.snapshot() : null);
+					shipped++;
+				}
+			}
+			ReplicationFormat.writeFrameEnd(out);
+			out.flush();
+			long answered = in.readLong();
+			if (answered != frame) {
+				throw new IOException("Standby acknowledged frame " + answered + " instead of " + frame);
+			}
+			roundTrips.record(System.nanoTime() - readAt, TimeUnit.NANOSECONDS);
+			frames.incrementAndGet();
+			users.addAndGet(shipped);
+			acknowledgedReadAt = readAt;
+			acknowledged = covered;
+			release(covered);
+		}
+
+		private void release(long covered) {
+			Waiter waiter;
+			while ((waiter = waiters.peek()) != null && waiter.mark <= covered) {
+				waiters.poll();
+				waiter.future.complete(null);
+			}
+		}
+
+		void stop() {
+			running = false;
+			userStore.setChangeListener(null);
+			try {
+				server.close();
+				Socket current = socket;
+				if (current != null) {
+					current.close();
+				}
+				LockSupport.unpark(thread);
+				thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (IOException e) {
+				log.info("Closing replication sockets failed: {}", e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Counts the bytes written to the standby.
+		 */
+		private final class CountingStream extends FilterOutputStream {
+			CountingStream(OutputStream out) {
+				super(out);
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				bytes.incrementAndGet();
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				bytes.addAndGet(len);
+			}
+		}
+	}
+
+	/**
+	 * Semi-sync write waiting for the standby to acknowledge changes up to its mark.
+	 */
+	private static final class Waiter implements Comparable<Waiter> {
+		private final long mark;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		Waiter(long mark) {
+			this.mark = mark;
+		}
+
+		@Override
+		public int compareTo(Waiter other) {
+			return Long.compare(mark, other.mark);
+		}
+	}
+
+	/**
+	 * Standby side: connects to the primary, applies its frames and acknowledges them,
+	 * reconnecting until promoted.
+	 */
+	private final class Receiver {
+		private final String host;
+		private final int port;
+		private final Thread thread;
+		// Newest ticket id seen per seat code, owned by the receiver thread
+		private final Map<Integer, Long> seatTickets = new HashMap<>();
+		private final AtomicLong frames = new AtomicLong();
+		private final AtomicLong users = new AtomicLong();
+		private volatile long lagMillis;
+		private volatile boolean connected;
+		private volatile boolean running = true;
+		private volatile Socket socket;
+
+		Receiver(String host, int port) {
+			this.host = host;
+			this.port = port;
+			thread = new Thread(this::run, "replication-receiver");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void run() {
+			while (running) {
+				try (Socket connection = new Socket()) {
+					socket = connection;
+					connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+					connection.setTcpNoDelay(true);
+					receive(connection);
+				} catch (IOException e) {
+					if (running) {
+						log.info("Replication from {}:{} unavailable, retrying: {}", host, port, e.getMessage());
+					}
+				} finally {
+					connected = false;
+				}
+				if (running) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(config.getReconnectMillis()));
+				}
+			}
+		}
+
+		private void receive(Socket connection) throws IOException {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			ReplicationFormat.readHeader(in);
+			connected = true;
+			log.info("Replicating from {}:{}", host, port);
+			while (running) {
+				ReplicationFormat.Frame frame = ReplicationFormat.readFrameStart(in);
+				Set<Integer> seen = frame.kind() == ReplicationFormat.SNAPSHOT ? new HashSet<>() : null;
+				ReplicationFormat.Record record;
+				while ((record = ReplicationFormat.readRecord(in)) != null) {
+					apply(record.id(), record.user(), seatTickets);
+					users.incrementAndGet();
+					if (seen != null) {
+						seen.add(record.id());
+					}
+				}
+				if (seen != null) {
+					// Users missing from a snapshot no longer exist on the primary
+					for (Integer id : new ArrayList<>(userStore.keySet())) {
+						if (!seen.contains(id)) {
+							apply(id, null, seatTickets);
+						}
+					}
+				}
+				out.writeLong(frame.number());
+				out.flush();
+				frames.incrementAndGet();
+				lagMillis = Math.max(0, System.currentTimeMillis() - frame.readAtMillis());
+			}
+		}
+
+		void stop() {
+			running = false;
+			try {
+				Socket current = socket;
+				if (current != null) {
+					current.close();
+				}
+				LockSupport.unpark(thread);
+				thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (IOException e) {
+				log.info("Closing replication socket failed: {}", e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
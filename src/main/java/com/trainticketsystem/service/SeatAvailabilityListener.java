@@ -0,0 +1,15 @@
+package com.trainticketsystem.service;
+
+/**
+ * Callback for seat availability changes made through {@link SeatManager}.
+ * Invoked while the seat lock is held, so implementations must be cheap and non-blocking.
+ */
+@FunctionalInterface
+public interface SeatAvailabilityListener {
+
+	/**
+	 * @param seatId Seat whose availability changed
+	 * @param available true if the seat was released, false if it was reserved
+	 */
+	void onAvailabilityChanged(String seatId, boolean available);
+}
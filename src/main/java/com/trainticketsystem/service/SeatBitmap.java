@@ -0,0 +1,280 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.utils.SeatCodes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One availability bit per seat, per section, kept in step with SeatManager events.
+ * Seat n of a section is bit n - 1; a set bit means the seat is available.
+ * Every change bumps a global version, so clients can skip unchanged maps.
+ * Each section also counts its free seats per block of {@value #BLOCK_SEATS}, which
+ * lets the adjacent-seat search skip full and empty blocks without reading their bits.
+ *
+ * Binary format, version 1 (big-endian):
+ * <pre>
+ *   bytes 0-1   magic "SM"
+ *   byte  2     format version (1)
+ *   bytes 3-10  map version
+ *   byte  11    section count
+ *   per section:
+ *     byte      section letter
+ *     int32     seat count n
+ *     ceil(n/8) bitmap bytes; bit i of byte j is seat 8j + i + 1
+ * </pre>
+ */
+@Component
+@Slf4j
+public class SeatBitmap implements SeatAvailabilityListener {
+
+	public static final int FORMAT_VERSION = 1;
+	public static final int BLOCK_SEATS = 512;
+	private static final int BLOCK_WORD_BITS = 3;
+
+	private final Section[] sectionsByLetter = new Section[128];
+	private final List<Section> sections = new ArrayList<>();
+	private final AtomicLong version = new AtomicLong();
+
+	public SeatBitmap(Map<String, Seat> seatMap, SeatManager seatManager) {
+		// Size each section by its highest seat number
+		Map<Character, Integer> sizes = new TreeMap<>();
+		seatMap.keySet().forEach(seatId -> {
+			int code = SeatCodes.encode(seatId);
+			sizes.merge(SeatCodes.section(code).charAt(0), SeatCodes.number(code), Math::max);
+		});
+		sizes.forEach((letter, size) -> {
+			Section section = new Section(letter, size);
+			sectionsByLetter[letter] = section;
+			sections.add(section);
+		});
+		seatMap.values().forEach(seat -> {
+			if (seat.isAvailable()) {
+				set(seat.getId(), true);
+			}
+		});
+		seatManager.addListener(this);
+		log.info("Seat bitmap tracking {} sections", sections.size());
+	}
+
+	@Override
+	public void onAvailabilityChanged(String seatId, boolean available) {
+		if (set(seatId, available)) {
+			// Bits are written before the version, so a reader holding a version sees at least that state
+			version.incrementAndGet();
+		}
+	}
+
+	public long getVersion() {
+		return version.get();
+	}
+
+	public boolean hasSection(String section) {
+		return section != null && section.length() == 1 && section.charAt(0) < 128
+				&& sectionsByLetter[section.charAt(0)] != null;
+	}
+
+	/**
+	 * Finds runs of adjacent free seats in a section, scanning the availability words
+	 * a run of bits at a time. Blocks with no free seat end the current run and blocks
+	 * with every seat free extend it, both without reading their words; a block with
+	 * fewer free seats than needed is only checked for the run it ends with.
+	 * Results reflect the bits at the time of the scan and are not held.
+	 *
+	 * @param section Section letter
+	 * @param count Number of adjacent seats wanted
+	 * @param limit Most runs to return
+	 * @return First seat number of up to limit non-overlapping runs, in seat order
+	 */
+	public int[] findAdjacent(String section, int count, int limit) {
+		if (!hasSection(section) || count < 1 || limit < 1) {
+			return new int[0];
+		}
+		Section s = sectionsByLetter[section.charAt(0)];
+		int[] found = new int[Math.min(limit, s.size / count)];
+		int results = 0;
+		int runStart = 0;
+		int runLength = 0;
+		int blocks = s.freeCounts.length();
+		for (int block = 0; block < blocks && results < found.length; block++) {
+			int firstWord = block << BLOCK_WORD_BITS;
+			int lastWord = Math.min(firstWord + (1 << BLOCK_WORD_BITS), s.words.length());
+			int blockSeats = Math.min(BLOCK_SEATS, s.size - (firstWord << 6));
+			int free = s.freeCounts.get(block);
+			if (free == 0) {
+				results = emit(found, results, runStart, runLength, count);
+				runLength = 0;
+				continue;
+			}
+			if (free == blockSeats) {
+				if (runLength == 0) {
+					runStart = (firstWord << 6) + 1;
+				}
+				runLength += blockSeats;
+				continue;
+			}
+			if (free < count && runLength == 0) {
+				// No run can both start and end in here, so only the trailing one matters
+				int tail = trailingRun(s, firstWord, lastWord);
+				if (tail > 0) {
+					runStart = (firstWord << 6) + blockSeats - tail + 1;
+					runLength = tail;
+				}
+				continue;
+			}
+			for (int w = firstWord; w < lastWord && results < found.length; w++) {
+				long word = s.words.get(w);
+				int bits = Math.min(64, s.size - (w << 6));
+				if (word == -1L || (bits < 64 && word == (1L << bits) - 1)) {
+					if (runLength == 0) {
+						runStart = (w << 6) + 1;
+					}
+					runLength += bits;
+					continue;
+				}
+				int bit = 0;
+				while (bit < bits) {
+					long rest = word >>> bit;
+					if (rest == 0) {
+						results = emit(found, results, runStart, runLength, count);
+						runLength = 0;
+						break;
+					}
+					int zeros = Long.numberOfTrailingZeros(rest);
+					if (zeros > 0) {
+						results = emit(found, results, runStart, runLength, count);
+						runLength = 0;
+						bit += zeros;
+						continue;
+					}
+					int ones = Math.min(Long.numberOfTrailingZeros(~rest), bits - bit);
+					if (runLength == 0) {
+						runStart = (w << 6) + bit + 1;
+					}
+					runLength += ones;
+					bit += ones;
+				}
+			}
+		}
+		results = emit(found, results, runStart, runLength, count);
+		return results == found.length ? found : Arrays.copyOf(found, results);
+	}
+
+	/**
+	 * Splits a finished run into as many non-overlapping groups as fit and records their starts.
+	 */
+	private static int emit(int[] found, int results, int runStart, int runLength, int count) {
+		while (runLength >= count && results < found.length) {
+			found[results++] = runStart;
+			runStart += count;
+			runLength -= count;
+		}
+		return results;
+	}
+
+	/**
+	 * @return Number of free seats at the end of a block, up to its last seat
+	 */
+	private static int trailingRun(Section s, int firstWord, int lastWord) {
+		int run = 0;
+		for (int w = lastWord - 1; w >= firstWord; w--) {
+			int bits = Math.min(64, s.size - (w << 6));
+			// Move the last seat of the word to the top bit before counting
+			long word = s.words.get(w) << (64 - bits);
+			int ones = Long.numberOfLeadingZeros(~word);
+			run += Math.min(ones, bits);
+			if (ones < bits) {
+				break;
+			}
+		}
+		return run;
+	}
+
+	/**
+	 * Encodes the current availability in binary format version 1.
+	 *
+	 * @param section Section letter to include, or null for every section
+	 * @return Encoded seat map
+	 */
+	public byte[] encode(String section) {
+		List<Section> included = section == null ? sections : List.of(sectionsByLetter[section.charAt(0)]);
+		// Read the version first; the bits that follow are at least that new
+		long mapVersion = version.get();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(12 + included.stream().mapToInt(s -> 5 + (s.size + 7) / 8).sum());
+		out.writeBytes(new byte[]{'S', 'M', FORMAT_VERSION});
+		out.writeBytes(ByteBuffer.allocate(Long.BYTES).putLong(mapVersion).array());
+		out.write(included.size());
+		for (Section s : included) {
+			out.write(s.letter);
+			out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(s.size).array());
+			int bytes = (s.size + 7) / 8;
+			for (int j = 0; j < bytes; j++) {
+				// Bytes of each word in little-endian order keep seat order within the byte stream
+				out.write((int) (s.words.get(j >>> 3) >>> ((j & 7) * 8)));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the map version embedded in an encoded seat map.
+	 *
+	 * @param encoded Seat map produced by {@link #encode(String)}
+	 * @return Map version of that encoding
+	 */
+	public static long versionOf(byte[] encoded) {
+		return ByteBuffer.wrap(encoded, 3, Long.BYTES).getLong();
+	}
+
+	private boolean set(String seatId, boolean available) {
+		int code;
+		try {
+			code = SeatCodes.encode(seatId);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		Section section = sectionsByLetter[SeatCodes.section(code).charAt(0)];
+		int bit = SeatCodes.number(code) - 1;
+		if (section == null || bit < 0 || bit >= section.size) {
+			return false;
+		}
+		long mask = 1L << bit;
+		int word = bit >>> 6;
+		long previous;
+		if (available) {
+			previous = section.words.getAndAccumulate(word, mask, (w, m) -> w | m);
+		} else {
+			previous = section.words.getAndAccumulate(word, mask, (w, m) -> w & ~m);
+		}
+		if (((previous & mask) != 0) != available) {
+			section.freeCounts.addAndGet(word >>> BLOCK_WORD_BITS, available ? 1 : -1);
+		}
+		return true;
+	}
+
+	private static final class Section {
+		private final char letter;
+		private final int size;
+		private final AtomicLongArray words;
+		// Free seats per block of BLOCK_SEATS
+		private final AtomicIntegerArray freeCounts;
+
+		Section(char letter, int size) {
+			this.letter = letter;
+			this.size = size;
+			this.words = new AtomicLongArray((size + 63) >>> 6);
+			this.freeCounts = new AtomicIntegerArray((size + BLOCK_SEATS - 1) / BLOCK_SEATS);
+		}
+	}
+}
@@ -3,108 +3,989 @@ package com.trainticketsystem.service;
 import com.trainticketsystem.config.AppProperties;
 import com.trainticketsystem.model.BookingResult;
 import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Manages seat booking operations with thread safety and timeout handling.
+ * Manages seat booking operations with thread safety and deadline handling.
  * Handles seat reservation, payment processing, and error recovery.
+ * Payment runs through a {@link PaymentGateway} while the seats are held as pending,
+ * with no seat lock held, so a slow payment provider never blocks other bookings of a seat.
+ * A booking's tickets are issued under the seat locks as its seats are confirmed, so
+ * whoever next locks a booked seat finds the ticket for it.
  */
 @Service
 @Slf4j
 public class SeatManager {
 
+	public static final String DEADLINE_EXCEEDED = "Request deadline exceeded. Please try again.";
+	public static final String INSUFFICIENT_BALANCE = "Insufficient balance";
+	public static final String PAYMENT_BUSY = "Payment service busy. Try again later.";
+	public static final String PAYMENT_TIMED_OUT = "Payment timed out. Try again later.";
+	public static final String PAYMENT_FAILED = "Payment failed. Try again later.";
+	private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+	private static final long LOCK_TIMEOUT_MILLIS = 2000;
+	private static final long BATCHER_IDLE_MILLIS = 100;
+
 	private final Map<String, Seat> seatMap;
 	private final AppProperties appProperties;
+	private final PricingEngine pricingEngine;
+	private final List<SeatAvailabilityListener> listeners = new CopyOnWriteArrayList<>();
+	private final PaymentGateway paymentGateway;
+	private final TicketResponseBuilder responseBuilder;
+	// Shared with refunds paid on a request thread
+	private final PaymentBulkhead paymentBulkhead;
+	private final long paymentTimeoutNanos;
+	private final AtomicLong bookingIds = new AtomicLong();
+	// Null unless bookings are micro-batched
+	private final Batcher batcher;
 
-	@Autowired
 	public SeatManager(Map<String, Seat> seatMap, AppProperties appProperties) {
+		this(seatMap, appProperties, new PricingEngine(seatMap, appProperties));
+	}
+
+	public SeatManager(Map<String, Seat> seatMap, AppProperties appProperties, PricingEngine pricingEngine) {
+		this(seatMap, appProperties, pricingEngine, new WalletPaymentGateway());
+	}
+
+	public SeatManager(Map<String, Seat> seatMap, AppProperties appProperties, PricingEngine pricingEngine,
+			PaymentGateway paymentGateway) {
+		this(seatMap, appProperties, pricingEngine, paymentGateway, new PaymentBulkhead(appProperties), new TicketResponseBuilder());
+	}
+
+	@Autowired
+	public SeatManager(Map<String, Seat> seatMap, AppProperties appProperties, PricingEngine pricingEngine,
+			PaymentGateway paymentGateway, PaymentBulkhead paymentBulkhead, TicketResponseBuilder responseBuilder) {
 		this.seatMap = seatMap;
 		this.appProperties = appProperties;
+		this.pricingEngine = pricingEngine;
+		this.paymentGateway = paymentGateway;
+		this.responseBuilder = responseBuilder;
+		this.paymentBulkhead = paymentBulkhead;
+		this.paymentTimeoutNanos = paymentBulkhead.getTimeoutNanos();
+		// Occupancy counters must see every change, so pricing listens first
+		listeners.add(pricingEngine);
+		AppProperties.Batching batching = appProperties.getBatching();
+		this.batcher = batching != null && batching.isEnabled() ? new Batcher(batching) : null;
+	}
+
+	/**
+	 * Applies the bookings already collected for a batch, then stops the batching thread.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (batcher != null) {
+			batcher.stop();
+		}
+	}
+
+	/**
+	 * @return Micro-batches applied so far, zero unless batching is enabled
+	 */
+	public long getBatchCount() {
+		return batcher != null ? batcher.batches.get() : 0;
+	}
+
+	/**
+	 * @return Bookings applied in micro-batches so far
+	 */
+	public long getBatchedBookings() {
+		return batcher != null ? batcher.batchedBookings.get() : 0;
+	}
+
+	/**
+	 * @return Batched bookings handed back to book on their own because their seat was locked
+	 */
+	public long getContendedBookings() {
+		return batcher != null ? batcher.contendedBookings.get() : 0;
+	}
+
+	/**
+	 * Registers a listener for seat reserve and release events.
+	 *
+	 * @param listener Listener to notify, under the seat lock, on every change
+	 */
+	public void addListener(SeatAvailabilityListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Creates a deadline from the configured default request budget.
+	 *
+	 * @return Deadline for a request that did not bring its own
+	 */
+	public Deadline defaultDeadline() {
+		return requestDeadline(null);
+	}
+
+	/**
+	 * Creates a deadline from a client's own budget, capped at the configured default.
+	 *
+	 * @param requestedMillis Budget the client asked for, or null to use the default
+	 * @return Deadline for the request
+	 */
+	public Deadline requestDeadline(Long requestedMillis) {
+		long millis = appProperties.getRequestTimeoutMillis() > 0
+				? appProperties.getRequestTimeoutMillis()
+				: DEFAULT_REQUEST_TIMEOUT_MILLIS;
+		return Deadline.after(requestedMillis == null ? millis : Math.min(requestedMillis, millis));
+	}
+
+	/**
+	 * Books a seat for a user within the default request deadline.
+	 *
+	 * @param user User booking the seat
+	 * @param seatId Seat to be booked
+	 * @return CompletableFuture with booking result
+	 */
+	public CompletableFuture<BookingResult> bookSeats(User user, String seatId) {
+		return bookSeats(user, seatId, defaultDeadline());
 	}
 
 	/**
 	 * Books a seat for a user with the following steps:
-	 * 1. Validates seat existence
-	 * 2. Acquires seat lock with timeout
-	 * 3. Checks seat availability
-	 * 4. Processes payment
-	 * 5. Reserves seat
-	 * 6. Handles errors and refunds if needed
+	 * 1. Abandons the booking if the deadline passed while it was queued
+	 * 2. Validates seat existence
+	 * 3. Acquires seat lock, waiting no longer than the deadline allows
+	 * 4. Checks seat availability and the deadline again
+	 * 5. Holds the seat for the user at its current price and starts the payment
+	 * 6. Settles straight away if the gateway has already answered; otherwise releases the
+	 *    lock, leaving the seat pending, and locks it again once the payment has an outcome
+	 * 7. Confirms the seat and issues the user's ticket, or frees it and refunds the user
+	 *    if payment failed
+	 * 8. Hands over the result, carrying the ticket, undoing the booking if the caller has already given up
+	 * The returned future fails with a deadline message as soon as the deadline passes,
+	 * and a booking that completes later is rolled back, so nobody is charged for a
+	 * request they were told had timed out.
+	 * With app.batching enabled, the booking joins the next micro-batch instead of
+	 * locking the seat on its own thread.
 	 * 
 	 * @param user User booking the seat
 	 * @param seatId Seat to be booked
+	 * @param deadline Deadline of the request
 	 * @return CompletableFuture with booking result
 	 */
-	public CompletableFuture<BookingResult> bookSeats(User user, String seatId) {
-		return CompletableFuture.supplyAsync(() -> {
-			log.info("entered bookSeats with user {} for seat {}",user.getId(),seatId);
-			// Validate seat exists
-			Seat seat = seatMap.get(seatId);
-			if (seat == null) {
-				log.info("bookSeats::seat not found for user {} and seat {}",user.getId(),seatId);
-				return BookingResult.failed("Seat not found: " + seatId);
+	public CompletableFuture<BookingResult> bookSeats(User user, String seatId, Deadline deadline) {
+		Booking booking = new Booking(List.of(user), List.of(seatId), false, deadline);
+		if (batcher == null || !batcher.submit(booking)) {
+			bookAsync(booking);
+		}
+		return await(booking);
+	}
+
+	/**
+	 * Books the seat of a cancelled ticket for its user again at a set price rather than
+	 * the seat's current one, and gives the user that same ticket back rather than a new
+	 * one, as when a seat change that failed takes back the seat it gave up.
+	 * Otherwise books as {@link #bookSeats(User, String, Deadline)} does.
+	 *
+	 * @param user User who held the ticket
+	 * @param ticket Ticket to give back
+	 * @param price Amount to charge the user
+	 * @param deadline Deadline of the request
+	 * @return CompletableFuture with booking result
+	 */
+	public CompletableFuture<BookingResult> rebook(User user, TicketRecord ticket, int price, Deadline deadline) {
+		Booking booking = new Booking(List.of(user), List.of(ticket.getSeatNumber()), false, deadline,
+				new int[] {price}, new TicketRecord[] {ticket});
+		if (batcher == null || !batcher.submit(booking)) {
+			bookAsync(booking);
+		}
+		return await(booking);
+	}
+
+	/**
+	 * Books several seats at once, one for each user, so that either every seat is
+	 * booked or none is. The seats are locked in seat order, which keeps two groups
+	 * reaching for overlapping seats from deadlocking, and each user is charged the
+	 * current price of their own seat. All seats are held while the payments run and are
+	 * confirmed, and each user's ticket issued, only if every user was charged. As with a single seat, the returned future
+	 * fails with a deadline message once the deadline passes and a later booking is rolled back.
+	 *
+	 * @param users Users booking, one per seat
+	 * @param seatIds Seats to be booked, in the same order as the users
+	 * @param deadline Deadline of the request
+	 * @return CompletableFuture with the booked seats and the price of each
+	 */
+	public CompletableFuture<BookingResult> bookSeats(List<User> users, List<String> seatIds, Deadline deadline) {
+		if (users.size() != seatIds.size() || seatIds.isEmpty()) {
+			return CompletableFuture.completedFuture(BookingResult.failed("Each user needs exactly one seat"));
+		}
+		Booking booking = new Booking(users, seatIds, true, deadline);
+		bookAsync(booking);
+		return await(booking);
+	}
+
+	private CompletableFuture<BookingResult> await(Booking booking) {
+		return booking.result.orTimeout(booking.deadline.remainingNanos(), TimeUnit.NANOSECONDS)
+				.exceptionally(throwable -> {
+					if (throwable instanceof TimeoutException) {
+						log.info("Booking deadline passed for seats {}", booking.seatIds);
+						return BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+					}
+					log.info("Unexpected error during booking: {} , for seats {}", throwable.getMessage(), booking.seatIds);
+					return BookingResult.failed("Unexpected error during booking: " + throwable.getMessage());
+				});
+	}
+
+	/**
+	 * Holds the seats and starts one payment per user. A booking whose payments are
+	 * still outstanding once the seats are unlocked is settled when the last one has
+	 * an outcome, so no seat lock is held across the gateway's latency.
+	 */
+	private void book(Booking booking) {
+		conclude(booking, hold(booking));
+	}
+
+	// Books on a thread of its own, locking the seats itself
+	private void bookAsync(Booking booking) {
+		CompletableFuture.runAsync(() -> book(booking))
+				.exceptionally(throwable -> {
+					booking.result.completeExceptionally(throwable);
+					return null;
+				});
+	}
+
+	/**
+	 * Completes a booking that has an outcome, or settles it once its payments have one.
+	 * Must be called with no seat lock held.
+	 *
+	 * @param outcome Outcome of the booking, or null while payment is outstanding
+	 */
+	private void conclude(Booking booking, BookingResult outcome) {
+		if (outcome != null) {
+			booking.result.complete(outcome);
+			return;
+		}
+		CompletableFuture.allOf(booking.payments.toArray(new CompletableFuture<?>[0]))
+				.thenRun(() -> settle(booking));
+	}
+
+	/**
+	 * Validates and locks the seats, then holds them for the booking.
+	 * The locks are released before returning.
+	 *
+	 * @return Outcome of the booking, or null while payment is outstanding
+	 */
+	private BookingResult hold(Booking booking) {
+		List<String> seatIds = booking.seatIds;
+		Seat[] seats = booking.seats;
+		// Nobody is waiting for work that was queued past its deadline
+		if (booking.result.isDone() || booking.deadline.isExpired()) {
+			log.info("bookSeats::deadline passed before seats {} were reached", seatIds);
+			return BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+		}
+		log.info("entered bookSeats for seats {}", seatIds);
+		// Validate every seat exists
+		for (int i = 0; i < seats.length; i++) {
+			seats[i] = seatMap.get(seatIds.get(i));
+			if (seats[i] == null) {
+				log.info("bookSeats::seat not found: {}", seatIds.get(i));
+				return BookingResult.failed(BookingResult.Failure.SEAT_NOT_FOUND, "Seat not found: " + seatIds.get(i));
 			}
+		}
 
-			try {
-				// Try to acquire lock with timeout
-				if (!seat.getLock().tryLock(2, TimeUnit.SECONDS)) {
-					log.info("bookSeats::!seat.getLock()::user {} , seat {} is busy. Try again later",user.getId(),seatId);
-					return BookingResult.failed("Seat " + seatId + " is busy. Try again later.");
+		Integer[] order = lockOrder(seatIds);
+		int locked = 0;
+		try {
+			// Try to acquire every lock, but never past the deadline
+			for (int i : order) {
+				Seat seat = lockCurrent(seats[i], lockWaitNanos(booking.deadline));
+				if (seat == null) {
+					return lockFailure(booking, seatIds.get(i));
 				}
+				seats[i] = seat;
+				locked++;
+			}
+			return holdLocked(booking);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.info("InterruptedException {}::seats {}", e.getMessage(), seatIds);
+			return BookingResult.failed("Thread interrupted during booking");
+		} finally {
+			for (int i = 0; i < locked; i++) {
+				seats[order[i]].getLock().unlock();
+			}
+		}
+	}
 
-				try {
-					// Check seat availability
-					if (!seat.isAvailable()) {
-						log.info("bookSeats::!seat.isAvailable()::user {} , seat {} is already booked",user.getId(),seatId);
-						return BookingResult.failed("Seat " + seatId + " is already booked");
-					}
+	private static BookingResult lockFailure(Booking booking, String seatId) {
+		if (booking.deadline.isExpired()) {
+			log.info("bookSeats::deadline passed while waiting for seat {}", seatId);
+			return BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+		}
+		log.info("bookSeats::seat {} is busy. Try again later", seatId);
+		return BookingResult.failed(BookingResult.Failure.SEAT_BUSY, "Seat " + seatId + " is busy. Try again later.");
+	}
 
-					// Process payment
-					if (!user.deductBalance(appProperties.getTicketPrice())) {
-						return BookingResult.failed("Insufficient balance");
-					}
+	/**
+	 * Checks the locked seats are free, holds them for the booking at their current
+	 * prices and starts the payments. If every payment already has an outcome, as with
+	 * the in-memory wallet, the booking is settled before the locks are released, so
+	 * nobody ever sees the seats pending; otherwise they stay pending once unlocked.
+	 * Must be called with every seat lock of the booking held.
+	 *
+	 * @return Outcome of the booking, or null while payment is outstanding
+	 */
+	private BookingResult holdLocked(Booking booking) {
+		List<String> seatIds = booking.seatIds;
+		Seat[] seats = booking.seats;
+		// Check seat availability
+		for (int i = 0; i < seats.length; i++) {
+			if (!seats[i].isAvailable()) {
+				log.info("bookSeats::seat {} is already booked", seatIds.get(i));
+				return BookingResult.failed(BookingResult.Failure.SEAT_TAKEN, "Seat " + seatIds.get(i) + " is already booked");
+			}
+		}
 
-					try {
-						// Book the seat
-						if (!seat.reserve(user)) {
-							// If reservation fails, refund the payment
-							log.info("bookSeats::!seat.reserve(user)::user {} , Failed to reserve seat {}",user.getId(),seatId);
-							user.addBalance(appProperties.getTicketPrice());
-							return BookingResult.failed("Failed to reserve seat " + seatId);
-						}
+		// Do not charge for a request nobody is waiting for
+		if (booking.result.isDone() || booking.deadline.isExpired()) {
+			log.info("bookSeats::deadline passed before seats {} were held", seatIds);
+			return BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+		}
+
+		// Price every seat now, unless the booking came priced; the ticket records this exact amount
+		for (int i = 0; i < seats.length && !booking.priced; i++) {
+			booking.prices[i] = pricingEngine.priceOf(seatIds.get(i));
+		}
+		for (int i = 0; i < seats.length; i++) {
+			if (!seats[i].hold(booking.users.get(i), booking.id)) {
+				log.info("bookSeats::failed to hold seat {}", seatIds.get(i));
+				for (int j = 0; j < i; j++) {
+					seats[j].release();
+				}
+				return BookingResult.failed(BookingResult.Failure.SEAT_TAKEN, "Failed to reserve seat " + seatIds.get(i));
+			}
+		}
+
+		// Gateway calls only start the payment, so making them under the locks is cheap
+		for (int i = 0; i < seats.length; i++) {
+			booking.payments.add(pay(booking.users.get(i), booking.prices[i], booking.deadline));
+		}
+		if (booking.payments.stream().allMatch(CompletableFuture::isDone)) {
+			return finish(booking, false);
+		}
+		// Listeners hear of the held seats now; a failed payment frees them again
+		for (String seatId : seatIds) {
+			notifyListeners(seatId, false);
+		}
+		return null;
+	}
+
+	/**
+	 * Charges one user through the payment gateway. Calls beyond the bulkhead's limit
+	 * fail at once, and the booking stops waiting once the payment timeout or the
+	 * deadline passes, whichever is sooner. A charge that goes through after the
+	 * booking stopped waiting for it is refunded.
+	 *
+	 * @return Future completing with the outcome of the payment
+	 */
+	private CompletableFuture<Payment> pay(User user, int price, Deadline deadline) {
+		if (!paymentBulkhead.tryAcquire()) {
+			log.info("pay::payment bulkhead full, user {}", user.getId());
+			return CompletableFuture.completedFuture(Payment.BUSY);
+		}
+		CompletableFuture<Boolean> charge;
+		try {
+			charge = paymentGateway.charge(user, price);
+		} catch (RuntimeException e) {
+			paymentBulkhead.release();
+			log.info("pay::payment gateway failed for user {}: {}", user.getId(), e.getMessage());
+			return CompletableFuture.completedFuture(Payment.FAILED);
+		}
+		CompletableFuture<Payment> outcome = new CompletableFuture<>();
+		charge.whenComplete((charged, throwable) -> {
+			// The permit is held for as long as the call really runs, not just as long as we wait
+			paymentBulkhead.release();
+			Payment payment = throwable != null ? Payment.FAILED
+					: Boolean.TRUE.equals(charged) ? Payment.CHARGED : Payment.DECLINED;
+			if (!outcome.complete(payment) && payment == Payment.CHARGED) {
+				log.info("pay::refunding user {} for a payment that arrived after it timed out", user.getId());
+				refund(user, price);
+			}
+		});
+		return outcome.completeOnTimeout(Payment.TIMED_OUT,
+				Math.min(paymentTimeoutNanos, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Locks the pending seats again once every payment has an outcome and settles the
+	 * booking, then offers the seat to the bookings of its batch that were waiting on it.
+	 */
+	private void settle(Booking booking) {
+		Seat[] seats = booking.seats;
+		Integer[] order = lockOrder(booking.seatIds);
+		List<Booking> waiters = booking.waiters;
+		BookingResult[] outcomes = new BookingResult[waiters.size()];
+		int offered = 0;
+		int locked = 0;
+		try {
+			for (int i : order) {
+				seats[i] = lockLive(seats[i]);
+				locked++;
+			}
+			booking.result.complete(finish(booking, true));
+			offered = offer(seats[0], waiters, outcomes);
+		} finally {
+			for (int i = 0; i < locked; i++) {
+				seats[order[i]].getLock().unlock();
+			}
+		}
+		for (int i = 0; i < offered; i++) {
+			conclude(waiters.get(i), outcomes[i]);
+		}
+	}
+
+	/**
+	 * Offers a locked seat to single-seat bookings in turn, as a batch does. Once one
+	 * leaves the seat pending on its payment, the rest wait for that payment rather than
+	 * failing against the pending seat, and are offered the seat again once it is
+	 * settled, so a declined payment hands the seat to the next booking in line.
+	 * Must be called with the seat lock held.
+	 *
+	 * @param outcomes Filled with the outcome of each booking tried, null while its payment is outstanding
+	 * @return Number of bookings tried; the others are waiting on the last one tried
+	 */
+	private int offer(Seat seat, List<Booking> bookings, BookingResult[] outcomes) {
+		for (int i = 0; i < bookings.size(); i++) {
+			Booking booking = bookings.get(i);
+			booking.seats[0] = seat;
+			outcomes[i] = holdLocked(booking);
+			if (outcomes[i] == null) {
+				booking.waiters = bookings.subList(i + 1, bookings.size());
+				return i + 1;
+			}
+		}
+		return bookings.size();
+	}
+
+	/**
+	 * Confirms the held seats and issues their tickets if every user was charged, every
+	 * seat is still held for this booking and the caller is still waiting. Otherwise frees
+	 * the seats still held, takes back any ticket issued and refunds every user that was
+	 * charged. Must be called with the seat locks held.
+	 *
+	 * @param announced Whether listeners have already been told the seats are taken
+	 * @return Outcome of the booking
+	 */
+	private BookingResult finish(Booking booking, boolean announced) {
+		List<User> users = booking.users;
+		List<String> seatIds = booking.seatIds;
+		Seat[] seats = booking.seats;
+		BookingResult failure = null;
+		for (int i = 0; i < seats.length && failure == null; i++) {
+			Payment payment = booking.payments.get(i).join();
+			if (payment != Payment.CHARGED) {
+				log.info("bookSeats::payment {} for user {} and seat {}", payment, users.get(i).getId(), seatIds.get(i));
+				failure = paymentFailure(payment, users.get(i), booking.group, booking.deadline);
+			} else if (seats[i].getPendingBooking() != booking.id) {
+				// A journey cancellation released the seat while payment was outstanding
+				log.info("bookSeats::seat {} was released during payment", seatIds.get(i));
+				failure = BookingResult.failed(BookingResult.Failure.SEAT_TAKEN, "Seat " + seatIds.get(i) + " was released during payment");
+			}
+		}
 
-						log.info("Successfully booked seat {} for user {}", seatId, user.getId());
-						return BookingResult.success();
-					} catch (Exception e) {
-						// If any error occurs during reservation, refund the payment
-						user.addBalance(appProperties.getTicketPrice());
-						log.info("Error during seat reservation: {} , for user {}", e.getMessage(),user.getId());
-						return BookingResult.failed("Error during seat reservation: " + e.getMessage());
+		if (failure == null) {
+			// Listeners hear of the booking before the caller does
+			if (!announced) {
+				for (String seatId : seatIds) {
+					notifyListeners(seatId, false);
+				}
+				announced = true;
+			}
+			// Confirmed and ticketed before the caller hears of it, so nobody told of the booking
+			// sees the seats pending, and whoever locks a seat next finds its ticket; the caller
+			// may have timed out since the last check, if so undo it
+			TicketRecord[] tickets = booking.tickets;
+			for (int i = 0; i < seats.length; i++) {
+				seats[i].confirm();
+				if (tickets[i] == null) {
+					tickets[i] = responseBuilder.issueTicket(users.get(i), seatIds.get(i), booking.prices[i]);
+				} else {
+					users.get(i).addTicket(tickets[i]);
+				}
+			}
+			BookingResult booked = booking.group
+					? BookingResult.success(seatIds, Arrays.stream(booking.prices).boxed().toList(), List.of(tickets))
+					: BookingResult.success(booking.prices[0], tickets[0]);
+			if (booking.result.complete(booked)) {
+				log.info("Successfully booked seats {}", seatIds);
+				return booked;
+			}
+			log.info("bookSeats::rolled back seats {} after the deadline passed", seatIds);
+			failure = BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+			for (int i = 0; i < seats.length; i++) {
+				users.get(i).removeTicket(tickets[i]);
+				free(seats[i]);
+			}
+		}
+
+		for (int i = 0; i < seats.length; i++) {
+			if (seats[i].getPendingBooking() == booking.id) {
+				if (announced) {
+					free(seats[i]);
+				} else {
+					seats[i].release();
+				}
+			}
+			if (booking.payments.get(i).join() == Payment.CHARGED) {
+				refund(users.get(i), booking.prices[i]);
+			}
+		}
+		return failure;
+	}
+
+	private static BookingResult paymentFailure(Payment payment, User user, boolean group, Deadline deadline) {
+		if (payment == Payment.TIMED_OUT && deadline.isExpired()) {
+			return BookingResult.failed(BookingResult.Failure.DEADLINE_EXCEEDED, DEADLINE_EXCEEDED);
+		}
+		return BookingResult.failed(BookingResult.Failure.PAYMENT, switch (payment) {
+			case DECLINED -> group ? INSUFFICIENT_BALANCE + " for user " + user.getId() : INSUFFICIENT_BALANCE;
+			case BUSY -> PAYMENT_BUSY;
+			case TIMED_OUT -> PAYMENT_TIMED_OUT;
+			default -> PAYMENT_FAILED;
+		});
+	}
+
+	private void refund(User user, int amount) {
+		try {
+			paymentGateway.refund(user, amount).whenComplete((ignored, throwable) -> {
+				if (throwable != null) {
+					log.warn("Refund of {} to user {} failed: {}", amount, user.getId(), throwable.getMessage());
+				}
+			});
+		} catch (RuntimeException e) {
+			log.warn("Refund of {} to user {} failed: {}", amount, user.getId(), e.getMessage());
+		}
+	}
+
+	// Indexes of the seats in lock order, which keeps overlapping bookings from deadlocking
+	private static Integer[] lockOrder(List<String> seatIds) {
+		Integer[] order = new Integer[seatIds.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing(seatIds::get));
+		return order;
+	}
+
+	/**
+	 * Locks the live instance of a held seat, however long that takes: the booking
+	 * must be settled either way, and nobody holds a seat lock for long.
+	 */
+	private Seat lockLive(Seat seat) {
+		while (true) {
+			seat.getLock().lock();
+			if (!seat.isRetired()) {
+				return seat;
+			}
+			seat.getLock().unlock();
+			seat = seatMap.get(seat.getId());
+		}
+	}
+
+	/**
+	 * Releases a seat under its lock, making it available again.
+	 *
+	 * @param seat Seat to release
+	 * @return User that held the seat, or null if it was not reserved
+	 * @throws InterruptedException if interrupted while waiting for the seat lock
+	 * @throws IllegalStateException if the seat lock could not be acquired in time
+	 */
+	public User releaseSeat(Seat seat) throws InterruptedException {
+		seat = lockSeat(seat, null);
+		try {
+			User holder = seat.getReservedBy();
+			free(seat);
+			return holder;
+		} finally {
+			seat.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Releases a seat under its lock, but only if it is still held by the given user.
+	 *
+	 * @param seat Seat to release
+	 * @param holder User expected to hold the seat
+	 * @return true if the seat was held by the user and has been released
+	 * @throws InterruptedException if interrupted while waiting for the seat lock
+	 * @throws IllegalStateException if the seat lock could not be acquired in time
+	 */
+	public boolean releaseSeat(Seat seat, User holder) throws InterruptedException {
+		return releaseSeat(seat, holder, null);
+	}
+
+	/**
+	 * Releases a seat under its lock if it is still held by the given user,
+	 * waiting for the lock no longer than the request deadline allows.
+	 *
+	 * @param seat Seat to release
+	 * @param holder User expected to hold the seat
+	 * @param deadline Deadline of the request, or null for the plain lock timeout
+	 * @return true if the seat was held by the user and has been released
+	 * @throws InterruptedException if interrupted while waiting for the seat lock
+	 * @throws IllegalStateException if the deadline passed or the seat lock could not be acquired in time
+	 */
+	public boolean releaseSeat(Seat seat, User holder, Deadline deadline) throws InterruptedException {
+		seat = lockSeat(seat, deadline);
+		try {
+			User current = seat.getReservedBy();
+			if (current == null || !current.getId().equals(holder.getId())) {
+				return false;
+			}
+			free(seat);
+			return true;
+		} finally {
+			seat.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Cancels a ticket under its seat's lock: the holder's ticket is dropped and the
+	 * seat released if the holder still has it. Only the caller that drops the ticket
+	 * gets true, so a ticket cancelled from several places at once is refunded once.
+	 *
+	 * @param seat Seat the ticket is for
+	 * @param holder User holding the ticket
+	 * @param ticket Ticket to cancel
+	 * @param deadline Deadline of the request, or null for the plain lock timeout
+	 * @return true if the ticket was held and has been cancelled
+	 * @throws InterruptedException if interrupted while waiting for the seat lock
+	 * @throws IllegalStateException if the deadline passed or the seat lock could not be acquired in time
+	 */
+	public boolean cancelTicket(Seat seat, User holder, TicketRecord ticket, Deadline deadline) throws InterruptedException {
+		seat = lockSeat(seat, deadline);
+		try {
+			if (!holder.removeTicket(ticket)) {
+				return false;
+			}
+			User current = seat.getReservedBy();
+			if (current != null && current.getId().equals(holder.getId())) {
+				free(seat);
+			}
+			return true;
+		} finally {
+			seat.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Releases a seat and cancels its holder's ticket for it, both under the seat's lock,
+	 * as a journey cancellation does, so a ticket issued for the seat is always found.
+	 * Only the caller that drops the ticket gets it back, so it is refunded once.
+	 *
+	 * @param seat Seat to release
+	 * @return Holder and the ticket cancelled, which is null if the holder had none for
+	 *         the seat, or null if the seat was not reserved
+	 * @throws InterruptedException if interrupted while waiting for the seat lock
+	 * @throws IllegalStateException if the seat lock could not be acquired in time
+	 */
+	public Cancelled cancelSeat(Seat seat) throws InterruptedException {
+		seat = lockSeat(seat, null);
+		try {
+			User holder = seat.getReservedBy();
+			free(seat);
+			if (holder == null) {
+				return null;
+			}
+			TicketRecord ticket = holder.getTickets().findBySeat(SeatCodes.encode(seat.getId()));
+			return new Cancelled(holder, ticket != null && holder.removeTicket(ticket) ? ticket : null);
+		} finally {
+			seat.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets who holds a seat without taking payment, as replicated from a primary.
+	 * Listeners are told of the change as they are for a booking or a release.
+	 *
+	 * @param seatId Seat to assign
+	 * @param holder User now holding the seat, or null to free it
+	 */
+	public void assignSeat(String seatId, User holder) {
+		Seat seat = seatMap.get(seatId);
+		if (seat == null) {
+			return;
+		}
+		seat = lockLive(seat);
+		try {
+			if (holder == null) {
+				free(seat);
+				return;
+			}
+			boolean wasAvailable = seat.isAvailable();
+			seat.release();
+			seat.reserve(holder);
+			if (wasAvailable) {
+				notifyListeners(seat.getId(), false);
+			}
+		} finally {
+			seat.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Locks the live instance of a seat.
+	 *
+	 * @return Locked seat, possibly a newer instance than the one passed in
+	 */
+	private Seat lockSeat(Seat seat, Deadline deadline) throws InterruptedException {
+		if (deadline != null && deadline.isExpired()) {
+			throw new IllegalStateException(DEADLINE_EXCEEDED);
+		}
+		long waitNanos = deadline == null ? TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT_MILLIS) : lockWaitNanos(deadline);
+		Seat locked = lockCurrent(seat, waitNanos);
+		if (locked == null) {
+			if (deadline != null && deadline.isExpired()) {
+				throw new IllegalStateException(DEADLINE_EXCEEDED);
+			}
+			throw new IllegalStateException("Seat " + seat.getId() + " is busy. Try again later.");
+		}
+		return locked;
+	}
+
+	/**
+	 * Takes a seat's lock, moving on to the seat map's current instance whenever the
+	 * locked one turns out to have been retired by the seat store.
+	 *
+	 * @return Locked live seat, or null if a lock was not acquired in time
+	 */
+	private Seat lockCurrent(Seat seat, long waitNanos) throws InterruptedException {
+		while (seat != null && seat.getLock().tryLock(waitNanos, TimeUnit.NANOSECONDS)) {
+			if (!seat.isRetired()) {
+				return seat;
+			}
+			seat.getLock().unlock();
+			seat = seatMap.get(seat.getId());
+		}
+		return null;
+	}
+
+	// A seat lock is held only briefly, so a long wait means the seat is busy rather than slow
+	private static long lockWaitNanos(Deadline deadline) {
+		return Math.min(deadline.remainingNanos(), TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT_MILLIS));
+	}
+
+	// Must be called with the seat lock held
+	private void free(Seat seat) {
+		boolean wasAvailable = seat.isAvailable();
+		seat.release();
+		if (!wasAvailable) {
+			notifyListeners(seat.getId(), true);
+		}
+	}
+
+	// Called with the seat lock held so listeners observe changes in lock order
+	private void notifyListeners(String seatId, boolean available) {
+		for (SeatAvailabilityListener listener : listeners) {
+			try {
+				listener.onAvailabilityChanged(seatId, available);
+			} catch (RuntimeException e) {
+				log.info("Seat listener failed for seat {}: {}", seatId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * A seat released by {@link #cancelSeat(Seat)}.
+	 *
+	 * @param holder User who held the seat
+	 * @param ticket Ticket cancelled with it, or null if the holder had none to cancel
+	 */
+	public record Cancelled(User holder, TicketRecord ticket) {
+	}
+
+	private enum Payment {
+		CHARGED, DECLINED, BUSY, TIMED_OUT, FAILED
+	}
+
+	/**
+	 * One booking request on its way through hold, payment and settlement.
+	 */
+	private final class Booking {
+		// Marks the seats this booking holds, so settling can tell whether they were released meanwhile
+		final long id = bookingIds.incrementAndGet();
+		final List<User> users;
+		final List<String> seatIds;
+		final boolean group;
+		final Deadline deadline;
+		final CompletableFuture<BookingResult> result = new CompletableFuture<>();
+		final Seat[] seats;
+		final int[] prices;
+		// Whether the prices were set by the caller instead of the pricing engine
+		final boolean priced;
+		// Tickets issued once the seats are confirmed, or set by the caller to be given back
+		final TicketRecord[] tickets;
+		final List<CompletableFuture<Payment>> payments;
+		// Bookings of the same batch queued behind this one for its seat, offered it once this one is settled
+		List<Booking> waiters = List.of();
+
+		Booking(List<User> users, List<String> seatIds, boolean group, Deadline deadline) {
+			this(users, seatIds, group, deadline, null, new TicketRecord[seatIds.size()]);
+		}
+
+		Booking(List<User> users, List<String> seatIds, boolean group, Deadline deadline, int[] prices,
+				TicketRecord[] tickets) {
+			this.users = users;
+			this.seatIds = seatIds;
+			this.group = group;
+			this.deadline = deadline;
+			this.seats = new Seat[seatIds.size()];
+			this.priced = prices != null;
+			this.prices = prices != null ? prices : new int[seatIds.size()];
+			this.tickets = tickets;
+			this.payments = new ArrayList<>(seatIds.size());
+		}
+	}
+
+	/**
+	 * Collects single-seat bookings into micro-batches and applies each batch on one
+	 * thread, in one pass over its seats in lock order. The bookings for a seat are
+	 * tried in arrival order under a single acquisition of its lock, so a hot seat is
+	 * locked once per batch instead of once per request, the losers never contend for
+	 * it, and the winner within a batch never depends on thread timing. A booking whose
+	 * payment is declined hands the seat to the next one in line, even when the payment
+	 * was answered only after the seat was unlocked: the bookings behind it wait for its
+	 * outcome rather than failing against the pending seat.
+	 */
+	private final class Batcher {
+		private final BlockingQueue<Booking> queue = new LinkedBlockingQueue<>();
+		private final int maxSize;
+		private final long windowNanos;
+		private final Thread thread;
+		private final AtomicLong batches = new AtomicLong();
+		private final AtomicLong batchedBookings = new AtomicLong();
+		// Bookings handed back because their seat was locked when the batch reached it
+		private final AtomicLong contendedBookings = new AtomicLong();
+		private volatile boolean running = true;
+
+		Batcher(AppProperties.Batching config) {
+			this.maxSize = Math.max(1, config.getMaxSize());
+			this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, config.getWindowMicros()));
+			this.thread = new Thread(this::run, "booking-batcher");
+			thread.setDaemon(true);
+			thread.start();
+			log.info("Micro-batching bookings, up to {} per batch over {} us", maxSize, config.getWindowMicros());
+		}
+
+		/**
+		 * @return false once stopped, leaving the booking to the caller
+		 */
+		boolean submit(Booking booking) {
+			return running && queue.offer(booking);
+		}
+
+		void stop() {
+			running = false;
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void run() {
+			List<Booking> batch = new ArrayList<>(maxSize);
+			while (running || !queue.isEmpty()) {
+				try {
+					Booking first = queue.poll(BATCHER_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						continue;
+					}
+					batch.add(first);
+					// The window opens with the first booking and closes early once the batch is full
+					long windowEnd = System.nanoTime() + windowNanos;
+					while (batch.size() < maxSize) {
+						queue.drainTo(batch, maxSize - batch.size());
+						long remaining = windowEnd - System.nanoTime();
+						if (batch.size() >= maxSize || remaining <= 0) {
+							break;
+						}
+						Booking next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+						if (next == null) {
+							break;
+						}
+						batch.add(next);
 					}
+					apply(batch);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					running = false;
+				} catch (RuntimeException e) {
+					log.error("Booking batch of {} failed: {}", batch.size(), e.getMessage());
+					batch.forEach(booking -> booking.result.completeExceptionally(e));
 				} finally {
-					seat.getLock().unlock();
+					batch.clear();
 				}
+			}
+			log.info("Booking batcher stopped after {} batches", batches.get());
+		}
+
+		private void apply(List<Booking> batch) {
+			batches.incrementAndGet();
+			batchedBookings.addAndGet(batch.size());
+			// Seats in lock order, each with its bookings in arrival order
+			Map<String, List<Booking>> bySeat = new TreeMap<>();
+			for (Booking booking : batch) {
+				bySeat.computeIfAbsent(booking.seatIds.get(0), seatId -> new ArrayList<>(1)).add(booking);
+			}
+			bySeat.forEach(this::applySeat);
+		}
+
+		private void applySeat(String seatId, List<Booking> bookings) {
+			Seat seat = seatMap.get(seatId);
+			if (seat == null) {
+				log.info("bookSeats::seat not found: {}", seatId);
+				bookings.forEach(booking -> booking.result.complete(BookingResult.failed(BookingResult.Failure.SEAT_NOT_FOUND, "Seat not found: " + seatId)));
+				return;
+			}
+			// Never wait for a busy seat here: that would hold up the rest of the batch and every
+			// later one. Its bookings go back to booking one at a time, waiting on their own threads
+			Seat locked;
+			try {
+				locked = lockCurrent(seat, 0);
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
-				log.info("InterruptedException {}::user {} , seat {}", e.getMessage(),user.getId(),seatId);
-				return BookingResult.failed("Thread interrupted during booking");
-			}
-		}).orTimeout(5, TimeUnit.SECONDS)  // Overall timeout for the entire operation
-		  .exceptionally(throwable -> {
-			  if (throwable instanceof TimeoutException) {
-				  log.info("Booking operation timed out for user {} and seat {}", user.getEmail(), seatId);
-				  return BookingResult.failed("Booking operation timed out. Please try again.");
-			  }
-			  log.info("Unexpected error during booking: {} , for user {} and seat {}", throwable.getMessage(),user.getEmail(), seatId);
-			  return BookingResult.failed("Unexpected error during booking: " + throwable.getMessage());
-		  });
+				bookings.forEach(booking -> booking.result.complete(BookingResult.failed("Thread interrupted during booking")));
+				return;
+			}
+			if (locked == null) {
+				contendedBookings.addAndGet(bookings.size());
+				bookings.forEach(SeatManager.this::bookAsync);
+				return;
+			}
+			BookingResult[] outcomes = new BookingResult[bookings.size()];
+			int offered;
+			try {
+				offered = offer(locked, bookings, outcomes);
+			} finally {
+				locked.getLock().unlock();
+			}
+			for (int i = 0; i < offered; i++) {
+				conclude(bookings.get(i), outcomes[i]);
+			}
+		}
 	}
 }
@@ -0,0 +1,235 @@
+package com.trainticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.response.SeatAvailability;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes seat availability to Server-Sent Event subscribers.
+ * Each subscriber gets one "snapshot" event followed by "delta" events listing only
+ * the seats that changed. SeatManager events land in a single map keyed by seat, so
+ * repeated changes to one seat coalesce to its latest state. A flusher drains that map
+ * once per interval and serializes the delta once for all caught-up subscribers.
+ * Subscribers still busy with an earlier send keep merging deltas into their own
+ * pending map, so slow clients get fewer, larger updates. Sends run on a small fixed
+ * pool, never a thread per client.
+ */
+@Service
+@Slf4j
+public class SeatStreamService {
+
+	private final Map<String, Seat> seatMap;
+	private final ObjectMapper objectMapper;
+	private final Map<String, Boolean> changes = new ConcurrentHashMap<>();
+	private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+	private final AtomicLong subscriberIdGenerator = new AtomicLong(1);
+	private final ScheduledExecutorService flusher;
+	private final ExecutorService senders;
+
+	public SeatStreamService(SeatManager seatManager,
+	                         Map<String, Seat> seatMap,
+	                         ObjectMapper objectMapper,
+	                         AppProperties appProperties) {
+		this.seatMap = seatMap;
+		this.objectMapper = objectMapper;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(daemon("seat-stream-flusher"));
+		this.senders = Executors.newFixedThreadPool(Math.max(1, appProperties.getStreamSenderThreads()), daemon("seat-stream-sender"));
+		long interval = Math.max(1, appProperties.getStreamFlushIntervalMillis());
+		flusher.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				// An exception would cancel the schedule, so log and carry on
+				log.error("Seat stream flush failed: {}", e.getMessage());
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		seatManager.addListener(changes::put);
+	}
+
+	/**
+	 * Opens a new availability stream.
+	 * The subscriber is registered before the snapshot is taken, so no change can fall between the two.
+	 *
+	 * @return Emitter that receives a snapshot and then deltas
+	 */
+	public SseEmitter subscribe() {
+		SseEmitter emitter = new SseEmitter(0L);
+		Subscriber subscriber = new Subscriber(subscriberIdGenerator.getAndIncrement(), emitter);
+		// Hold the subscriber busy so deltas queue behind the snapshot
+		subscriber.sending.set(true);
+		subscribers.put(subscriber.id, subscriber);
+		emitter.onCompletion(() -> subscribers.remove(subscriber.id));
+		emitter.onTimeout(() -> subscribers.remove(subscriber.id));
+		emitter.onError(throwable -> subscribers.remove(subscriber.id));
+
+		List<SeatAvailability> snapshot = new TreeMap<>(seatMap).values().stream()
+				.map(seat -> new SeatAvailability(seat.getId(), seat.isAvailable()))
+				.toList();
+		senders.execute(() -> {
+			if (send(subscriber, "snapshot", toJson(snapshot))) {
+				drain(subscriber);
+			}
+		});
+		log.info("Seat stream subscriber {} connected, {} active", subscriber.id, subscribers.size());
+		return emitter;
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * Completes every open stream when the context starts closing, before the web
+	 * server's graceful shutdown would otherwise wait on them as active requests.
+	 */
+	@EventListener(ContextClosedEvent.class)
+	public void closeStreams() {
+		subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+		subscribers.clear();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flusher.shutdownNow();
+		senders.shutdownNow();
+	}
+
+	/**
+	 * Drains the coalesced changes and hands them to every subscriber.
+	 */
+	void flush() {
+		if (changes.isEmpty()) {
+			return;
+		}
+		Map<String, Boolean> delta = drainInto(changes);
+		if (delta.isEmpty() || subscribers.isEmpty()) {
+			return;
+		}
+
+		String payload = null;
+		for (Subscriber subscriber : subscribers.values()) {
+			if (subscriber.pending.isEmpty() && subscriber.sending.compareAndSet(false, true)) {
+				// Caught up: share one serialized payload
+				if (payload == null) {
+					payload = toJson(toAvailability(delta));
+				}
+				String shared = payload;
+				senders.execute(() -> {
+					if (send(subscriber, "delta", shared)) {
+						drain(subscriber);
+					}
+				});
+			} else {
+				subscriber.pending.putAll(delta);
+				if (subscriber.sending.compareAndSet(false, true)) {
+					senders.execute(() -> drain(subscriber));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends whatever is pending for a subscriber, then releases it for the next flush.
+	 */
+	private void drain(Subscriber subscriber) {
+		while (true) {
+			if (!subscriber.pending.isEmpty()) {
+				Map<String, Boolean> delta = drainInto(subscriber.pending);
+				if (!delta.isEmpty() && !send(subscriber, "delta", toJson(toAvailability(delta)))) {
+					return;
+				}
+			}
+			subscriber.sending.set(false);
+			// Recheck in case the flusher queued more after our last look
+			if (subscriber.pending.isEmpty() || !subscriber.sending.compareAndSet(false, true)) {
+				return;
+			}
+		}
+	}
+
+	private boolean send(Subscriber subscriber, String event, String payload) {
+		try {
+			subscriber.emitter.send(SseEmitter.event().name(event).data(payload, MediaType.APPLICATION_JSON));
+			return true;
+		} catch (IOException | IllegalStateException e) {
+			log.info("Seat stream subscriber {} dropped: {}", subscriber.id, e.getMessage());
+			subscribers.remove(subscriber.id);
+			subscriber.emitter.completeWithError(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Removes every entry from a change map. Each key is removed atomically with its
+	 * latest value, so a change racing with the drain is either taken now or kept for later.
+	 */
+	private static Map<String, Boolean> drainInto(Map<String, Boolean> source) {
+		Map<String, Boolean> delta = new LinkedHashMap<>();
+		for (String seatId : source.keySet()) {
+			Boolean available = source.remove(seatId);
+			if (available != null) {
+				delta.put(seatId, available);
+			}
+		}
+		return delta;
+	}
+
+	private static List<SeatAvailability> toAvailability(Map<String, Boolean> delta) {
+		List<SeatAvailability> seats = new ArrayList<>(delta.size());
+		delta.forEach((seatId, available) -> seats.add(new SeatAvailability(seatId, available)));
+		return seats;
+	}
+
+	private String toJson(Object value) {
+		try {
+			return objectMapper.writeValueAsString(value);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Cannot serialize seat availability", e);
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		AtomicLong counter = new AtomicLong(1);
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static final class Subscriber {
+		private final long id;
+		private final SseEmitter emitter;
+		private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+		private final AtomicBoolean sending = new AtomicBoolean();
+
+		Subscriber(long id, SseEmitter emitter) {
+			this.id = id;
+			this.emitter = emitter;
+		}
+	}
+}
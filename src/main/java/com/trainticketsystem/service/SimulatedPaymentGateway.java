@@ -0,0 +1,40 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.User;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for an external payment provider in load tests. Each call pays from the
+ * in-memory wallet like the default gateway, but only answers after a fixed latency,
+ * the way a remote call would. Enabled with app.payment.gateway: simulated.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+	private final WalletPaymentGateway wallet = new WalletPaymentGateway();
+	private final Executor delayed;
+
+	public SimulatedPaymentGateway(AppProperties appProperties) {
+		this(appProperties.getPayment().getSimulatedLatencyMillis());
+	}
+
+	/**
+	 * @param latencyMillis Time each call takes to answer
+	 */
+	public SimulatedPaymentGateway(long latencyMillis) {
+		this.delayed = CompletableFuture.delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> charge(User user, int amount) {
+		return CompletableFuture.supplyAsync(() -> wallet.charge(user, amount).join(), delayed);
+	}
+
+	@Override
+	public CompletableFuture<Void> refund(User user, int amount) {
+		return CompletableFuture.runAsync(() -> wallet.refund(user, amount), delayed);
+	}
+}
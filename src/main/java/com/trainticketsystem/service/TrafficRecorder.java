@@ -0,0 +1,251 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.RecordedRequest;
+import com.trainticketsystem.response.RecordingStatus;
+import com.trainticketsystem.utils.TrafficLogFormat;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records API requests to rolling gzip-compressed logs, so real traffic, hot seats
+ * and bursts included, can be replayed against another build.
+ * Works like {@link BookingExporter}: the request thread only appends the request to
+ * a lock-free queue bounded by a counter and never waits; once the queue is full,
+ * requests are dropped and counted. A single writer thread encodes the requests
+ * (see {@link TrafficLogFormat}) and rolls over to a new log every roll-requests.
+ * Logs are written with a ".part" suffix and renamed once complete.
+ */
+@Service
+@Slf4j
+public class TrafficRecorder {
+
+	private static final DateTimeFormatter FILE_TIME =
+			DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+	private static final String PART_SUFFIX = ".part";
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+	private final AppProperties.Recording config;
+	private final Path directory;
+	private final Queue<RecordedRequest> queue = new ConcurrentLinkedQueue<>();
+	// Requests accepted but not yet written or failed
+	private final AtomicInteger backlog = new AtomicInteger();
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong bodiesOmitted = new AtomicLong();
+	private final AtomicInteger completedFiles = new AtomicInteger();
+	private final Thread writer;
+	private volatile boolean running;
+	private volatile Path currentFile;
+
+	// Owned by the writer thread
+	private DataOutputStream out;
+	private TrafficLogFormat.Writer logWriter;
+	private boolean unflushed;
+	private long flushedAt;
+	private long fileRequests;
+	private int fileSequence;
+
+	public TrafficRecorder(AppProperties appProperties) {
+		this.config = appProperties.getRecording();
+		this.directory = Path.of(config.getDirectory());
+		if (!config.isEnabled()) {
+			this.writer = null;
+			return;
+		}
+		this.running = true;
+		this.writer = new Thread(this::writeLoop, "traffic-recorder-writer");
+		writer.setDaemon(true);
+		writer.start();
+		log.info("Recording API requests to {}", directory.toAbsolutePath());
+	}
+
+	public boolean isEnabled() {
+		return config.isEnabled();
+	}
+
+	/**
+	 * @return Largest request body recorded, in bytes
+	 */
+	public int getMaxBodyBytes() {
+		return config.getMaxBodyBytes();
+	}
+
+	/**
+	 * Queues a completed request for the writer without ever waiting.
+	 *
+	 * @param request Request to record
+	 */
+	public void record(RecordedRequest request) {
+		if (running) {
+			if (backlog.incrementAndGet() <= config.getQueueCapacity()) {
+				queue.offer(request);
+				accepted.incrementAndGet();
+				if (request.isBodyOmitted()) {
+					bodiesOmitted.incrementAndGet();
+				}
+				return;
+			}
+			backlog.decrementAndGet();
+		}
+		dropped.incrementAndGet();
+	}
+
+	/**
+	 * @return Current backlog, counters and file progress of the recording
+	 */
+	public RecordingStatus getStatus() {
+		Path file = currentFile;
+		return RecordingStatus.builder()
+				.enabled(config.isEnabled())
+				.backlog(backlog.get())
+				.capacity(config.getQueueCapacity())
+				.accepted(accepted.get())
+				.dropped(dropped.get())
+				.written(written.get())
+				.failed(failed.get())
+				.bodiesOmitted(bodiesOmitted.get())
+				.completedFiles(completedFiles.get())
+				.currentFile(file != null ? file.getFileName().toString() : null)
+				.build();
+	}
+
+	/**
+	 * Stops accepting requests, then waits for the writer to drain the queue and
+	 * complete the current log.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (writer == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(writer);
+		writer.join(TimeUnit.SECONDS.toMillis(30));
+		if (writer.isAlive()) {
+			log.warn("Request recorder still busy at shutdown with {} requests queued", backlog.get());
+		}
+	}
+
+	private void writeLoop() {
+		long rollRequests = Math.max(1, config.getRollRequests());
+		while (running || backlog.get() > 0) {
+			RecordedRequest request = queue.poll();
+			if (request == null) {
+				if (unflushed && System.currentTimeMillis() - flushedAt >= FLUSH_INTERVAL_MILLIS) {
+					flush();
+				}
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			try {
+				if (out == null) {
+					open();
+				}
+				logWriter.write(request);
+				unflushed = true;
+				written.incrementAndGet();
+				if (++fileRequests >= rollRequests) {
+					complete();
+				}
+			} catch (IOException e) {
+				log.error("Request log write to {} failed: {}", currentFile, e.getMessage());
+				failed.incrementAndGet();
+				abandon();
+			} finally {
+				backlog.decrementAndGet();
+			}
+		}
+		if (out != null) {
+			complete();
+		}
+		log.info("Request recording stopped after writing {} requests to {} files", written.get(), completedFiles.get());
+	}
+
+	private void open() throws IOException {
+		Files.createDirectories(directory);
+		long openedAt = System.currentTimeMillis();
+		String name = "requests-" + FILE_TIME.format(Instant.ofEpochMilli(openedAt))
+				+ String.format("-%06d", ++fileSequence) + TrafficLogFormat.FILE_SUFFIX;
+		Path file = directory.resolve(name + PART_SUFFIX);
+		out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 65536, true)));
+		logWriter = new TrafficLogFormat.Writer(out, openedAt);
+		fileRequests = 0;
+		currentFile = file;
+	}
+
+	/**
+	 * Pushes what is buffered to the file when the queue is empty, at most once a
+	 * second, so a log cut short by a crash still holds all but the last moments.
+	 */
+	private void flush() {
+		unflushed = false;
+		flushedAt = System.currentTimeMillis();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			log.error("Request log flush of {} failed: {}", currentFile, e.getMessage());
+			abandon();
+		}
+	}
+
+	/**
+	 * Ends the current log and renames it to its final name.
+	 */
+	private void complete() {
+		Path file = currentFile;
+		try {
+			logWriter.writeEnd();
+			out.close();
+			String name = file.getFileName().toString();
+			Files.move(file, file.resolveSibling(name.substring(0, name.length() - PART_SUFFIX.length())),
+					StandardCopyOption.ATOMIC_MOVE);
+			completedFiles.incrementAndGet();
+		} catch (IOException e) {
+			log.error("Request recorder could not complete {}: {}", file, e.getMessage());
+		} finally {
+			out = null;
+			logWriter = null;
+			unflushed = false;
+			currentFile = null;
+		}
+	}
+
+	/**
+	 * Gives up on a log after a write error, leaving the partial file for inspection.
+	 */
+	private void abandon() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// Already broken
+			}
+		}
+		out = null;
+		logWriter = null;
+		unflushed = false;
+		currentFile = null;
+	}
+}
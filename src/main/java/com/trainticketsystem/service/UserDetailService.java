@@ -1,6 +1,7 @@
 package com.trainticketsystem.service;
 
 import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
 import com.trainticketsystem.utils.TicketResponseBuilder;
@@ -11,7 +12,7 @@ import java.util.Map;
 
 /**
  * Service for managing user details and operations.
- * Handles user information retrieval and user deletion with seat cleanup.
+ * Handles user information retrieval and user deletion with seat cleanup and refunds.
  */
 @Service
 @Slf4j
@@ -20,26 +21,37 @@ public class UserDetailService {
 	private final Map<Integer, User> userMap;
 	private final TicketResponseBuilder responseBuilder;
 	private final Map<String, Seat> seatMap;
+	private final BookingIndex bookingIndex;
+	private final SeatManager seatManager;
+	private final RefundProcessor refundProcessor;
 
 	public UserDetailService(Map<Integer, User> userMap,
 	                         TicketResponseBuilder responseBuilder,
-	                         Map<String, Seat> seatMap) {
+	                         Map<String, Seat> seatMap,
+	                         BookingIndex bookingIndex,
+	                         SeatManager seatManager,
+	                         RefundProcessor refundProcessor) {
 		this.userMap = userMap;
 		this.responseBuilder = responseBuilder;
 		this.seatMap = seatMap;
+		this.bookingIndex = bookingIndex;
+		this.seatManager = seatManager;
+		this.refundProcessor = refundProcessor;
 	}
 
 	/**
 	 * Retrieves user details including their ticket information.
+	 * Reads a snapshot of the user, so the seat shown matches the ticket checked.
 	 * 
 	 * @param userId ID of the user to retrieve
 	 * @return TicketResponse containing user details or error message
 	 */
 	public TicketResponse getUserDetails(String userId){
-		User user = userMap.get(Integer.valueOf(userId));
+		User stored = userMap.get(Integer.valueOf(userId));
+		User user = stored != null ? stored.snapshot() : null;
 		log.info("User found: {}", user != null);
 
-		if (user == null || user.getTicket() == null) {
+		if (user == null || user.getTickets().isEmpty()) {
 			log.error("User not found or has no ticket for userId: {}", userId);
 			return responseBuilder.sendFailedResponse(null,"User not found");
 		}
@@ -48,24 +60,92 @@ public class UserDetailService {
 	}
 
 	/**
-	 * Deletes a user and releases their seat if they have one.
+	 * Looks up a user by email through the email index.
+	 *
+	 * @param email Email of the user to retrieve
+	 * @return TicketResponse containing user details or error message
+	 */
+	public TicketResponse getUserByEmail(String email) {
+		User user = bookingIndex.findByEmail(email);
+		if (user == null) {
+			log.error("User not found for email: {}", email);
+			return responseBuilder.sendFailedResponse(null, "User not found");
+		}
+		return responseBuilder.sendUserResponse(user.snapshot());
+	}
+
+	/**
+	 * Looks up the user currently holding a seat through the seat index.
+	 *
+	 * @param seatNumber Seat to look up
+	 * @return TicketResponse containing user details or error message
+	 */
+	public TicketResponse getUserBySeat(String seatNumber) {
+		User user = bookingIndex.findBySeat(seatNumber);
+		if (user == null) {
+			log.error("No user holds seat: {}", seatNumber);
+			return responseBuilder.sendFailedResponse(null, "Seat " + seatNumber + " is not booked");
+		}
+		return responseBuilder.sendUserResponse(user.snapshot());
+	}
+
+	/**
+	 * Deletes a user once all their tickets are cancelled, their seats freed and their
+	 * refunds paid. The refunds are paid, as one payment, while the user is still in the
+	 * store, so they reach the stored user and every replica of it. The user is kept if
+	 * any ticket could not be cancelled, if the refunds could not be paid, in which case
+	 * they are queued, or while any refund queued for the user is still outstanding.
 	 * 
 	 * @param userId ID of the user to delete
+	 * @return false if the user was kept because cancelling or refunding did not finish
 	 */
-	public void deleteUser(String userId){
+	public boolean deleteUser(String userId){
 		User user = userMap.get(Integer.valueOf(userId));
 		log.info("User found: {}", user != null);
 		if (user == null) {
 			log.error("User not found or has no ticket for userId: {}", userId);
+			return true;
 		}
-		userMap.remove(Integer.valueOf(userId));
-		// Free up the seat if user had one
-		if (user.getTicket() != null) {
-			Seat seat = seatMap.get(user.getTicket().getSeatNumber());
-			if (seat != null) {
-				seat.setAvailable(true);
-				seat.setReservedBy(null);
+		// Cancel every ticket the user had, freeing its seat; only its canceller refunds it
+		int owed = 0;
+		boolean unfinished = false;
+		for (TicketRecord ticket : user.getTickets().toList()) {
+			Seat seat = seatMap.get(ticket.getSeatNumber());
+			try {
+				boolean cancelled = seat != null
+						? seatManager.cancelTicket(seat, user, ticket, null)
+						: user.removeTicket(ticket);
+				if (cancelled) {
+					bookingIndex.ticketReleased(user, ticket);
+					owed += ticket.getPrice();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.error("Interrupted releasing seat {} for deleted user {}", ticket.getSeatNumber(), userId);
+				unfinished = true;
+				break;
+			} catch (IllegalStateException e) {
+				// Kept with the ticket, so the seat still belongs to someone who can be refunded
+				log.error("Could not release seat {} for deleted user {}: {}", ticket.getSeatNumber(), userId, e.getMessage());
+				unfinished = true;
 			}
 		}
+		// Pending refunds are owed until they are answered, and keep the user below
+		if (refundProcessor.refundNow(user, owed, seatManager.defaultDeadline()) == RefundProcessor.Outcome.FAILED) {
+			log.error("Keeping user {}: refund of {} could not be paid and has been queued", userId, owed);
+			refundProcessor.refund(user, owed);
+			return false;
+		}
+		if (unfinished) {
+			log.error("Keeping user {}: not every ticket could be cancelled", userId);
+			return false;
+		}
+		if (refundProcessor.isOwed(user)) {
+			log.error("Keeping user {}: a queued refund has yet to be paid", userId);
+			return false;
+		}
+		userMap.remove(Integer.valueOf(userId));
+		bookingIndex.userRemoved(user);
+		return true;
 	}
 }
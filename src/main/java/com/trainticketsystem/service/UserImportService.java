@@ -0,0 +1,522 @@
+package com.trainticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.ImportStatus;
+import com.trainticketsystem.store.UserStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads users in bulk from an NDJSON or CSV upload.
+ * The request thread only splits the upload into chunks of lines; a pool of threads
+ * parses and validates the chunks in parallel. Parsed chunks are then settled one at
+ * a time in upload order, each chunk's users added to the user store under one lock
+ * acquisition, so of two rows with the same id or email the earlier one always wins.
+ * Reading waits while the configured number of chunks is in flight, so an import holds
+ * a bounded number of rows in memory however large the upload is.
+ * Every row carries an id, first and last name and email, and optionally a wallet
+ * balance, app.wallet-balance otherwise. A row is rejected if a field is missing or
+ * malformed, or if its id or email is already taken, by an existing user or an
+ * earlier row. Imports are not atomic: rows imported before a failure stay.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+	public static final String NDJSON = "ndjson";
+	public static final String CSV = "csv";
+
+	private static final String ID = "id";
+	private static final String FIRST_NAME = "firstName";
+	private static final String LAST_NAME = "lastName";
+	private static final String EMAIL = "email";
+	private static final String WALLET_BALANCE = "walletBalance";
+	private static final List<String> COLUMNS = List.of(ID, FIRST_NAME, LAST_NAME, EMAIL, WALLET_BALANCE);
+	private static final long PROGRESS_ROWS = 1_000_000;
+
+	private final UserStore userStore;
+	private final BookingIndex bookingIndex;
+	private final int defaultBalance;
+	private final int chunkRows;
+	private final int chunksInFlight;
+	private final int maxReportedErrors;
+	private final ExecutorService parsers;
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	public UserImportService(UserStore userStore, BookingIndex bookingIndex, AppProperties appProperties) {
+		AppProperties.UserImport config = appProperties.getUserImport();
+		this.userStore = userStore;
+		this.bookingIndex = bookingIndex;
+		this.defaultBalance = appProperties.getWalletBalance();
+		this.chunkRows = Math.max(1, config.getChunkRows());
+		this.maxReportedErrors = Math.max(0, config.getMaxReportedErrors());
+		int threads = config.getParallelism() > 0 ? config.getParallelism() : Runtime.getRuntime().availableProcessors();
+		this.chunksInFlight = threads * Math.max(1, config.getChunksPerThread());
+		AtomicInteger counter = new AtomicInteger();
+		this.parsers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "user-import-" + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Imports every row of an upload.
+	 *
+	 * @param body Upload, read to the end
+	 * @param format NDJSON or CSV; a CSV upload starts with a header naming its columns
+	 * @return Rows imported and rejected, with the first rejections
+	 */
+	public ImportStatus importUsers(InputStream body, String format) {
+		Import job = new Import(format);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+		try {
+			int[] columns = null;
+			long lineNumber = 0;
+			List<String> lines = new ArrayList<>(chunkRows);
+			long[] lineNumbers = new long[chunkRows];
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.isBlank()) {
+					continue;
+				}
+				if (CSV.equals(format) && columns == null) {
+					columns = header(line);
+					if (columns == null) {
+						job.reject(lineNumber, "CSV header must name the columns id, firstName, lastName, email and optionally walletBalance");
+						return job.finish(false);
+					}
+					continue;
+				}
+				// Blank lines are skipped, so each row keeps its own line number
+				lineNumbers[lines.size()] = lineNumber;
+				lines.add(line);
+				if (lines.size() == chunkRows) {
+					job.submit(new Chunk(lineNumbers, lines, columns));
+					lines = new ArrayList<>(chunkRows);
+					lineNumbers = new long[chunkRows];
+				}
+			}
+			if (!lines.isEmpty()) {
+				job.submit(new Chunk(lineNumbers, lines, columns));
+			}
+			return job.finish(true);
+		} catch (IOException e) {
+			log.warn("User import stopped reading after {} rows: {}", job.rows.get(), e.getMessage());
+			job.reject(-1, "Upload could not be read to the end: " + e.getMessage());
+			return job.finish(false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return job.finish(false);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		parsers.shutdownNow();
+	}
+
+	/**
+	 * Maps the columns of a CSV header to fields.
+	 *
+	 * @return Field index per column, -1 for ignored columns, or null if a required field is missing
+	 */
+	private static int[] header(String line) {
+		List<String> names = splitCsv(line);
+		if (names == null) {
+			return null;
+		}
+		int[] columns = new int[names.size()];
+		boolean[] present = new boolean[COLUMNS.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = COLUMNS.indexOf(names.get(i).trim());
+			if (columns[i] >= 0) {
+				present[columns[i]] = true;
+			}
+		}
+		for (int field = 0; field < COLUMNS.size() - 1; field++) {
+			if (!present[field]) {
+				return null;
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Splits a CSV line into fields; double-quoted fields may contain commas and
+	 * doubled quotes, but not line breaks.
+	 *
+	 * @return Fields, or null if a quote is not closed
+	 */
+	static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>(COLUMNS.size());
+		int i = 0;
+		int n = line.length();
+		while (true) {
+			if (i < n && line.charAt(i) == '"') {
+				StringBuilder field = new StringBuilder();
+				i++;
+				while (true) {
+					if (i >= n) {
+						return null;
+					}
+					char c = line.charAt(i++);
+					if (c == '"') {
+						if (i < n && line.charAt(i) == '"') {
+							field.append('"');
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						field.append(c);
+					}
+				}
+				fields.add(field.toString());
+				if (i < n && line.charAt(i) != ',') {
+					return null;
+				}
+			} else {
+				int comma = line.indexOf(',', i);
+				int end = comma < 0 ? n : comma;
+				fields.add(line.substring(i, end));
+				i = end;
+			}
+			if (i >= n) {
+				return fields;
+			}
+			// Skip the comma
+			i++;
+		}
+	}
+
+	/**
+	 * Lines of the upload parsed as one unit.
+	 *
+	 * @param lineNumbers Line number of each line in the upload
+	 * @param columns Field index per CSV column, or null for NDJSON
+	 */
+	private record Chunk(long[] lineNumbers, List<String> lines, int[] columns) {
+	}
+
+	/**
+	 * A chunk after parsing: per line, the user it holds or why it was rejected.
+	 */
+	private record Parsed(Chunk chunk, User[] users, String[] errors) {
+	}
+
+	/**
+	 * Counters and in-flight chunks of one upload.
+	 */
+	private final class Import {
+		private final String format;
+		private final long started = System.nanoTime();
+		private final Semaphore inFlight = new Semaphore(chunksInFlight);
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong imported = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong nextProgress = new AtomicLong(PROGRESS_ROWS);
+		private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		// Chunks in upload order: numbered by the reading thread, applied in that order
+		private long submitted;
+		// Guarded by this
+		private final Map<Long, Parsed> waiting = new HashMap<>();
+		private long applied;
+		private boolean applying;
+
+		Import(String format) {
+			this.format = format;
+		}
+
+		void submit(Chunk chunk) throws InterruptedException {
+			inFlight.acquire();
+			long sequence = submitted++;
+			try {
+				parsers.execute(() -> {
+					Parsed parsed;
+					try {
+						parsed = parse(chunk);
+					} catch (RuntimeException e) {
+						log.error("User import chunk at line {} failed", chunk.lineNumbers()[0], e);
+						parsed = failed(chunk, "Chunk failed: " + e.getMessage());
+					}
+					settle(sequence, parsed);
+				});
+			} catch (RuntimeException e) {
+				// Settled here, or the chunks after it would wait for its turn forever
+				settle(sequence, failed(chunk, "Import stopped: " + e.getMessage()));
+				throw e;
+			}
+		}
+
+		/**
+		 * Parses and validates every line of a chunk, touching nothing shared.
+		 */
+		private Parsed parse(Chunk chunk) {
+			List<String> lines = chunk.lines();
+			User[] users = new User[lines.size()];
+			String[] errors = new String[lines.size()];
+			for (int i = 0; i < lines.size(); i++) {
+				try {
+					users[i] = chunk.columns() == null ? parseJson(lines.get(i)) : parseCsv(lines.get(i), chunk.columns());
+				} catch (IllegalArgumentException | IOException e) {
+					errors[i] = e.getMessage();
+				}
+			}
+			return new Parsed(chunk, users, errors);
+		}
+
+		// Every line of the chunk rejected for the same reason
+		private Parsed failed(Chunk chunk, String reason) {
+			String[] errors = new String[chunk.lines().size()];
+			Arrays.fill(errors, reason);
+			return new Parsed(chunk, new User[errors.length], errors);
+		}
+
+		/**
+		 * Hands in a parsed chunk and applies every parsed chunk whose turn has come, in
+		 * upload order. Only one thread applies at a time; the others leave their chunk behind.
+		 */
+		private void settle(long sequence, Parsed parsed) {
+			synchronized (this) {
+				waiting.put(sequence, parsed);
+				if (applying) {
+					return;
+				}
+				applying = true;
+			}
+			while (true) {
+				Parsed next;
+				synchronized (this) {
+					next = waiting.remove(applied);
+					if (next == null) {
+						applying = false;
+						return;
+					}
+					applied++;
+				}
+				try {
+					apply(next);
+				} finally {
+					inFlight.release();
+				}
+			}
+		}
+
+		/**
+		 * Adds the valid users of a parsed chunk and rejects the rest, each line counted once.
+		 */
+		private void apply(Parsed parsed) {
+			long[] lineNumbers = parsed.chunk().lineNumbers();
+			int size = parsed.users().length;
+			List<User> users = new ArrayList<>(size);
+			List<Long> userLines = new ArrayList<>(size);
+			Set<Integer> ids = new HashSet<>();
+			int settled = 0;
+			boolean[] added;
+			try {
+				for (int i = 0; i < size; i++, settled++) {
+					User user = parsed.users()[i];
+					if (user == null) {
+						reject(lineNumbers[i], parsed.errors()[i]);
+						continue;
+					}
+					if (!ids.add(user.getId()) || userStore.containsKey(user.getId().intValue())) {
+						reject(lineNumbers[i], "User " + user.getId() + " already exists");
+						continue;
+					}
+					Integer holder = bookingIndex.claimEmail(user);
+					if (holder != null) {
+						reject(lineNumbers[i], "Email " + user.getEmail() + " already belongs to user " + holder);
+						continue;
+					}
+					users.add(user);
+					userLines.add(lineNumbers[i]);
+				}
+				added = userStore.putAllAbsent(users);
+			} catch (RuntimeException e) {
+				log.error("User import chunk at line {} failed", lineNumbers[0], e);
+				// The lines not yet rejected, including those waiting to be added, which none were
+				users.forEach(bookingIndex::releaseEmail);
+				int unsettled = size - settled + users.size();
+				rejected.addAndGet(unsettled - 1);
+				reject(lineNumbers[0], unsettled + " rows failed: " + e.getMessage());
+				added = new boolean[0];
+			}
+			int count = 0;
+			for (int i = 0; i < added.length; i++) {
+				if (added[i]) {
+					count++;
+				} else {
+					// Taken by another request since the check
+					bookingIndex.releaseEmail(users.get(i));
+					reject(userLines.get(i), "User " + users.get(i).getId() + " already exists");
+				}
+			}
+			imported.addAndGet(count);
+			long total = rows.addAndGet(size);
+			long progress = nextProgress.get();
+			if (total >= progress && nextProgress.compareAndSet(progress, progress + PROGRESS_ROWS)) {
+				log.info("User import: {} rows, {} rows/s", total, rowsPerSecond(total));
+			}
+		}
+
+		private User parseJson(String line) throws IOException {
+			User.UserBuilder user = User.builder().walletBalance(defaultBalance);
+			boolean[] present = new boolean[COLUMNS.size()];
+			try (JsonParser parser = jsonFactory.createParser(line)) {
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					throw new IllegalArgumentException("Not a JSON object");
+				}
+				JsonToken token;
+				while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+					String name = parser.currentName();
+					JsonToken value = parser.nextToken();
+					int field = COLUMNS.indexOf(name);
+					if (field < 0) {
+						parser.skipChildren();
+						continue;
+					}
+					if (value == JsonToken.VALUE_NULL) {
+						continue;
+					}
+					if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+						throw new IllegalArgumentException(name + " must be a number or a string");
+					}
+					set(user, field, parser.getText());
+					present[field] = true;
+				}
+				if (token != JsonToken.END_OBJECT || parser.nextToken() != null) {
+					throw new IllegalArgumentException("Not a single JSON object");
+				}
+			}
+			return validate(user, present);
+		}
+
+		private User parseCsv(String line, int[] columns) {
+			List<String> fields = splitCsv(line);
+			if (fields == null) {
+				throw new IllegalArgumentException("Unclosed quote");
+			}
+			if (fields.size() != columns.length) {
+				throw new IllegalArgumentException("Expected " + columns.length + " columns but found " + fields.size());
+			}
+			User.UserBuilder user = User.builder().walletBalance(defaultBalance);
+			boolean[] present = new boolean[COLUMNS.size()];
+			for (int i = 0; i < columns.length; i++) {
+				String value = fields.get(i);
+				if (columns[i] >= 0 && !value.isEmpty()) {
+					set(user, columns[i], value);
+					present[columns[i]] = true;
+				}
+			}
+			return validate(user, present);
+		}
+
+		private void set(User.UserBuilder user, int field, String value) {
+			switch (COLUMNS.get(field)) {
+				case ID -> user.id(parseInt(ID, value));
+				case FIRST_NAME -> user.firstName(value.trim());
+				case LAST_NAME -> user.lastName(value.trim());
+				case EMAIL -> user.email(value.trim());
+				default -> user.walletBalance(parseInt(WALLET_BALANCE, value));
+			}
+		}
+
+		private static int parseInt(String name, String value) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(name + " is not a whole number: " + value);
+			}
+		}
+
+		private User validate(User.UserBuilder builder, boolean[] present) {
+			for (int field = 0; field < COLUMNS.size() - 1; field++) {
+				if (!present[field]) {
+					throw new IllegalArgumentException(COLUMNS.get(field) + " is missing");
+				}
+			}
+			User user = builder.build();
+			if (user.getId() <= 0) {
+				throw new IllegalArgumentException("id must be positive: " + user.getId());
+			}
+			if (user.getFirstName().isEmpty() || user.getLastName().isEmpty()) {
+				throw new IllegalArgumentException("Names must not be blank");
+			}
+			String email = user.getEmail();
+			int at = email.indexOf('@');
+			if (at <= 0 || at == email.length() - 1 || email.indexOf('@', at + 1) >= 0) {
+				throw new IllegalArgumentException("Invalid email: " + email);
+			}
+			if (user.getWalletBalance() < 0) {
+				throw new IllegalArgumentException("walletBalance must not be negative: " + user.getWalletBalance());
+			}
+			return user;
+		}
+
+		void reject(long lineNumber, String reason) {
+			rejected.incrementAndGet();
+			if (errors.size() < maxReportedErrors) {
+				synchronized (errors) {
+					if (errors.size() < maxReportedErrors) {
+						errors.add(lineNumber > 0 ? "line " + lineNumber + ": " + reason : reason);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Waits for the chunks in flight and reports the import.
+		 */
+		ImportStatus finish(boolean complete) {
+			inFlight.acquireUninterruptibly(chunksInFlight);
+			inFlight.release(chunksInFlight);
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+			ImportStatus status = ImportStatus.builder()
+					.format(format)
+					.complete(complete)
+					.rows(rows.get())
+					.imported(imported.get())
+					.rejected(rejected.get())
+					.millis(millis)
+					.rowsPerSecond(rowsPerSecond(rows.get()))
+					.errors(errors.isEmpty() ? null : List.copyOf(errors))
+					.build();
+			log.info("User import of {} rows finished in {} ms: {} imported, {} rejected",
+					status.getRows(), millis, status.getImported(), status.getRejected());
+			return status;
+		}
+
+		private long rowsPerSecond(long total) {
+			long nanos = Math.max(1, System.nanoTime() - started);
+			return total * TimeUnit.SECONDS.toNanos(1) / nanos;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.model.User;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Default payment gateway, paying from the in-memory wallet of each user.
+ * Every call completes before it returns.
+ */
+public class WalletPaymentGateway implements PaymentGateway {
+
+	@Override
+	public CompletableFuture<Boolean> charge(User user, int amount) {
+		return CompletableFuture.completedFuture(user.deductBalance(amount));
+	}
+
+	@Override
+	public CompletableFuture<Void> refund(User user, int amount) {
+		user.addBalance(amount);
+		return CompletableFuture.completedFuture(null);
+	}
+}
@@ -0,0 +1,364 @@
+package com.trainticketsystem.store;
+
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Seat inventory that builds Seat objects, each with its own lock, only for the
+ * blocks of seats that are actually used.
+ * Seats are grouped in fixed-size blocks per section. A block starts out compact,
+ * as nothing more than the holder id of each seat (no array at all while every seat
+ * is free), and {@link #get(Object)} materializes the whole block on first access.
+ * Once more seats are resident than the budget allows, the least recently used
+ * blocks, kept in a list in order of use, are compacted again: every seat lock in the block is taken without waiting,
+ * the holders are copied out and each instance is retired. A block with a busy seat,
+ * or with a seat held while its payment is outstanding, is left for a later pass. Whoever then locks a retired instance looks the seat up
+ * again and gets the rebuilt one, so exactly one live instance guards each seat.
+ * A seat whose holder is no longer a user when its block is rebuilt comes back free.
+ *
+ * Iterating the map never materializes anything: compact blocks are reported as
+ * retired, detached seats that carry their current state.
+ * The store implements Map so existing services can use it as the seat map.
+ */
+public class SeatStore extends AbstractMap<String, Seat> {
+
+	private final String sections;
+	private final int seatsPerSection;
+	private final int blockSize;
+	private final int blocksPerSection;
+	private final int residentBudget;
+	private final IntFunction<User> users;
+	private final Block[] blocks;
+	private final AtomicInteger residentSeats = new AtomicInteger();
+	// Advances on every materialization; blocks remember the value at their last use
+	private final AtomicLong clock = new AtomicLong();
+	// Sentinel of the resident blocks, from least to most recently used; guarded by itself
+	private final Block lru = new Block(' ', 0, 0);
+	private final AtomicLong materializations = new AtomicLong();
+	private final AtomicLong compactions = new AtomicLong();
+
+	/**
+	 * Creates an inventory of free seats numbered 1 to seatsPerSection in each section.
+	 *
+	 * @param sections Section letters, e.g. "AB"
+	 * @param seatsPerSection Seats in each section
+	 * @param blockSize Seats materialized and compacted together
+	 * @param residentBudget Most seats kept as objects, or 0 for no limit
+	 * @param users Resolves the holder of a compacted seat from its user id
+	 */
+	public SeatStore(String sections, int seatsPerSection, int blockSize, int residentBudget, IntFunction<User> users) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.sections = sections;
+		this.seatsPerSection = seatsPerSection;
+		this.blockSize = blockSize;
+		this.blocksPerSection = (seatsPerSection + blockSize - 1) / blockSize;
+		this.residentBudget = residentBudget > 0 ? Math.max(residentBudget, blockSize) : Integer.MAX_VALUE;
+		this.users = users;
+		this.blocks = new Block[sections.length() * blocksPerSection];
+		lru.previous = lru;
+		lru.next = lru;
+		for (int s = 0; s < sections.length(); s++) {
+			for (int b = 0; b < blocksPerSection; b++) {
+				int first = b * blockSize + 1;
+				blocks[s * blocksPerSection + b] = new Block(sections.charAt(s), first,
+						Math.min(blockSize, seatsPerSection - first + 1));
+			}
+		}
+	}
+
+	/**
+	 * Returns the live instance of a seat, materializing its block if needed.
+	 *
+	 * @param key Seat number such as "A12"
+	 * @return Seat, or null if there is no such seat
+	 */
+	@Override
+	public Seat get(Object key) {
+		int seat = indexOf(key);
+		if (seat < 0) {
+			return null;
+		}
+		Block block = blocks[seat / blockSize];
+		Seat[] seats = block.seats;
+		if (seats == null) {
+			seats = materialize(block);
+		}
+		// A block moves up the list at most once between materializations, keeping reads cheap
+		long now = clock.get();
+		if (block.lastUsed != now) {
+			block.lastUsed = now;
+			synchronized (lru) {
+				if (block.next != null) {
+					unlink(block);
+					linkLast(block);
+				}
+			}
+		}
+		return seats[seat % blockSize];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return sections.length() * seatsPerSection;
+	}
+
+	public int getResidentSeats() {
+		return residentSeats.get();
+	}
+
+	public long getMaterializations() {
+		return materializations.get();
+	}
+
+	public long getCompactions() {
+		return compactions.get();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Seat>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Map.Entry<String, Seat>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return SeatStore.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Walks the seats in section and number order, block by block.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String, Seat>> {
+		private int blockIndex;
+		private Seat[] current = new Seat[0];
+		private int position;
+
+		@Override
+		public boolean hasNext() {
+			while (position == current.length) {
+				if (blockIndex == blocks.length) {
+					return false;
+				}
+				current = view(blocks[blockIndex++]);
+				position = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public Map.Entry<String, Seat> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Seat seat = current[position++];
+			return new SimpleImmutableEntry<>(seat.getId(), seat);
+		}
+	}
+
+	/**
+	 * @return Index of the seat across all blocks, or -1 if the key is not a seat of this store
+	 */
+	private int indexOf(Object key) {
+		if (!(key instanceof String seatId) || seatId.length() < 2 || seatId.length() > 11) {
+			return -1;
+		}
+		int section = sections.indexOf(seatId.charAt(0));
+		if (section < 0) {
+			return -1;
+		}
+		long number = 0;
+		for (int i = 1; i < seatId.length(); i++) {
+			char c = seatId.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = number * 10 + (c - '0');
+		}
+		if (number < 1 || number > seatsPerSection || seatId.charAt(1) == '0') {
+			return -1;
+		}
+		int offset = (int) number - 1;
+		return (section * blocksPerSection + offset / blockSize) * blockSize + offset % blockSize;
+	}
+
+	private Seat[] materialize(Block block) {
+		Seat[] seats;
+		synchronized (block) {
+			seats = block.seats;
+			if (seats != null) {
+				return seats;
+			}
+			seats = build(block, false);
+			block.lastUsed = clock.incrementAndGet();
+			block.seats = seats;
+			block.holders = null;
+			synchronized (lru) {
+				linkLast(block);
+			}
+			residentSeats.addAndGet(block.length);
+			materializations.incrementAndGet();
+		}
+		if (residentSeats.get() > residentBudget) {
+			compactColdBlocks(block);
+		}
+		return seats;
+	}
+
+	/**
+	 * Compacts least recently used blocks until the resident seats fit the budget,
+	 * stopping at the first block that cannot be compacted right now.
+	 */
+	private void compactColdBlocks(Block keep) {
+		while (residentSeats.get() > residentBudget) {
+			Block coldest;
+			synchronized (lru) {
+				coldest = lru.next != keep ? lru.next : keep.next;
+			}
+			if (coldest == lru || !compact(coldest)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return false if a seat of the block was locked or pending, leaving the block resident
+	 */
+	private boolean compact(Block block) {
+		synchronized (block) {
+			Seat[] seats = block.seats;
+			if (seats == null) {
+				return true;
+			}
+			int locked = 0;
+			try {
+				// A lock this thread already holds is busy too, however reentrant
+				while (locked < seats.length && !seats[locked].getLock().isHeldByCurrentThread()
+						&& seats[locked].getLock().tryLock()) {
+					locked++;
+				}
+				if (locked < seats.length) {
+					return false;
+				}
+				// Only the live instance remembers which booking a pending seat is held for
+				for (Seat seat : seats) {
+					if (seat.isPending()) {
+						return false;
+					}
+				}
+				int[] holders = null;
+				for (int i = 0; i < seats.length; i++) {
+					Seat seat = seats[i];
+					if (!seat.isAvailable() && seat.getReservedBy() != null) {
+						if (holders == null) {
+							holders = new int[seats.length];
+						}
+						holders[i] = seat.getReservedBy().getId();
+					}
+					seat.retire();
+				}
+				block.holders = holders;
+				block.seats = null;
+				synchronized (lru) {
+					unlink(block);
+				}
+				residentSeats.addAndGet(-block.length);
+				compactions.incrementAndGet();
+				return true;
+			} finally {
+				for (int i = 0; i < locked; i++) {
+					seats[i].getLock().unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Resident seats of a block, or retired copies of a compact one
+	 */
+	private Seat[] view(Block block) {
+		Seat[] seats = block.seats;
+		if (seats != null) {
+			return seats;
+		}
+		synchronized (block) {
+			return block.seats != null ? block.seats : build(block, true);
+		}
+	}
+
+	// Called while synchronized on the block
+	private Seat[] build(Block block, boolean retired) {
+		Seat[] seats = new Seat[block.length];
+		int[] holders = block.holders;
+		for (int i = 0; i < seats.length; i++) {
+			Seat seat = new Seat(block.section + String.valueOf(block.first + i), true);
+			// A holder removed while the block was compact leaves the seat free
+			User holder = holders != null && holders[i] != 0 ? users.apply(holders[i]) : null;
+			if (holder != null) {
+				seat.setAvailable(false);
+				seat.setReservedBy(holder);
+			}
+			if (retired) {
+				seat.retire();
+			}
+			seats[i] = seat;
+		}
+		return seats;
+	}
+
+	// Called holding the lru lock
+	private void linkLast(Block block) {
+		block.previous = lru.previous;
+		block.next = lru;
+		lru.previous.next = block;
+		lru.previous = block;
+	}
+
+	// Called holding the lru lock
+	private static void unlink(Block block) {
+		block.previous.next = block.next;
+		block.next.previous = block.previous;
+		block.previous = null;
+		block.next = null;
+	}
+
+	private static final class Block {
+		final char section;
+		final int first;
+		final int length;
+		// Live instances, or null while compact
+		volatile Seat[] seats;
+		// Holder user id per seat while compact, zero for free; null if every seat is free
+		int[] holders;
+		volatile long lastUsed;
+		// Neighbours in the list of resident blocks, null while compact; guarded by the lru lock
+		Block previous;
+		Block next;
+
+		Block(char section, int first, int length) {
+			this.section = section;
+			this.first = first;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,875 @@
+package com.trainticketsystem.store;
+
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Compact user store keyed by primitive int ids.
+ * Users are kept as struct-of-arrays rows in fixed-size chunks, indexed by an
+ * open-addressing table, so there is no boxed key, map node or User object per user.
+ * {@link #get(int)} hands out a write-through User view over the row, built only
+ * when a caller actually needs one.
+ *
+ * Rows are never moved, but a removed user's row goes on a free list and is handed
+ * to the next user added. Each time a row is taken it gets a new generation from a
+ * store-wide counter that {@link #clear()} does not reset; the row's version starts
+ * at that generation in its high 32 bits and is bumped on every write, so a user
+ * re-created under the same id never repeats a version an earlier incarnation
+ * handed out. A view remembers the generation it was made for and checks it on
+ * every access, so a view held across a removal never touches the row's next
+ * occupant: it falls back to a detached copy of the user as it was removed.
+ *
+ * The version doubles as a per-row seqlock: it is odd while a write to the row is
+ * in progress. {@link User#snapshot()} on a view copies the row between two even,
+ * equal reads of the version, so it never blocks and never returns a user whose
+ * names, email and tickets come from different writes. Tickets are held as an
+ * immutable {@link TicketList} per row, swapped whole under the seqlock, so a
+ * snapshot costs the same however many tickets the user holds. Balances are outside the
+ * seqlock; they are single atomic values, tagged with the row's generation so a
+ * stale view's update cannot land, and are not part of any read response.
+ * The store implements Map so existing services can use it as the user map.
+ * A change listener, if set, is told the id of every user added, removed or written,
+ * balance changes included, which is how replication finds the users to ship.
+ */
+public class UserStore extends AbstractMap<Integer, User> {
+
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// Index table entries hold row + 1, so zero means an empty bucket
+	private static final int EMPTY = 0;
+	private static final int TOMBSTONE = -1;
+	private static final int MIN_CAPACITY = 16;
+
+	// A free row has version zero; generations start at one
+	private static final long FREE = 0;
+	// Returned by beginWrite when the row no longer holds the view's generation
+	private static final long STALE = -1;
+
+	private final StampedLock lock = new StampedLock();
+	private int[] table;
+	private int used;
+	private int size;
+	private Chunk[] chunks = new Chunk[0];
+	private int rowCount;
+	private int[] freeRows = new int[0];
+	private int freeCount;
+	private long generations;
+	private volatile IntConsumer changeListener;
+
+	public UserStore() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates a store sized for an expected number of users without resizing.
+	 *
+	 * @param expectedUsers Number of users expected to be stored
+	 */
+	public UserStore(int expectedUsers) {
+		this.table = new int[tableSizeFor(expectedUsers)];
+	}
+
+	/**
+	 * Sets the callback told the id of every user added, removed or written through a
+	 * view. It runs on the writing thread once the write is visible, so it must be cheap.
+	 *
+	 * @param listener Callback, or null to stop listening
+	 */
+	public void setChangeListener(IntConsumer listener) {
+		this.changeListener = listener;
+	}
+
+	private void changed(int id) {
+		IntConsumer listener = changeListener;
+		if (listener != null) {
+			listener.accept(id);
+		}
+	}
+
+	/**
+	 * Returns a view of the user with the given id.
+	 *
+	 * @param id User id
+	 * @return User view, or null if no such user exists
+	 */
+	public User get(int id) {
+		long stamp = lock.tryOptimisticRead();
+		int[] t = table;
+		Chunk[] c = chunks;
+		int row = findRow(t, c, id);
+		long version = row < 0 ? FREE : versionAt(c, row);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				row = findRow(table, chunks, id);
+				c = chunks;
+				version = row < 0 ? FREE : versionAt(c, row);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return row < 0 ? null : new UserView(c[row >>> CHUNK_BITS], row & CHUNK_MASK, id, generationOf(version));
+	}
+
+	/**
+	 * Checks whether a user with the given id exists.
+	 *
+	 * @param id User id
+	 * @return true if the user exists
+	 */
+	public boolean containsKey(int id) {
+		long stamp = lock.tryOptimisticRead();
+		int row = findRow(table, chunks, id);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				row = findRow(table, chunks, id);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return row >= 0;
+	}
+
+	/**
+	 * Inserts or overwrites a user, keyed by its own id.
+	 *
+	 * @param user User to store
+	 * @return Previous value for that id, or null
+	 */
+	public User put(User user) {
+		return put(user.getId(), user);
+	}
+
+	/**
+	 * Adds users whose ids are not taken yet, under a single acquisition of the write
+	 * lock, which makes loading many users much cheaper than one put per user.
+	 * Users whose ids already exist are left as they are.
+	 *
+	 * @param users Users to add, keyed by their own ids
+	 * @return Per user, whether it was added
+	 */
+	public boolean[] putAllAbsent(List<User> users) {
+		boolean[] added = new boolean[users.size()];
+		long stamp = lock.writeLock();
+		try {
+			for (int i = 0; i < users.size(); i++) {
+				User user = users.get(i);
+				int id = user.getId();
+				if (findRow(table, chunks, id) >= 0) {
+					continue;
+				}
+				int row = allocateRow(id);
+				Chunk chunk = chunks[row >>> CHUNK_BITS];
+				int offset = row & CHUNK_MASK;
+				// A fresh row is not found by readers until the lock is released, and stale
+				// views of a reused row already see its new generation
+				chunk.firstNames[offset] = user.getFirstName();
+				chunk.lastNames[offset] = user.getLastName();
+				chunk.emails[offset] = user.getEmail();
+				chunk.balances.set(offset, balanceCell(generationOf(chunk.versions.get(offset)), user.getWalletBalance()));
+				chunk.tickets.set(offset, user.getTickets() != null ? user.getTickets() : TicketList.EMPTY);
+				added[i] = true;
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		for (int i = 0; i < added.length; i++) {
+			if (added[i]) {
+				changed(users.get(i).getId());
+			}
+		}
+		return added;
+	}
+
+	@Override
+	public User get(Object key) {
+		return key instanceof Integer id ? get(id.intValue()) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Integer id && containsKey(id.intValue());
+	}
+
+	@Override
+	public User put(Integer key, User value) {
+		if (key == null || value == null) {
+			throw new NullPointerException("UserStore does not accept null keys or values");
+		}
+		int id = key;
+		User previous = null;
+		long stamp = lock.writeLock();
+		try {
+			int row = findRow(table, chunks, id);
+			if (row >= 0) {
+				previous = readRow(chunks[row >>> CHUNK_BITS], row & CHUNK_MASK);
+			} else {
+				row = allocateRow(id);
+			}
+			Chunk chunk = chunks[row >>> CHUNK_BITS];
+			int offset = row & CHUNK_MASK;
+			int generation = generationOf(chunk.versions.get(offset));
+			long version = beginWrite(chunk, offset, generation);
+			chunk.firstNames[offset] = value.getFirstName();
+			chunk.lastNames[offset] = value.getLastName();
+			chunk.emails[offset] = value.getEmail();
+			chunk.balances.set(offset, balanceCell(generation, value.getWalletBalance()));
+			chunk.tickets.set(offset, value.getTickets() != null ? value.getTickets() : TicketList.EMPTY);
+			endWrite(chunk, offset, version);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		changed(id);
+		return previous;
+	}
+
+	@Override
+	public User remove(Object key) {
+		if (!(key instanceof Integer id)) {
+			return null;
+		}
+		User removed = null;
+		long stamp = lock.writeLock();
+		try {
+			int mask = table.length - 1;
+			for (int i = bucket(id, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+				int entry = table[i];
+				if (entry != TOMBSTONE && idAt(chunks, entry - 1) == id) {
+					int row = entry - 1;
+					table[i] = TOMBSTONE;
+					size--;
+					removed = freeRow(row);
+					break;
+				}
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		if (removed != null) {
+			changed(id);
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			table = new int[MIN_CAPACITY];
+			chunks = new Chunk[0];
+			used = 0;
+			size = 0;
+			rowCount = 0;
+			freeRows = new int[0];
+			freeCount = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		int s = size;
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				s = size;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * @return Rows taken so far, live or free; removed rows are reused before new ones are added
+	 */
+	int rowCount() {
+		long stamp = lock.readLock();
+		try {
+			return rowCount;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, User>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Map.Entry<Integer, User>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return UserStore.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over a snapshot of the rows live when iteration started.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<Integer, User>> {
+		private final int[] rows;
+		private final int[] ids;
+		private final int[] rowGenerations;
+		private final Chunk[] snapshot;
+		private int next;
+
+		EntryIterator() {
+			long stamp = lock.readLock();
+			try {
+				int[] live = new int[size];
+				int n = 0;
+				for (int entry : table) {
+					if (entry > 0) {
+						live[n++] = entry - 1;
+					}
+				}
+				Arrays.sort(live, 0, n);
+				// Ids and generations are taken now, as the rows may be reused before they are visited
+				int[] liveIds = new int[n];
+				int[] liveGenerations = new int[n];
+				for (int i = 0; i < n; i++) {
+					liveIds[i] = idAt(chunks, live[i]);
+					liveGenerations[i] = generationOf(versionAt(chunks, live[i]));
+				}
+				this.rows = live;
+				this.ids = liveIds;
+				this.rowGenerations = liveGenerations;
+				this.snapshot = chunks;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < rows.length;
+		}
+
+		@Override
+		public Map.Entry<Integer, User> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int i = next++;
+			int row = rows[i];
+			return new SimpleImmutableEntry<>(ids[i],
+					new UserView(snapshot[row >>> CHUNK_BITS], row & CHUNK_MASK, ids[i], rowGenerations[i]));
+		}
+	}
+
+	/**
+	 * Takes a removed row off the free list, or a new one at the end, and gives it the
+	 * next generation. Must be called with the write lock held.
+	 */
+	private int allocateRow(int id) {
+		int row = freeCount > 0 ? freeRows[--freeCount] : rowCount++;
+		int chunkIndex = row >>> CHUNK_BITS;
+		if (chunkIndex == chunks.length) {
+			Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+			grown[chunkIndex] = new Chunk(this);
+			chunks = grown;
+		}
+		Chunk chunk = chunks[chunkIndex];
+		int offset = row & CHUNK_MASK;
+		chunk.versions.set(offset, ++generations << 32);
+		// Keep the field stores that follow from moving before the new generation
+		VarHandle.releaseFence();
+		chunk.ids[offset] = id;
+
+		if ((used + 1) * 4L > table.length * 3L) {
+			rehash(tableSizeFor(size + 1));
+		}
+		int mask = table.length - 1;
+		int i = bucket(id, mask);
+		while (table[i] > 0) {
+			i = (i + 1) & mask;
+		}
+		if (table[i] == EMPTY) {
+			used++;
+		}
+		table[i] = row + 1;
+		size++;
+		return row;
+	}
+
+	/**
+	 * Frees a row dropped from the index, leaving a detached copy of its user behind
+	 * for views that still refer to it. Must be called with the write lock held.
+	 *
+	 * @return Detached copy of the removed user
+	 */
+	private User freeRow(int row) {
+		Chunk chunk = chunks[row >>> CHUNK_BITS];
+		int offset = row & CHUNK_MASK;
+		long version = beginWrite(chunk, offset, generationOf(chunk.versions.get(offset)));
+		User departed = User.builder()
+				.id(chunk.ids[offset])
+				.firstName(chunk.firstNames[offset])
+				.lastName(chunk.lastNames[offset])
+				.email(chunk.emails[offset])
+				.tickets(chunk.tickets.get(offset))
+				.version(version)
+				.build();
+		// Published before the balance moves, so a view that finds its balance gone finds this copy
+		chunk.departed.set(offset, departed);
+		int balance = (int) chunk.balances.getAndSet(offset, FREE);
+		synchronized (departed) {
+			departed.addBalance(balance);
+		}
+		chunk.versions.set(offset, FREE);
+		VarHandle.releaseFence();
+		chunk.firstNames[offset] = null;
+		chunk.lastNames[offset] = null;
+		chunk.emails[offset] = null;
+		chunk.tickets.set(offset, TicketList.EMPTY);
+
+		if (freeCount == freeRows.length) {
+			freeRows = Arrays.copyOf(freeRows, Math.max(16, freeCount * 2));
+		}
+		freeRows[freeCount++] = row;
+		return departed;
+	}
+
+	// Must be called with the write lock held; drops tombstones
+	private void rehash(int capacity) {
+		int[] rebuilt = new int[capacity];
+		int mask = capacity - 1;
+		for (int entry : table) {
+			if (entry > 0) {
+				int i = bucket(idAt(chunks, entry - 1), mask);
+				while (rebuilt[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				rebuilt[i] = entry;
+			}
+		}
+		table = rebuilt;
+		used = size;
+	}
+
+	/**
+	 * Probes for the row holding an id. Tolerates a torn view of table and
+	 * chunks during an optimistic read; the caller validates afterwards.
+	 */
+	private static int findRow(int[] t, Chunk[] c, int id) {
+		int mask = t.length - 1;
+		for (int i = bucket(id, mask), probes = 0; probes < t.length; i = (i + 1) & mask, probes++) {
+			int entry = t[i];
+			if (entry == EMPTY) {
+				return -1;
+			}
+			if (entry != TOMBSTONE) {
+				int row = entry - 1;
+				int chunkIndex = row >>> CHUNK_BITS;
+				if (chunkIndex < c.length && c[chunkIndex] != null && c[chunkIndex].ids[row & CHUNK_MASK] == id) {
+					return row;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static int idAt(Chunk[] c, int row) {
+		return c[row >>> CHUNK_BITS].ids[row & CHUNK_MASK];
+	}
+
+	private static long versionAt(Chunk[] c, int row) {
+		return c[row >>> CHUNK_BITS].versions.get(row & CHUNK_MASK);
+	}
+
+	private static int generationOf(long versionOrBalance) {
+		return (int) (versionOrBalance >>> 32);
+	}
+
+	/**
+	 * Packs a balance with the generation of the row holding it, so a compare-and-set
+	 * made for one occupant of a row fails once the row has another.
+	 */
+	private static long balanceCell(int generation, int balance) {
+		return (long) generation << 32 | (balance & 0xFFFFFFFFL);
+	}
+
+	private static int bucket(int id, int mask) {
+		int h = id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private static int tableSizeFor(int expected) {
+		long needed = Math.max(MIN_CAPACITY, expected * 4L / 3 + 1);
+		return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+	}
+
+	/**
+	 * Copies a row into a detached User, retrying until no write overlapped the copy.
+	 */
+	private static User readRow(Chunk chunk, int offset) {
+		while (true) {
+			long version = chunk.versions.get(offset);
+			if ((version & 1) == 0) {
+				String firstName = chunk.firstNames[offset];
+				String lastName = chunk.lastNames[offset];
+				String email = chunk.emails[offset];
+				TicketList tickets = chunk.tickets.get(offset);
+				int balance = (int) chunk.balances.get(offset);
+				// Keep the plain field loads above from moving past the validating read
+				VarHandle.acquireFence();
+				if (chunk.versions.get(offset) == version) {
+					return User.builder()
+							.id(chunk.ids[offset])
+							.firstName(firstName)
+							.lastName(lastName)
+							.email(email)
+							.walletBalance(balance)
+							.tickets(tickets)
+							.version(version)
+							.build();
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Marks a row as being written by moving its version to odd. Writers of the
+	 * same row wait for each other here; readers never wait for writers.
+	 *
+	 * @param generation Generation the writer expects the row to hold
+	 * @return Version the row had before the write, or STALE if the row has been
+	 *         removed or reused since
+	 */
+	private static long beginWrite(Chunk chunk, int offset, int generation) {
+		while (true) {
+			long version = chunk.versions.get(offset);
+			if (generationOf(version) != generation) {
+				return STALE;
+			}
+			if ((version & 1) == 0 && chunk.versions.compareAndSet(offset, version, version + 1)) {
+				// Keep the field stores that follow from moving before the odd version
+				VarHandle.releaseFence();
+				return version;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	private static void endWrite(Chunk chunk, int offset, long version) {
+		chunk.versions.set(offset, version + 2);
+	}
+
+	/**
+	 * One chunk of rows laid out as parallel arrays.
+	 */
+	private static final class Chunk {
+		final UserStore owner;
+		final int[] ids = new int[CHUNK_SIZE];
+		final String[] firstNames = new String[CHUNK_SIZE];
+		final String[] lastNames = new String[CHUNK_SIZE];
+		final String[] emails = new String[CHUNK_SIZE];
+		// Balance in the low 32 bits, the row's generation in the high 32 bits
+		final AtomicLongArray balances = new AtomicLongArray(CHUNK_SIZE);
+		final AtomicReferenceArray<TicketList> tickets = new AtomicReferenceArray<>(CHUNK_SIZE);
+		final AtomicLongArray versions = new AtomicLongArray(CHUNK_SIZE);
+		// Last user removed from each row, as it was when removed
+		final AtomicReferenceArray<User> departed = new AtomicReferenceArray<>(CHUNK_SIZE);
+
+		Chunk(UserStore owner) {
+			this.owner = owner;
+		}
+	}
+
+	/**
+	 * Write-through User over a single row. Balance changes are atomic;
+	 * ticket changes replace the row's ticket list under the seqlock, so
+	 * concurrent changes to the same user's tickets are never lost.
+	 * Getters read single fields live; use {@link #snapshot()} for a consistent
+	 * view of several fields. Once the row no longer holds the view's generation,
+	 * every call goes to the detached copy of the user left behind by its removal.
+	 */
+	private static final class UserView extends User {
+		private final Chunk chunk;
+		private final int offset;
+		private final int id;
+		private final int generation;
+		private User detached;
+
+		UserView(Chunk chunk, int offset, int id, int generation) {
+			this.chunk = chunk;
+			this.offset = offset;
+			this.id = id;
+			this.generation = generation;
+		}
+
+		/**
+		 * Checks, after a field has been read, that the row still held this view's user.
+		 */
+		private boolean live() {
+			// Keep the plain field load before from moving past the generation check
+			VarHandle.acquireFence();
+			return generationOf(chunk.versions.get(offset)) == generation;
+		}
+
+		/**
+		 * @return The user as it was removed, or a bare user with this id if the row
+		 *         has since been freed again and that copy replaced
+		 */
+		private synchronized User departed() {
+			if (detached == null) {
+				User last = chunk.departed.get(offset);
+				detached = last != null && generationOf(last.getVersion()) == generation
+						? last
+						: User.builder().id(id).build();
+			}
+			return detached;
+		}
+
+		@Override
+		public Integer getId() {
+			return id;
+		}
+
+		@Override
+		public void setId(Integer id) {
+			throw new UnsupportedOperationException("User id is the store key");
+		}
+
+		@Override
+		public String getFirstName() {
+			String firstName = chunk.firstNames[offset];
+			return live() ? firstName : departed().getFirstName();
+		}
+
+		@Override
+		public void setFirstName(String firstName) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					user.setFirstName(firstName);
+				}
+				return;
+			}
+			chunk.firstNames[offset] = firstName;
+			endWrite(chunk, offset, version);
+			changed();
+		}
+
+		@Override
+		public String getLastName() {
+			String lastName = chunk.lastNames[offset];
+			return live() ? lastName : departed().getLastName();
+		}
+
+		@Override
+		public void setLastName(String lastName) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					user.setLastName(lastName);
+				}
+				return;
+			}
+			chunk.lastNames[offset] = lastName;
+			endWrite(chunk, offset, version);
+			changed();
+		}
+
+		@Override
+		public String getEmail() {
+			String email = chunk.emails[offset];
+			return live() ? email : departed().getEmail();
+		}
+
+		@Override
+		public void setEmail(String email) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					user.setEmail(email);
+				}
+				return;
+			}
+			chunk.emails[offset] = email;
+			endWrite(chunk, offset, version);
+			changed();
+		}
+
+		@Override
+		public int getWalletBalance() {
+			long cell = chunk.balances.get(offset);
+			return generationOf(cell) == generation ? (int) cell : departed().getWalletBalance();
+		}
+
+		@Override
+		public void setWalletBalance(int walletBalance) {
+			long cell;
+			do {
+				cell = chunk.balances.get(offset);
+				if (generationOf(cell) != generation) {
+					User user = departed();
+					synchronized (user) {
+						user.setWalletBalance(walletBalance);
+					}
+					return;
+				}
+			} while (!chunk.balances.compareAndSet(offset, cell, balanceCell(generation, walletBalance)));
+			changed();
+		}
+
+		@Override
+		public TicketList getTickets() {
+			TicketList tickets = chunk.tickets.get(offset);
+			return live() ? tickets : departed().getTickets();
+		}
+
+		@Override
+		public void setTickets(TicketList tickets) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					user.setTickets(tickets);
+				}
+				return;
+			}
+			chunk.tickets.set(offset, tickets != null ? tickets : TicketList.EMPTY);
+			endWrite(chunk, offset, version);
+			changed();
+		}
+
+		@Override
+		public void replaceTicket(TicketRecord previous, TicketRecord ticket) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					user.replaceTicket(previous, ticket);
+				}
+				return;
+			}
+			try {
+				TicketList tickets = chunk.tickets.get(offset);
+				TicketList updated = previous != null ? tickets.without(previous.getId()) : tickets;
+				chunk.tickets.set(offset, ticket != null ? updated.with(ticket) : updated);
+			} finally {
+				endWrite(chunk, offset, version);
+			}
+			changed();
+		}
+
+		@Override
+		public boolean removeTicket(TicketRecord ticket) {
+			long version = beginWrite(chunk, offset, generation);
+			if (version == STALE) {
+				User user = departed();
+				synchronized (user) {
+					return user.removeTicket(ticket);
+				}
+			}
+			boolean removed;
+			try {
+				TicketList tickets = chunk.tickets.get(offset);
+				TicketList updated = tickets.without(ticket.getId());
+				chunk.tickets.set(offset, updated);
+				removed = updated != tickets;
+			} finally {
+				endWrite(chunk, offset, version);
+			}
+			if (removed) {
+				changed();
+			}
+			return removed;
+		}
+
+		/**
+		 * Version of the last completed write. During a write this still reports
+		 * the previous version, so a tag read now can only be stale, never ahead.
+		 */
+		@Override
+		public long getVersion() {
+			long version = chunk.versions.get(offset);
+			return generationOf(version) == generation ? version & ~1L : departed().getVersion();
+		}
+
+		@Override
+		public User snapshot() {
+			User row = readRow(chunk, offset);
+			if (generationOf(row.getVersion()) == generation) {
+				return row;
+			}
+			User user = departed();
+			synchronized (user) {
+				return user.snapshot();
+			}
+		}
+
+		@Override
+		public void setVersion(long version) {
+			throw new UnsupportedOperationException("Version is maintained by the store");
+		}
+
+		@Override
+		public boolean deductBalance(int amount) {
+			long cell;
+			do {
+				cell = chunk.balances.get(offset);
+				if (generationOf(cell) != generation) {
+					User user = departed();
+					synchronized (user) {
+						return user.deductBalance(amount);
+					}
+				}
+				if ((int) cell < amount) {
+					return false;
+				}
+			} while (!chunk.balances.compareAndSet(offset, cell, balanceCell(generation, (int) cell - amount)));
+			changed();
+			return true;
+		}
+
+		@Override
+		public void addBalance(int amount) {
+			long cell;
+			do {
+				cell = chunk.balances.get(offset);
+				if (generationOf(cell) != generation) {
+					User user = departed();
+					synchronized (user) {
+						user.addBalance(amount);
+					}
+					return;
+				}
+			} while (!chunk.balances.compareAndSet(offset, cell, balanceCell(generation, (int) cell + amount)));
+			changed();
+		}
+
+		private void changed() {
+			chunk.owner.changed(id);
+		}
+	}
+}
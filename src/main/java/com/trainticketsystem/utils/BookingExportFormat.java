@@ -0,0 +1,149 @@
+package com.trainticketsystem.utils;
+
+import com.trainticketsystem.model.BookingEvent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Columnar layout of booking export files.
+ * A file is one gzip stream holding a header and a sequence of blocks. Each block
+ * stores its row count followed by one column at a time: type, timestamp, ticket id,
+ * user id, seat, previous seat, journey and price. Timestamps and ticket ids are
+ * stored as deltas from the previous row, so the mostly-zero high bytes compress away.
+ * A block with zero rows marks the end of a complete file.
+ *
+ * <pre>
+ * int   magic, int version
+ * block: int rows, byte[rows] type, long[rows] timestamp delta, long[rows] ticket id delta,
+ *        int[rows] user id, int[rows] seat code, int[rows] previous seat code,
+ *        int[rows] journey id, int[rows] price
+ * int   0
+ * </pre>
+ */
+public final class BookingExportFormat {
+
+	public static final int MAGIC = 0x424B4558;
+	public static final int VERSION = 1;
+	public static final String FILE_SUFFIX = ".col.gz";
+
+	private static final BookingEvent.Type[] TYPES = BookingEvent.Type.values();
+
+	private BookingExportFormat() {
+	}
+
+	public static void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * Writes rows {@code from} (inclusive) to {@code to} (exclusive) of a batch as one block.
+	 *
+	 * @param out Stream positioned after the header or a previous block
+	 * @param events Batch of events
+	 * @param from First row of the block
+	 * @param to End of the block
+	 */
+	public static void writeBlock(DataOutputStream out, List<BookingEvent> events, int from, int to) throws IOException {
+		out.writeInt(to - from);
+		for (int i = from; i < to; i++) {
+			out.writeByte(events.get(i).getType().ordinal());
+		}
+		long previous = 0;
+		for (int i = from; i < to; i++) {
+			long timestamp = events.get(i).getTimestamp();
+			out.writeLong(timestamp - previous);
+			previous = timestamp;
+		}
+		previous = 0;
+		for (int i = from; i < to; i++) {
+			long ticketId = events.get(i).getTicketId();
+			out.writeLong(ticketId - previous);
+			previous = ticketId;
+		}
+		for (int i = from; i < to; i++) {
+			out.writeInt(events.get(i).getUserId());
+		}
+		for (int i = from; i < to; i++) {
+			out.writeInt(events.get(i).getSeatCode());
+		}
+		for (int i = from; i < to; i++) {
+			out.writeInt(events.get(i).getPreviousSeatCode());
+		}
+		for (int i = from; i < to; i++) {
+			out.writeInt(events.get(i).getJourneyId());
+		}
+		for (int i = from; i < to; i++) {
+			out.writeInt(events.get(i).getPrice());
+		}
+	}
+
+	public static void writeEnd(DataOutputStream out) throws IOException {
+		out.writeInt(0);
+	}
+
+	/**
+	 * Reads every event of a completed export file, in the order written.
+	 *
+	 * @param file Export file
+	 * @return Events in the file
+	 * @throws IOException if the file cannot be read or is not a complete export file
+	 */
+	public static List<BookingEvent> read(Path file) throws IOException {
+		try (InputStream stream = Files.newInputStream(file);
+		     DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a booking export file: " + file);
+			}
+			List<BookingEvent> events = new ArrayList<>();
+			int rows;
+			while ((rows = in.readInt()) > 0) {
+				readBlock(in, rows, events);
+			}
+			return events;
+		}
+	}
+
+	private static void readBlock(DataInputStream in, int rows, List<BookingEvent> events) throws IOException {
+		byte[] types = new byte[rows];
+		in.readFully(types);
+		long[] timestamps = readDeltas(in, rows);
+		long[] ticketIds = readDeltas(in, rows);
+		int[] userIds = readInts(in, rows);
+		int[] seatCodes = readInts(in, rows);
+		int[] previousSeatCodes = readInts(in, rows);
+		int[] journeyIds = readInts(in, rows);
+		int[] prices = readInts(in, rows);
+		for (int i = 0; i < rows; i++) {
+			events.add(new BookingEvent(TYPES[types[i]], timestamps[i], ticketIds[i], userIds[i], seatCodes[i],
+					previousSeatCodes[i], journeyIds[i], prices[i]));
+		}
+	}
+
+	private static long[] readDeltas(DataInputStream in, int rows) throws IOException {
+		long[] values = new long[rows];
+		long previous = 0;
+		for (int i = 0; i < rows; i++) {
+			previous += in.readLong();
+			values[i] = previous;
+		}
+		return values;
+	}
+
+	private static int[] readInts(DataInputStream in, int rows) throws IOException {
+		int[] values = new int[rows];
+		for (int i = 0; i < rows; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,43 @@
+package com.trainticketsystem.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time after which nobody is waiting for a request any more.
+ * Created once at the edge and passed down the booking pipeline, so every stage
+ * waits at most for what is left of the caller's budget rather than a fixed timeout.
+ */
+public final class Deadline {
+
+	private final long expiresAtNanos;
+
+	private Deadline(long expiresAtNanos) {
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	/**
+	 * Creates a deadline relative to now.
+	 *
+	 * @param millis Budget in milliseconds; zero or less is already expired
+	 * @return Deadline that expires after the budget
+	 */
+	public static Deadline after(long millis) {
+		return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)));
+	}
+
+	public boolean isExpired() {
+		return expiresAtNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @return Nanoseconds left before the deadline, never negative
+	 */
+	public long remainingNanos() {
+		return Math.max(0, expiresAtNanos - System.nanoTime());
+	}
+
+	@Override
+	public String toString() {
+		return "Deadline{remainingMillis=" + TimeUnit.NANOSECONDS.toMillis(remainingNanos()) + '}';
+	}
+}
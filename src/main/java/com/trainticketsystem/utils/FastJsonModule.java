@@ -0,0 +1,183 @@
+package com.trainticketsystem.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.trainticketsystem.model.Journey;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Hand-written Jackson serializers for the objects nearly every endpoint returns:
+ * {@link TicketResponse}, {@link Ticket}, {@link User} and {@link Seat}.
+ * They write the same JSON as the annotated bean serializers, property for property
+ * and in the same order, but call the getters directly instead of through bean
+ * property reflection, skip null fields with a plain check instead of a per-property
+ * inclusion filter, write pre-encoded field names, and read a user's ticket list and
+ * a ticket's journey once instead of once per derived field.
+ * Subclasses, such as the views of a user store, are written by the serializer of
+ * their base class.
+ */
+public class FastJsonModule extends SimpleModule {
+
+	private static final SerializedString TRANSACTION_STATUS = new SerializedString("transactionStatus");
+	private static final SerializedString MESSAGE = new SerializedString("message");
+	private static final SerializedString TICKET = new SerializedString("ticket");
+	private static final SerializedString TICKETS = new SerializedString("tickets");
+	private static final SerializedString TOTAL_TICKETS = new SerializedString("totalTickets");
+	private static final SerializedString USER = new SerializedString("user");
+	private static final SerializedString ID = new SerializedString("id");
+	private static final SerializedString FROM_LOCATION = new SerializedString("fromLocation");
+	private static final SerializedString TO_LOCATION = new SerializedString("toLocation");
+	private static final SerializedString PRICE = new SerializedString("price");
+	private static final SerializedString SEAT_NUMBER = new SerializedString("seatNumber");
+	private static final SerializedString SECTION = new SerializedString("section");
+	private static final SerializedString USER_FIRST_NAME = new SerializedString("userFirstName");
+	private static final SerializedString USER_LAST_NAME = new SerializedString("userLastName");
+	private static final SerializedString USER_EMAIL = new SerializedString("userEmail");
+	private static final SerializedString FIRST_NAME = new SerializedString("firstName");
+	private static final SerializedString LAST_NAME = new SerializedString("lastName");
+	private static final SerializedString EMAIL = new SerializedString("email");
+	private static final SerializedString TICKET_COUNT = new SerializedString("ticketCount");
+	private static final SerializedString RESERVED_BY = new SerializedString("reservedBy");
+	private static final SerializedString AVAILABLE = new SerializedString("available");
+
+	public FastJsonModule() {
+		super("FastJsonModule");
+		addSerializer(TicketResponse.class, new TicketResponseSerializer());
+		addSerializer(Ticket.class, new TicketSerializer());
+		addSerializer(User.class, new UserSerializer());
+		addSerializer(Seat.class, new SeatSerializer());
+	}
+
+	private static void writeString(JsonGenerator gen, SerializedString name, String value) throws IOException {
+		if (value != null) {
+			gen.writeFieldName(name);
+			gen.writeString(value);
+		}
+	}
+
+	private static void writeTicket(JsonGenerator gen, Ticket ticket) throws IOException {
+		TicketRecord record = ticket.getRecord();
+		Journey journey = record.getJourney();
+		gen.writeStartObject(ticket);
+		gen.writeFieldName(ID);
+		gen.writeNumber(record.getId());
+		writeString(gen, FROM_LOCATION, journey.getFromLocation());
+		writeString(gen, TO_LOCATION, journey.getToLocation());
+		gen.writeFieldName(PRICE);
+		gen.writeNumber(record.getPrice());
+		writeString(gen, SEAT_NUMBER, record.getSeatNumber());
+		writeString(gen, SECTION, record.getSection());
+		writeString(gen, USER_FIRST_NAME, ticket.getUserFirstName());
+		writeString(gen, USER_LAST_NAME, ticket.getUserLastName());
+		writeString(gen, USER_EMAIL, ticket.getUserEmail());
+		gen.writeEndObject();
+	}
+
+	private static void writeUser(JsonGenerator gen, User user) throws IOException {
+		TicketList tickets = user.getTickets();
+		TicketRecord latest = tickets.latest();
+		gen.writeStartObject(user);
+		writeString(gen, FIRST_NAME, user.getFirstName());
+		writeString(gen, LAST_NAME, user.getLastName());
+		writeString(gen, EMAIL, user.getEmail());
+		if (latest != null) {
+			writeString(gen, SEAT_NUMBER, latest.getSeatNumber());
+		}
+		gen.writeFieldName(TICKET_COUNT);
+		gen.writeNumber(tickets.size());
+		gen.writeEndObject();
+	}
+
+	static final class TicketResponseSerializer extends StdSerializer<TicketResponse> {
+		TicketResponseSerializer() {
+			super(TicketResponse.class);
+		}
+
+		@Override
+		public void serialize(TicketResponse response, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject(response);
+			gen.writeFieldName(TRANSACTION_STATUS);
+			gen.writeBoolean(response.isTransactionStatus());
+			writeString(gen, MESSAGE, response.getMessage());
+			if (response.getTicket() != null) {
+				gen.writeFieldName(TICKET);
+				writeTicket(gen, response.getTicket());
+			}
+			List<Ticket> tickets = response.getTickets();
+			if (tickets != null) {
+				gen.writeFieldName(TICKETS);
+				gen.writeStartArray(tickets, tickets.size());
+				for (Ticket ticket : tickets) {
+					if (ticket == null) {
+						gen.writeNull();
+					} else {
+						writeTicket(gen, ticket);
+					}
+				}
+				gen.writeEndArray();
+			}
+			if (response.getTotalTickets() != null) {
+				gen.writeFieldName(TOTAL_TICKETS);
+				gen.writeNumber(response.getTotalTickets());
+			}
+			if (response.getUser() != null) {
+				gen.writeFieldName(USER);
+				writeUser(gen, response.getUser());
+			}
+			gen.writeEndObject();
+		}
+	}
+
+	static final class TicketSerializer extends StdSerializer<Ticket> {
+		TicketSerializer() {
+			super(Ticket.class);
+		}
+
+		@Override
+		public void serialize(Ticket ticket, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			writeTicket(gen, ticket);
+		}
+	}
+
+	static final class UserSerializer extends StdSerializer<User> {
+		UserSerializer() {
+			super(User.class);
+		}
+
+		@Override
+		public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			writeUser(gen, user);
+		}
+	}
+
+	static final class SeatSerializer extends StdSerializer<Seat> {
+		SeatSerializer() {
+			super(Seat.class);
+		}
+
+		@Override
+		public void serialize(Seat seat, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			User holder = seat.getReservedBy();
+			gen.writeStartObject(seat);
+			writeString(gen, ID, seat.getId());
+			if (holder != null) {
+				gen.writeFieldName(RESERVED_BY);
+				writeUser(gen, holder);
+			}
+			gen.writeFieldName(AVAILABLE);
+			gen.writeBoolean(seat.isAvailable());
+			gen.writeEndObject();
+		}
+	}
+}
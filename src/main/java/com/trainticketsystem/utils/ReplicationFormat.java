@@ -0,0 +1,179 @@
+package com.trainticketsystem.utils;
+
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of primary to standby replication.
+ * The primary ships whole user rows rather than the operations that changed them:
+ * each frame carries the current state of every user changed since the previous
+ * frame, so a standby that applies frames in order ends up with the primary's state
+ * however the changes interleaved. A snapshot frame carries every user, and users
+ * missing from it are removed. The standby answers each frame with its number
+ * once the frame is applied.
+ *
+ * <pre>
+ * primary:  int magic, int version
+ * frame:    byte kind (1 snapshot, 2 changes), long frame number, long millis the rows were read at,
+ *           records, byte 0
+ * record:   byte 1, int id, string first name, string last name, string email, int balance,
+ *           int tickets, tickets * (long id, int seat code, int journey id, int price)
+ *         | byte 2, int id                                  (user removed)
+ * string:   boolean present, UTF if present
+ * standby:  long frame number, per frame applied
+ * </pre>
+ */
+public final class ReplicationFormat {
+
+	public static final int MAGIC = 0x52504C43;
+	public static final int VERSION = 1;
+	public static final byte SNAPSHOT = 1;
+	public static final byte CHANGES = 2;
+
+	private static final byte END = 0;
+	private static final byte USER = 1;
+	private static final byte REMOVED = 2;
+
+	private ReplicationFormat() {
+	}
+
+	public static void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * @throws IOException if the stream does not start with a supported header
+	 */
+	public static void readHeader(DataInputStream in) throws IOException {
+		int magic = in.readInt();
+		int version = in.readInt();
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("Not a replication stream of version " + VERSION
+					+ ": magic " + Integer.toHexString(magic) + ", version " + version);
+		}
+	}
+
+	public static void writeFrameStart(DataOutputStream out, byte kind, long frame, long readAtMillis) throws IOException {
+		out.writeByte(kind);
+		out.writeLong(frame);
+		out.writeLong(readAtMillis);
+	}
+
+	/**
+	 * @return Header of the next frame
+	 */
+	public static Frame readFrameStart(DataInputStream in) throws IOException {
+		byte kind = in.readByte();
+		if (kind != SNAPSHOT && kind != CHANGES) {
+			throw new IOException("Unknown replication frame " + kind);
+		}
+		return new Frame(kind, in.readLong(), in.readLong());
+	}
+
+	public static void writeFrameEnd(DataOutputStream out) throws IOException {
+		out.writeByte(END);
+	}
+
+	/**
+	 * Writes the state of one user.
+	 *
+	 * @param id User id
+	 * @param user Consistent copy of the user, or null if the user no longer exists
+	 */
+	public static void writeUser(DataOutputStream out, int id, User user) throws IOException {
+		if (user == null) {
+			out.writeByte(REMOVED);
+			out.writeInt(id);
+			return;
+		}
+		out.writeByte(USER);
+		out.writeInt(id);
+		writeString(out, user.getFirstName());
+		writeString(out, user.getLastName());
+		writeString(out, user.getEmail());
+		out.writeInt(user.getWalletBalance());
+		TicketList tickets = user.getTickets();
+		out.writeInt(tickets.size());
+		for (int i = 0; i < tickets.size(); i++) {
+			TicketRecord ticket = tickets.get(i);
+			out.writeLong(ticket.getId());
+			out.writeInt(ticket.getSeatCode());
+			out.writeInt(ticket.getJourneyId());
+			out.writeInt(ticket.getPrice());
+		}
+	}
+
+	/**
+	 * Reads the next record of a frame.
+	 *
+	 * @return Record read, or null at the end of the frame
+	 */
+	public static Record readRecord(DataInputStream in) throws IOException {
+		byte kind = in.readByte();
+		if (kind == END) {
+			return null;
+		}
+		int id = in.readInt();
+		if (kind == REMOVED) {
+			return new Record(id, null);
+		}
+		if (kind != USER) {
+			throw new IOException("Unknown replication record " + kind);
+		}
+		String firstName = readString(in);
+		String lastName = readString(in);
+		String email = readString(in);
+		int balance = in.readInt();
+		int count = in.readInt();
+		List<TicketRecord> tickets = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			tickets.add(new TicketRecord(in.readLong(), id, in.readInt(), in.readInt(), in.readInt()));
+		}
+		return new Record(id, User.builder()
+				.id(id)
+				.firstName(firstName)
+				.lastName(lastName)
+				.email(email)
+				.walletBalance(balance)
+				.tickets(TicketList.copyOf(tickets))
+				.build());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Header of one frame.
+	 *
+	 * @param kind SNAPSHOT or CHANGES
+	 * @param number Frame number within the connection, from 1
+	 * @param readAtMillis Wall-clock time the primary read the frame's rows at
+	 */
+	public record Frame(byte kind, long number, long readAtMillis) {
+	}
+
+	/**
+	 * State of one user as shipped by the primary.
+	 *
+	 * @param id User id
+	 * @param user User as it is on the primary, or null if it was removed
+	 */
+	public record Record(int id, User user) {
+	}
+}
@@ -0,0 +1,60 @@
+package com.trainticketsystem.utils;
+
+/**
+ * Encodes seat numbers such as "A12" as a single int: the section letter in
+ * the top byte and the seat number in the low 24 bits.
+ * Section strings are shared, so decoding a section never allocates.
+ */
+public final class SeatCodes {
+
+	private static final int NUMBER_BITS = 24;
+	private static final int NUMBER_MASK = (1 << NUMBER_BITS) - 1;
+	private static final String[] SECTIONS = new String[128];
+
+	static {
+		for (char c = 'A'; c <= 'Z'; c++) {
+			SECTIONS[c] = String.valueOf(c).intern();
+		}
+	}
+
+	private SeatCodes() {
+	}
+
+	/**
+	 * Encodes a seat number.
+	 *
+	 * @param seatNumber Seat number, a section letter followed by digits
+	 * @return Encoded seat code
+	 * @throws IllegalArgumentException if the seat number is malformed
+	 */
+	public static int encode(String seatNumber) {
+		if (seatNumber == null || seatNumber.length() < 2 || seatNumber.length() > 8
+				|| seatNumber.charAt(0) < 'A' || seatNumber.charAt(0) > 'Z') {
+			throw new IllegalArgumentException("Invalid seat number: " + seatNumber);
+		}
+		int number = 0;
+		for (int i = 1; i < seatNumber.length(); i++) {
+			char c = seatNumber.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Invalid seat number: " + seatNumber);
+			}
+			number = number * 10 + (c - '0');
+		}
+		if (number > NUMBER_MASK) {
+			throw new IllegalArgumentException("Invalid seat number: " + seatNumber);
+		}
+		return (seatNumber.charAt(0) << NUMBER_BITS) | number;
+	}
+
+	public static String decode(int seatCode) {
+		return section(seatCode) + number(seatCode);
+	}
+
+	public static String section(int seatCode) {
+		return SECTIONS[seatCode >>> NUMBER_BITS];
+	}
+
+	public static int number(int seatCode) {
+		return seatCode & NUMBER_MASK;
+	}
+}
@@ -1,48 +1,143 @@
 package com.trainticketsystem.utils;
 
-import com.trainticketsystem.config.AppProperties;
 import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.Journey;
 import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 @Slf4j
 public class TicketResponseBuilder {
 	private final AtomicLong ticketIdGenerator = new AtomicLong(1);
-	private final AppProperties appProperties;
 
-	public TicketResponseBuilder(AppProperties appProperties) {
-		this.appProperties = appProperties;
+	/**
+	 * Makes sure tickets issued from now on get ids above one issued elsewhere, such as
+	 * a ticket replicated from a primary to this standby.
+	 *
+	 * @param ticketId Ticket id already in use
+	 */
+	public void reserveTicketIdsThrough(long ticketId) {
+		ticketIdGenerator.accumulateAndGet(ticketId + 1, Math::max);
 	}
 
-	public TicketResponse sendPurchaseSuccessResponse(User user, String seatNumber) {
-		Ticket ticket = Ticket.builder()
-								.id(ticketIdGenerator.getAndIncrement())
-								.fromLocation("London")
-								.toLocation("France")
-								.price(appProperties.getTicketPrice())
-								.seatNumber(seatNumber)
-								.section(seatNumber.startsWith("A") ? "A" : "B")
-								.userEmail(user.getEmail())
-								.userFirstName(user.getFirstName())
-								.userLastName(user.getLastName())
-								.build();
-		user.setTicket(ticket);
+	/**
+	 * Issues a ticket to the user and builds the purchase response.
+	 *
+	 * @param user User who booked the seat
+	 * @param seatNumber Seat that was booked
+	 * @param price Exact amount the user was charged
+	 * @return Successful response carrying the new ticket
+	 */
+	public TicketResponse sendPurchaseSuccessResponse(User user, String seatNumber, int price) {
+		return sendPurchaseSuccessResponse(user, null, seatNumber, price);
+	}
+
+	/**
+	 * Issues a ticket to the user in place of one they held and builds the purchase response.
+	 *
+	 * @param user User who booked the seat
+	 * @param previous Ticket the new one replaces, or null to add it alongside the others
+	 * @param seatNumber Seat that was booked
+	 * @param price Exact amount the user was charged
+	 * @return Successful response carrying the new ticket
+	 */
+	public TicketResponse sendPurchaseSuccessResponse(User user, TicketRecord previous, String seatNumber, int price) {
+		TicketRecord ticket = newTicket(user, seatNumber, price);
+		user.replaceTicket(previous, ticket);
 		log.info("Ticket created successfully for user {} with seat {}", user.getEmail(), seatNumber);
+		return sendPurchaseSuccessResponse(user, ticket);
+	}
+
+	/**
+	 * Issues a ticket to the user, as a booking does under its seat's lock once the seat
+	 * is confirmed.
+	 *
+	 * @param user User who booked the seat
+	 * @param seatNumber Seat that was booked
+	 * @param price Exact amount the user was charged
+	 * @return Ticket now held by the user
+	 */
+	public TicketRecord issueTicket(User user, String seatNumber, int price) {
+		TicketRecord ticket = newTicket(user, seatNumber, price);
+		user.addTicket(ticket);
+		log.info("Ticket created successfully for user {} with seat {}", user.getEmail(), seatNumber);
+		return ticket;
+	}
 
+	/**
+	 * Builds the purchase response for a ticket already issued.
+	 *
+	 * @param user User holding the ticket
+	 * @param ticket Ticket issued for the booking
+	 * @return Successful response carrying the ticket
+	 */
+	public TicketResponse sendPurchaseSuccessResponse(User user, TicketRecord ticket) {
 		return TicketResponse.builder()
 								.transactionStatus(true)
 								.message("Ticket purchased successfully")
-								.ticket(ticket)
+								.ticket(new Ticket(ticket, user))
+								.build();
+	}
+
+	/**
+	 * Issues a ticket to each user of a group and builds the purchase response.
+	 *
+	 * @param users Users who booked, one per seat
+	 * @param seatNumbers Seats that were booked, in the same order
+	 * @param prices Exact amount each user was charged, in the same order
+	 * @return Successful response carrying the new tickets
+	 */
+	public TicketResponse sendGroupPurchaseSuccessResponse(List<User> users, List<String> seatNumbers, List<Integer> prices) {
+		List<TicketRecord> tickets = new ArrayList<>(users.size());
+		for (int i = 0; i < users.size(); i++) {
+			tickets.add(sendPurchaseSuccessResponse(users.get(i), seatNumbers.get(i), prices.get(i)).getTicket().getRecord());
+		}
+		return sendGroupPurchaseSuccessResponse(users, tickets);
+	}
+
+	/**
+	 * Builds the purchase response for the tickets already issued to a group.
+	 *
+	 * @param users Users who booked, one per ticket
+	 * @param issued Tickets issued for the booking, in the same order
+	 * @return Successful response carrying the tickets
+	 */
+	public TicketResponse sendGroupPurchaseSuccessResponse(List<User> users, List<TicketRecord> issued) {
+		List<Ticket> tickets = new ArrayList<>(users.size());
+		for (int i = 0; i < users.size(); i++) {
+			tickets.add(new Ticket(issued.get(i), users.get(i)));
+		}
+		return TicketResponse.builder()
+								.transactionStatus(true)
+								.message("Tickets purchased successfully")
+								.tickets(tickets)
 								.build();
 	}
 
+	/**
+	 * Builds the response to a cancellation whose refund has been queued.
+	 *
+	 * @param user User who held the ticket
+	 * @param ticket Ticket that was cancelled
+	 * @return Successful response carrying the cancelled ticket
+	 */
+	public TicketResponse sendCancelledResponse(User user, TicketRecord ticket) {
+		return TicketResponse.builder()
+							.transactionStatus(true)
+							.message("Ticket cancelled; refund of " + ticket.getPrice() + " queued")
+							.ticket(new Ticket(ticket, user))
+							.build();
+	}
+
 	public TicketResponse sendFailedResponse(BookingResult bookingResult , String errMessage) {
 		String message = StringUtils.hasText(errMessage) ? errMessage : bookingResult.getMessage();
 		return TicketResponse.builder()
@@ -51,10 +146,34 @@ public class TicketResponseBuilder {
 								.build();
 	}
 
-	public TicketResponse sendTicketResponse(Ticket ticket) {
+	public TicketResponse sendTicketResponse(User user) {
+		return sendTicketResponse(user, user.getTicket());
+	}
+
+	public TicketResponse sendTicketResponse(User user, TicketRecord ticket) {
 		return TicketResponse.builder()
 							.transactionStatus(true)
-							.ticket(ticket)
+							.ticket(new Ticket(ticket, user))
+							.build();
+	}
+
+	/**
+	 * Builds a response with one page of a user's tickets.
+	 *
+	 * @param user User holding the tickets
+	 * @param page Tickets on this page
+	 * @param totalTickets Tickets across all pages
+	 * @return Response carrying the page
+	 */
+	public TicketResponse sendTicketPageResponse(User user, List<TicketRecord> page, int totalTickets) {
+		List<Ticket> tickets = new ArrayList<>(page.size());
+		for (TicketRecord ticket : page) {
+			tickets.add(new Ticket(ticket, user));
+		}
+		return TicketResponse.builder()
+							.transactionStatus(true)
+							.tickets(tickets)
+							.totalTickets(totalTickets)
 							.build();
 	}
 
@@ -64,4 +183,12 @@ public class TicketResponseBuilder {
 				.user(user)
 				.build();
 	}
+
+	private TicketRecord newTicket(User user, String seatNumber, int price) {
+		return new TicketRecord(ticketIdGenerator.getAndIncrement(),
+								user.getId(),
+								SeatCodes.encode(seatNumber),
+								Journey.LONDON_TO_FRANCE.getId(),
+								price);
+	}
 }
@@ -0,0 +1,257 @@
+package com.trainticketsystem.utils;
+
+import com.trainticketsystem.model.RecordedRequest;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Layout of recorded request logs.
+ * A log is one gzip stream holding a header and the requests in the order they
+ * completed. Numbers are varints, and arrival times are stored as the difference
+ * from the previous request's, which is small and may be negative since requests
+ * complete out of order. Strings that repeat, such as methods, paths and content
+ * types, are written once and then referred to by their index in a dictionary the
+ * reader rebuilds as it goes.
+ *
+ * <pre>
+ * int    magic, int version, long epoch millis the log was opened at
+ * record: byte 1, zigzag varint arrival micros minus the previous arrival (the opening time for the first),
+ *         string method, string path and query, string content type, string accept,
+ *         string if-none-match, string request timeout,
+ *         varint body (0 none, 1 omitted, n + 2 for n bytes that follow),
+ *         varint status, varint latency micros
+ * byte   0
+ * string: varint 0 null | 1 UTF, not kept | 2 UTF, kept as the next dictionary entry | n + 3 dictionary entry n
+ * </pre>
+ */
+public final class TrafficLogFormat {
+
+	public static final int MAGIC = 0x5452524C;
+	public static final int VERSION = 1;
+	public static final String FILE_SUFFIX = ".trl.gz";
+
+	private static final byte RECORD = 1;
+	private static final byte END = 0;
+	private static final int NULL_STRING = 0;
+	private static final int LITERAL = 1;
+	private static final int KEPT_LITERAL = 2;
+	private static final int FIRST_ENTRY = 3;
+	// Keeps a log of many distinct paths from growing the dictionary without bound
+	private static final int MAX_DICTIONARY = 65536;
+	private static final int NO_BODY = 0;
+	private static final int OMITTED_BODY = 1;
+	private static final int FIRST_BODY_LENGTH = 2;
+
+	private TrafficLogFormat() {
+	}
+
+	/**
+	 * Writes one log. Not thread-safe.
+	 */
+	public static final class Writer {
+		private final DataOutputStream out;
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private long previousArrival;
+
+		/**
+		 * Writes the header.
+		 *
+		 * @param out Stream to write the log to
+		 * @param openedAtMillis Epoch millis the log starts at
+		 */
+		public Writer(DataOutputStream out, long openedAtMillis) throws IOException {
+			this.out = out;
+			this.previousArrival = openedAtMillis * 1000;
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(openedAtMillis);
+		}
+
+		public void write(RecordedRequest request) throws IOException {
+			out.writeByte(RECORD);
+			writeVarLong(out, zigZag(request.getArrivalMicros() - previousArrival));
+			previousArrival = request.getArrivalMicros();
+			writeString(request.getMethod());
+			writeString(request.getPath());
+			writeString(request.getContentType());
+			writeString(request.getAccept());
+			writeString(request.getIfNoneMatch());
+			writeString(request.getRequestTimeout());
+			byte[] body = request.getBody();
+			if (request.isBodyOmitted()) {
+				writeVarLong(out, OMITTED_BODY);
+			} else if (body == null) {
+				writeVarLong(out, NO_BODY);
+			} else {
+				writeVarLong(out, FIRST_BODY_LENGTH + body.length);
+				out.write(body);
+			}
+			writeVarLong(out, request.getStatus());
+			writeVarLong(out, request.getLatencyMicros());
+		}
+
+		public void writeEnd() throws IOException {
+			out.writeByte(END);
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarLong(out, NULL_STRING);
+				return;
+			}
+			Integer entry = dictionary.get(value);
+			if (entry != null) {
+				writeVarLong(out, FIRST_ENTRY + entry);
+			} else if (dictionary.size() < MAX_DICTIONARY) {
+				dictionary.put(value, dictionary.size());
+				writeVarLong(out, KEPT_LITERAL);
+				out.writeUTF(value);
+			} else {
+				writeVarLong(out, LITERAL);
+				out.writeUTF(value);
+			}
+		}
+	}
+
+	/**
+	 * Reads one log from the start. Not thread-safe.
+	 */
+	public static final class Reader implements Closeable {
+		private final DataInputStream in;
+		private final List<String> dictionary = new ArrayList<>();
+		private final long openedAtMillis;
+		private long previousArrival;
+
+		public Reader(InputStream in) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+			if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+				throw new IOException("Not a request log");
+			}
+			this.openedAtMillis = this.in.readLong();
+			this.previousArrival = openedAtMillis * 1000;
+		}
+
+		public long getOpenedAtMillis() {
+			return openedAtMillis;
+		}
+
+		/**
+		 * @return Next request, or null at the end of the log
+		 * @throws EOFException if the log ends without its end marker
+		 */
+		public RecordedRequest next() throws IOException {
+			if (in.readByte() != RECORD) {
+				return null;
+			}
+			long arrival = previousArrival + unZigZag(readVarLong(in));
+			previousArrival = arrival;
+			RecordedRequest.RecordedRequestBuilder request = RecordedRequest.builder()
+					.arrivalMicros(arrival)
+					.method(readString())
+					.path(readString())
+					.contentType(readString())
+					.accept(readString())
+					.ifNoneMatch(readString())
+					.requestTimeout(readString());
+			long body = readVarLong(in);
+			if (body == OMITTED_BODY) {
+				request.bodyOmitted(true);
+			} else if (body >= FIRST_BODY_LENGTH) {
+				byte[] bytes = new byte[Math.toIntExact(body - FIRST_BODY_LENGTH)];
+				in.readFully(bytes);
+				request.body(bytes);
+			}
+			return request
+					.status((int) readVarLong(in))
+					.latencyMicros(readVarLong(in))
+					.build();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private String readString() throws IOException {
+			int tag = Math.toIntExact(readVarLong(in));
+			return switch (tag) {
+				case NULL_STRING -> null;
+				case LITERAL -> in.readUTF();
+				case KEPT_LITERAL -> {
+					String value = in.readUTF();
+					dictionary.add(value);
+					yield value;
+				}
+				default -> {
+					int entry = tag - FIRST_ENTRY;
+					if (entry >= dictionary.size()) {
+						throw new IOException("Unknown dictionary entry " + entry);
+					}
+					yield dictionary.get(entry);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Reads every request of a log, in the order written. A log cut short, such as
+	 * the ".part" file of a process that was killed, is read up to its last whole request.
+	 *
+	 * @param file Request log
+	 * @return Requests in the log
+	 * @throws IOException if the file cannot be read or is not a request log
+	 */
+	public static List<RecordedRequest> read(Path file) throws IOException {
+		List<RecordedRequest> requests = new ArrayList<>();
+		try (Reader reader = new Reader(Files.newInputStream(file))) {
+			RecordedRequest request;
+			while ((request = reader.next()) != null) {
+				requests.add(request);
+			}
+		} catch (EOFException e) {
+			// Incomplete log; keep what was whole
+		}
+		return requests;
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
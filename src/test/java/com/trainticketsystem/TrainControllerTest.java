@@ -1,9 +1,262 @@
 package com.trainticketsystem;
 
+import com.trainticketsystem.controller.TrainController;
+import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
 
-@SpringBootTest
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class TrainControllerTest {
 
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api/train" + path);
+    }
+
+    /**
+     * Reads SSE lines until the named event arrives and returns its data.
+     */
+    private static String nextEvent(Iterator<String> lines, String event) {
+        String current = null;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith("event:")) {
+                current = line.substring("event:".length());
+            } else if (line.startsWith("data:") && event.equals(current)) {
+                return line.substring("data:".length());
+            }
+        }
+        throw new AssertionError("Stream ended before event " + event);
+    }
+
+    @Test
+    void testSeatStreamSendsSnapshotThenDeltas() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            HttpResponse<Stream<String>> stream = client.send(
+                    HttpRequest.newBuilder(uri("/seat/stream")).GET().build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            assertEquals(200, stream.statusCode());
+            Iterator<String> lines = stream.body().iterator();
+
+            String snapshot = nextEvent(lines, "snapshot");
+            assertTrue(snapshot.contains("{\"seat\":\"A1\",\"available\":true}"), snapshot);
+            assertTrue(snapshot.contains("{\"seat\":\"B20\",\"available\":true}"), snapshot);
+
+            HttpResponse<String> purchase = client.send(
+                    HttpRequest.newBuilder(uri("/purchase"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"1\",\"seatId\":\"A1\"}"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, purchase.statusCode(), purchase.body());
+
+            // Changes left by other tests in this context may still be flushed first
+            String delta = nextEvent(lines, "delta");
+            while (!delta.contains("\"A1\"")) {
+                delta = nextEvent(lines, "delta");
+            }
+            assertTrue(delta.contains("{\"seat\":\"A1\",\"available\":false}"), delta);
+            stream.body().close();
+        });
+    }
+
+    @Test
+    void testSeatMapContentNegotiation() throws Exception {
+        // Without an Accept header the JSON list is still the default
+        HttpResponse<String> json = client.send(HttpRequest.newBuilder(uri("/seat")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, json.statusCode());
+        assertTrue(json.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        assertTrue(json.body().startsWith("["));
+
+        HttpResponse<byte[]> binary = client.send(HttpRequest.newBuilder(uri("/seat"))
+                        .header("Accept", TrainController.SEAT_MAP_BINARY).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, binary.statusCode());
+        ByteBuffer seatMap = ByteBuffer.wrap(binary.body());
+        assertEquals('S', seatMap.get());
+        assertEquals('M', seatMap.get());
+        assertEquals(1, seatMap.get());
+        seatMap.getLong();
+        assertEquals(2, seatMap.get());
+        assertEquals('A', seatMap.get());
+        assertEquals(20, seatMap.getInt());
+        assertEquals(12 + 2 * (5 + 3), binary.body().length);
+
+        // An unchanged map is not sent again
+        String etag = binary.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<byte[]> notModified = client.send(HttpRequest.newBuilder(uri("/seat"))
+                        .header("Accept", TrainController.SEAT_MAP_BINARY)
+                        .header("If-None-Match", etag).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, notModified.statusCode());
+        assertEquals(0, notModified.body().length);
+
+        HttpResponse<String> base64 = client.send(HttpRequest.newBuilder(uri("/seat?section=B"))
+                        .header("Accept", TrainController.SEAT_MAP_BASE64).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, base64.statusCode());
+        byte[] sectionB = Base64.getDecoder().decode(base64.body());
+        assertEquals(1, sectionB[11]);
+        assertEquals('B', sectionB[12]);
+    }
+
+    @Test
+    void testRequestTimeoutHeaderAbandonsBooking() throws Exception {
+        HttpRequest.Builder purchase = HttpRequest.newBuilder(uri("/purchase"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"3\",\"seatId\":\"B7\"}"));
+
+        HttpResponse<String> expired = client.send(
+                purchase.copy().header(TrainController.REQUEST_TIMEOUT_HEADER, "0").build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, expired.statusCode());
+        assertTrue(expired.body().contains("deadline exceeded"), expired.body());
+
+        // Nothing was booked, so the same request with time to spare succeeds
+        HttpResponse<String> booked = client.send(purchase.build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, booked.statusCode(), booked.body());
+    }
+
+    @Test
+    void testUserAndReceiptReadsAnswerNotModifiedUntilTheTicketChanges() throws Exception {
+        HttpResponse<String> purchase = client.send(HttpRequest.newBuilder(uri("/purchase"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"5\",\"seatId\":\"A15\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, purchase.statusCode(), purchase.body());
+
+        for (String path : new String[]{"/user/5", "/receipt/5"}) {
+            HttpResponse<String> first = client.send(HttpRequest.newBuilder(uri(path)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, first.statusCode());
+            String eTag = first.headers().firstValue("ETag").orElseThrow();
+
+            HttpResponse<String> unchanged = client.send(
+                    HttpRequest.newBuilder(uri(path)).header("If-None-Match", eTag).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(304, unchanged.statusCode());
+            assertEquals("", unchanged.body());
+        }
+
+        String receiptTag = client.send(HttpRequest.newBuilder(uri("/receipt/5")).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> modify = client.send(HttpRequest.newBuilder(uri("/user/5/seat"))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"userId\":\"5\",\"seatId\":\"A16\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, modify.statusCode(), modify.body());
+
+        HttpResponse<String> changed = client.send(
+                HttpRequest.newBuilder(uri("/receipt/5")).header("If-None-Match", receiptTag).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, changed.statusCode());
+        assertTrue(changed.body().contains("\"seatNumber\":\"A16\""), changed.body());
+        assertNotEquals(receiptTag, changed.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    void testBulkPriorityPurchaseIsReportedInItsLane() throws Exception {
+        HttpResponse<String> purchase = client.send(HttpRequest.newBuilder(uri("/purchase"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"7\",\"seatId\":\"A19\",\"priority\":\"bulk\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, purchase.statusCode(), purchase.body());
+
+        HttpResponse<String> lanes = client.send(HttpRequest.newBuilder(uri("/lanes")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, lanes.statusCode());
+        assertTrue(lanes.body().contains("{\"priority\":\"BULK\",\"weight\":1,\"queued\":0,\"completed\":1,"), lanes.body());
+    }
+
+    @Test
+    void testReplicationIsOffAndThereIsNothingToPromote() throws Exception {
+        HttpResponse<String> status = client.send(HttpRequest.newBuilder(uri("/replication")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, status.statusCode());
+        assertTrue(status.body().contains("\"role\":\"none\""), status.body());
+
+        HttpResponse<String> promote = client.send(HttpRequest.newBuilder(uri("/replication/promote"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(409, promote.statusCode(), promote.body());
+    }
+
+    @Test
+    void testImportedUsersCanBeLookedUpByEmail() throws Exception {
+        String upload = """
+                {"id":900001,"firstName":"Imp","lastName":"One","email":"imported-1@test.com"}
+                {"id":900002,"firstName":"Imp","lastName":"Two"}
+                """;
+        HttpResponse<String> imported = client.send(HttpRequest.newBuilder(uri("/user/import"))
+                        .header("Content-Type", "application/x-ndjson")
+                        .POST(HttpRequest.BodyPublishers.ofString(upload))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, imported.statusCode(), imported.body());
+        assertTrue(imported.body().contains("\"rows\":2,\"imported\":1,\"rejected\":1"), imported.body());
+
+        HttpResponse<String> user = client.send(HttpRequest.newBuilder(uri("/user/email/imported-1@test.com")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, user.statusCode());
+        assertTrue(user.body().contains("\"lastName\":\"One\""), user.body());
+
+        HttpResponse<String> unsupported = client.send(HttpRequest.newBuilder(uri("/user/import"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("[]"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(415, unsupported.statusCode());
+    }
+
+    @Test
+    void testCancelledTicketFreesItsSeatAndIsRefunded() throws Exception {
+        HttpResponse<String> purchase = client.send(HttpRequest.newBuilder(uri("/purchase"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"userId\":\"9\",\"seatId\":\"B11\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, purchase.statusCode(), purchase.body());
+        Matcher id = Pattern.compile("\"ticket\":\\{\"id\":(\\d+)").matcher(purchase.body());
+        assertTrue(id.find(), purchase.body());
+
+        HttpResponse<String> cancel = client.send(HttpRequest.newBuilder(uri("/user/9/ticket/" + id.group(1))).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, cancel.statusCode(), cancel.body());
+        assertTrue(cancel.body().contains("refund of"), cancel.body());
+
+        HttpResponse<String> seat = client.send(HttpRequest.newBuilder(uri("/seat/B11/user")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(seat.body().contains("is not booked"), seat.body());
+        HttpResponse<String> again = client.send(HttpRequest.newBuilder(uri("/user/9/ticket/" + id.group(1))).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, again.statusCode(), again.body());
 
-} 
\ No newline at end of file
+        HttpResponse<String> refunds = client.send(HttpRequest.newBuilder(uri("/refunds")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, refunds.statusCode());
+        assertTrue(refunds.body().contains("\"async\":true"), refunds.body());
+    }
+}
@@ -0,0 +1,118 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.service.SeatManager;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of single-seat bookings under heavy contention, with every booking locking
+ * its seat on its own thread against micro-batched bookings at a few window sizes.
+ * Workers keep booking a handful of hot seats and release each seat they win straight
+ * away, so every seat stays contended for the whole run.
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:$(cat cp.txt) com.trainticketsystem.benchmark.BookingBatchBenchmark [threads] [seconds] [hotSeats]}.
+ */
+public class BookingBatchBenchmark {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.SECONDS.toMicros(10);
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int hotSeats = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        System.out.printf("threads=%d seconds=%d hotSeats=%d cpus=%d%n", threads, seconds, hotSeats,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %12s %12s %10s %10s %10s %10s%n",
+                "mode", "requests/s", "booked/s", "p50 us", "p99 us", "p999 us", "avg batch");
+        for (long windowMicros : new long[]{0, 50, 200, 1000}) {
+            // Warm-up pass, then the measured one
+            run(windowMicros, threads, 1, hotSeats, false);
+            run(windowMicros, threads, seconds, hotSeats, true);
+        }
+    }
+
+    /**
+     * @param windowMicros Batching window, or 0 for one booking at a time
+     */
+    private static void run(long windowMicros, int threads, int seconds, int hotSeats, boolean report) throws InterruptedException {
+        Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= hotSeats; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+        }
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        appProperties.getBatching().setEnabled(windowMicros > 0);
+        appProperties.getBatching().setWindowMicros(windowMicros);
+        SeatManager seatManager = new SeatManager(seatMap, appProperties);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder requests = new LongAdder();
+        LongAdder booked = new LongAdder();
+        Histogram latency = new Histogram(MAX_LATENCY_MICROS, 3);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 1; t <= threads; t++) {
+            User user = User.builder()
+                    .id(t)
+                    .firstName("User" + t)
+                    .lastName("Test" + t)
+                    .email("user" + t + "@test.com")
+                    .walletBalance(Integer.MAX_VALUE / 2)
+                    .build();
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Histogram own = new Histogram(MAX_LATENCY_MICROS, 3);
+                long count = 0;
+                long won = 0;
+                try {
+                    while (running.get()) {
+                        String seatId = "A" + random.nextInt(1, hotSeats + 1);
+                        long start = System.nanoTime();
+                        BookingResult result = seatManager.bookSeats(user, seatId).join();
+                        own.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+                        count++;
+                        if (result.isSuccess()) {
+                            won++;
+                            seatManager.releaseSeat(seatMap.get(seatId), user);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                requests.add(count);
+                booked.add(won);
+                synchronized (latency) {
+                    latency.add(own);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        seatManager.shutdown();
+
+        if (report) {
+            long batches = seatManager.getBatchCount();
+            System.out.printf("%-12s %,12d %,12d %,10d %,10d %,10d %10s%n",
+                    windowMicros == 0 ? "single" : "batch " + windowMicros + "us",
+                    requests.sum() / seconds, booked.sum() / seconds,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9),
+                    batches == 0 ? "-" : String.format("%.1f", (double) seatManager.getBatchedBookings() / batches));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.trainticketsystem.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.FastJsonModule;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialization cost of the common response bodies with Jackson's bean serializers
+ * and with {@link FastJsonModule}. Each body is written the way Spring MVC writes a
+ * response, straight into an output stream, here one that discards the bytes.
+ * Per body and mapper it reports the median over several rounds of:
+ * <ul>
+ *   <li>ns/op - time to write the body once</li>
+ *   <li>B/op - bytes allocated per write, from the thread's allocation counter</li>
+ * </ul>
+ * Bodies:
+ * <ul>
+ *   <li>purchase - a single-ticket purchase response</li>
+ *   <li>page - a page of 20 of a user's tickets, with the user</li>
+ *   <li>users - every user of a 1000-user store, as GET /user returns them</li>
+ *   <li>seats - 1000 seats, half of them held</li>
+ * </ul>
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.trainticketsystem.benchmark.JsonSerializationBenchmark [rounds] [millisPerRound]}.
+ */
+public class JsonSerializationBenchmark {
+
+    private static final int USERS = 1000;
+
+    // Keeps the written byte count observable so the writes cannot be eliminated
+    private static volatile long sink;
+
+    /**
+     * Discards what is written, counting it.
+     */
+    private static final class DiscardingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        long millisPerRound = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+        Map<String, ObjectWriter> writers = new LinkedHashMap<>();
+        writers.put("bean", new ObjectMapper().writer());
+        writers.put("fast", new ObjectMapper().registerModule(new FastJsonModule()).writer());
+
+        System.out.printf("rounds=%d millisPerRound=%d%n", rounds, millisPerRound);
+        System.out.printf("%-10s %-6s %12s %10s %10s%n", "body", "mapper", "ns/op", "B/op", "bytes");
+        for (Map.Entry<String, Object> body : bodies().entrySet()) {
+            Map<String, Double> nanos = new LinkedHashMap<>();
+            for (Map.Entry<String, ObjectWriter> writer : writers.entrySet()) {
+                double[] result = measure(writer.getValue(), body.getValue(), rounds, millisPerRound);
+                nanos.put(writer.getKey(), result[0]);
+                System.out.printf("%-10s %-6s %,12.0f %,10.0f %,10.0f%n",
+                        body.getKey(), writer.getKey(), result[0], result[1], result[2]);
+            }
+            System.out.printf("%-10s %-6s %11.2fx%n", body.getKey(), "speedup", nanos.get("bean") / nanos.get("fast"));
+        }
+    }
+
+    private static Map<String, Object> bodies() {
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        UserStore users = new UserStore(USERS);
+        for (int i = 1; i <= USERS; i++) {
+            users.put(User.builder()
+                    .id(i)
+                    .firstName("User_" + i)
+                    .lastName("last_name" + i)
+                    .email("user_" + i + "@test.com")
+                    .walletBalance(Integer.MAX_VALUE)
+                    .build());
+        }
+        List<Seat> seats = new ArrayList<>();
+        for (int i = 1; i <= USERS; i++) {
+            String seatId = (i % 2 == 0 ? "A" : "B") + i;
+            Seat seat = new Seat(seatId, true);
+            if (i % 2 == 0) {
+                User holder = users.get(i);
+                responseBuilder.sendPurchaseSuccessResponse(holder, seatId, 20);
+                seat.reserve(holder);
+            }
+            seats.add(seat);
+        }
+        User frequent = users.get(1);
+        for (int i = 0; i < 20; i++) {
+            responseBuilder.sendPurchaseSuccessResponse(frequent, "B" + (USERS + i), 20);
+        }
+
+        Map<String, Object> bodies = new LinkedHashMap<>();
+        bodies.put("purchase", responseBuilder.sendPurchaseSuccessResponse(users.get(3), "A3", 20));
+        bodies.put("page", responseBuilder.sendTicketPageResponse(frequent, frequent.getTickets().page(0, 20), 20));
+        bodies.put("users", users.entrySet().stream().map(Map.Entry::getValue).toList());
+        bodies.put("seats", seats);
+        return bodies;
+    }
+
+    /**
+     * @return Median ns/op and allocated bytes/op over the rounds, and the size of the body
+     */
+    private static double[] measure(ObjectWriter writer, Object body, int rounds, long millisPerRound) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        DiscardingStream out = new DiscardingStream();
+        // Warm-up round, discarded
+        run(writer, body, out, millisPerRound);
+        double[] nanos = new double[rounds];
+        double[] allocated = new double[rounds];
+        for (int r = 0; r < rounds; r++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long ops = run(writer, body, out, millisPerRound);
+            nanos[r] = (double) (System.nanoTime() - start) / ops;
+            allocated[r] = (double) (threads.getThreadAllocatedBytes(threadId) - bytesBefore) / ops;
+        }
+        sink = out.count;
+        out.count = 0;
+        writer.writeValue(out, body);
+        return new double[]{median(nanos), median(allocated), out.count};
+    }
+
+    private static long run(ObjectWriter writer, Object body, DiscardingStream out, long millis) throws IOException {
+        long end = System.nanoTime() + millis * 1_000_000;
+        long ops = 0;
+        do {
+            for (int i = 0; i < 16; i++) {
+                writer.writeValue(out, body);
+            }
+            ops += 16;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
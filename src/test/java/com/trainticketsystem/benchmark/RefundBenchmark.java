@@ -0,0 +1,134 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.CancellationJob;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.RefundStatus;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.service.BookingIndex;
+import com.trainticketsystem.service.CancellationService;
+import com.trainticketsystem.service.RefundProcessor;
+import com.trainticketsystem.service.SeatManager;
+import com.trainticketsystem.service.SimulatedPaymentGateway;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of single-ticket cancellations against a slow payment provider, first on
+ * an idle system and then while a mass cancellation of a whole section runs, with
+ * refunds paid on the cancelling thread against refunds queued for the refund processor.
+ * One thread cancels section B tickets back to back; the mass cancellation releases
+ * section A. Reports the latency of the single cancellations in each phase, and how far
+ * the mass cancellation and its refunds got by the end.
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:$(cat cp.txt) com.trainticketsystem.benchmark.RefundBenchmark [massSeats] [seconds] [gatewayMillis]}.
+ */
+public class RefundBenchmark {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.SECONDS.toMicros(10);
+    private static final int SINGLE_SEATS = 100_000;
+    private static final int PRICE = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int massSeats = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long gatewayMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        System.out.printf("massSeats=%d seconds=%d gatewayMillis=%d cpus=%d%n", massSeats, seconds, gatewayMillis,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %-6s %12s %10s %10s %10s %12s %10s %12s%n",
+                "refunds", "phase", "cancels/s", "p50 us", "p99 us", "p999 us", "mass seats", "backlog", "refunded/s");
+        // Queued first: the synchronous run leaves its mass cancellation running when it ends
+        run(true, massSeats, seconds, gatewayMillis);
+        run(false, massSeats, seconds, gatewayMillis);
+        System.exit(0);
+    }
+
+    private static void run(boolean async, int massSeats, int seconds, long gatewayMillis) throws InterruptedException {
+        UserStore userMap = new UserStore();
+        Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+        BookingIndex bookingIndex = new BookingIndex(userMap);
+        for (int i = 1; i <= massSeats; i++) {
+            book(userMap, seatMap, bookingIndex, i, "A" + i);
+        }
+        for (int i = 1; i <= SINGLE_SEATS; i++) {
+            book(userMap, seatMap, bookingIndex, massSeats + i, "B" + i);
+        }
+
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(PRICE);
+        appProperties.getRefunds().setAsync(async);
+        RefundProcessor refundProcessor = new RefundProcessor(new SimulatedPaymentGateway(gatewayMillis), appProperties);
+        SeatManager seatManager = new SeatManager(seatMap, appProperties);
+        CancellationService cancellationService = new CancellationService(seatManager, userMap, seatMap, bookingIndex,
+                new TicketResponseBuilder(), refundProcessor, appProperties);
+
+        String mode = async ? "queued" : "inline";
+        int next = cancel(cancellationService, seatManager, massSeats, 1, seconds, mode, "idle", null, refundProcessor);
+        CancellationJob job = cancellationService.cancelJourney(0, "A");
+        cancel(cancellationService, seatManager, massSeats, next, seconds, mode, "mass", job, refundProcessor);
+        cancellationService.shutdown();
+        if (async) {
+            refundProcessor.shutdown();
+        }
+    }
+
+    /**
+     * Cancels section B tickets one after another for the given time and prints their latency.
+     *
+     * @return Next ticket to cancel
+     */
+    private static int cancel(CancellationService cancellationService, SeatManager seatManager, int massSeats, int from,
+                              int seconds, String mode, String phase, CancellationJob job, RefundProcessor refundProcessor) {
+        Histogram latency = new Histogram(MAX_LATENCY_MICROS, 3);
+        long refundedBefore = refundProcessor.getStatus().getRefunded();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        int next = from;
+        // Each phase gets half of the tickets
+        int last = Math.min(SINGLE_SEATS, from + SINGLE_SEATS / 2 - 1);
+        while (System.nanoTime() < end && next <= last) {
+            int userId = massSeats + next++;
+            long start = System.nanoTime();
+            TicketResponse response = cancellationService.cancelTicket(String.valueOf(userId), userId, seatManager.defaultDeadline());
+            latency.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+            if (!response.isTransactionStatus()) {
+                throw new IllegalStateException("Cancelling ticket " + userId + " failed: " + response.getMessage());
+            }
+        }
+        RefundStatus status = refundProcessor.getStatus();
+        System.out.printf("%-8s %-6s %,12d %,10d %,10d %,10d %12s %,10d %,12d%n",
+                mode, phase, latency.getTotalCount() / seconds,
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9),
+                job != null ? String.format("%,d", job.getProcessedSeats().get()) : "-",
+                status.getBacklog(), (status.getRefunded() - refundedBefore) / seconds);
+        return next;
+    }
+
+    /**
+     * Creates a seat held by a new user, as if booked and charged.
+     */
+    private static void book(UserStore userMap, Map<String, Seat> seatMap, BookingIndex bookingIndex, int userId, String seatId) {
+        userMap.put(User.builder()
+                .id(userId)
+                .firstName("User" + userId)
+                .lastName("Test" + userId)
+                .email("user" + userId + "@test.com")
+                .walletBalance(0)
+                .build());
+        User user = userMap.get(userId);
+        Seat seat = new Seat(seatId, true);
+        seat.reserve(user);
+        seatMap.put(seatId, seat);
+        TicketRecord ticket = new TicketRecord(userId, userId, SeatCodes.encode(seatId), 0, PRICE);
+        user.addTicket(ticket);
+        bookingIndex.ticketIssued(user, ticket);
+    }
+}
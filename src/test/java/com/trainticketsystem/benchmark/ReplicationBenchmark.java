@@ -0,0 +1,294 @@
+package com.trainticketsystem.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of replicating to a standby, measured with a primary and a standby process on
+ * this machine. For each mode the benchmark launches the app, plus a standby following
+ * it unless the mode is none, moves random users to random seats on the primary from
+ * closed-loop clients and reports, per mode:
+ * <ul>
+ *   <li>writes/s and the p50 and p99 latency of the seat changes</li>
+ *   <li>max lag - the largest replication lag the primary reported during the run</li>
+ *   <li>catch-up - time from the end of the load until the standby had every change</li>
+ *   <li>converged - whether the seats and tickets of both instances then matched</li>
+ * </ul>
+ * Keys, all optional:
+ * <ul>
+ *   <li>{@code modes} - comma separated, of none, async and semi-sync (default all three)</li>
+ *   <li>{@code seconds} - load duration per mode (default 15)</li>
+ *   <li>{@code clients} - concurrent client threads (default 8)</li>
+ * </ul>
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.trainticketsystem.benchmark.ReplicationBenchmark [key=value ...]}
+ * after {@code mvn test-compile}; the instances are launched with the same class path.
+ */
+public class ReplicationBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int SEATS = 500;
+    private static final long SAMPLE_MILLIS = 100;
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    ReplicationBenchmark(String... args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ReplicationBenchmark(args).run();
+    }
+
+    private void run() throws Exception {
+        String[] modes = options.getOrDefault("modes", "none,async,semi-sync").split(",");
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "15"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "8"));
+
+        System.out.printf("seconds=%d clients=%d users=%d cpus=%d%n", seconds, clients, USERS,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %10s %8s %8s %12s %13s %10s%n",
+                "mode", "writes/s", "p50 ms", "p99 ms", "max lag ms", "catch-up ms", "converged");
+        for (String mode : modes) {
+            measure(mode.trim(), seconds, clients);
+        }
+    }
+
+    private void measure(String mode, int seconds, int clients) throws Exception {
+        boolean replicated = !mode.equals("none");
+        int primaryPort = freePort();
+        int replicationPort = freePort();
+        Process primary = launch(mode, "primary", primaryPort, replicationPort);
+        Process standby = null;
+        try {
+            String primaryBase = "http://localhost:" + primaryPort;
+            awaitReady(primary, primaryBase);
+            String standbyBase = null;
+            if (replicated) {
+                int standbyPort = freePort();
+                standby = launch(mode, "standby", standbyPort, replicationPort);
+                standbyBase = "http://localhost:" + standbyPort;
+                awaitReady(standby, standbyBase);
+                while (!Boolean.TRUE.equals(replication(primaryBase).get("connected"))) {
+                    Thread.sleep(10);
+                }
+            }
+
+            AtomicLong maxLag = new AtomicLong();
+            AtomicBoolean sampling = new AtomicBoolean(replicated);
+            Thread sampler = new Thread(() -> {
+                while (sampling.get()) {
+                    Object lag = replication(primaryBase).get("lagMillis");
+                    if (lag instanceof Number number) {
+                        maxLag.accumulateAndGet(number.longValue(), Math::max);
+                    }
+                    sleep(SAMPLE_MILLIS);
+                }
+            });
+            sampler.start();
+            long start = System.nanoTime();
+            Histogram latency = drive(primaryBase, seconds, clients);
+            long elapsed = System.nanoTime() - start;
+            sampling.set(false);
+            sampler.join();
+
+            String catchUp = "-";
+            String converged = "-";
+            if (replicated) {
+                long loadEnded = System.nanoTime();
+                while (replication(primaryBase).get("pendingChanges") instanceof Number pending && pending.longValue() > 0) {
+                    Thread.sleep(1);
+                }
+                catchUp = String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadEnded));
+                converged = state(primaryBase).equals(state(standbyBase)) ? "yes" : "NO";
+            }
+            System.out.printf("%-10s %,10d %8.1f %8.1f %12s %13s %10s%n", mode,
+                    latency.getTotalCount() * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    replicated ? String.valueOf(maxLag.get()) : "-", catchUp, converged);
+        } finally {
+            stop(primary);
+            if (standby != null) {
+                stop(standby);
+            }
+        }
+    }
+
+    private Process launch(String mode, String role, int port, int replicationPort) throws IOException {
+        Path log = Path.of("target", "replication", mode + "-" + role + ".log");
+        Files.createDirectories(log.getParent());
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "com.trainticketsystem.TrainTicketSystemApplication",
+                "--server.port=" + port,
+                "--app.user-count=" + USERS,
+                "--app.seat-count=" + SEATS,
+                "--app.wallet-balance=" + Integer.MAX_VALUE / 2,
+                // Per-request logging would dominate the numbers
+                "--logging.level.com.trainticketsystem=OFF"));
+        if (!mode.equals("none")) {
+            command.addAll(List.of(
+                    "--app.replication.role=" + role,
+                    "--app.replication.mode=" + mode,
+                    "--app.replication.primary-port=" + replicationPort,
+                    "--app.replication.listen-port=" + (role.equals("primary") ? replicationPort : 0)));
+        }
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+    }
+
+    private void awaitReady(Process app, String base) throws InterruptedException {
+        while (status(HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness")).GET()) != 200) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("App exited during startup, see target/replication");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Moves random users to random seats from several threads.
+     *
+     * @return Latency of every answered request, in microseconds
+     */
+    private Histogram drive(String base, int seconds, int clients) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Histogram> histograms = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Histogram histogram = new Histogram(TimeUnit.SECONDS.toMicros(60), 3);
+            histograms.add(histogram);
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int user = random.nextInt(1, USERS + 1);
+                    String seat = (random.nextBoolean() ? "A" : "B") + random.nextInt(1, SEATS + 1);
+                    long sent = System.nanoTime();
+                    if (status(HttpRequest.newBuilder(URI.create(base + "/api/train/user/" + user + "/seat"))
+                            .header("Content-Type", "application/json")
+                            .PUT(HttpRequest.BodyPublishers.ofString(body(user, seat)))) > 0) {
+                        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent),
+                                histogram.getHighestTrackableValue()));
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Histogram total = new Histogram(TimeUnit.SECONDS.toMicros(60), 3);
+        histograms.forEach(total::add);
+        return total;
+    }
+
+    private static String body(int user, String seat) {
+        return "{\"userId\":\"" + user + "\",\"seatId\":\"" + seat + "\"}";
+    }
+
+    private Map<String, Object> replication(String base) {
+        try {
+            String body = client.send(HttpRequest.newBuilder(URI.create(base + "/api/train/replication")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            return objectMapper.readValue(body, new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            return Map.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of();
+        }
+    }
+
+    /**
+     * @return Every seat with its holder, ordered by seat, followed by the tickets of every user
+     */
+    private List<Object> state(String base) throws IOException, InterruptedException {
+        List<Map<String, Object>> seats = objectMapper.readValue(get(base + "/api/train/seat"), new TypeReference<>() {
+        });
+        seats.sort(Comparator.comparing(seat -> (String) seat.get("id")));
+        List<Object> state = new ArrayList<>(seats);
+        for (int user = 1; user <= USERS; user++) {
+            state.add(get(base + "/api/train/user/" + user + "/tickets"));
+        }
+        return state;
+    }
+
+    private String get(String uri) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).header("Accept", "application/json").GET().build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * @return HTTP status, or -1 if the server could not be reached
+     */
+    private int status(HttpRequest.Builder request) {
+        try {
+            return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.discarding())
+                    .statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static void stop(Process app) throws InterruptedException {
+        app.destroy();
+        if (!app.waitFor(10, TimeUnit.SECONDS)) {
+            app.destroyForcibly();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
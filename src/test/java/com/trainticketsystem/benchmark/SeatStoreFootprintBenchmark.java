@@ -0,0 +1,79 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.store.SeatStore;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap-footprint benchmark of SeatStore against the eagerly built ConcurrentHashMap
+ * of seats it replaces. The same random share of seats is read in both, the way
+ * bookings touch a small active part of a large inventory.
+ * Run from the IDE or with
+ * {@code java -cp target/classes:target/test-classes com.trainticketsystem.benchmark.SeatStoreFootprintBenchmark [seatsPerSection] [touchedPercent] [residentSeats]}.
+ * Give the JVM enough heap for the eager map, e.g. -Xmx2g for the default 1M seats per section.
+ */
+public class SeatStoreFootprintBenchmark {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seatsPerSection = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int touchedPercent = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int residentSeats = args.length > 2 ? Integer.parseInt(args[2]) : 262_144;
+        int touches = (int) ((long) seatsPerSection * 2 * touchedPercent / 100);
+        long seed = ThreadLocalRandom.current().nextLong();
+
+        long before = usedHeap();
+        Map<String, Seat> eager = new ConcurrentHashMap<>();
+        for (int i = 1; i <= seatsPerSection; i++) {
+            eager.put("A" + i, new Seat("A" + i, true));
+            eager.put("B" + i, new Seat("B" + i, true));
+        }
+        touch(eager, seatsPerSection, touches, seed);
+        long eagerBytes = usedHeap() - before;
+        check(eager, seatsPerSection);
+        eager = null;
+
+        before = usedHeap();
+        SeatStore store = new SeatStore("AB", seatsPerSection, BLOCK_SIZE, residentSeats, id -> null);
+        touch(store, seatsPerSection, touches, seed);
+        long storeBytes = usedHeap() - before;
+        check(store, seatsPerSection);
+
+        System.out.printf("seats=%d touched=%d residentBudget=%d resident=%d%n",
+                seatsPerSection * 2, touches, residentSeats, store.getResidentSeats());
+        System.out.printf("ConcurrentHashMap<String, Seat>: %,d bytes (%.1f bytes/seat)%n", eagerBytes, (double) eagerBytes / (seatsPerSection * 2));
+        System.out.printf("SeatStore:                       %,d bytes (%.1f bytes/seat)%n", storeBytes, (double) storeBytes / (seatsPerSection * 2));
+        System.out.printf("saving: %.1f%%%n", 100.0 * (eagerBytes - storeBytes) / eagerBytes);
+    }
+
+    private static void touch(Map<String, Seat> seats, int seatsPerSection, int touches, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < touches; i++) {
+            String seatId = (random.nextBoolean() ? "A" : "B") + (1 + random.nextInt(seatsPerSection));
+            if (seats.get(seatId) == null) {
+                throw new IllegalStateException("Missing seat " + seatId);
+            }
+        }
+    }
+
+    // Keeps the map reachable until it has been measured
+    private static void check(Map<String, Seat> seats, int seatsPerSection) {
+        if (seats.size() != seatsPerSection * 2) {
+            throw new IllegalStateException("Expected " + seatsPerSection * 2 + " seats but found " + seats.size());
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,246 @@
+package com.trainticketsystem.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cold-start benchmark of the packaged app, as an autoscaler sees a new instance.
+ * Launches the jar in a fresh JVM and reports, measured from process launch:
+ * <ul>
+ *   <li>ready - the readiness probe first answers 200</li>
+ *   <li>first booking - the first purchase, sent once ready, has succeeded</li>
+ *   <li>peak - closed-loop seat changes first reach 90% of the best throughput of the run</li>
+ * </ul>
+ * Keys, all optional:
+ * <ul>
+ *   <li>{@code mode} - plain or fast-startup, the AOT and CDS build of {@code mvn -Pfast-startup package} (default plain)</li>
+ *   <li>{@code warmup} - app.warmup-iterations passed to the app (default 0)</li>
+ *   <li>{@code runs} - launches to take the median over (default 3)</li>
+ *   <li>{@code seconds} - load duration per launch (default 20)</li>
+ *   <li>{@code clients} - concurrent client threads (default 8)</li>
+ *   <li>{@code jar} - name of the application jar (default trainticketsystem-0.0.1-SNAPSHOT.jar)</li>
+ * </ul>
+ * Run with
+ * {@code java -cp target/test-classes com.trainticketsystem.benchmark.StartupBenchmark [key=value ...]}
+ * after {@code mvn package}.
+ */
+public class StartupBenchmark {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final double PEAK_FRACTION = 0.9;
+    private static final int USERS = 2000;
+    private static final int SEATS = 500;
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    StartupBenchmark(String... args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark(args).run();
+    }
+
+    private void run() throws Exception {
+        String mode = options.getOrDefault("mode", "plain");
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "8"));
+
+        System.out.printf("mode=%s warmup=%s runs=%d seconds=%d clients=%d cpus=%d%n", mode,
+                options.getOrDefault("warmup", "0"), runs, seconds, clients, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-5s %10s %18s %18s %12s %12s%n",
+                "run", "ready ms", "first booking ms", "first latency ms", "peak req/s", "to peak ms");
+        List<long[]> results = new ArrayList<>();
+        for (int i = 1; i <= runs; i++) {
+            long[] result = launch(mode, i, seconds, clients);
+            results.add(result);
+            System.out.printf("%-5d %,10d %,18d %,18d %,12d %,12d%n", i, result[0], result[1], result[2], result[3], result[4]);
+        }
+        System.out.printf("%-5s %,10d %,18d %,18d %,12d %,12d%n", "median",
+                median(results, 0), median(results, 1), median(results, 2), median(results, 3), median(results, 4));
+    }
+
+    /**
+     * @return Ready, first booking and its latency, peak throughput and time to peak
+     */
+    private long[] launch(String mode, int run, int seconds, int clients) throws Exception {
+        int port = freePort();
+        Path log = Path.of("target", "startup", mode + "-run" + run + ".log");
+        Files.createDirectories(log.getParent());
+
+        long launched = System.nanoTime();
+        Process app = new ProcessBuilder(command(mode, port))
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            String base = "http://localhost:" + port;
+            while (status(HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness")).GET()) != 200) {
+                if (!app.isAlive()) {
+                    throw new IllegalStateException("App exited during startup, see " + log);
+                }
+                Thread.sleep(10);
+            }
+            long ready = System.nanoTime();
+
+            int firstStatus = status(purchase(base, 1, "A1"));
+            long firstBooked = System.nanoTime();
+            if (firstStatus != 200) {
+                throw new IllegalStateException("First booking failed with status " + firstStatus + ", see " + log);
+            }
+
+            long[] peak = drive(base, seconds, clients, launched);
+            return new long[]{
+                    millis(ready - launched),
+                    millis(firstBooked - launched),
+                    millis(firstBooked - ready),
+                    peak[0],
+                    peak[1]
+            };
+        } finally {
+            app.destroy();
+            if (!app.waitFor(10, TimeUnit.SECONDS)) {
+                app.destroyForcibly();
+            }
+        }
+    }
+
+    private List<String> command(String mode, int port) {
+        String jar = options.getOrDefault("jar", "trainticketsystem-0.0.1-SNAPSHOT.jar");
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        switch (mode) {
+            case "plain" -> command.addAll(List.of("-jar", Path.of("target", jar).toString()));
+            case "fast-startup" -> command.addAll(List.of(
+                    "-Xlog:cds=error",
+                    "-XX:SharedArchiveFile=" + Path.of("target", "fast-startup", "application.jsa"),
+                    "-Dspring.aot.enabled=true",
+                    "-jar", Path.of("target", "fast-startup", jar).toString()));
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        command.addAll(List.of(
+                "--server.port=" + port,
+                "--app.user-count=" + USERS,
+                "--app.seat-count=" + SEATS,
+                "--app.wallet-balance=" + Integer.MAX_VALUE / 2,
+                "--app.warmup-iterations=" + options.getOrDefault("warmup", "0"),
+                // Per-request logging would dominate the numbers
+                "--logging.level.com.trainticketsystem=OFF"));
+        return command;
+    }
+
+    /**
+     * Moves random users to random seats from several threads and counts completed
+     * requests per window.
+     *
+     * @return Best window throughput per second, and milliseconds from launch to the
+     * first window within 90% of it
+     */
+    private long[] drive(String base, int seconds, int clients, long launched) throws InterruptedException {
+        long start = System.nanoTime();
+        int windows = (int) (TimeUnit.SECONDS.toNanos(seconds) / WINDOW_NANOS);
+        AtomicLongArray completed = new AtomicLongArray(windows);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int user = random.nextInt(1, USERS + 1);
+                    String seat = (random.nextBoolean() ? "A" : "B") + random.nextInt(1, SEATS + 1);
+                    if (status(HttpRequest.newBuilder(URI.create(base + "/api/train/user/" + user + "/seat"))
+                            .header("Content-Type", "application/json")
+                            .PUT(HttpRequest.BodyPublishers.ofString(body(user, seat)))) > 0) {
+                        int window = (int) ((System.nanoTime() - start) / WINDOW_NANOS);
+                        if (window < windows) {
+                            completed.incrementAndGet(window);
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long best = 0;
+        for (int w = 0; w < windows; w++) {
+            best = Math.max(best, completed.get(w));
+        }
+        int firstNearPeak = 0;
+        while (completed.get(firstNearPeak) < best * PEAK_FRACTION) {
+            firstNearPeak++;
+        }
+        long perSecond = best * TimeUnit.SECONDS.toNanos(1) / WINDOW_NANOS;
+        return new long[]{perSecond, millis(start - launched + (firstNearPeak + 1) * WINDOW_NANOS)};
+    }
+
+    private HttpRequest.Builder purchase(String base, int user, String seat) {
+        return HttpRequest.newBuilder(URI.create(base + "/api/train/purchase"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body(user, seat)));
+    }
+
+    private static String body(int user, String seat) {
+        return "{\"userId\":\"" + user + "\",\"seatId\":\"" + seat + "\"}";
+    }
+
+    /**
+     * @return HTTP status, or -1 if the server could not be reached
+     */
+    private int status(HttpRequest.Builder request) {
+        try {
+            return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.discarding())
+                    .statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static long median(List<long[]> results, int column) {
+        long[] values = results.stream().mapToLong(result -> result[column]).sorted().toArray();
+        return values[values.length / 2];
+    }
+}
@@ -0,0 +1,93 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.model.Journey;
+import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import lombok.Builder;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+/**
+ * Allocation-per-booking benchmark for ticket creation.
+ * Compares the compact TicketRecord plus its Ticket view against a replica of
+ * the previous builder-built Ticket that copied holder and location fields.
+ * Run with
+ * {@code java -cp target/classes:target/test-classes com.trainticketsystem.benchmark.TicketAllocationBenchmark [bookings]}.
+ */
+public class TicketAllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps results reachable so the JIT cannot eliminate the allocations
+    private static final Object[] SINK = new Object[1024];
+
+    /**
+     * Replica of the Ticket built per booking before tickets became records.
+     */
+    @Builder
+    private static class LegacyTicket {
+        private Long id;
+        private String fromLocation;
+        private String toLocation;
+        private int price;
+        private String seatNumber;
+        private String section;
+        private String userFirstName;
+        private String userLastName;
+        private String userEmail;
+    }
+
+    public static void main(String[] args) {
+        int bookings = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        User user = User.builder()
+                .id(1)
+                .firstName("User_1")
+                .lastName("last_name1")
+                .email("user_1@test.com")
+                .walletBalance(10_000)
+                .build();
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        String[] seats = {"A1", "A2", "B1", "B2"};
+
+        IntFunction<Object> legacy = i -> {
+            String seatNumber = seats[i & 3];
+            return LegacyTicket.builder()
+                    .id((long) i)
+                    .fromLocation("London")
+                    .toLocation("France")
+                    .price(20)
+                    .seatNumber(seatNumber)
+                    .section(seatNumber.startsWith("A") ? "A" : "B")
+                    .userEmail(user.getEmail())
+                    .userFirstName(user.getFirstName())
+                    .userLastName(user.getLastName())
+                    .build();
+        };
+        IntFunction<Object> record = i -> new Ticket(
+                new TicketRecord(i, 1, SeatCodes.encode(seats[i & 3]), Journey.LONDON_TO_FRANCE.getId(), 20), user);
+        IntFunction<Object> response = i -> responseBuilder.sendPurchaseSuccessResponse(user, seats[i & 3], 20);
+
+        System.out.printf("bookings=%d%n", bookings);
+        System.out.printf("legacy Ticket:               %.1f bytes/booking%n", bytesPerBooking(legacy, bookings));
+        System.out.printf("TicketRecord + Ticket view:  %.1f bytes/booking%n", bytesPerBooking(record, bookings));
+        System.out.printf("full purchase response:      %.1f bytes/booking%n", bytesPerBooking(response, bookings));
+    }
+
+    private static double bytesPerBooking(IntFunction<Object> booking, int bookings) {
+        // Warm up so the measured run is JIT-compiled
+        for (int i = 0; i < bookings; i++) {
+            SINK[i & 1023] = booking.apply(i);
+        }
+        long tid = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < bookings; i++) {
+            SINK[i & 1023] = booking.apply(i);
+        }
+        return (double) (THREADS.getThreadAllocatedBytes(tid) - before) / bookings;
+    }
+}
@@ -0,0 +1,103 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.response.ImportStatus;
+import com.trainticketsystem.service.BookingIndex;
+import com.trainticketsystem.service.UserImportService;
+import com.trainticketsystem.store.UserStore;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Throughput of {@link UserImportService} on a generated upload of distinct users.
+ * The upload is produced row by row while it is read, like a request body arriving
+ * over the network, so only the imported users occupy the heap. The store starts
+ * empty and is not presized.
+ * Reports rows/s and the heap used once the users are in. Ten million users need a
+ * heap of about 4 GB; run with {@code -Xmx} to match.
+ * Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes:<dependencies> com.trainticketsystem.benchmark.UserImportBenchmark [rows] [ndjson|csv] [parallelism]}.
+ */
+public class UserImportBenchmark {
+
+    /**
+     * Generates rows on demand.
+     */
+    private static final class GeneratedUpload extends InputStream {
+        private final long rows;
+        private final boolean csv;
+        private long next;
+        private byte[] line;
+        private int position;
+
+        GeneratedUpload(long rows, boolean csv) {
+            this.rows = rows;
+            this.csv = csv;
+            this.line = csv ? "id,firstName,lastName,email,walletBalance\n".getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+
+        private boolean fill() {
+            if (position < line.length) {
+                return true;
+            }
+            if (next == rows) {
+                return false;
+            }
+            long id = ++next;
+            String row = csv
+                    ? id + ",User_" + id + ",last_name" + id + ",user_" + id + "@test.com,1000\n"
+                    : "{\"id\":" + id + ",\"firstName\":\"User_" + id + "\",\"lastName\":\"last_name" + id
+                    + "\",\"email\":\"user_" + id + "@test.com\",\"walletBalance\":1000}\n";
+            line = row.getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public int read() {
+            return fill() ? line[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int count = 0;
+            while (count < len && fill()) {
+                int n = Math.min(len - count, line.length - position);
+                System.arraycopy(line, position, b, off + count, n);
+                position += n;
+                count += n;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+    }
+
+    public static void main(String[] args) {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String format = args.length > 1 ? args[1] : UserImportService.NDJSON;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        AppProperties appProperties = new AppProperties();
+        appProperties.setWalletBalance(1000);
+        appProperties.getUserImport().setParallelism(parallelism);
+        UserStore userMap = new UserStore();
+        BookingIndex bookingIndex = new BookingIndex(userMap);
+        UserImportService importService = new UserImportService(userMap, bookingIndex, appProperties);
+        System.out.printf("rows=%,d format=%s parallelism=%d processors=%d%n",
+                rows, format, parallelism, Runtime.getRuntime().availableProcessors());
+
+        ImportStatus status = importService.importUsers(new GeneratedUpload(rows, UserImportService.CSV.equals(format)), format);
+        importService.shutdown();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        System.out.printf("imported=%,d rejected=%,d millis=%,d rows/s=%,d heap=%,d MB%n",
+                status.getImported(), status.getRejected(), status.getMillis(), status.getRowsPerSecond(),
+                memory.getHeapMemoryUsage().getUsed() >> 20);
+        if (status.getImported() != rows || userMap.size() != rows) {
+            throw new IllegalStateException("Imported " + status.getImported() + " of " + rows + " rows");
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.SeatCodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Read-heavy benchmark of the ways user reads can be made consistent with concurrent
+ * bookings. Readers fetch a user's last name and ticket together while one writer
+ * keeps replacing both, with the last name set to the ticket id, so a read that mixes
+ * two writes is counted as torn.
+ *
+ * <ul>
+ *   <li>view - UserStore field getters, as the read services used before (no consistency)</li>
+ *   <li>seqlock - UserStore snapshots over the per-row version</li>
+ *   <li>stamped - one StampedLock, optimistic reads falling back to the read lock</li>
+ *   <li>rwlock - one ReentrantReadWriteLock</li>
+ *   <li>immutable - an immutable state object per user, replaced on every write</li>
+ * </ul>
+ *
+ * Run with
+ * {@code java -cp target/classes:target/test-classes com.trainticketsystem.benchmark.UserReadBenchmark [readers] [seconds] [writeIntervalMicros]}.
+ */
+public class UserReadBenchmark {
+
+    private static final int USERS = 10_000;
+
+    // Keeps results reachable so the JIT cannot eliminate the reads
+    private static volatile Object sink;
+
+    /**
+     * One way of storing a user's last name and ticket.
+     */
+    private interface Strategy {
+        String name();
+
+        void write(int id, long ticketId);
+
+        /**
+         * @return true if the last name and ticket came from the same write
+         */
+        boolean read(int id);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long writeIntervalNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 20);
+
+        List<Strategy> strategies = List.of(storeView(), storeSeqlock(), stamped(), readWriteLock(), immutable());
+        System.out.printf("readers=%d seconds=%d writeIntervalMicros=%d cpus=%d%n", readers, seconds,
+                TimeUnit.NANOSECONDS.toMicros(writeIntervalNanos), Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %14s %12s %10s%n", "strategy", "reads/s", "torn", "writes");
+        for (Strategy strategy : strategies) {
+            // Warm-up pass, then the measured one
+            run(strategy, readers, 1, writeIntervalNanos);
+            long[] result = run(strategy, readers, seconds, writeIntervalNanos);
+            System.out.printf("%-10s %,14d %,12d %,10d%n", strategy.name(), result[0] / seconds, result[1], result[2]);
+        }
+    }
+
+    /**
+     * @return Reads, torn reads and writes completed
+     */
+    private static long[] run(Strategy strategy, int readers, int seconds, long writeIntervalNanos) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder reads = new LongAdder();
+        LongAdder torn = new LongAdder();
+        LongAdder writes = new LongAdder();
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            long ticketId = 1;
+            while (running.get()) {
+                strategy.write(ThreadLocalRandom.current().nextInt(USERS), ticketId++);
+                writes.increment();
+                LockSupport.parkNanos(writeIntervalNanos);
+            }
+        }));
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long mixed = 0;
+                while (running.get()) {
+                    if (!strategy.read(random.nextInt(USERS))) {
+                        mixed++;
+                    }
+                    count++;
+                }
+                reads.add(count);
+                torn.add(mixed);
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[]{reads.sum(), torn.sum(), writes.sum()};
+    }
+
+    private static TicketRecord ticket(int id, long ticketId) {
+        return new TicketRecord(ticketId, id, SeatCodes.encode("A1"), 0, 20);
+    }
+
+    private static boolean matches(String lastName, TicketRecord ticket) {
+        sink = ticket;
+        return lastName.equals(String.valueOf(ticket.getId()));
+    }
+
+    private static User user(int id, long ticketId) {
+        User user = User.builder()
+                .id(id)
+                .firstName("User_" + id)
+                .lastName(String.valueOf(ticketId))
+                .email("user_" + id + "@test.com")
+                .walletBalance(100)
+                .build();
+        user.setTickets(TicketList.of(ticket(id, ticketId)));
+        return user;
+    }
+
+    /**
+     * Store with views resolved up front, so only the field reads are measured.
+     */
+    private static User[] populate(UserStore store) {
+        User[] views = new User[USERS];
+        for (int id = 0; id < USERS; id++) {
+            store.put(user(id, 0));
+            views[id] = store.get(id);
+        }
+        return views;
+    }
+
+    private static Strategy storeView() {
+        UserStore store = new UserStore(USERS);
+        User[] views = populate(store);
+        return new Strategy() {
+            public String name() {
+                return "view";
+            }
+
+            public void write(int id, long ticketId) {
+                store.put(user(id, ticketId));
+            }
+
+            public boolean read(int id) {
+                User view = views[id];
+                return matches(view.getLastName(), view.getTicket());
+            }
+        };
+    }
+
+    private static Strategy storeSeqlock() {
+        UserStore store = new UserStore(USERS);
+        User[] views = populate(store);
+        return new Strategy() {
+            public String name() {
+                return "seqlock";
+            }
+
+            public void write(int id, long ticketId) {
+                store.put(user(id, ticketId));
+            }
+
+            public boolean read(int id) {
+                User snapshot = views[id].snapshot();
+                return matches(snapshot.getLastName(), snapshot.getTicket());
+            }
+        };
+    }
+
+    private static Strategy stamped() {
+        String[] lastNames = new String[USERS];
+        TicketRecord[] tickets = new TicketRecord[USERS];
+        for (int id = 0; id < USERS; id++) {
+            lastNames[id] = "0";
+            tickets[id] = ticket(id, 0);
+        }
+        StampedLock lock = new StampedLock();
+        return new Strategy() {
+            public String name() {
+                return "stamped";
+            }
+
+            public void write(int id, long ticketId) {
+                long stamp = lock.writeLock();
+                try {
+                    lastNames[id] = String.valueOf(ticketId);
+                    tickets[id] = ticket(id, ticketId);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+
+            public boolean read(int id) {
+                long stamp = lock.tryOptimisticRead();
+                String lastName = lastNames[id];
+                TicketRecord ticket = tickets[id];
+                if (!lock.validate(stamp)) {
+                    stamp = lock.readLock();
+                    try {
+                        lastName = lastNames[id];
+                        ticket = tickets[id];
+                    } finally {
+                        lock.unlockRead(stamp);
+                    }
+                }
+                return matches(lastName, ticket);
+            }
+        };
+    }
+
+    private static Strategy readWriteLock() {
+        String[] lastNames = new String[USERS];
+        TicketRecord[] tickets = new TicketRecord[USERS];
+        for (int id = 0; id < USERS; id++) {
+            lastNames[id] = "0";
+            tickets[id] = ticket(id, 0);
+        }
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        return new Strategy() {
+            public String name() {
+                return "rwlock";
+            }
+
+            public void write(int id, long ticketId) {
+                lock.writeLock().lock();
+                try {
+                    lastNames[id] = String.valueOf(ticketId);
+                    tickets[id] = ticket(id, ticketId);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            public boolean read(int id) {
+                lock.readLock().lock();
+                try {
+                    return matches(lastNames[id], tickets[id]);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    private record UserState(String lastName, TicketRecord ticket) {
+    }
+
+    private static Strategy immutable() {
+        AtomicReferenceArray<UserState> states = new AtomicReferenceArray<>(USERS);
+        for (int id = 0; id < USERS; id++) {
+            states.set(id, new UserState("0", ticket(id, 0)));
+        }
+        return new Strategy() {
+            public String name() {
+                return "immutable";
+            }
+
+            public void write(int id, long ticketId) {
+                states.set(id, new UserState(String.valueOf(ticketId), ticket(id, ticketId)));
+            }
+
+            public boolean read(int id) {
+                UserState state = states.get(id);
+                return matches(state.lastName(), state.ticket());
+            }
+        };
+    }
+}
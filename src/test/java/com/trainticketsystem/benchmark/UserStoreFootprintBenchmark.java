@@ -0,0 +1,58 @@
+package com.trainticketsystem.benchmark;
+
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.store.UserStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Heap-footprint benchmark of UserStore against the ConcurrentHashMap of User objects
+ * it replaces. Run from the IDE or with
+ * {@code java -cp target/classes:target/test-classes com.trainticketsystem.benchmark.UserStoreFootprintBenchmark [users]}.
+ * Give the JVM enough heap for both stores, e.g. -Xmx4g for the default 1M users.
+ */
+public class UserStoreFootprintBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long mapBytes = measure(users, ConcurrentHashMap::new);
+        long storeBytes = measure(users, () -> new UserStore(users));
+
+        System.out.printf("users=%d%n", users);
+        System.out.printf("ConcurrentHashMap<Integer, User>: %,d bytes (%.1f bytes/user)%n", mapBytes, (double) mapBytes / users);
+        System.out.printf("UserStore:                        %,d bytes (%.1f bytes/user)%n", storeBytes, (double) storeBytes / users);
+        System.out.printf("saving: %.1f%%%n", 100.0 * (mapBytes - storeBytes) / mapBytes);
+    }
+
+    private static long measure(int users, Supplier<Map<Integer, User>> factory) throws InterruptedException {
+        long before = usedHeap();
+        Map<Integer, User> map = factory.get();
+        for (int i = 1; i <= users; i++) {
+            map.put(i, User.builder()
+                    .id(i)
+                    .firstName("User_" + i)
+                    .lastName("last_name" + i)
+                    .email("user_" + i + "@test.com")
+                    .walletBalance(10_000)
+                    .build());
+        }
+        long after = usedHeap();
+        // Keep the map reachable until it has been measured
+        if (map.size() != users) {
+            throw new IllegalStateException("Expected " + users + " users but found " + map.size());
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,58 @@
+package com.trainticketsystem.concurrency;
+
+/**
+ * The booking operations the concurrency harness drives, over a tiny fixed world of
+ * users and seats numbered from 1. Every result is a plain value, so Lincheck can
+ * compare concurrent runs with sequential ones. A new booking engine joins the
+ * harness by implementing this interface with a public no-arg constructor that
+ * builds a fresh world of {@link #USERS} users and {@link #SEATS} seats.
+ */
+public interface BookingEngine {
+
+    int USERS = 2;
+    int SEATS = 2;
+    int TICKET_PRICE = 20;
+    int WALLET_BALANCE = 50;
+
+    /**
+     * Books a seat for a user and charges the ticket price, without any ticket bookkeeping.
+     *
+     * @return true if the seat was booked
+     */
+    boolean reserve(int user, int seat);
+
+    /**
+     * Frees a seat whoever holds it.
+     *
+     * @return ID of the previous holder, or 0 if the seat was free
+     */
+    int release(int seat);
+
+    /**
+     * Buys a ticket through the purchase flow; a user may hold several.
+     *
+     * @return true if the ticket was issued
+     */
+    boolean purchase(int user, int seat);
+
+    /**
+     * Moves a user's only ticket to another seat through the modify flow.
+     *
+     * @return true if the user now holds the new seat
+     */
+    boolean move(int user, int seat);
+
+    /**
+     * Deducts an amount from a user's wallet.
+     *
+     * @return true if the balance covered the amount
+     */
+    boolean charge(int user, int amount);
+
+    int balance(int user);
+
+    /**
+     * @return ID of the user holding a seat, or 0 if it is free
+     */
+    int holder(int seat);
+}
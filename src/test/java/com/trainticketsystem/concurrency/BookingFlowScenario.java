@@ -0,0 +1,54 @@
+package com.trainticketsystem.concurrency;
+
+import org.jetbrains.kotlinx.lincheck.annotations.Operation;
+import org.jetbrains.kotlinx.lincheck.annotations.Param;
+import org.jetbrains.kotlinx.lincheck.paramgen.IntGen;
+
+/**
+ * The user-facing flows: purchase, move, release and charge.
+ * A move has to look like a single step, so two users can never swap seats
+ * through a moment in which both seats were free.
+ */
+@Param(name = "user", gen = IntGen.class, conf = "1:2")
+@Param(name = "seat", gen = IntGen.class, conf = "1:2")
+@Param(name = "amount", gen = IntGen.class, conf = "10:30")
+public class BookingFlowScenario {
+
+    private final BookingEngine engine = EngineUnderTest.create();
+
+    @Operation
+    public boolean purchase(@Param(name = "user") int user, @Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.purchase(user, seat);
+    }
+
+    @Operation
+    public boolean move(@Param(name = "user") int user, @Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.move(user, seat);
+    }
+
+    @Operation
+    public int release(@Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.release(seat);
+    }
+
+    @Operation
+    public boolean charge(@Param(name = "user") int user, @Param(name = "amount") int amount) {
+        EngineUnderTest.counted();
+        return engine.charge(user, amount);
+    }
+
+    @Operation
+    public int balance(@Param(name = "user") int user) {
+        EngineUnderTest.counted();
+        return engine.balance(user);
+    }
+
+    @Operation
+    public int holder(@Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.holder(seat);
+    }
+}
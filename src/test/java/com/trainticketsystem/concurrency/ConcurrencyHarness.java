@@ -0,0 +1,127 @@
+package com.trainticketsystem.concurrency;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.jetbrains.kotlinx.lincheck.LinChecker;
+import org.jetbrains.kotlinx.lincheck.LincheckAssertionError;
+import org.jetbrains.kotlinx.lincheck.strategy.stress.StressOptions;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs every scenario against one or more booking engines with Lincheck's stress
+ * strategy and reports, per engine and scenario, whether all histories were
+ * linearizable, the first forbidden outcome if not, and the operation throughput of
+ * the same run. Throughput includes Lincheck's own overhead, so it is only comparable
+ * between engines measured with the same settings.
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:<test classpath> com.trainticketsystem.concurrency.ConcurrencyHarness [key=value ...]}
+ * where the keys are {@code engines} (comma-separated BookingEngine class names,
+ * default LockBookingEngine), {@code iterations} (default 100), {@code invocations}
+ * per iteration (default 500), {@code threads} (default 3) and {@code actors} per
+ * thread (default 3). Exits with status 1 if any forbidden outcome was found.
+ */
+public class ConcurrencyHarness {
+
+    private static final List<Class<?>> SCENARIOS = List.of(SeatScenario.class, BookingFlowScenario.class);
+
+    public static void main(String[] args) throws Exception {
+        // Per-operation service logging would swamp the report
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        StressOptions options = options(
+                Integer.parseInt(values.getOrDefault("iterations", "100")),
+                Integer.parseInt(values.getOrDefault("invocations", "500")),
+                Integer.parseInt(values.getOrDefault("threads", "3")),
+                Integer.parseInt(values.getOrDefault("actors", "3")));
+
+        List<Result> results = new ArrayList<>();
+        for (String engine : values.getOrDefault("engines", LockBookingEngine.class.getName()).split(",")) {
+            Class<? extends BookingEngine> engineClass = Class.forName(engine.trim()).asSubclass(BookingEngine.class);
+            Supplier<BookingEngine> factory = () -> {
+                try {
+                    return engineClass.getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot create engine " + engineClass.getName(), e);
+                }
+            };
+            for (Class<?> scenario : SCENARIOS) {
+                results.add(check(engineClass.getSimpleName(), factory, scenario, options));
+            }
+        }
+
+        System.out.printf("%n%-20s %-20s %-16s %12s %12s%n", "engine", "scenario", "verdict", "operations", "ops/s");
+        for (Result result : results) {
+            System.out.printf("%-20s %-20s %-16s %12d %12.0f%n", result.engine, result.scenario,
+                    result.failure == null ? "linearizable" : "FORBIDDEN", result.operations, result.opsPerSecond());
+        }
+        for (Result result : results) {
+            if (result.failure != null) {
+                System.out.printf("%nForbidden outcome for %s on %s:%n%s%n", result.scenario, result.engine, result.failure);
+            }
+        }
+        System.exit(results.stream().anyMatch(result -> result.failure != null) ? 1 : 0);
+    }
+
+    static StressOptions options(int iterations, int invocations, int threads, int actors) {
+        return new StressOptions()
+                .iterations(iterations)
+                .invocationsPerIteration(invocations)
+                .threads(threads)
+                .actorsPerThread(actors);
+    }
+
+    /**
+     * Checks one scenario against one engine.
+     *
+     * @param engineName Name used in the report
+     * @param engine Factory for a fresh engine per invocation
+     * @param scenario Lincheck test class to run
+     * @param options Stress settings
+     * @return Verdict and throughput of the run
+     */
+    static Result check(String engineName, Supplier<? extends BookingEngine> engine, Class<?> scenario, StressOptions options) {
+        EngineUnderTest.use(engine);
+        String failure = null;
+        long start = System.nanoTime();
+        try {
+            LinChecker.check(scenario, options);
+        } catch (LincheckAssertionError e) {
+            failure = e.getMessage();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(engineName, scenario.getSimpleName(), failure, EngineUnderTest.operations(), elapsed);
+    }
+
+    static final class Result {
+        final String engine;
+        final String scenario;
+        final String failure;
+        final long operations;
+        final long elapsedNanos;
+
+        Result(String engine, String scenario, String failure, long operations, long elapsedNanos) {
+            this.engine = engine;
+            this.scenario = scenario;
+            this.failure = failure;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double opsPerSecond() {
+            return operations * 1e9 / elapsedNanos;
+        }
+    }
+}
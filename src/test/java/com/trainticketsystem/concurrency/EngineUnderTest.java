@@ -0,0 +1,35 @@
+package com.trainticketsystem.concurrency;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Chooses the engine the scenarios run against and counts the operations they perform.
+ * Lincheck builds a fresh scenario instance per invocation, so the choice has to live
+ * outside the instance.
+ */
+final class EngineUnderTest {
+
+    private static volatile Supplier<? extends BookingEngine> factory = LockBookingEngine::new;
+    private static final LongAdder operations = new LongAdder();
+
+    private EngineUnderTest() {
+    }
+
+    static void use(Supplier<? extends BookingEngine> engineFactory) {
+        factory = engineFactory;
+        operations.reset();
+    }
+
+    static BookingEngine create() {
+        return factory.get();
+    }
+
+    static void counted() {
+        operations.increment();
+    }
+
+    static long operations() {
+        return operations.sum();
+    }
+}
@@ -0,0 +1,99 @@
+package com.trainticketsystem.concurrency;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.service.BookingIndex;
+import com.trainticketsystem.service.ModifySeatService;
+import com.trainticketsystem.service.PurchaseTicketService;
+import com.trainticketsystem.service.RefundProcessor;
+import com.trainticketsystem.service.SeatManager;
+import com.trainticketsystem.service.WalletPaymentGateway;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The production engine: per-seat locks in SeatManager, the UserStore wallet and
+ * the purchase and modify services on top.
+ */
+public class LockBookingEngine implements BookingEngine {
+
+    private final UserStore userMap = new UserStore();
+    private final Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+    private final SeatManager seatManager;
+    private final PurchaseTicketService purchaseTicketService;
+    private final ModifySeatService modifySeatService;
+
+    public LockBookingEngine() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(TICKET_PRICE);
+        for (int i = 1; i <= USERS; i++) {
+            userMap.put(User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(WALLET_BALANCE)
+                    .build());
+        }
+        for (int i = 1; i <= SEATS; i++) {
+            seatMap.put(seatId(i), new Seat(seatId(i), true));
+        }
+
+        BookingIndex bookingIndex = new BookingIndex(userMap);
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        seatManager = new SeatManager(seatMap, appProperties);
+        purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+        RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+        modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+    }
+
+    private static String seatId(int seat) {
+        return "A" + seat;
+    }
+
+    @Override
+    public boolean reserve(int user, int seat) {
+        return seatManager.bookSeats(userMap.get(user), seatId(seat)).join().isSuccess();
+    }
+
+    @Override
+    public int release(int seat) {
+        try {
+            User holder = seatManager.releaseSeat(seatMap.get(seatId(seat)));
+            return holder == null ? 0 : holder.getId();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean purchase(int user, int seat) {
+        return purchaseTicketService.purchaseTicket(String.valueOf(user), seatId(seat)).join().isTransactionStatus();
+    }
+
+    @Override
+    public boolean move(int user, int seat) {
+        return modifySeatService.modifySeating(String.valueOf(user), seatId(seat)).join().isTransactionStatus();
+    }
+
+    @Override
+    public boolean charge(int user, int amount) {
+        return userMap.get(user).deductBalance(amount);
+    }
+
+    @Override
+    public int balance(int user) {
+        return userMap.get(user).getWalletBalance();
+    }
+
+    @Override
+    public int holder(int seat) {
+        User holder = seatMap.get(seatId(seat)).getReservedBy();
+        return holder == null ? 0 : holder.getId();
+    }
+}
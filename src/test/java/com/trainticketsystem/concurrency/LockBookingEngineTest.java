@@ -0,0 +1,21 @@
+package com.trainticketsystem.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Linearizability check of the seat and wallet primitives on the lock engine.
+ * The full flow scenario, including move, is reported by ConcurrencyHarness instead.
+ */
+class LockBookingEngineTest {
+
+    @Test
+    void testSeatPrimitivesAreLinearizable() {
+        ConcurrencyHarness.Result result = ConcurrencyHarness.check("LockBookingEngine", LockBookingEngine::new,
+                SeatScenario.class, ConcurrencyHarness.options(10, 200, 3, 3));
+
+        assertNull(result.failure, result.failure);
+        assertTrue(result.operations > 0);
+    }
+}
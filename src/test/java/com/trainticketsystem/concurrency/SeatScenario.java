@@ -0,0 +1,48 @@
+package com.trainticketsystem.concurrency;
+
+import org.jetbrains.kotlinx.lincheck.annotations.Operation;
+import org.jetbrains.kotlinx.lincheck.annotations.Param;
+import org.jetbrains.kotlinx.lincheck.paramgen.IntGen;
+
+/**
+ * Seat and wallet primitives: reserve, release and charge.
+ * Each must be atomic on its own, so every concurrent history has to match some
+ * sequential order of the same calls.
+ */
+@Param(name = "user", gen = IntGen.class, conf = "1:2")
+@Param(name = "seat", gen = IntGen.class, conf = "1:2")
+@Param(name = "amount", gen = IntGen.class, conf = "10:30")
+public class SeatScenario {
+
+    private final BookingEngine engine = EngineUnderTest.create();
+
+    @Operation
+    public boolean reserve(@Param(name = "user") int user, @Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.reserve(user, seat);
+    }
+
+    @Operation
+    public int release(@Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.release(seat);
+    }
+
+    @Operation
+    public boolean charge(@Param(name = "user") int user, @Param(name = "amount") int amount) {
+        EngineUnderTest.counted();
+        return engine.charge(user, amount);
+    }
+
+    @Operation
+    public int balance(@Param(name = "user") int user) {
+        EngineUnderTest.counted();
+        return engine.balance(user);
+    }
+
+    @Operation
+    public int holder(@Param(name = "seat") int seat) {
+        EngineUnderTest.counted();
+        return engine.holder(seat);
+    }
+}
@@ -0,0 +1,150 @@
+package com.trainticketsystem.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of a load-test run.
+ * Written as CSV with the run settings as {@code #} comment lines, so any two reports
+ * can be diffed or compared with {@link #compare(Path, PrintStream)}. The full
+ * percentile distribution of each operation goes to a matching {@code .hgrm} file.
+ */
+public class LatencyReport {
+
+    private static final String HEADER = "operation,requests,ok,rejected,errors,throughput_per_s,p50_us,p99_us,p999_us,max_us,not_modified,bytes_per_request";
+
+    private final Map<String, String> settings;
+    private final Map<String, LoadGenerator.OperationStats> results;
+    private final Duration duration;
+
+    /**
+     * @param results Statistics per operation, keyed by the name the report shows
+     */
+    LatencyReport(Map<String, String> settings,
+                  Map<String, LoadGenerator.OperationStats> results,
+                  Duration duration) {
+        this.settings = settings;
+        this.results = results;
+        this.duration = duration;
+    }
+
+    void print(PrintStream out) {
+        settings.forEach((key, value) -> out.printf("%-12s %s%n", key, value));
+        out.println();
+        String format = "%-" + operationWidth() + "s %10s %10s %10s %8s %12s %10s %10s %10s %10s %10s %10s%n";
+        out.printf(format,
+                "operation", "requests", "ok", "rejected", "errors", "req/s", "p50 us", "p99 us", "p999 us", "max us",
+                "304s", "bytes/req");
+        for (String[] row : rows()) {
+            out.printf(format, (Object[]) row);
+        }
+    }
+
+    /**
+     * Writes the CSV summary and the percentile distributions.
+     *
+     * @param directory Directory to write into, created if missing
+     * @return Path of the CSV summary
+     */
+    Path write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String name = "report-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        List<String> lines = new ArrayList<>();
+        settings.forEach((key, value) -> lines.add("# " + key + "=" + value));
+        lines.add(HEADER);
+        for (String[] row : rows()) {
+            lines.add(String.join(",", row));
+        }
+        Path csv = directory.resolve(name + ".csv");
+        Files.write(csv, lines);
+
+        try (PrintStream hgrm = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            results.forEach((operation, stats) -> {
+                hgrm.printf("# %s (microseconds)%n", operation);
+                stats.histogram.outputPercentileDistribution(hgrm, 1.0);
+                hgrm.println();
+            });
+        }
+        return csv;
+    }
+
+    /**
+     * Prints throughput and percentile changes against an earlier report.
+     * Negative latency changes and positive throughput changes are improvements.
+     *
+     * @param baseline CSV summary of the earlier run
+     * @param out Stream to print the comparison to
+     */
+    void compare(Path baseline, PrintStream out) throws IOException {
+        Map<String, String[]> previous = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(baseline)) {
+            if (!line.startsWith("#") && !line.startsWith("operation,") && !line.isBlank()) {
+                String[] row = line.split(",");
+                previous.put(row[0], row);
+            }
+        }
+
+        out.printf("%nCompared with %s%n", baseline);
+        String format = "%-" + operationWidth() + "s %10s %10s %10s %10s %10s%n";
+        out.printf(format, "operation", "req/s", "p50", "p99", "p999", "bytes/req");
+        for (String[] row : rows()) {
+            String[] before = previous.get(row[0]);
+            if (before == null) {
+                out.printf("%-" + operationWidth() + "s %s%n", row[0], "not in baseline");
+                continue;
+            }
+            // Reports written before response sizes were recorded have no bytes column
+            String bytes = before.length > 11 ? change(before[11], row[11]) : "n/a";
+            out.printf(format, row[0],
+                    change(before[5], row[5]), change(before[6], row[6]), change(before[7], row[7]), change(before[8], row[8]),
+                    bytes);
+        }
+    }
+
+    private List<String[]> rows() {
+        List<String[]> rows = new ArrayList<>();
+        double seconds = duration.toMillis() / 1000.0;
+        results.forEach((operation, stats) -> {
+            Histogram histogram = stats.histogram;
+            rows.add(new String[]{
+                    operation,
+                    String.valueOf(histogram.getTotalCount()),
+                    String.valueOf(stats.ok),
+                    String.valueOf(stats.rejected),
+                    String.valueOf(stats.errors),
+                    String.format("%.1f", histogram.getTotalCount() / seconds),
+                    String.valueOf(histogram.getValueAtPercentile(50)),
+                    String.valueOf(histogram.getValueAtPercentile(99)),
+                    String.valueOf(histogram.getValueAtPercentile(99.9)),
+                    String.valueOf(histogram.getMaxValue()),
+                    String.valueOf(stats.notModified),
+                    String.valueOf(histogram.getTotalCount() == 0 ? 0 : stats.bytes / histogram.getTotalCount())
+            });
+        });
+        return rows;
+    }
+
+    private int operationWidth() {
+        return Math.max(9, results.keySet().stream().mapToInt(String::length).max().orElse(0));
+    }
+
+    private static String change(String before, String after) {
+        double previous = Double.parseDouble(before);
+        if (previous == 0) {
+            return "n/a";
+        }
+        return String.format("%+.1f%%", 100.0 * (Double.parseDouble(after) - previous) / previous);
+    }
+}
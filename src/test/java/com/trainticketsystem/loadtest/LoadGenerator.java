@@ -0,0 +1,311 @@
+package com.trainticketsystem.loadtest;
+
+import com.trainticketsystem.TrainTicketSystemApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the REST API with a weighted mix of purchase, modify, receipt, user and seat-list
+ * calls and reports p50/p99/p999 latency and response bytes per operation.
+ * Starts the app in-process on a random port unless {@code url=} points elsewhere.
+ * Seats are picked with Zipfian skew, so low-numbered seats of section A are hot.
+ * With {@code rate=} set, latency is measured from each request's scheduled start,
+ * which keeps a stalled server from hiding the requests it delayed.
+ * With {@code conditional=true}, receipt and user reads send back the last ETag each
+ * worker saw for that URL, as a polling client would.
+ * With {@code bulk=} set, that many extra workers send bulk-priority purchases back to
+ * back, reported as their own operation, to show how the mix fares beside a saturating backfill.
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:<test classpath> com.trainticketsystem.loadtest.LoadGenerator [key=value ...]};
+ * see {@link LoadTestConfig} for the keys.
+ */
+public class LoadGenerator {
+
+    /** Highest latency tracked, in microseconds. */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    enum Operation {
+        PURCHASE, MODIFY, RECEIPT, USER, SEAT,
+        // Purchase in the bulk priority lane
+        BULK
+    }
+
+    private final LoadTestConfig config;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String[] seatIds;
+    private final ZipfianGenerator seatChooser;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadGenerator(LoadTestConfig config, String baseUrl) {
+        this.config = config;
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        // Rank order runs A1..An then B1..Bn, so the hottest seats are at the front of section A
+        seatIds = new String[config.seats * 2];
+        for (int i = 0; i < config.seats; i++) {
+            seatIds[i] = "A" + (i + 1);
+            seatIds[config.seats + i] = "B" + (i + 1);
+        }
+        seatChooser = new ZipfianGenerator(seatIds.length, config.skew);
+
+        operations = config.mix.keySet().toArray(Operation[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += config.mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig(args);
+        ConfigurableApplicationContext context = null;
+        String baseUrl = config.url;
+        if (baseUrl == null) {
+            context = startApp(config);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            Map<Operation, OperationStats> results = new LoadGenerator(config, baseUrl).run();
+            Map<String, OperationStats> named = new LinkedHashMap<>();
+            results.forEach((operation, stats) -> named.put(operation.name().toLowerCase(), stats));
+            LatencyReport report = new LatencyReport(config.describe(), named, config.duration);
+            report.print(System.out);
+            Path written = report.write(config.out);
+            System.out.printf("%nReport written to %s%n", written);
+            if (config.baseline != null) {
+                report.compare(config.baseline, System.out);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    static ConfigurableApplicationContext startApp(LoadTestConfig config) {
+        // Passed as arguments so they take precedence over application.yml
+        return new SpringApplicationBuilder(TrainTicketSystemApplication.class)
+                .run("--server.port=0",
+                        "--app.user-count=" + config.users,
+                        "--app.seat-count=" + config.seats,
+                        "--app.wallet-balance=" + Integer.MAX_VALUE / 2,
+                        "--app.payment.gateway=" + (config.paymentLatency > 0 ? "simulated" : "wallet"),
+                        "--app.payment.simulated-latency-millis=" + config.paymentLatency,
+                        "--app.scheduling.fair-queuing=" + config.lanes,
+                        "--app.scheduling.max-in-flight=" + config.maxInFlight,
+                        "--app.json.fast-serializers=" + config.fastJson,
+                        "--app.recording.enabled=" + (config.record != null),
+                        "--app.recording.directory=" + (config.record != null ? config.record : "recording"),
+                        // Per-request logging would dominate the numbers
+                        "--logging.level.com.trainticketsystem=OFF");
+    }
+
+    /**
+     * Runs the warm-up and the measured period and merges every worker's results.
+     *
+     * @return Merged statistics per operation
+     */
+    Map<Operation, OperationStats> run() throws Exception {
+        long now = System.nanoTime();
+        long measureFrom = now + config.warmup.toNanos();
+        long endAt = measureFrom + config.duration.toNanos();
+        // Each worker gets an equal share of an open-loop rate
+        long intervalNanos = config.rate > 0 ? TimeUnit.SECONDS.toNanos(config.concurrency) / config.rate : 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency + config.bulk);
+        List<Future<Map<Operation, OperationStats>>> futures = new ArrayList<>();
+        for (int i = 0; i < config.concurrency; i++) {
+            long firstSlot = now + (intervalNanos * i) / config.concurrency;
+            futures.add(workers.submit(() -> work(firstSlot, intervalNanos, measureFrom, endAt, false)));
+        }
+        // Bulk workers always run closed loop, keeping as many bookings queued as they can
+        for (int i = 0; i < config.bulk; i++) {
+            futures.add(workers.submit(() -> work(now, 0, measureFrom, endAt, true)));
+        }
+
+        Map<Operation, OperationStats> merged = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, OperationStats>> future : futures) {
+            future.get().forEach((operation, stats) ->
+                    merged.computeIfAbsent(operation, o -> new OperationStats()).add(stats));
+        }
+        workers.shutdown();
+        return merged;
+    }
+
+    private Map<Operation, OperationStats> work(long firstSlot, long intervalNanos, long measureFrom, long endAt, boolean bulk) {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : bulk ? new Operation[]{Operation.BULK} : operations) {
+            stats.put(operation, new OperationStats());
+        }
+        Map<String, String> eTags = new HashMap<>();
+        long slot = firstSlot;
+        while (true) {
+            long start;
+            if (intervalNanos > 0) {
+                while (System.nanoTime() < slot) {
+                    LockSupport.parkNanos(slot - System.nanoTime());
+                }
+                start = slot;
+                slot += intervalNanos;
+            } else {
+                start = System.nanoTime();
+            }
+            if (start >= endAt) {
+                return stats;
+            }
+
+            Operation operation = bulk ? Operation.BULK : pickOperation();
+            HttpResponse<byte[]> response = send(operation, eTags);
+            long latencyMicros = (System.nanoTime() - start) / 1_000;
+            if (start >= measureFrom) {
+                stats.get(operation).record(response, latencyMicros);
+            }
+        }
+    }
+
+    private Operation pickOperation() {
+        int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Sends one request of the given operation.
+     *
+     * @param eTags Last ETag seen per URL by this worker, used when reads are conditional
+     * @return Response, or null if the request failed without one
+     */
+    private HttpResponse<byte[]> send(Operation operation, Map<String, String> eTags) {
+        int userId = ThreadLocalRandom.current().nextInt(1, config.users + 1);
+        HttpRequest.Builder request = switch (operation) {
+            case PURCHASE -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/train/purchase"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body(userId)));
+            case BULK -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/train/purchase"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body(userId, "bulk")));
+            case MODIFY -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/train/user/" + userId + "/seat"))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body(userId)));
+            case RECEIPT -> conditional(baseUrl + "/api/train/receipt/" + userId, eTags);
+            case USER -> conditional(baseUrl + "/api/train/user/" + userId, eTags);
+            case SEAT -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/train/seat"))
+                    .header("Accept", "application/json")
+                    .GET();
+        };
+        try {
+            HttpResponse<byte[]> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (config.conditional && response.statusCode() == 200) {
+                response.headers().firstValue("ETag")
+                        .ifPresent(eTag -> eTags.put(response.request().uri().toString(), eTag));
+            }
+            return response;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder conditional(String url, Map<String, String> eTags) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+        String eTag = config.conditional ? eTags.get(url) : null;
+        return eTag != null ? request.header("If-None-Match", eTag) : request;
+    }
+
+    private String body(int userId) {
+        return "{\"userId\":\"" + userId + "\",\"seatId\":\"" + seatIds[seatChooser.next()] + "\"}";
+    }
+
+    private String body(int userId, String priority) {
+        return "{\"userId\":\"" + userId + "\",\"seatId\":\"" + seatIds[seatChooser.next()]
+                + "\",\"priority\":\"" + priority + "\"}";
+    }
+
+    /**
+     * Latency histogram, outcome counts and response size for one operation.
+     * 4xx responses count as rejected: a taken seat or a user without a ticket is an
+     * expected business outcome, not a failure of the server. A 304 counts as ok.
+     * Bytes are the status line, headers and body as HTTP/1.1 would send them.
+     */
+    static final class OperationStats {
+        final Histogram histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+        long ok;
+        long notModified;
+        long rejected;
+        long errors;
+        long bytes;
+
+        void record(HttpResponse<byte[]> response, long latencyMicros) {
+            histogram.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+            int status = response != null ? response.statusCode() : -1;
+            if (response != null) {
+                bytes += responseBytes(response);
+            }
+            if (status == 304) {
+                ok++;
+                notModified++;
+            } else if (status >= 200 && status < 300) {
+                ok++;
+            } else if (status >= 400 && status < 500) {
+                rejected++;
+            } else {
+                errors++;
+            }
+        }
+
+        void add(OperationStats other) {
+            histogram.add(other.histogram);
+            ok += other.ok;
+            notModified += other.notModified;
+            rejected += other.rejected;
+            errors += other.errors;
+            bytes += other.bytes;
+        }
+
+        private static long responseBytes(HttpResponse<byte[]> response) {
+            // "HTTP/1.1 200 OK\r\n" and the blank line ending the headers
+            long size = 17 + 2 + response.body().length;
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                for (String value : header.getValue()) {
+                    size += header.getKey().length() + 2 + value.length() + 2;
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.trainticketsystem.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings for one load-test run, parsed from {@code key=value} arguments.
+ *
+ * <ul>
+ *   <li>{@code duration} - measured seconds (default 30)</li>
+ *   <li>{@code warmup} - seconds run before recording starts (default 5)</li>
+ *   <li>{@code concurrency} - worker threads (default 32)</li>
+ *   <li>{@code rate} - total requests per second, 0 for closed loop (default 0)</li>
+ *   <li>{@code mix} - operation weights (default purchase=40,modify=20,receipt=30,seat=10; user is also available)</li>
+ *   <li>{@code conditional} - send If-None-Match on receipt and user reads (default false)</li>
+ *   <li>{@code users} - users created in the app (default 20000)</li>
+ *   <li>{@code seats} - seats per section (default 500)</li>
+ *   <li>{@code skew} - Zipfian exponent for seat choice, 0 for uniform (default 0.99)</li>
+ *   <li>{@code paymentLatency} - milliseconds each payment takes in the in-process app, through the
+ *       simulated gateway; 0 keeps the in-memory wallet (default 0)</li>
+ *   <li>{@code bulk} - extra closed-loop workers sending bulk-priority purchases (default 0)</li>
+ *   <li>{@code lanes} - schedule bookings by priority lane in the in-process app; false queues
+ *       them in arrival order (default true)</li>
+ *   <li>{@code maxInFlight} - bookings the in-process app runs at once (default 64)</li>
+ *   <li>{@code fastJson} - write responses of the in-process app with the hand-written serializers (default false)</li>
+ *   <li>{@code record} - record the requests the in-process app serves to request logs in this directory,
+ *       for {@link TrafficReplay} (default off)</li>
+ *   <li>{@code url} - target an already running app instead of starting one in-process</li>
+ *   <li>{@code out} - directory for the report (default target/loadtest)</li>
+ *   <li>{@code baseline} - earlier report to compare against</li>
+ * </ul>
+ */
+public class LoadTestConfig {
+
+    final Duration duration;
+    final Duration warmup;
+    final int concurrency;
+    final int rate;
+    final Map<LoadGenerator.Operation, Integer> mix;
+    final boolean conditional;
+    final int users;
+    final int seats;
+    final double skew;
+    final long paymentLatency;
+    final int bulk;
+    final boolean lanes;
+    final int maxInFlight;
+    final boolean fastJson;
+    final Path record;
+    final String url;
+    final Path out;
+    final Path baseline;
+
+    private final Map<String, String> values;
+
+    LoadTestConfig(String... args) {
+        values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        duration = Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "30")));
+        warmup = Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "5")));
+        concurrency = Integer.parseInt(values.getOrDefault("concurrency", "32"));
+        rate = Integer.parseInt(values.getOrDefault("rate", "0"));
+        mix = parseMix(values.getOrDefault("mix", "purchase=40,modify=20,receipt=30,seat=10"));
+        conditional = Boolean.parseBoolean(values.getOrDefault("conditional", "false"));
+        users = Integer.parseInt(values.getOrDefault("users", "20000"));
+        seats = Integer.parseInt(values.getOrDefault("seats", "500"));
+        skew = Double.parseDouble(values.getOrDefault("skew", "0.99"));
+        paymentLatency = Long.parseLong(values.getOrDefault("paymentLatency", "0"));
+        bulk = Integer.parseInt(values.getOrDefault("bulk", "0"));
+        lanes = Boolean.parseBoolean(values.getOrDefault("lanes", "true"));
+        maxInFlight = Integer.parseInt(values.getOrDefault("maxInFlight", "64"));
+        fastJson = Boolean.parseBoolean(values.getOrDefault("fastJson", "false"));
+        record = values.containsKey("record") ? Path.of(values.get("record")) : null;
+        url = values.get("url");
+        out = Path.of(values.getOrDefault("out", "target/loadtest"));
+        baseline = values.containsKey("baseline") ? Path.of(values.get("baseline")) : null;
+    }
+
+    private static Map<LoadGenerator.Operation, Integer> parseMix(String spec) {
+        Map<LoadGenerator.Operation, Integer> weights = new EnumMap<>(LoadGenerator.Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(LoadGenerator.Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+
+    /**
+     * Describes the run so that reports from different runs can be told apart.
+     *
+     * @return Settings in the order they are written to the report header
+     */
+    Map<String, String> describe() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("duration", String.valueOf(duration.toSeconds()));
+        settings.put("warmup", String.valueOf(warmup.toSeconds()));
+        settings.put("concurrency", String.valueOf(concurrency));
+        settings.put("rate", String.valueOf(rate));
+        StringBuilder mixSpec = new StringBuilder();
+        mix.forEach((operation, weight) -> mixSpec.append(mixSpec.isEmpty() ? "" : ",")
+                .append(operation.name().toLowerCase()).append('=').append(weight));
+        settings.put("mix", mixSpec.toString());
+        settings.put("conditional", String.valueOf(conditional));
+        settings.put("users", String.valueOf(users));
+        settings.put("seats", String.valueOf(seats));
+        settings.put("skew", String.valueOf(skew));
+        settings.put("paymentLatency", String.valueOf(paymentLatency));
+        settings.put("bulk", String.valueOf(bulk));
+        settings.put("lanes", String.valueOf(lanes));
+        settings.put("maxInFlight", String.valueOf(maxInFlight));
+        settings.put("fastJson", String.valueOf(fastJson));
+        settings.put("record", record == null ? "off" : record.toString());
+        settings.put("target", url == null ? "in-process" : url);
+        return settings;
+    }
+}
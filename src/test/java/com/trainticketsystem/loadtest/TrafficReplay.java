@@ -0,0 +1,254 @@
+package com.trainticketsystem.loadtest;
+
+import com.trainticketsystem.model.RecordedRequest;
+import com.trainticketsystem.utils.TrafficLogFormat;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Replays request logs recorded with {@code app.recording.enabled=true} (or the load
+ * generator's {@code record=}) against an instance and reports latency per endpoint
+ * in the same form as {@link LoadGenerator}, so runs against two builds can be
+ * compared with {@code baseline=}.
+ * Requests are sent in the order they arrived. At a positive speed each is sent at its
+ * recorded offset from the first, divided by the speed, and latency is measured from
+ * that scheduled time, so a server that falls behind is charged for the delay; at speed
+ * 0 the workers send the requests back to back. Requests recorded without their body
+ * are skipped. Endpoints are named by method and path, with segments holding ids,
+ * seats or emails replaced by {@code {}}.
+ * The target should start from the state the recording started from, for example a
+ * fresh instance with the same users and seats; responses whose status class differs
+ * from the recorded one are counted as mismatched.
+ * Keys, besides the app settings of {@link LoadTestConfig} ({@code users}, {@code seats},
+ * {@code url}, {@code out}, {@code baseline} and the rest):
+ * <ul>
+ *   <li>{@code log} - request log, or a directory of them (required)</li>
+ *   <li>{@code speed} - multiple of the recorded pace, 0 for as fast as possible (default 1)</li>
+ *   <li>{@code concurrency} - worker threads sending requests (default 64)</li>
+ * </ul>
+ * Run with
+ * {@code java -cp target/classes:target/test-classes:<test classpath> com.trainticketsystem.loadtest.TrafficReplay log=recording [key=value ...]}.
+ */
+public class TrafficReplay {
+
+    private final List<RecordedRequest> requests;
+    private final double speed;
+    private final int concurrency;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Map<String, LoadGenerator.OperationStats> results = new ConcurrentHashMap<>();
+    private final AtomicLong mismatched = new AtomicLong();
+
+    TrafficReplay(List<RecordedRequest> requests, double speed, int concurrency, String baseUrl) {
+        this.requests = requests;
+        this.speed = speed;
+        this.concurrency = concurrency;
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                values.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        if (!values.containsKey("log")) {
+            throw new IllegalArgumentException("Expected log=<request log or directory>");
+        }
+        Path log = Path.of(values.get("log"));
+        double speed = Double.parseDouble(values.getOrDefault("speed", "1"));
+        int concurrency = Integer.parseInt(values.getOrDefault("concurrency", "64"));
+        LoadTestConfig config = new LoadTestConfig(args);
+
+        List<RecordedRequest> recorded = read(log);
+        List<RecordedRequest> replayable = recorded.stream().filter(request -> !request.isBodyOmitted()).toList();
+        if (replayable.isEmpty()) {
+            throw new IllegalArgumentException("No replayable requests in " + log);
+        }
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = config.url;
+        if (baseUrl == null) {
+            context = LoadGenerator.startApp(config);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            TrafficReplay replay = new TrafficReplay(replayable, speed, concurrency, baseUrl);
+            Duration elapsed = replay.run();
+
+            Map<String, String> settings = new LinkedHashMap<>();
+            settings.put("log", log.toString());
+            settings.put("requests", String.valueOf(replayable.size()));
+            settings.put("skipped", String.valueOf(recorded.size() - replayable.size()));
+            settings.put("recorded", String.format("%.1fs", recordedSpan(replayable) / 1e6));
+            settings.put("speed", speed > 0 ? String.valueOf(speed) : "max");
+            settings.put("concurrency", String.valueOf(concurrency));
+            settings.put("users", String.valueOf(config.users));
+            settings.put("seats", String.valueOf(config.seats));
+            settings.put("target", config.url == null ? "in-process" : config.url);
+            settings.put("elapsed", String.format("%.1fs", elapsed.toMillis() / 1000.0));
+            settings.put("mismatched", String.valueOf(replay.mismatched.get()));
+
+            Map<String, LoadGenerator.OperationStats> sorted = new LinkedHashMap<>();
+            replay.results.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            LatencyReport report = new LatencyReport(settings, sorted, elapsed);
+            report.print(System.out);
+            Path written = report.write(config.out);
+            System.out.printf("%nReport written to %s%n", written);
+            if (config.baseline != null) {
+                report.compare(config.baseline, System.out);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a log, or every log in a directory including unfinished ones, and orders
+     * the requests by arrival; logs hold them in the order they completed.
+     */
+    static List<RecordedRequest> read(Path log) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(log)) {
+            try (Stream<Path> listing = Files.list(log)) {
+                files = listing.filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.endsWith(TrafficLogFormat.FILE_SUFFIX) || name.endsWith(TrafficLogFormat.FILE_SUFFIX + ".part");
+                }).sorted().toList();
+            }
+        } else {
+            files = List.of(log);
+        }
+        List<RecordedRequest> requests = new ArrayList<>();
+        for (Path file : files) {
+            requests.addAll(TrafficLogFormat.read(file));
+        }
+        requests.sort(Comparator.comparingLong(RecordedRequest::getArrivalMicros));
+        return requests;
+    }
+
+    /**
+     * Sends every request and waits for the last response.
+     *
+     * @return Time from the first request to the last response
+     */
+    Duration run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long firstArrival = requests.get(0).getArrivalMicros();
+        long start = System.nanoTime();
+        for (RecordedRequest request : requests) {
+            if (speed > 0) {
+                long scheduled = start + (long) ((request.getArrivalMicros() - firstArrival) * 1_000 / speed);
+                while (System.nanoTime() < scheduled) {
+                    LockSupport.parkNanos(scheduled - System.nanoTime());
+                }
+                workers.execute(() -> send(request, scheduled));
+            } else {
+                workers.execute(() -> send(request, System.nanoTime()));
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private void send(RecordedRequest recorded, long scheduled) {
+        if (speed <= 0) {
+            // Closed loop: the clock starts when a worker is free to send
+            scheduled = System.nanoTime();
+        }
+        HttpResponse<byte[]> response = null;
+        try {
+            response = client.send(request(recorded), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            // Counted as an error
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long latencyMicros = (System.nanoTime() - scheduled) / 1_000;
+        int status = response != null ? response.statusCode() : -1;
+        if (status / 100 != recorded.getStatus() / 100) {
+            mismatched.incrementAndGet();
+        }
+        LoadGenerator.OperationStats stats = results.computeIfAbsent(endpoint(recorded), key -> new LoadGenerator.OperationStats());
+        synchronized (stats) {
+            stats.record(response, latencyMicros);
+        }
+    }
+
+    private HttpRequest request(RecordedRequest recorded) {
+        HttpRequest.BodyPublisher body = recorded.getBody() != null
+                ? HttpRequest.BodyPublishers.ofByteArray(recorded.getBody())
+                : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + recorded.getPath()))
+                .method(recorded.getMethod(), body)
+                .timeout(Duration.ofSeconds(30));
+        header(request, "Content-Type", recorded.getContentType());
+        header(request, "Accept", recorded.getAccept());
+        header(request, "If-None-Match", recorded.getIfNoneMatch());
+        header(request, "X-Request-Timeout", recorded.getRequestTimeout());
+        return request.build();
+    }
+
+    private static void header(HttpRequest.Builder request, String name, String value) {
+        if (value != null) {
+            request.header(name, value);
+        }
+    }
+
+    /**
+     * Names the endpoint a request went to, such as {@code GET /receipt/{}}.
+     */
+    static String endpoint(RecordedRequest request) {
+        String path = request.getPath();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (path.startsWith("/api/train")) {
+            path = path.substring("/api/train".length());
+        }
+        StringBuilder name = new StringBuilder(request.getMethod()).append(' ');
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            name.append('/').append(segment.chars().anyMatch(c -> Character.isDigit(c) || c == '@') ? "{}" : segment);
+        }
+        return name.toString();
+    }
+
+    private static long recordedSpan(List<RecordedRequest> requests) {
+        return requests.get(requests.size() - 1).getArrivalMicros() - requests.get(0).getArrivalMicros();
+    }
+}
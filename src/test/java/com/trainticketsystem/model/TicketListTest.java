@@ -0,0 +1,100 @@
+package com.trainticketsystem.model;
+
+import com.trainticketsystem.utils.SeatCodes;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketListTest {
+
+    private static TicketRecord ticket(long id, String seat, int journeyId) {
+        return new TicketRecord(id, 7, SeatCodes.encode(seat), journeyId, (int) id * 10);
+    }
+
+    @Test
+    void testLookupsAndPages() {
+        TicketList tickets = TicketList.EMPTY
+                .with(ticket(3, "A1", 1))
+                .with(ticket(5, "A2", 0))
+                .with(ticket(9, "B4", 1))
+                .with(ticket(12, "A1", 1));
+
+        assertEquals(4, tickets.size());
+        assertEquals(ticket(12, "A1", 1), tickets.latest());
+        assertEquals(ticket(5, "A2", 0), tickets.find(5));
+        assertNull(tickets.find(6));
+        assertTrue(tickets.contains(9));
+        // The most recent ticket for a seat wins
+        assertEquals(12, tickets.findBySeat(SeatCodes.encode("A1")).getId());
+        assertNull(tickets.findBySeat(SeatCodes.encode("B1")));
+
+        assertEquals(List.of(ticket(5, "A2", 0), ticket(9, "B4", 1)), tickets.page(1, 2));
+        assertEquals(List.of(ticket(12, "A1", 1)), tickets.page(3, 20));
+        assertEquals(List.of(), tickets.page(4, 20));
+
+        assertEquals(3, tickets.countForJourney(1));
+        assertEquals(0, tickets.countForJourney(2));
+        assertEquals(List.of(ticket(3, "A1", 1), ticket(9, "B4", 1)), tickets.pageForJourney(1, 0, 2));
+        assertEquals(List.of(ticket(12, "A1", 1)), tickets.pageForJourney(1, 2, 2));
+        assertEquals(List.of(ticket(5, "A2", 0)), tickets.pageForJourney(0, 0, 10));
+    }
+
+    @Test
+    void testCopyOfMatchesTheListBuiltTicketByTicket() {
+        List<TicketRecord> records = List.of(ticket(2, "A1", 1), ticket(4, "A2", 0), ticket(6, "B3", 1), ticket(8, "B4", 0));
+        TicketList built = TicketList.EMPTY;
+        for (TicketRecord record : records) {
+            built = built.with(record);
+        }
+        TicketList copied = TicketList.copyOf(records);
+
+        assertEquals(built.toList(), copied.toList());
+        assertEquals(built.pageForJourney(0, 0, 10), copied.pageForJourney(0, 0, 10));
+        assertEquals(built.pageForJourney(1, 0, 10), copied.pageForJourney(1, 0, 10));
+        assertSame(TicketList.EMPTY, TicketList.copyOf(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> TicketList.copyOf(List.of(ticket(4, "A1", 0), ticket(2, "A2", 0))));
+    }
+
+    @Test
+    void testChangesLeaveEarlierListsUntouched() {
+        TicketList one = TicketList.of(ticket(1, "A1", 0));
+        TicketList two = one.with(ticket(2, "A2", 0));
+
+        assertEquals(1, one.size());
+        assertSame(two, two.without(3));
+        TicketList back = two.without(1);
+        assertEquals(List.of(ticket(2, "A2", 0)), back.toList());
+        assertEquals(2, two.size());
+        assertSame(TicketList.EMPTY, back.without(2));
+        assertThrows(IllegalArgumentException.class, () -> two.with(ticket(2, "B1", 0)));
+    }
+
+    @Test
+    void testJourneyPagesMatchAFilteredScan() {
+        Random random = new Random(42);
+        TicketList tickets = TicketList.EMPTY;
+        List<TicketRecord> expected = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            if (!expected.isEmpty() && random.nextInt(3) == 0) {
+                TicketRecord dropped = expected.remove(random.nextInt(expected.size()));
+                tickets = tickets.without(dropped.getId());
+            }
+            TicketRecord added = ticket(id, "A" + id, random.nextInt(4));
+            tickets = tickets.with(added);
+            expected.add(added);
+        }
+
+        assertEquals(expected, tickets.toList());
+        for (int journey = 0; journey < 4; journey++) {
+            int journeyId = journey;
+            List<TicketRecord> ofJourney = expected.stream().filter(t -> t.getJourneyId() == journeyId).toList();
+            assertEquals(ofJourney.size(), tickets.countForJourney(journeyId));
+            assertEquals(ofJourney, tickets.pageForJourney(journeyId, 0, ofJourney.size()));
+            assertEquals(ofJourney.subList(5, 15), tickets.pageForJourney(journeyId, 5, 10));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingEvent;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.ExportStatus;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.BookingExportFormat;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BookingExporter: events published through the booking services
+ * must come back from the export files in order and with every column intact.
+ */
+class BookingExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private AppProperties appProperties;
+    private UserStore userMap;
+    private BookingIndex bookingIndex;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        appProperties.getExport().setEnabled(true);
+        appProperties.getExport().setDirectory(directory.toString());
+        appProperties.getExport().setFlushIntervalMillis(10);
+
+        userMap = new UserStore();
+        for (int i = 1; i <= 2; i++) {
+            userMap.put(User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(100)
+                    .build());
+        }
+        bookingIndex = new BookingIndex(userMap);
+    }
+
+    private List<Path> completedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private List<BookingEvent> readAll() throws IOException {
+        List<BookingEvent> events = new ArrayList<>();
+        for (Path file : completedFiles()) {
+            assertTrue(file.toString().endsWith(BookingExportFormat.FILE_SUFFIX), file.toString());
+            events.addAll(BookingExportFormat.read(file));
+        }
+        return events;
+    }
+
+    @Test
+    void testBookModifyAndCancelAreExportedInOrder() throws Exception {
+        Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+        for (String seatId : List.of("A1", "A2", "B1")) {
+            seatMap.put(seatId, new Seat(seatId, true));
+        }
+        SeatManager seatManager = new SeatManager(seatMap, appProperties);
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        PurchaseTicketService purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+        RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+        ModifySeatService modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+        UserDetailService userDetailService = new UserDetailService(userMap, responseBuilder, seatMap, bookingIndex, seatManager, refundProcessor);
+        BookingExporter exporter = new BookingExporter(bookingIndex, appProperties);
+
+        assertTrue(purchaseTicketService.purchaseTicket("1", "A1").join().isTransactionStatus());
+        assertTrue(modifySeatService.modifySeating("1", "B1").join().isTransactionStatus());
+        assertTrue(purchaseTicketService.purchaseTicket("2", "A2").join().isTransactionStatus());
+        // B1 is taken, so the modification takes A2 back and user 2 keeps their ticket
+        assertFalse(modifySeatService.modifySeating("2", "B1").join().isTransactionStatus());
+        userDetailService.deleteUser("1");
+        userDetailService.deleteUser("2");
+        exporter.shutdown();
+
+        List<BookingEvent> events = readAll();
+        assertEquals(5, events.size(), events.toString());
+        assertEquals(List.of(BookingEvent.Type.BOOKED, BookingEvent.Type.MODIFIED, BookingEvent.Type.BOOKED,
+                        BookingEvent.Type.CANCELLED, BookingEvent.Type.CANCELLED),
+                events.stream().map(BookingEvent::getType).toList());
+
+        BookingEvent modified = events.get(1);
+        assertEquals(1, modified.getUserId());
+        assertEquals("B1", modified.getSeatNumber());
+        assertEquals("A1", modified.getPreviousSeatNumber());
+        assertEquals(20, modified.getPrice());
+        assertNotEquals(events.get(0).getTicketId(), modified.getTicketId());
+        assertEquals(modified.getTicketId(), events.get(3).getTicketId());
+        assertNull(events.get(3).getPreviousSeatNumber());
+        assertEquals(events.get(2).getTicketId(), events.get(4).getTicketId());
+        assertEquals("A2", events.get(4).getSeatNumber());
+        assertTrue(events.get(0).getTimestamp() <= events.get(4).getTimestamp());
+
+        ExportStatus status = exporter.getStatus();
+        assertEquals(5, status.getAccepted());
+        assertEquals(5, status.getWritten());
+        assertEquals(0, status.getBacklog());
+        assertEquals(1, status.getCompletedFiles());
+        assertNull(status.getCurrentFile());
+    }
+
+    @Test
+    void testEveryEventIsWrittenOrCountedAsDroppedAndFilesRoll() throws Exception {
+        appProperties.getExport().setQueueCapacity(8);
+        appProperties.getExport().setBatchSize(4);
+        appProperties.getExport().setRollRows(3);
+        BookingExporter exporter = new BookingExporter(bookingIndex, appProperties);
+
+        User user = userMap.get(1);
+        int published = 5_000;
+        for (int i = 1; i <= published; i++) {
+            bookingIndex.ticketIssued(user, new TicketRecord(i, 1, SeatCodes.encode("A" + i), 0, 20));
+        }
+        exporter.shutdown();
+        // Nothing is accepted once the exporter has stopped
+        bookingIndex.ticketIssued(user, new TicketRecord(published + 1, 1, SeatCodes.encode("A1"), 0, 20));
+
+        ExportStatus status = exporter.getStatus();
+        assertEquals(published + 1, status.getAccepted() + status.getDropped());
+        assertEquals(status.getAccepted(), status.getWritten());
+        assertEquals(0, status.getFailed());
+        assertEquals(0, status.getBacklog());
+
+        List<Path> files = completedFiles();
+        assertEquals((status.getWritten() + 2) / 3, files.size());
+        assertEquals(status.getCompletedFiles(), files.size());
+        List<BookingEvent> events = readAll();
+        assertEquals(status.getWritten(), events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).getTicketId() > events.get(i - 1).getTicketId());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BookingIndex focusing on index consistency.
+ * Drives purchase, modify and delete concurrently through the real services
+ * and checks every index against the seat and user maps afterwards.
+ */
+class BookingIndexTest {
+
+    private static final int NUM_USERS = 40;
+    private static final int CONTESTED_SEATS = 20;
+    private static final int MODIFICATIONS = 10;
+
+    private Map<Integer, User> userMap;
+    private Map<String, Seat> seatMap;
+    private BookingIndex bookingIndex;
+    private PurchaseTicketService purchaseTicketService;
+    private ModifySeatService modifySeatService;
+    private UserDetailService userDetailService;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+
+        userMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= NUM_USERS; i++) {
+            userMap.put(i, User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(10_000)
+                    .build());
+        }
+
+        // Section A is contested by everyone, section B gives each user two private seats
+        seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= CONTESTED_SEATS; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+        }
+        for (int i = 1; i <= NUM_USERS * 2; i++) {
+            seatMap.put("B" + i, new Seat("B" + i, true));
+        }
+
+        bookingIndex = new BookingIndex(userMap);
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        SeatManager seatManager = new SeatManager(seatMap, appProperties);
+        purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+        RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+        modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+        userDetailService = new UserDetailService(userMap, responseBuilder, seatMap, bookingIndex, seatManager, refundProcessor);
+    }
+
+    @Test
+    void testLookupsAfterPurchase() {
+        TicketResponse response = purchaseTicketService.purchaseTicket("1", "A1").join();
+        assertTrue(response.isTransactionStatus());
+
+        User user = userMap.get(1);
+        assertSame(user, bookingIndex.findByEmail("USER1@test.com"));
+        assertSame(user, bookingIndex.findBySeat("A1"));
+        assertEquals(response.getTicket().getRecord(), bookingIndex.findTicket(response.getTicket().getId()));
+        assertNull(bookingIndex.findBySeat("A2"));
+    }
+
+    @Test
+    void testConcurrentPurchasesByOneUserIndexEveryTicket() {
+        List<CompletableFuture<TicketResponse>> purchases = new ArrayList<>();
+        for (int i = 1; i <= NUM_USERS * 2; i++) {
+            purchases.add(purchaseTicketService.purchaseTicket("1", "B" + i));
+        }
+
+        User user = userMap.get(1);
+        for (int i = 0; i < purchases.size(); i++) {
+            TicketResponse response = purchases.get(i).join();
+            assertTrue(response.isTransactionStatus(), response.getMessage());
+            assertEquals(response.getTicket().getRecord(), bookingIndex.findTicket(response.getTicket().getId()));
+            assertSame(user, bookingIndex.findBySeat("B" + (i + 1)));
+        }
+    }
+
+    @Test
+    void testLookupsAfterModifyAndDelete() {
+        TicketRecord first = purchaseTicketService.purchaseTicket("1", "A1").join().getTicket().getRecord();
+        TicketRecord second = modifySeatService.modifySeating("1", "B1").join().getTicket().getRecord();
+
+        assertNull(bookingIndex.findBySeat("A1"));
+        assertNull(bookingIndex.findTicket(first.getId()));
+        assertSame(userMap.get(1), bookingIndex.findBySeat("B1"));
+        assertSame(second, bookingIndex.findTicket(second.getId()));
+
+        userDetailService.deleteUser("1");
+        assertNull(bookingIndex.findByEmail("user1@test.com"));
+        assertNull(bookingIndex.findBySeat("B1"));
+        assertNull(bookingIndex.findTicket(second.getId()));
+    }
+
+    /**
+     * Every user races for a contested seat, winners then hop between their
+     * private seats and every fifth user deletes itself, all concurrently.
+     */
+    @Test
+    void testIndexesStayConsistentUnderConcurrentModification() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(NUM_USERS);
+        List<TicketRecord> deletedTickets = new CopyOnWriteArrayList<>();
+
+        for (int i = 1; i <= NUM_USERS; i++) {
+            final int userId = i;
+            executorService.submit(() -> {
+                try {
+                    start.await();
+                    String contested = "A" + ThreadLocalRandom.current().nextInt(1, CONTESTED_SEATS + 1);
+                    TicketResponse response = purchaseTicketService.purchaseTicket(String.valueOf(userId), contested).join();
+                    if (response.isTransactionStatus()) {
+                        for (int m = 0; m < MODIFICATIONS; m++) {
+                            String privateSeat = "B" + (userId * 2 - m % 2);
+                            modifySeatService.modifySeating(String.valueOf(userId), privateSeat).join();
+                        }
+                    }
+                    if (userId % 5 == 0) {
+                        User user = userMap.get(userId);
+                        if (user.getTicket() != null) {
+                            deletedTickets.add(user.getTicket());
+                        }
+                        userDetailService.deleteUser(String.valueOf(userId));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+
+        // Seat index must agree with the seat map for every seat
+        seatMap.values().forEach(seat ->
+                assertSame(seat.getReservedBy(), bookingIndex.findBySeat(seat.getId()), "seat " + seat.getId()));
+
+        // Email and ticket indexes must agree with every remaining user
+        userMap.values().forEach(user -> {
+            assertSame(user, bookingIndex.findByEmail(user.getEmail()));
+            if (user.getTicket() != null) {
+                assertEquals(user.getTicket(), bookingIndex.findTicket(user.getTicket().getId()));
+                assertSame(user, bookingIndex.findBySeat(user.getSeatNumber()));
+            }
+        });
+
+        // Deleted users and their tickets must be gone
+        for (int i = 5; i <= NUM_USERS; i += 5) {
+            assertNull(bookingIndex.findByEmail("user" + i + "@test.com"));
+        }
+        deletedTickets.forEach(ticket -> assertNull(bookingIndex.findTicket(ticket.getId())));
+    }
+}
@@ -0,0 +1,217 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingPriority;
+import com.trainticketsystem.response.LaneStatus;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingSchedulerTest {
+
+    private AppProperties appProperties;
+    private SimpleMeterRegistry meterRegistry;
+    // Lane of each booking in the order they were started
+    private final List<BookingPriority> started = new ArrayList<>();
+    private final List<CompletableFuture<TicketResponse>> running = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getScheduling().setMaxInFlight(1);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * A scheduler that starts each booking on the dispatching thread, so starts happen in a known order.
+     */
+    private BookingScheduler scheduler() {
+        return new BookingScheduler(appProperties, meterRegistry, new TicketResponseBuilder(), Runnable::run);
+    }
+
+    /**
+     * A booking that records its start and completes only when the test finishes it.
+     */
+    private Supplier<CompletableFuture<TicketResponse>> booking(BookingPriority priority) {
+        return () -> {
+            started.add(priority);
+            CompletableFuture<TicketResponse> response = new CompletableFuture<>();
+            running.add(response);
+            return response;
+        };
+    }
+
+    private void finishNext() {
+        running.remove(0).complete(TicketResponse.builder().transactionStatus(true).build());
+    }
+
+    private static double count(List<BookingPriority> lanes, BookingPriority priority) {
+        return lanes.stream().filter(priority::equals).count();
+    }
+
+    @Test
+    void testBacklogsShareSlotsByWeight() {
+        BookingScheduler scheduler = scheduler();
+        Deadline deadline = Deadline.after(60_000);
+        // Occupies the only slot while the lanes fill up
+        scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK));
+        List<CompletableFuture<TicketResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            results.add(scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK)));
+        }
+        for (int i = 0; i < 20; i++) {
+            results.add(scheduler.submit(null, deadline, booking(BookingPriority.INTERACTIVE)));
+            results.add(scheduler.submit(BookingPriority.PARTNER, deadline, booking(BookingPriority.PARTNER)));
+        }
+        assertEquals(1, started.size());
+
+        for (int i = 0; i < 24; i++) {
+            finishNext();
+        }
+        // Weights 8:3:1 over 24 turns, give or take the turn in progress, although bulk queued first and deepest
+        List<BookingPriority> turns = started.subList(1, 25);
+        assertEquals(16, count(turns, BookingPriority.INTERACTIVE), 1, turns.toString());
+        assertEquals(6, count(turns, BookingPriority.PARTNER), 1, turns.toString());
+        assertEquals(2, count(turns, BookingPriority.BULK), 1, turns.toString());
+
+        while (!running.isEmpty()) {
+            finishNext();
+        }
+        assertEquals(81, started.size());
+        results.forEach(result -> assertTrue(result.join().isTransactionStatus()));
+        assertEquals(0, scheduler.getInFlight());
+        LaneStatus interactive = scheduler.getLaneStatus().get(0);
+        assertEquals(BookingPriority.INTERACTIVE, interactive.getPriority());
+        assertEquals(20, interactive.getCompleted());
+        assertEquals(20, meterRegistry.get("booking.lane.latency").tag("lane", "interactive").timer().count());
+    }
+
+    @Test
+    void testIdleLaneEarnsNoCredit() {
+        BookingScheduler scheduler = scheduler();
+        Deadline deadline = Deadline.after(60_000);
+        scheduler.submit(BookingPriority.INTERACTIVE, deadline, booking(BookingPriority.INTERACTIVE));
+        for (int i = 0; i < 20; i++) {
+            scheduler.submit(BookingPriority.INTERACTIVE, deadline, booking(BookingPriority.INTERACTIVE));
+        }
+        for (int i = 0; i < 16; i++) {
+            finishNext();
+        }
+        // Bulk was idle while interactive ran alone, so it gets its share from now on, not a burst
+        for (int i = 0; i < 10; i++) {
+            scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK));
+        }
+        for (int i = 0; i < 5; i++) {
+            finishNext();
+        }
+        assertTrue(count(started.subList(17, 22), BookingPriority.BULK) <= 1, started.toString());
+    }
+
+    @Test
+    void testExpiredBookingIsNotStarted() {
+        BookingScheduler scheduler = scheduler();
+        scheduler.submit(BookingPriority.INTERACTIVE, Deadline.after(60_000), booking(BookingPriority.INTERACTIVE));
+        CompletableFuture<TicketResponse> expired = scheduler.submit(BookingPriority.BULK, Deadline.after(0), booking(BookingPriority.BULK));
+        assertFalse(expired.isDone());
+
+        finishNext();
+        TicketResponse response = expired.join();
+        assertFalse(response.isTransactionStatus());
+        assertEquals(SeatManager.DEADLINE_EXCEEDED, response.getMessage());
+        assertEquals(List.of(BookingPriority.INTERACTIVE), started);
+        assertEquals(1, scheduler.getLaneStatus().get(BookingPriority.BULK.ordinal()).getExpired());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    void testFullLaneRefusesBookings() {
+        appProperties.getScheduling().setQueueCapacity(2);
+        BookingScheduler scheduler = scheduler();
+        Deadline deadline = Deadline.after(60_000);
+        scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK));
+        scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK));
+        scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK));
+
+        TicketResponse refused = scheduler.submit(BookingPriority.BULK, deadline, booking(BookingPriority.BULK)).join();
+        assertFalse(refused.isTransactionStatus());
+        assertEquals(BookingScheduler.LANE_FULL, refused.getMessage());
+        // Other lanes have their own room
+        assertFalse(scheduler.submit(BookingPriority.INTERACTIVE, deadline, booking(BookingPriority.INTERACTIVE)).isDone());
+        assertEquals(1, scheduler.getLaneStatus().get(BookingPriority.BULK.ordinal()).getRejected());
+    }
+
+    @Test
+    void testWithoutFairQueuingBookingsRunInArrivalOrder() {
+        appProperties.getScheduling().setFairQueuing(false);
+        BookingScheduler scheduler = scheduler();
+        Deadline deadline = Deadline.after(60_000);
+        List<BookingPriority> submitted = List.of(BookingPriority.BULK, BookingPriority.BULK,
+                BookingPriority.INTERACTIVE, BookingPriority.PARTNER, BookingPriority.BULK, BookingPriority.INTERACTIVE);
+        submitted.forEach(priority -> scheduler.submit(priority, deadline, booking(priority)));
+        while (!running.isEmpty()) {
+            finishNext();
+        }
+        assertEquals(submitted, started);
+    }
+
+    @Test
+    void testBookingThatThrowsFreesItsSlot() {
+        BookingScheduler scheduler = scheduler();
+        CompletableFuture<TicketResponse> failed = scheduler.submit(BookingPriority.INTERACTIVE, Deadline.after(60_000), () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, scheduler.getInFlight());
+        scheduler.submit(BookingPriority.INTERACTIVE, Deadline.after(60_000), booking(BookingPriority.INTERACTIVE));
+        assertEquals(1, started.size());
+    }
+
+    @Test
+    void testBlockedBookingDoesNotStallDispatch() throws InterruptedException {
+        appProperties.getScheduling().setMaxInFlight(2);
+        BookingScheduler scheduler = new BookingScheduler(appProperties, meterRegistry, new TicketResponseBuilder());
+        Deadline deadline = Deadline.after(60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        try {
+            // Blocks the thread that starts it, like a seat change waiting for a seat lock
+            CompletableFuture<TicketResponse> blocked = scheduler.submit(BookingPriority.INTERACTIVE, deadline, () -> {
+                threads.add(Thread.currentThread().getName());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return CompletableFuture.completedFuture(TicketResponse.builder().transactionStatus(true).build());
+            });
+            assertFalse(blocked.isDone());
+
+            CompletableFuture<TicketResponse> next = scheduler.submit(BookingPriority.BULK, deadline, () -> {
+                threads.add(Thread.currentThread().getName());
+                return CompletableFuture.completedFuture(TicketResponse.builder().transactionStatus(true).build());
+            });
+            assertTrue(next.join().isTransactionStatus());
+            assertFalse(blocked.isDone());
+
+            release.countDown();
+            assertTrue(blocked.join().isTransactionStatus());
+            assertEquals(2, threads.size());
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("booking-starter")), threads.toString());
+        } finally {
+            release.countDown();
+            scheduler.shutdown();
+        }
+    }
+}
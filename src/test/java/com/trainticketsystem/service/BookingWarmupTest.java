@@ -0,0 +1,27 @@
+package com.trainticketsystem.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.config.AppProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingWarmupTest {
+
+    @Test
+    void testWarmupCompletesEveryCycleAndRestoresLogging() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        LoggingSystem loggingSystem = LoggingSystem.get(getClass().getClassLoader());
+        loggingSystem.setLogLevel("com.trainticketsystem", LogLevel.DEBUG);
+
+        BookingWarmup warmup = new BookingWarmup(appProperties, new ObjectMapper(), loggingSystem);
+
+        // More cycles than shadow users and seats, so every seat is booked and released repeatedly
+        assertEquals(200, warmup.run(200));
+        assertEquals(LogLevel.DEBUG, loggingSystem.getLoggerConfiguration("com.trainticketsystem").getConfiguredLevel());
+        loggingSystem.setLogLevel("com.trainticketsystem", null);
+    }
+}
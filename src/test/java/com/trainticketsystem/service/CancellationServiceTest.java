@@ -0,0 +1,333 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.CancellationJob;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationServiceTest {
+
+    private static final int TICKET_PRICE = 20;
+    private static final int BALANCE = 100;
+
+    private UserStore userMap;
+    private Map<String, Seat> seatMap;
+    private BookingIndex bookingIndex;
+    private SeatManager seatManager;
+    private RefundProcessor refundProcessor;
+    private CancellationService cancellationService;
+
+    @BeforeEach
+    void setUp() {
+        userMap = new UserStore();
+        seatMap = new ConcurrentHashMap<>();
+        bookingIndex = new BookingIndex(userMap);
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(TICKET_PRICE);
+        appProperties.setCancellationBatchSize(256);
+        seatManager = new SeatManager(seatMap, appProperties);
+        refundProcessor = new RefundProcessor(new WalletPaymentGateway(), appProperties);
+        cancellationService = new CancellationService(seatManager, userMap, seatMap, bookingIndex,
+                new TicketResponseBuilder(), refundProcessor, appProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        cancellationService.shutdown();
+        refundProcessor.shutdown();
+    }
+
+    /**
+     * Creates a seat held by a new user, as if booked and charged.
+     */
+    private User book(int userId, String seatId) {
+        userMap.put(User.builder()
+                .id(userId)
+                .firstName("User" + userId)
+                .lastName("Test" + userId)
+                .email("user" + userId + "@test.com")
+                .walletBalance(BALANCE - TICKET_PRICE)
+                .build());
+        User user = userMap.get(userId);
+        Seat seat = new Seat(seatId, true);
+        seat.reserve(user);
+        seatMap.put(seatId, seat);
+        user.addTicket(new TicketRecord(userId, userId, SeatCodes.encode(seatId), 0, TICKET_PRICE));
+        bookingIndex.ticketIssued(user, user.getTicket());
+        return user;
+    }
+
+    private static CancellationJob await(CancellationJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (job.getStatus() == CancellationJob.Status.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return job;
+    }
+
+    private void awaitRefunds() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (refundProcessor.getStatus().getBacklog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, refundProcessor.getStatus().getBacklog());
+    }
+
+    @Test
+    void testCancelSectionReleasesAndRefundsOnlyThatSection() throws InterruptedException {
+        for (int i = 1; i <= 10; i++) {
+            book(i, "A" + i);
+            book(100 + i, "B" + i);
+        }
+        seatMap.put("A11", new Seat("A11", true));
+
+        CancellationJob job = await(cancellationService.cancelJourney(0, "A"));
+
+        assertEquals(CancellationJob.Status.COMPLETED, job.getStatus());
+        assertEquals(11, job.getTotalSeats());
+        assertEquals(11, job.getProcessedSeats().get());
+        assertEquals(10, job.getReleasedSeats().get());
+        assertEquals(10, job.getRefundedTickets().get());
+        assertEquals(10L * TICKET_PRICE, job.getRefundedAmount().get());
+
+        awaitRefunds();
+        for (int i = 1; i <= 10; i++) {
+            User refunded = userMap.get(i);
+            assertTrue(seatMap.get("A" + i).isAvailable());
+            assertNull(refunded.getTicket());
+            assertEquals(BALANCE, refunded.getWalletBalance());
+            assertNull(bookingIndex.findBySeat("A" + i));
+
+            User untouched = userMap.get(100 + i);
+            assertFalse(seatMap.get("B" + i).isAvailable());
+            assertNotNull(untouched.getTicket());
+            assertEquals(BALANCE - TICKET_PRICE, untouched.getWalletBalance());
+        }
+    }
+
+    @Test
+    void testFinishedJobIsForgottenAfterRetention() throws InterruptedException {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setCancellationJobRetentionMillis(0);
+        CancellationService shortLived = new CancellationService(seatManager, userMap, seatMap, bookingIndex,
+                new TicketResponseBuilder(), refundProcessor, appProperties);
+        try {
+            book(1, "A1");
+            CancellationJob job = await(shortLived.cancelJourney(0, null));
+            assertEquals(CancellationJob.Status.COMPLETED, job.getStatus());
+
+            Thread.sleep(5);
+            assertNull(shortLived.getJob(job.getId()));
+        } finally {
+            shortLived.shutdown();
+        }
+    }
+
+    @Test
+    void testUnknownJourneyIsRejected() {
+        assertNull(cancellationService.cancelJourney(42, null));
+    }
+
+    @Test
+    void testCancelHundredThousandSeats() throws InterruptedException {
+        int seats = 100_000;
+        for (int i = 1; i <= seats; i++) {
+            book(i, (i % 2 == 0 ? "A" : "B") + i);
+        }
+
+        CancellationJob job = await(cancellationService.cancelJourney(0, null));
+
+        assertEquals(CancellationJob.Status.COMPLETED, job.getStatus());
+        assertEquals(seats, job.getReleasedSeats().get());
+        assertEquals((long) seats * TICKET_PRICE, job.getRefundedAmount().get());
+        assertTrue(job.getElapsedMillis() < 10_000, "took " + job.getElapsedMillis() + " ms");
+        awaitRefunds();
+        assertEquals(BALANCE, userMap.get(seats).getWalletBalance());
+        assertTrue(seatMap.values().stream().allMatch(Seat::isAvailable));
+    }
+
+    @Test
+    void testCancelTicketFreesSeatAndQueuesRefund() throws InterruptedException {
+        User user = book(1, "A1");
+        long ticketId = user.getTicket().getId();
+
+        TicketResponse response = cancellationService.cancelTicket("1", ticketId, seatManager.defaultDeadline());
+
+        assertTrue(response.isTransactionStatus(), response.getMessage());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertNull(userMap.get(1).getTicket());
+        assertNull(bookingIndex.findBySeat("A1"));
+        awaitRefunds();
+        assertEquals(BALANCE, userMap.get(1).getWalletBalance());
+        assertEquals(1, refundProcessor.getStatus().getRefunded());
+
+        TicketResponse again = cancellationService.cancelTicket("1", ticketId, seatManager.defaultDeadline());
+        assertFalse(again.isTransactionStatus());
+        assertEquals("Ticket not found", again.getMessage());
+        assertFalse(cancellationService.cancelTicket("99", ticketId, seatManager.defaultDeadline()).isTransactionStatus());
+    }
+
+    @Test
+    void testTicketCancelledFromEverywhereAtOnceIsRefundedOnce() throws Exception {
+        int tickets = 200;
+        for (int i = 1; i <= tickets; i++) {
+            book(i, "A" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> singles = executor.submit(() -> {
+                start.await();
+                for (int i = 1; i <= tickets; i++) {
+                    cancellationService.cancelTicket(String.valueOf(i), i, seatManager.defaultDeadline());
+                }
+                return null;
+            });
+            Future<?> repeats = executor.submit(() -> {
+                start.await();
+                for (int i = tickets; i >= 1; i--) {
+                    cancellationService.cancelTicket(String.valueOf(i), i, seatManager.defaultDeadline());
+                }
+                return null;
+            });
+            start.countDown();
+            CancellationJob job = await(cancellationService.cancelJourney(0, null));
+            singles.get(10, TimeUnit.SECONDS);
+            repeats.get(10, TimeUnit.SECONDS);
+            assertEquals(CancellationJob.Status.COMPLETED, job.getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        awaitRefunds();
+        assertEquals(tickets, refundProcessor.getStatus().getRefunded());
+        for (int i = 1; i <= tickets; i++) {
+            assertEquals(BALANCE, userMap.get(i).getWalletBalance(), "user " + i);
+            assertTrue(seatMap.get("A" + i).isAvailable());
+        }
+    }
+
+    @Test
+    void testDeletedUserIsRefundedBeforeRemoval() {
+        User user = book(1, "A1");
+        user.addTicket(new TicketRecord(2, 1, SeatCodes.encode("A2"), 0, TICKET_PRICE));
+        seatMap.put("A2", new Seat("A2", true));
+        seatMap.get("A2").reserve(user);
+        // Balance of the stored user at each change, as replication would ship it
+        List<Integer> stored = new CopyOnWriteArrayList<>();
+        userMap.setChangeListener(id -> {
+            User current = userMap.get(id);
+            if (current != null) {
+                stored.add(current.getWalletBalance());
+            }
+        });
+        UserDetailService userDetailService = new UserDetailService(userMap, new TicketResponseBuilder(), seatMap,
+                bookingIndex, seatManager, refundProcessor);
+
+        assertTrue(userDetailService.deleteUser("1"));
+
+        assertNull(userMap.get(1));
+        assertFalse(stored.isEmpty());
+        assertEquals(BALANCE + TICKET_PRICE, stored.get(stored.size() - 1), stored.toString());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertTrue(seatMap.get("A2").isAvailable());
+        assertNull(bookingIndex.findTicket(1L));
+        // Both tickets in one payment
+        assertEquals(1, refundProcessor.getStatus().getPayments());
+    }
+
+    @Test
+    void testUserWithABusySeatIsKept() throws Exception {
+        User user = book(1, "A1");
+        UserDetailService userDetailService = new UserDetailService(userMap, new TicketResponseBuilder(), seatMap,
+                bookingIndex, seatManager, refundProcessor);
+        Seat seat = seatMap.get("A1");
+        ExecutorService holder = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            holder.submit(() -> {
+                seat.getLock().lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } finally {
+                    seat.getLock().unlock();
+                }
+                return null;
+            });
+            locked.await();
+            assertFalse(userDetailService.deleteUser("1"));
+        } finally {
+            release.countDown();
+            holder.shutdown();
+        }
+
+        // The seat still belongs to a stored user holding its ticket
+        assertNotNull(userMap.get(1));
+        assertEquals(1, user.getTicketCount());
+        assertEquals(1, seat.getReservedBy().getId());
+
+        assertTrue(userDetailService.deleteUser("1"));
+        assertNull(userMap.get(1));
+        assertTrue(seat.isAvailable());
+    }
+
+    @Test
+    void testUserIsKeptWhileAQueuedRefundIsUnpaid() throws Exception {
+        CompletableFuture<Void> provider = new CompletableFuture<>();
+        AppProperties slowProperties = new AppProperties();
+        slowProperties.getPayment().setTimeoutMillis(100);
+        RefundProcessor slowRefunds = new RefundProcessor(new WalletPaymentGateway() {
+            @Override
+            public CompletableFuture<Void> refund(User user, int amount) {
+                return provider.thenRun(() -> user.addBalance(amount));
+            }
+        }, slowProperties);
+        try {
+            User user = book(1, "A1");
+            UserDetailService userDetailService = new UserDetailService(userMap, new TicketResponseBuilder(), seatMap,
+                    bookingIndex, seatManager, slowRefunds);
+            // Owed for an earlier cancellation, still waiting for the payment provider
+            slowRefunds.refund(user, 5);
+
+            // The ticket's own refund is not answered within the payment timeout either
+            assertFalse(userDetailService.deleteUser("1"));
+            assertNotNull(userMap.get(1));
+            assertTrue(seatMap.get("A1").isAvailable());
+
+            provider.complete(null);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (slowRefunds.isOwed(user) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(BALANCE + 5, user.getWalletBalance());
+            assertTrue(userDetailService.deleteUser("1"));
+            assertNull(userMap.get(1));
+        } finally {
+            provider.complete(null);
+            slowRefunds.shutdown();
+        }
+    }
+}
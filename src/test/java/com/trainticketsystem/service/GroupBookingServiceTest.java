@@ -0,0 +1,129 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for GroupBookingService: a group gets adjacent seats, all of them or none.
+ */
+class GroupBookingServiceTest {
+
+    private Map<String, Seat> seatMap;
+    private Map<Integer, User> userMap;
+    private SeatManager seatManager;
+    private GroupBookingService groupBookingService;
+
+    @BeforeEach
+    void setUp() {
+        seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= 20; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+        }
+        userMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= 8; i++) {
+            userMap.put(i, User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(100)
+                    .build());
+        }
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        seatManager = new SeatManager(seatMap, appProperties);
+        SeatBitmap seatBitmap = new SeatBitmap(seatMap, seatManager);
+        groupBookingService = new GroupBookingService(seatManager, seatBitmap, userMap,
+                new TicketResponseBuilder(), new BookingIndex(userMap));
+    }
+
+    private TicketResponse purchase(String section, String... userIds) {
+        return groupBookingService.purchaseAdjacent(List.of(userIds), section, seatManager.defaultDeadline()).join();
+    }
+
+    @Test
+    void testGroupIsSeatedTogether() {
+        assertTrue(seatManager.bookSeats(userMap.get(8), "A3").join().isSuccess());
+        assertEquals(List.of(List.of("A4", "A5", "A6"), List.of("A7", "A8", "A9")),
+                groupBookingService.findAdjacent("A", 3, 2));
+
+        TicketResponse response = purchase("A", "1", "2", "3");
+
+        assertTrue(response.isTransactionStatus(), response.getMessage());
+        assertEquals(List.of("A4", "A5", "A6"), response.getTickets().stream().map(Ticket::getSeatNumber).toList());
+        for (int i = 1; i <= 3; i++) {
+            User user = userMap.get(i);
+            assertEquals("A" + (i + 3), user.getTicket().getSeatNumber());
+            assertEquals(80, user.getWalletBalance());
+            assertSame(user, seatMap.get("A" + (i + 3)).getReservedBy());
+        }
+        assertEquals(List.of(List.of("A7", "A8", "A9")), groupBookingService.findAdjacent("A", 3, 1));
+    }
+
+    @Test
+    void testMovesOnWhenTheFoundSeatsAreTaken() {
+        // Taken without telling the bitmap, as if by a booking racing the search
+        assertTrue(seatMap.get("A2").reserve(userMap.get(8)));
+
+        TicketResponse response = purchase("A", "1", "2");
+
+        assertTrue(response.isTransactionStatus(), response.getMessage());
+        assertEquals(List.of("A3", "A4"), response.getTickets().stream().map(Ticket::getSeatNumber).toList());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertEquals(100, userMap.get(8).getWalletBalance());
+    }
+
+    @Test
+    void testNobodyIsChargedWhenOneMemberCannotPay() {
+        userMap.get(2).setWalletBalance(10);
+
+        TicketResponse response = purchase("A", "1", "2", "3");
+
+        assertFalse(response.isTransactionStatus());
+        assertTrue(response.getMessage().startsWith(SeatManager.INSUFFICIENT_BALANCE), response.getMessage());
+        assertEquals(100, userMap.get(1).getWalletBalance());
+        assertNull(userMap.get(1).getTicket());
+        assertTrue(seatMap.values().stream().allMatch(Seat::isAvailable));
+    }
+
+    @Test
+    void testRejectsInvalidGroups() {
+        assertFalse(purchase("A", "1", "1").isTransactionStatus());
+        assertFalse(purchase("A", "1", "99").isTransactionStatus());
+        assertFalse(purchase("C", "1").isTransactionStatus());
+        assertNull(groupBookingService.findAdjacent("C", 2, 1));
+        assertTrue(seatMap.values().stream().allMatch(Seat::isAvailable));
+    }
+
+    @Test
+    void testOverlappingGroupsNeverShareASeat() {
+        List<CompletableFuture<TicketResponse>> purchases = new ArrayList<>();
+        for (int i = 1; i <= 8; i += 2) {
+            purchases.add(groupBookingService.purchaseAdjacent(List.of(String.valueOf(i), String.valueOf(i + 1)),
+                    "A", seatManager.defaultDeadline()));
+        }
+        long booked = 0;
+        for (CompletableFuture<TicketResponse> purchase : purchases) {
+            TicketResponse response = purchase.join();
+            if (response.isTransactionStatus()) {
+                booked += response.getTickets().size();
+            }
+        }
+        assertEquals(booked, seatMap.values().stream().filter(seat -> !seat.isAvailable()).count());
+        assertTrue(booked >= 2);
+    }
+}
@@ -0,0 +1,176 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.SeatCodes;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifySeatServiceTest {
+
+    private static final int TICKET_PRICE = 20;
+
+    private UserStore userMap;
+    private Map<String, Seat> seatMap;
+    private BookingIndex bookingIndex;
+    private AppProperties appProperties;
+    private SeatManager seatManager;
+    private RefundProcessor refundProcessor;
+
+    @BeforeEach
+    void setUp() {
+        userMap = new UserStore();
+        seatMap = new ConcurrentHashMap<>();
+        for (String seatId : List.of("A1", "A2", "B1", "B2")) {
+            seatMap.put(seatId, new Seat(seatId, true));
+        }
+        bookingIndex = new BookingIndex(userMap);
+        appProperties = new AppProperties();
+        appProperties.setTicketPrice(TICKET_PRICE);
+        seatManager = new SeatManager(seatMap, appProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (refundProcessor != null) {
+            refundProcessor.shutdown();
+        }
+    }
+
+    private ModifySeatService service(PaymentGateway refundGateway) {
+        // Refunds are queued by default, as in the application
+        refundProcessor = new RefundProcessor(refundGateway, appProperties);
+        return new ModifySeatService(seatManager, userMap, new TicketResponseBuilder(), seatMap, bookingIndex, refundProcessor);
+    }
+
+    /**
+     * Creates a user holding a seat, as if booked and charged, with nothing left in their wallet.
+     */
+    private User book(int userId, String seatId) {
+        userMap.put(User.builder()
+                .id(userId)
+                .firstName("User" + userId)
+                .lastName("Test" + userId)
+                .email("user" + userId + "@test.com")
+                .walletBalance(0)
+                .build());
+        User user = userMap.get(userId);
+        seatMap.get(seatId).reserve(user);
+        user.addTicket(new TicketRecord(userId, userId, SeatCodes.encode(seatId), 0, TICKET_PRICE));
+        bookingIndex.ticketIssued(user, user.getTicket());
+        return user;
+    }
+
+    @Test
+    void testRefundPaysForTheNewSeat() {
+        // A slow refund would still be on its way when the new seat is charged, were it not awaited
+        ModifySeatService modifySeatService = service(new SimulatedPaymentGateway(50));
+        User user = book(1, "A1");
+
+        TicketResponse moved = modifySeatService.modifySeating("1", "A2").join();
+
+        assertTrue(moved.isTransactionStatus(), moved.getMessage());
+        assertEquals("A2", user.getSeatNumber());
+        assertEquals(TICKET_PRICE - moved.getTicket().getRecord().getPrice(), user.getWalletBalance());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertEquals(user.getId(), seatMap.get("A2").getReservedBy().getId());
+    }
+
+    @Test
+    void testFailedMoveKeepsTheOldTicket() {
+        ModifySeatService modifySeatService = service(new WalletPaymentGateway());
+        User user = book(1, "A1");
+        book(2, "B1");
+        TicketRecord ticket = user.getTicket();
+
+        TicketResponse response = modifySeatService.modifySeating("1", "B1").join();
+
+        assertFalse(response.isTransactionStatus());
+        assertEquals("Seat B1 is already booked", response.getMessage());
+        // Refunded, then charged again for the seat it took back
+        assertEquals(List.of(ticket), user.getTickets().toList());
+        assertEquals(user.getId(), seatMap.get("A1").getReservedBy().getId());
+        assertEquals(0, user.getWalletBalance());
+        assertEquals(ticket, bookingIndex.findTicket(ticket.getId()));
+    }
+
+    @Test
+    void testUnpaidRefundKeepsTheOldTicket() {
+        ModifySeatService modifySeatService = service(new WalletPaymentGateway() {
+            @Override
+            public CompletableFuture<Void> refund(User user, int amount) {
+                return CompletableFuture.failedFuture(new IllegalStateException("provider unavailable"));
+            }
+        });
+        User user = book(1, "A1");
+        TicketRecord ticket = user.getTicket();
+
+        TicketResponse response = modifySeatService.modifySeating("1", ticket.getId(), "A2", Deadline.after(5000)).join();
+
+        assertFalse(response.isTransactionStatus());
+        assertEquals(ModifySeatService.REFUND_FAILED, response.getMessage());
+        assertEquals(List.of(ticket), user.getTickets().toList());
+        assertEquals(user.getId(), seatMap.get("A1").getReservedBy().getId());
+        assertTrue(seatMap.get("A2").isAvailable());
+        assertEquals(0, user.getWalletBalance());
+    }
+
+    @Test
+    void testSlowRefundIsNotWaitedForPastTheDeadline() {
+        CompletableFuture<Void> provider = new CompletableFuture<>();
+        ModifySeatService modifySeatService = service(new WalletPaymentGateway() {
+            @Override
+            public CompletableFuture<Void> refund(User user, int amount) {
+                return provider.thenRun(() -> user.addBalance(amount));
+            }
+        });
+        User user = book(1, "A1");
+        TicketRecord ticket = user.getTicket();
+
+        long start = System.nanoTime();
+        TicketResponse response = modifySeatService.modifySeating("1", ticket.getId(), "A2", Deadline.after(200)).join();
+        long tookMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(tookMillis < 1000, "took " + tookMillis + " ms");
+        // The wallet could not buy the old seat back, so the ticket stays cancelled
+        assertFalse(response.isTransactionStatus());
+        assertEquals(ModifySeatService.REFUND_PENDING_CANCELLED, response.getMessage());
+        assertEquals(0, user.getTicketCount());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertTrue(seatMap.get("A2").isAvailable());
+        assertTrue(refundProcessor.isOwed(user));
+
+        // Paid once the provider answers
+        provider.complete(null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (refundProcessor.isOwed(user) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(TICKET_PRICE, user.getWalletBalance());
+    }
+
+    @Test
+    void testUnknownUserIsNotFound() {
+        ModifySeatService modifySeatService = service(new WalletPaymentGateway());
+
+        TicketResponse response = modifySeatService.modifySeating("9", "A2").join();
+
+        assertFalse(response.isTransactionStatus());
+        assertEquals("User not found", response.getMessage());
+        assertTrue(seatMap.get("A2").isAvailable());
+    }
+}
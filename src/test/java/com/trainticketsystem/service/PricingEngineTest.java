@@ -0,0 +1,148 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.PriceSnapshot;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+
+    private static final int SEATS_PER_SECTION = 10;
+
+    private Map<String, Seat> seatMap;
+    private AppProperties appProperties;
+
+    @BeforeEach
+    void setUp() {
+        seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= SEATS_PER_SECTION; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+            seatMap.put("B" + i, new Seat("B" + i, true));
+        }
+        appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        appProperties.setSectionPrices(Map.of("B", 40));
+        appProperties.setPriceTiers(List.of(tier(80, 150), tier(50, 125)));
+    }
+
+    private static AppProperties.PriceTier tier(int occupancyPercent, int pricePercent) {
+        AppProperties.PriceTier tier = new AppProperties.PriceTier();
+        tier.setOccupancyPercent(occupancyPercent);
+        tier.setPricePercent(pricePercent);
+        return tier;
+    }
+
+    private static User user(int id) {
+        return user(id, 1_000);
+    }
+
+    private static User user(int id, int walletBalance) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@test.com")
+                .walletBalance(walletBalance)
+                .build();
+    }
+
+    @Test
+    void testSnapshotChangesOnlyWhenTierIsCrossed() {
+        PricingEngine pricingEngine = new PricingEngine(seatMap, appProperties);
+        PriceSnapshot initial = pricingEngine.getSnapshot();
+        assertEquals(Map.of("A", 20, "B", 40), initial.getPrices());
+
+        for (int i = 1; i < 5; i++) {
+            pricingEngine.onAvailabilityChanged("A" + i, false);
+        }
+        // Below 50% nothing is republished
+        assertSame(initial, pricingEngine.getSnapshot());
+
+        pricingEngine.onAvailabilityChanged("A5", false);
+        assertEquals(25, pricingEngine.priceOf("A6"));
+        assertEquals(40, pricingEngine.priceOf("B1"));
+        // Earlier snapshots are never modified
+        assertEquals(20, initial.priceOf("A6"));
+
+        for (int i = 6; i <= 8; i++) {
+            pricingEngine.onAvailabilityChanged("A" + i, false);
+        }
+        assertEquals(30, pricingEngine.priceOf("A9"));
+
+        pricingEngine.onAvailabilityChanged("A1", true);
+        pricingEngine.onAvailabilityChanged("A2", true);
+        pricingEngine.onAvailabilityChanged("A3", true);
+        assertEquals(25, pricingEngine.priceOf("A1"));
+        pricingEngine.onAvailabilityChanged("A4", true);
+        assertEquals(20, pricingEngine.priceOf("A1"));
+        assertEquals(4, pricingEngine.getSnapshot().getVersion());
+    }
+
+    @Test
+    void testTicketRecordsExactPriceCharged() {
+        PricingEngine pricingEngine = new PricingEngine(seatMap, appProperties);
+        SeatManager seatManager = new SeatManager(seatMap, appProperties, pricingEngine);
+
+        int charged = 0;
+        for (int i = 1; i <= SEATS_PER_SECTION; i++) {
+            User user = user(i);
+            int quoted = pricingEngine.priceOf("A" + i);
+            BookingResult result = seatManager.bookSeats(user, "A" + i).join();
+
+            assertTrue(result.isSuccess());
+            assertEquals(quoted, result.getTotalPrice());
+            assertEquals(1_000 - quoted, user.getWalletBalance());
+            charged += quoted;
+        }
+        // 5 seats at 20, 3 at 25 and 2 at 30
+        assertEquals(5 * 20 + 3 * 25 + 2 * 30, charged);
+    }
+
+    @Test
+    void testTierFollowsOccupancyUnderConcurrentChanges() throws InterruptedException {
+        PricingEngine pricingEngine = new PricingEngine(seatMap, appProperties);
+        SeatManager seatManager = new SeatManager(seatMap, appProperties, pricingEngine);
+        ExecutorService executorService = Executors.newFixedThreadPool(SEATS_PER_SECTION);
+        CountDownLatch done = new CountDownLatch(SEATS_PER_SECTION);
+
+        // Each thread books and releases its own seat repeatedly, dragging occupancy across both tiers
+        for (int i = 1; i <= SEATS_PER_SECTION; i++) {
+            // Releases do not refund, so give every user enough for all rounds
+            final User user = user(i, 1_000_000);
+            final Seat seat = seatMap.get("A" + i);
+            executorService.submit(() -> {
+                try {
+                    for (int round = 0; round < 50; round++) {
+                        seatManager.bookSeats(user, seat.getId()).join();
+                        seatManager.releaseSeat(seat);
+                    }
+                    // Leave odd seats booked
+                    if (user.getId() % 2 == 1) {
+                        assertTrue(seatManager.bookSeats(user, seat.getId()).join().isSuccess());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        // Five of ten seats booked: the 50% tier
+        assertEquals(25, pricingEngine.priceOf("A1"));
+        assertEquals(1, pricingEngine.getSnapshot().tierOf('A'));
+    }
+}
@@ -1,8 +1,11 @@
 package com.trainticketsystem.service;
 
 import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.TicketRecord;
 import com.trainticketsystem.model.User;
 import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.utils.SeatCodes;
 import com.trainticketsystem.utils.TicketResponseBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
@@ -47,7 +51,7 @@ class PurchaseTicketServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         userMap = new ConcurrentHashMap<>();
-        purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder);
+        purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, new BookingIndex(userMap));
         executorService = Executors.newFixedThreadPool(NUM_THREADS);
 
         // Initialize test users
@@ -63,6 +67,22 @@ class PurchaseTicketServiceTest {
         }
     }
 
+    /**
+     * A purchase response carrying its ticket, as the real response builder returns.
+     */
+    private TicketResponse successResponse() {
+        return TicketResponse.builder()
+                .transactionStatus(true)
+                .message("Ticket purchased successfully")
+                .ticket(new Ticket(new TicketRecord(1, 1, SeatCodes.encode("A1"), 0, 20), userMap.get(1)))
+                .build();
+    }
+
+    // A booking result carrying the ticket issued as its seat was confirmed
+    private static BookingResult booked() {
+        return BookingResult.success(20, new TicketRecord(1, 1, SeatCodes.encode("A1"), 0, 20));
+    }
+
     /**
      * Test concurrent booking of different seats.
      * Simulates 10 users trying to book different seats simultaneously.
@@ -75,16 +95,13 @@ class PurchaseTicketServiceTest {
         AtomicInteger failureCount = new AtomicInteger(0);
 
         // Mock successful booking response
-        TicketResponse successResponse = TicketResponse.builder()
-                .transactionStatus(true)
-                .message("Ticket purchased successfully")
-                .build();
-        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), anyString()))
+        TicketResponse successResponse = successResponse();
+        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), any(TicketRecord.class)))
                 .thenReturn(successResponse);
 
         // Mock successful booking result
-        when(seatManager.bookSeats(any(User.class), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(BookingResult.success()));
+        when(seatManager.bookSeats(any(User.class), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(booked()));
 
         // Simulate concurrent bookings
         for (int i = 1; i <= NUM_USERS; i++) {
@@ -127,21 +144,18 @@ class PurchaseTicketServiceTest {
         final String targetSeat = "A1";
 
         // Mock responses
-        TicketResponse successResponse = TicketResponse.builder()
-                .transactionStatus(true)
-                .message("Ticket purchased successfully")
-                .build();
+        TicketResponse successResponse = successResponse();
         TicketResponse failureResponse = TicketResponse.builder()
                 .transactionStatus(false)
                 .message("Seat already booked")
                 .build();
 
         // Mock booking results - only first booking succeeds
-        when(seatManager.bookSeats(any(User.class), eq(targetSeat)))
-                .thenReturn(CompletableFuture.completedFuture(BookingResult.success()))
+        when(seatManager.bookSeats(any(User.class), eq(targetSeat), any()))
+                .thenReturn(CompletableFuture.completedFuture(booked()))
                 .thenReturn(CompletableFuture.completedFuture(BookingResult.failed("Seat already booked")));
 
-        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), eq(targetSeat)))
+        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), any(TicketRecord.class)))
                 .thenReturn(successResponse);
         when(responseBuilder.sendFailedResponse(any(BookingResult.class), anyString()))
                 .thenReturn(failureResponse);
@@ -185,27 +199,25 @@ class PurchaseTicketServiceTest {
         AtomicInteger failureCount = new AtomicInteger(0);
 
         // Mock responses
-        TicketResponse successResponse = TicketResponse.builder()
-                .transactionStatus(true)
-                .message("Ticket purchased successfully")
-                .build();
+        TicketResponse successResponse = successResponse();
         TicketResponse failureResponse = TicketResponse.builder()
                 .transactionStatus(false)
                 .message("Seat already booked")
                 .build();
 
         // Mock booking results
-        when(seatManager.bookSeats(any(User.class), anyString()))
+        Set<String> bookedSeats = ConcurrentHashMap.newKeySet();
+        when(seatManager.bookSeats(any(User.class), anyString(), any()))
                 .thenAnswer(invocation -> {
                     String seatNumber = invocation.getArgument(1);
                     // Allow only one booking per seat
-                    if (seatNumber.equals("A1") || seatNumber.equals("B1")) {
-                        return CompletableFuture.completedFuture(BookingResult.success());
+                    if (bookedSeats.add(seatNumber)) {
+                        return CompletableFuture.completedFuture(booked());
                     }
                     return CompletableFuture.completedFuture(BookingResult.failed("Seat already booked"));
                 });
 
-        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), anyString()))
+        when(responseBuilder.sendPurchaseSuccessResponse(any(User.class), any(TicketRecord.class)))
                 .thenReturn(successResponse);
         when(responseBuilder.sendFailedResponse(any(BookingResult.class), anyString()))
                 .thenReturn(failureResponse);
@@ -0,0 +1,125 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Journey;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.Ticket;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.Deadline;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ReceiptService with users holding many tickets: listings are paged,
+ * and receipts, modifications and deletion act on the right tickets.
+ */
+class ReceiptServiceTest {
+
+    private static final int SEATS = 300;
+
+    private UserStore userMap;
+    private Map<String, Seat> seatMap;
+    private PurchaseTicketService purchaseTicketService;
+    private ModifySeatService modifySeatService;
+    private UserDetailService userDetailService;
+    private ReceiptService receiptService;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+
+        userMap = new UserStore();
+        for (int i = 1; i <= 2; i++) {
+            userMap.put(User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(100_000)
+                    .build());
+        }
+        seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= SEATS; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+        }
+
+        BookingIndex bookingIndex = new BookingIndex(userMap);
+        TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        SeatManager seatManager = new SeatManager(seatMap, appProperties);
+        purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+        RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+        modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+        userDetailService = new UserDetailService(userMap, responseBuilder, seatMap, bookingIndex, seatManager, refundProcessor);
+        receiptService = new ReceiptService(userMap, responseBuilder, bookingIndex);
+    }
+
+    private static List<String> seats(TicketResponse response) {
+        return response.getTickets().stream().map(Ticket::getSeatNumber).toList();
+    }
+
+    @Test
+    void testUserHoldsManyTicketsAndListsThemByPage() {
+        for (int i = 1; i <= 250; i++) {
+            assertTrue(purchaseTicketService.purchaseTicket("1", "A" + i).join().isTransactionStatus());
+        }
+        User user = userMap.get(1);
+        assertEquals(250, user.getTicketCount());
+        assertEquals(100_000 - 250 * 20, user.getWalletBalance());
+        assertEquals("A250", receiptService.generateReceipt("1").getTicket().getSeatNumber());
+        assertEquals("A250", userDetailService.getUserDetails("1").getUser().getSeatNumber());
+
+        TicketResponse first = receiptService.listTickets("1", null, 0, 20);
+        assertEquals(250, first.getTotalTickets());
+        assertEquals(20, first.getTickets().size());
+        assertEquals("A1", first.getTickets().get(0).getSeatNumber());
+        TicketResponse last = receiptService.listTickets("1", null, 12, 20);
+        assertEquals(List.of("A241", "A242", "A243", "A244", "A245", "A246", "A247", "A248", "A249", "A250"), seats(last));
+        assertTrue(receiptService.listTickets("1", null, 13, 20).getTickets().isEmpty());
+
+        TicketResponse journey = receiptService.listTickets("1", Journey.LONDON_TO_FRANCE.getId(), 1, 100);
+        assertEquals(250, journey.getTotalTickets());
+        assertEquals("A101", journey.getTickets().get(0).getSeatNumber());
+        assertEquals(0, receiptService.listTickets("1", Journey.LONDON_TO_FRANCE.getId() + 1, 0, 20).getTotalTickets());
+
+        assertFalse(receiptService.listTickets("1", null, 0, ReceiptService.MAX_PAGE_SIZE + 1).isTransactionStatus());
+        assertFalse(receiptService.listTickets("3", null, 0, 20).isTransactionStatus());
+    }
+
+    @Test
+    void testReceiptsAndModificationsTargetOneTicket() {
+        Long first = purchaseTicketService.purchaseTicket("1", "A1").join().getTicket().getId();
+        Long second = purchaseTicketService.purchaseTicket("1", "A2").join().getTicket().getId();
+        Long other = purchaseTicketService.purchaseTicket("2", "A3").join().getTicket().getId();
+
+        assertEquals("A1", receiptService.generateReceiptByTicketId(first).getTicket().getSeatNumber());
+        assertEquals("A2", receiptService.generateReceiptByTicketId(second).getTicket().getSeatNumber());
+
+        // With two tickets the user has to say which one moves
+        TicketResponse ambiguous = modifySeatService.modifySeating("1", "A9").join();
+        assertFalse(ambiguous.isTransactionStatus());
+        assertFalse(modifySeatService.modifySeating("1", other, "A9", Deadline.after(5000)).join().isTransactionStatus());
+
+        TicketResponse moved = modifySeatService.modifySeating("1", first, "A9", Deadline.after(5000)).join();
+        assertTrue(moved.isTransactionStatus(), moved.getMessage());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertFalse(receiptService.generateReceiptByTicketId(first).isTransactionStatus());
+        assertEquals("A9", receiptService.generateReceiptByTicketId(moved.getTicket().getId()).getTicket().getSeatNumber());
+        assertEquals(List.of("A2", "A9"), seats(receiptService.listTickets("1", null, 0, 20)));
+
+        userDetailService.deleteUser("1");
+        assertTrue(seatMap.get("A2").isAvailable());
+        assertTrue(seatMap.get("A9").isAvailable());
+        assertFalse(seatMap.get("A3").isAvailable());
+        assertFalse(receiptService.generateReceiptByTicketId(second).isTransactionStatus());
+    }
+}
@@ -0,0 +1,154 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.RefundStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefundProcessorTest {
+
+    private RefundProcessor refundProcessor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (refundProcessor != null) {
+            refundProcessor.shutdown();
+        }
+    }
+
+    private static User user(int id) {
+        return User.builder()
+                .id(id)
+                .firstName("User" + id)
+                .lastName("Test" + id)
+                .email("user" + id + "@test.com")
+                .walletBalance(0)
+                .build();
+    }
+
+    private RefundStatus awaitRefunds() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (refundProcessor.getStatus().getBacklog() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return refundProcessor.getStatus();
+    }
+
+    /**
+     * Records each refund paid, failing calls while failures are left.
+     */
+    private static final class RecordingGateway implements PaymentGateway {
+        private final List<Integer> amounts = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failuresLeft;
+        // Holds the worker on its first call, so the rest of the refunds queue up behind it
+        private final CompletableFuture<Void> firstCall = new CompletableFuture<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        RecordingGateway(int failures) {
+            this.failuresLeft = new AtomicInteger(failures);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> charge(User user, int amount) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        @Override
+        public CompletableFuture<Void> refund(User user, int amount) {
+            if (calls.getAndIncrement() == 0) {
+                return firstCall.thenRun(() -> pay(user, amount));
+            }
+            if (failuresLeft.getAndDecrement() > 0) {
+                return CompletableFuture.failedFuture(new IllegalStateException("provider unavailable"));
+            }
+            pay(user, amount);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private void pay(User user, int amount) {
+            amounts.add(amount);
+            user.addBalance(amount);
+        }
+    }
+
+    @Test
+    void testRefundsOwedToOneUserInABatchArePaidTogether() throws InterruptedException {
+        RecordingGateway gateway = new RecordingGateway(0);
+        refundProcessor = new RefundProcessor(gateway, new AppProperties());
+        User first = user(1);
+        User second = user(2);
+
+        refundProcessor.refund(first, 10);
+        // Wait for the worker to take the first refund, then queue the rest behind it
+        while (gateway.calls.get() == 0) {
+            Thread.onSpinWait();
+        }
+        for (int i = 0; i < 5; i++) {
+            refundProcessor.refund(first, 20);
+            refundProcessor.refund(second, 30);
+        }
+        refundProcessor.refund(second, 0);
+        gateway.firstCall.complete(null);
+        RefundStatus status = awaitRefunds();
+
+        assertEquals(110, first.getWalletBalance());
+        assertEquals(150, second.getWalletBalance());
+        assertEquals(List.of(10, 100, 150), gateway.amounts);
+        assertEquals(11, status.getQueued());
+        assertEquals(11, status.getRefunded());
+        assertEquals(260, status.getRefundedAmount());
+        assertEquals(3, status.getPayments());
+        assertEquals(0, status.getFailed());
+    }
+
+    @Test
+    void testFailedPaymentIsRetriedThenGivenUp() throws InterruptedException {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getRefunds().setMaxAttempts(3);
+        RecordingGateway gateway = new RecordingGateway(0);
+        refundProcessor = new RefundProcessor(gateway, appProperties);
+        User user = user(1);
+
+        gateway.firstCall.complete(null);
+        refundProcessor.refund(user, 10);
+        awaitRefunds();
+        gateway.failuresLeft.set(2);
+        refundProcessor.refund(user, 20);
+        RefundStatus status = awaitRefunds();
+
+        // The first refund is paid at once; the second fails twice and is paid on its third attempt
+        assertEquals(30, user.getWalletBalance());
+        assertEquals(2, status.getRetried());
+        assertEquals(0, status.getFailed());
+
+        gateway.failuresLeft.set(Integer.MAX_VALUE);
+        refundProcessor.refund(user, 40);
+        status = awaitRefunds();
+
+        assertEquals(30, user.getWalletBalance());
+        assertEquals(1, status.getFailed());
+        assertEquals(2, status.getRefunded());
+    }
+
+    @Test
+    void testSynchronousRefundIsPaidBeforeReturning() {
+        refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+        User user = user(1);
+
+        refundProcessor.refund(user, 25);
+
+        assertEquals(25, user.getWalletBalance());
+        RefundStatus status = refundProcessor.getStatus();
+        assertFalse(status.isAsync());
+        assertEquals(0, status.getBacklog());
+        assertEquals(1, status.getRefunded());
+    }
+}
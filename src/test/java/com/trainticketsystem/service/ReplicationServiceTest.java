@@ -0,0 +1,209 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import com.trainticketsystem.utils.TicketResponseBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a primary and a standby in one JVM, each with its own stores, connected over
+ * a localhost socket.
+ */
+class ReplicationServiceTest {
+
+    private static final int USERS = 10;
+    private static final int SEATS = 20;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(node -> node.replication.shutdown());
+    }
+
+    /**
+     * Stores and services of one instance.
+     */
+    private static final class Node {
+        private final UserStore userMap = new UserStore();
+        private final Map<String, Seat> seatMap = new ConcurrentHashMap<>();
+        private final BookingIndex bookingIndex = new BookingIndex(userMap);
+        private final TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+        private final SeatManager seatManager;
+        private final PurchaseTicketService purchaseTicketService;
+        private final ModifySeatService modifySeatService;
+        private final UserDetailService userDetailService;
+        private ReplicationService replication;
+
+        Node(int users) {
+            for (int i = 1; i <= users; i++) {
+                userMap.put(User.builder()
+                        .id(i)
+                        .firstName("User" + i)
+                        .lastName("Test" + i)
+                        .email("user" + i + "@test.com")
+                        .walletBalance(1000)
+                        .build());
+            }
+            for (int i = 1; i <= SEATS; i++) {
+                seatMap.put("A" + i, new Seat("A" + i, true));
+            }
+            AppProperties appProperties = new AppProperties();
+            // Tickets are issued by the seat manager, from the ids replication reserves
+            seatManager = new SeatManager(seatMap, appProperties, new PricingEngine(seatMap, appProperties),
+                    new WalletPaymentGateway(), new PaymentBulkhead(appProperties), responseBuilder);
+            purchaseTicketService = new PurchaseTicketService(seatManager, userMap, responseBuilder, bookingIndex);
+            RefundProcessor refundProcessor = new RefundProcessor(new WalletPaymentGateway());
+            modifySeatService = new ModifySeatService(seatManager, userMap, responseBuilder, seatMap, bookingIndex, refundProcessor);
+            userDetailService = new UserDetailService(userMap, responseBuilder, seatMap, bookingIndex, seatManager, refundProcessor);
+        }
+
+        TicketResponse purchase(int userId, String seat) {
+            return purchaseTicketService.purchaseTicket(String.valueOf(userId), seat).join();
+        }
+    }
+
+    private Node primary(String mode) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getReplication().setRole(ReplicationService.PRIMARY);
+        appProperties.getReplication().setMode(mode);
+        appProperties.getReplication().setListenPort(0);
+        return start(new Node(USERS), appProperties);
+    }
+
+    private Node standby(Node primary, int users) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getReplication().setRole(ReplicationService.STANDBY);
+        appProperties.getReplication().setPrimaryPort(primary.replication.getStatus().getListenPort());
+        appProperties.getReplication().setListenPort(0);
+        appProperties.getReplication().setReconnectMillis(50);
+        return start(new Node(users), appProperties);
+    }
+
+    private Node start(Node node, AppProperties appProperties) {
+        node.replication = new ReplicationService(appProperties, node.userMap, node.seatManager, node.bookingIndex,
+                node.responseBuilder, new SimpleMeterRegistry());
+        nodes.add(node);
+        return node;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting until " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean converged(Node primary, Node standby) {
+        if (primary.userMap.size() != standby.userMap.size()) {
+            return false;
+        }
+        for (Map.Entry<Integer, User> entry : primary.userMap.entrySet()) {
+            User mine = entry.getValue().snapshot();
+            User theirs = standby.userMap.get(entry.getKey());
+            if (theirs == null
+                    || mine.getWalletBalance() != theirs.getWalletBalance()
+                    || !mine.getTickets().toList().equals(theirs.getTickets().toList())) {
+                return false;
+            }
+        }
+        for (Seat seat : primary.seatMap.values()) {
+            if (seat.isAvailable() != standby.seatMap.get(seat.getId()).isAvailable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void testStandbyCatchesUpOnEarlierBookingsThenFollowsChanges() throws InterruptedException {
+        Node primary = primary("async");
+        assertTrue(primary.purchase(1, "A1").isTransactionStatus());
+        assertTrue(primary.purchase(2, "A2").isTransactionStatus());
+
+        Node standby = standby(primary, 0);
+        assertTrue(standby.replication.isReadOnly());
+        await(() -> converged(primary, standby), "the snapshot is applied");
+        assertFalse(standby.seatMap.get("A1").isAvailable());
+        assertEquals(1, standby.bookingIndex.findBySeat("A1").getId());
+
+        assertTrue(primary.purchase(3, "A3").isTransactionStatus());
+        long ticketId = primary.userMap.get(1).getTickets().latest().getId();
+        assertTrue(primary.modifySeatService.modifySeating("1", ticketId, "A4", primary.seatManager.defaultDeadline())
+                .join().isTransactionStatus());
+        primary.userDetailService.deleteUser("2");
+        await(() -> converged(primary, standby), "the changes are applied");
+
+        assertTrue(standby.seatMap.get("A1").isAvailable());
+        assertFalse(standby.seatMap.get("A4").isAvailable());
+        assertNull(standby.userMap.get(2));
+        assertEquals(1, standby.bookingIndex.findBySeat("A4").getId());
+        assertTrue(primary.replication.getStatus().isConnected());
+        assertTrue(standby.replication.getStatus().getFrames() >= 2);
+    }
+
+    @Test
+    void testSnapshotRemovesUsersThePrimaryDoesNotHave() throws InterruptedException {
+        Node primary = primary("async");
+        primary.userMap.remove(USERS);
+        Node standby = standby(primary, USERS + 5);
+
+        await(() -> converged(primary, standby), "the snapshot is applied");
+        assertNull(standby.userMap.get(USERS));
+        assertNull(standby.userMap.get(USERS + 1));
+    }
+
+    @Test
+    void testSemiSyncResponseWaitsForTheStandby() throws InterruptedException {
+        Node primary = primary(ReplicationService.SEMI_SYNC);
+        Node standby = standby(primary, USERS);
+        await(() -> primary.replication.getStatus().isConnected(), "the standby connects");
+
+        for (int i = 1; i <= 5; i++) {
+            TicketResponse response = primary.replication.replicated(primary.purchase(i, "A" + i)).join();
+            assertTrue(response.isTransactionStatus());
+            // Acknowledged, so already applied on the standby
+            assertFalse(standby.seatMap.get("A" + i).isAvailable(), "A" + i);
+        }
+        assertEquals(0, primary.replication.getStatus().getSemiSyncTimeouts());
+        assertEquals(0, primary.replication.getStatus().getPendingChanges());
+    }
+
+    @Test
+    void testPromotedStandbyIssuesNewerTicketsAndKeepsReplicatedSeats() throws InterruptedException {
+        Node primary = primary("async");
+        Node standby = standby(primary, USERS);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(primary.purchase(i, "A" + i).isTransactionStatus());
+        }
+        await(() -> converged(primary, standby), "the bookings are applied");
+        long newest = primary.userMap.get(5).getTickets().latest().getId();
+
+        assertTrue(standby.replication.promote());
+        assertFalse(standby.replication.isReadOnly());
+        assertFalse(standby.replication.promote());
+        assertFalse(primary.replication.promote());
+
+        assertFalse(standby.purchase(6, "A1").isTransactionStatus());
+        assertTrue(standby.purchase(6, "A6").isTransactionStatus());
+        TicketRecord issued = standby.userMap.get(6).getTickets().latest();
+        assertTrue(issued.getId() > newest, issued + " after ticket " + newest);
+    }
+}
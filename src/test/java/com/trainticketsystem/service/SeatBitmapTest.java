@@ -0,0 +1,159 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatBitmapTest {
+
+    private Map<String, Seat> seatMap;
+    private SeatManager seatManager;
+    private SeatBitmap seatBitmap;
+
+    @BeforeEach
+    void setUp() {
+        seatMap = new ConcurrentHashMap<>();
+        for (int i = 1; i <= 70; i++) {
+            seatMap.put("A" + i, new Seat("A" + i, true));
+        }
+        seatMap.put("B1", new Seat("B1", false));
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+        seatManager = new SeatManager(seatMap, appProperties);
+        seatBitmap = new SeatBitmap(seatMap, seatManager);
+    }
+
+    /**
+     * Returns the availability bit of seat n in the first encoded section.
+     */
+    private static boolean bit(byte[] encoded, int seat) {
+        int index = seat - 1;
+        return (encoded[12 + 5 + index / 8] & (1 << (index % 8))) != 0;
+    }
+
+    @Test
+    void testEncodesInitialAvailability() {
+        byte[] encoded = seatBitmap.encode(null);
+
+        assertEquals(12 + (5 + 9) + (5 + 1), encoded.length);
+        assertEquals(2, encoded[11]);
+        assertTrue(bit(encoded, 1));
+        assertTrue(bit(encoded, 70));
+        // Padding bits past the last seat stay clear
+        assertEquals(0b0011_1111, encoded[12 + 5 + 8]);
+        // B1 was created unavailable
+        assertEquals(0, seatBitmap.encode("B")[12 + 5]);
+    }
+
+    @Test
+    void testFollowsReserveAndReleaseEvents() throws InterruptedException {
+        User user = User.builder().id(1).email("user1@test.com").walletBalance(100).build();
+        long before = seatBitmap.getVersion();
+
+        assertTrue(seatManager.bookSeats(user, "A65").join().isSuccess());
+        byte[] booked = seatBitmap.encode("A");
+        assertFalse(bit(booked, 65));
+        assertTrue(bit(booked, 64));
+        assertEquals(before + 1, SeatBitmap.versionOf(booked));
+
+        seatManager.releaseSeat(seatMap.get("A65"));
+        byte[] released = seatBitmap.encode("A");
+        assertTrue(bit(released, 65));
+        assertEquals(before + 2, SeatBitmap.versionOf(released));
+    }
+
+    @Test
+    void testFindsAdjacentRunsAcrossWordBoundaries() throws InterruptedException {
+        User user = User.builder().id(1).email("user1@test.com").walletBalance(1000).build();
+        // Free runs left: A1-A9, A11-A62, A64-A70
+        for (String seatId : List.of("A10", "A63")) {
+            assertTrue(seatManager.bookSeats(user, seatId).join().isSuccess());
+        }
+
+        // Long runs are split into consecutive groups
+        assertArrayEquals(new int[]{1, 11, 18, 25, 32, 39, 46, 53, 64}, seatBitmap.findAdjacent("A", 7, 20));
+        assertArrayEquals(new int[]{1, 11, 18}, seatBitmap.findAdjacent("A", 7, 3));
+        // The 52 seats from A11 span the first word boundary
+        assertArrayEquals(new int[]{11}, seatBitmap.findAdjacent("A", 50, 5));
+        assertArrayEquals(new int[]{11, 31}, seatBitmap.findAdjacent("A", 20, 5));
+        assertArrayEquals(new int[0], seatBitmap.findAdjacent("A", 53, 5));
+        assertArrayEquals(new int[0], seatBitmap.findAdjacent("B", 1, 5));
+        assertArrayEquals(new int[0], seatBitmap.findAdjacent("C", 1, 5));
+
+        seatManager.releaseSeat(seatMap.get("A63"));
+        assertArrayEquals(new int[]{11}, seatBitmap.findAdjacent("A", 60, 5));
+    }
+
+    @Test
+    void testSearchMatchesSeatBySeatScan() throws InterruptedException {
+        int seats = 3 * SeatBitmap.BLOCK_SEATS + 77;
+        Map<String, Seat> large = new ConcurrentHashMap<>();
+        for (int i = 1; i <= seats; i++) {
+            large.put("A" + i, new Seat("A" + i, true));
+        }
+        AppProperties appProperties = new AppProperties();
+        appProperties.setTicketPrice(1);
+        SeatManager manager = new SeatManager(large, appProperties);
+        SeatBitmap bitmap = new SeatBitmap(large, manager);
+        User user = User.builder().id(1).email("user1@test.com").walletBalance(1_000_000).build();
+
+        Random random = new Random(41);
+        // A quarter of the first block is taken, the second is nearly full but ends in a free
+        // run leading into the untouched third, and the last is full, so every block shortcut is taken
+        int block = SeatBitmap.BLOCK_SEATS;
+        for (int i = 1; i <= seats; i++) {
+            boolean taken;
+            if (i <= block) {
+                taken = i == block || random.nextInt(4) == 0;
+            } else if (i <= 2 * block) {
+                taken = i <= 2 * block - 30 && random.nextInt(10) != 0;
+            } else {
+                taken = i > 3 * block;
+            }
+            if (taken) {
+                assertTrue(manager.bookSeats(user, "A" + i).join().isSuccess());
+            }
+        }
+        for (int round = 0; round < 200; round++) {
+            if (round > 0) {
+                String seatId = "A" + (1 + random.nextInt(seats));
+                if (large.get(seatId).isAvailable()) {
+                    assertTrue(manager.bookSeats(user, seatId).join().isSuccess());
+                } else {
+                    manager.releaseSeat(large.get(seatId));
+                }
+            }
+            for (int count : new int[]{1, 2, 3, 5, 8, 64, 100, 271, 600}) {
+                assertArrayEquals(expectedRuns(large, seats, count, 10), bitmap.findAdjacent("A", count, 10),
+                        "round " + round + ", count " + count);
+            }
+        }
+    }
+
+    private static int[] expectedRuns(Map<String, Seat> seats, int size, int count, int limit) {
+        List<Integer> starts = new ArrayList<>();
+        int run = 0;
+        for (int i = 1; i <= size + 1 && starts.size() < limit; i++) {
+            if (i <= size && seats.get("A" + i).isAvailable()) {
+                run++;
+                if (run == count) {
+                    starts.add(i - count + 1);
+                    run = 0;
+                }
+            } else {
+                run = 0;
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -4,14 +4,17 @@ import com.trainticketsystem.config.AppProperties;
 import com.trainticketsystem.model.BookingResult;
 import com.trainticketsystem.model.Seat;
 import com.trainticketsystem.model.User;
+import com.trainticketsystem.utils.Deadline;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -151,4 +154,343 @@ class SeatManagerTest {
         assertEquals(1, successCount.get()); // Only one booking should succeed
         assertEquals(NUM_USERS - 1, failureCount.get()); // Rest should fail
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testExpiredDeadlineIsAbandonedWithoutCharge() {
+        User user = User.builder()
+                .id(1)
+                .email("test@example.com")
+                .walletBalance(200)
+                .build();
+
+        BookingResult result = seatManager.bookSeats(user, "A1", Deadline.after(0)).join();
+
+        assertFalse(result.isSuccess());
+        assertEquals(SeatManager.DEADLINE_EXCEEDED, result.getMessage());
+        assertEquals(BookingResult.Failure.DEADLINE_EXCEEDED, result.getFailure());
+        assertEquals(200, user.getWalletBalance());
+        assertTrue(seatMap.get("A1").isAvailable());
+    }
+
+    @Test
+    void testLockWaitStopsAtDeadline() throws InterruptedException {
+        User user = User.builder()
+                .id(1)
+                .email("test@example.com")
+                .walletBalance(200)
+                .build();
+        Seat seat = seatMap.get("A1");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Hold the seat lock from another thread for longer than the deadline
+        Thread holder = new Thread(() -> {
+            seat.getLock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                seat.getLock().unlock();
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        BookingResult result = seatManager.bookSeats(user, "A1", Deadline.after(200)).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        holder.join();
+
+        assertFalse(result.isSuccess());
+        assertEquals(SeatManager.DEADLINE_EXCEEDED, result.getMessage());
+        assertTrue(elapsedMillis < 1500, "waited " + elapsedMillis + " ms");
+        assertEquals(200, user.getWalletBalance());
+        assertTrue(seat.isAvailable());
+    }
+
+    @Test
+    void testSeatIsHeldPendingWithoutItsLockWhilePaymentRuns() {
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+        User user = user(1, 200);
+        Seat seat = seatMap.get("A1");
+
+        CompletableFuture<BookingResult> future = manager.bookSeats(user, "A1");
+        gateway.awaitCharges(1);
+        // The charge starts under the lock, which is let go straight after
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (seat.getLock().isLocked() && System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+        assertFalse(seat.getLock().isLocked());
+        assertFalse(seat.isAvailable());
+        assertTrue(seat.isPending());
+        // The held seat is not offered to anyone else meanwhile
+        BookingResult other = manager.bookSeats(user(2, 200), "A1").join();
+        assertEquals("Seat A1 is already booked", other.getMessage());
+        assertEquals(BookingResult.Failure.SEAT_TAKEN, other.getFailure());
+
+        gateway.charges.get(0).complete(true);
+        BookingResult result = future.join();
+        assertTrue(result.isSuccess());
+        assertEquals(TICKET_PRICE, result.getTotalPrice());
+        assertFalse(seat.isPending());
+        assertEquals(user, seat.getReservedBy());
+        assertEquals(200 - TICKET_PRICE, user.getWalletBalance());
+    }
+
+    @Test
+    void testTicketIsIssuedWithTheSeatUnderItsLock() throws InterruptedException {
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+        User user = user(1, 200);
+
+        CompletableFuture<BookingResult> future = manager.bookSeats(user, "A1");
+        gateway.awaitCharges(1);
+        gateway.charges.get(0).complete(true);
+        // A journey cancellation locking the seat as soon as it is confirmed finds the ticket
+        SeatManager.Cancelled cancelled = manager.cancelSeat(seatMap.get("A1"));
+
+        assertNotNull(cancelled);
+        assertEquals(user, cancelled.holder());
+        assertNotNull(cancelled.ticket());
+        assertEquals(future.join().getTicket(), cancelled.ticket());
+        assertEquals(TICKET_PRICE, cancelled.ticket().getPrice());
+        assertEquals(0, user.getTicketCount());
+        assertTrue(seatMap.get("A1").isAvailable());
+    }
+
+    @Test
+    void testDeclinedPaymentFreesTheSeat() {
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+
+        CompletableFuture<BookingResult> future = manager.bookSeats(user(1, 200), "A1");
+        gateway.awaitCharges(1);
+        gateway.charges.get(0).complete(false);
+
+        assertEquals(SeatManager.INSUFFICIENT_BALANCE, future.join().getMessage());
+        assertEquals(BookingResult.Failure.PAYMENT, future.join().getFailure());
+        assertTrue(seatMap.get("A1").isAvailable());
+        assertFalse(seatMap.get("A1").isPending());
+        assertNull(seatMap.get("A1").getReservedBy());
+    }
+
+    @Test
+    void testPaymentTimeoutFreesTheSeatAndRefundsALateCharge() {
+        AppProperties.Payment payment = new AppProperties.Payment();
+        payment.setTimeoutMillis(100);
+        when(appProperties.getPayment()).thenReturn(payment);
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+        User user = user(1, 200);
+
+        BookingResult result = manager.bookSeats(user, "A1").join();
+        assertEquals(SeatManager.PAYMENT_TIMED_OUT, result.getMessage());
+        assertTrue(seatMap.get("A1").isAvailable());
+
+        // The provider answers after the booking gave up; the charge is returned
+        gateway.charges.get(0).complete(true);
+        assertEquals(200, user.getWalletBalance());
+        assertEquals(1, gateway.refunds.get());
+    }
+
+    @Test
+    void testBulkheadFailsPaymentsBeyondItsLimit() {
+        AppProperties.Payment payment = new AppProperties.Payment();
+        payment.setMaxConcurrent(1);
+        when(appProperties.getPayment()).thenReturn(payment);
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+
+        CompletableFuture<BookingResult> first = manager.bookSeats(user(1, 200), "A1");
+        gateway.awaitCharges(1);
+        BookingResult second = manager.bookSeats(user(2, 200), "A2").join();
+        assertEquals(SeatManager.PAYMENT_BUSY, second.getMessage());
+        assertTrue(seatMap.get("A2").isAvailable());
+        assertEquals(1, gateway.charges.size());
+
+        gateway.charges.get(0).complete(true);
+        assertTrue(first.join().isSuccess());
+        // The permit is back once the call has completed
+        CompletableFuture<BookingResult> retry = manager.bookSeats(user(2, 200), "A2");
+        gateway.awaitCharges(2);
+        gateway.charges.get(1).complete(true);
+        assertTrue(retry.join().isSuccess());
+    }
+
+    @Test
+    void testSimulatedGatewayChargesAfterItsLatency() {
+        SeatManager manager = managerWith(new SimulatedPaymentGateway(50));
+        User user = user(1, 200);
+
+        long start = System.nanoTime();
+        BookingResult result = manager.bookSeats(user, "A1").join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(result.isSuccess(), result.getMessage());
+        assertTrue(elapsedMillis >= 50, "took " + elapsedMillis + " ms");
+        assertEquals(200 - TICKET_PRICE, user.getWalletBalance());
+        assertFalse(seatMap.get("A1").isPending());
+    }
+
+    @Test
+    void testBatchedBookingsOfOneSeatAreResolvedInArrivalOrder() {
+        AppProperties.Batching batching = new AppProperties.Batching();
+        batching.setEnabled(true);
+        batching.setWindowMicros(TimeUnit.SECONDS.toMicros(5));
+        batching.setMaxSize(4);
+        when(appProperties.getBatching()).thenReturn(batching);
+        SeatManager manager = new SeatManager(seatMap, appProperties);
+        User broke = user(1, 0);
+        User first = user(2, 200);
+        User second = user(3, 200);
+        User other = user(4, 200);
+
+        // A full batch is applied without waiting out the window
+        CompletableFuture<BookingResult> declined = manager.bookSeats(broke, "A1");
+        CompletableFuture<BookingResult> won = manager.bookSeats(first, "A1");
+        CompletableFuture<BookingResult> lost = manager.bookSeats(second, "A1");
+        CompletableFuture<BookingResult> elsewhere = manager.bookSeats(other, "B1");
+
+        // The declined booking hands the seat to the next one in line
+        assertEquals(SeatManager.INSUFFICIENT_BALANCE, declined.join().getMessage());
+        assertTrue(won.join().isSuccess());
+        assertEquals("Seat A1 is already booked", lost.join().getMessage());
+        assertTrue(elsewhere.join().isSuccess());
+        assertEquals(first, seatMap.get("A1").getReservedBy());
+        assertEquals(200, second.getWalletBalance());
+        assertEquals(1, manager.getBatchCount());
+        assertEquals(4, manager.getBatchedBookings());
+
+        // Once stopped, bookings are made one at a time again
+        manager.shutdown();
+        assertTrue(manager.bookSeats(second, "B2").join().isSuccess());
+        assertEquals(1, manager.getBatchCount());
+    }
+
+    @Test
+    void testLateDeclineHandsTheSeatToTheNextBookingOfTheBatch() {
+        AppProperties.Batching batching = new AppProperties.Batching();
+        batching.setEnabled(true);
+        batching.setWindowMicros(TimeUnit.SECONDS.toMicros(5));
+        batching.setMaxSize(3);
+        when(appProperties.getBatching()).thenReturn(batching);
+        ManualGateway gateway = new ManualGateway();
+        SeatManager manager = managerWith(gateway);
+        User first = user(1, 200);
+        User second = user(2, 200);
+        User third = user(3, 200);
+
+        try {
+            CompletableFuture<BookingResult> declined = manager.bookSeats(first, "A1");
+            CompletableFuture<BookingResult> won = manager.bookSeats(second, "A1");
+            CompletableFuture<BookingResult> lost = manager.bookSeats(third, "A1");
+            // Only the first booking is charged while the seat is pending; the others wait on it
+            gateway.awaitCharges(1);
+            assertFalse(won.isDone());
+            assertFalse(lost.isDone());
+
+            gateway.charges.get(0).complete(false);
+            assertEquals(SeatManager.INSUFFICIENT_BALANCE, declined.join().getMessage());
+            gateway.awaitCharges(2);
+            gateway.charges.get(1).complete(true);
+
+            assertTrue(won.join().isSuccess());
+            assertEquals("Seat A1 is already booked", lost.join().getMessage());
+            assertEquals(second, seatMap.get("A1").getReservedBy());
+            assertEquals(2, gateway.charges.size());
+            assertEquals(200, third.getWalletBalance());
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void testBatchDoesNotWaitForABusySeat() throws Exception {
+        AppProperties.Batching batching = new AppProperties.Batching();
+        batching.setEnabled(true);
+        batching.setWindowMicros(TimeUnit.SECONDS.toMicros(5));
+        batching.setMaxSize(2);
+        when(appProperties.getBatching()).thenReturn(batching);
+        SeatManager manager = new SeatManager(seatMap, appProperties);
+        Seat busy = seatMap.get("A1");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            busy.getLock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                busy.getLock().unlock();
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        try {
+            CompletableFuture<BookingResult> waiting = manager.bookSeats(user(1, 200), "A1");
+            CompletableFuture<BookingResult> free = manager.bookSeats(user(2, 200), "B1");
+
+            // The free seat of the batch is booked while the busy one is still locked
+            assertTrue(free.get(1, TimeUnit.SECONDS).isSuccess());
+            assertFalse(waiting.isDone());
+            release.countDown();
+            assertTrue(waiting.join().isSuccess());
+            assertEquals(1, manager.getContendedBookings());
+        } finally {
+            release.countDown();
+            holder.join();
+            manager.shutdown();
+        }
+    }
+
+    private SeatManager managerWith(PaymentGateway gateway) {
+        return new SeatManager(seatMap, appProperties, new PricingEngine(seatMap, appProperties), gateway);
+    }
+
+    private static User user(int id, int balance) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@test.com")
+                .walletBalance(balance)
+                .build();
+    }
+
+    /**
+     * Gateway whose charges stay outstanding until the test completes them,
+     * paying from the wallet once completed with true.
+     */
+    private static class ManualGateway implements PaymentGateway {
+        final List<CompletableFuture<Boolean>> charges = new CopyOnWriteArrayList<>();
+        final AtomicInteger refunds = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Boolean> charge(User user, int amount) {
+            CompletableFuture<Boolean> answer = new CompletableFuture<>();
+            charges.add(answer);
+            return answer.thenApply(ok -> ok && user.deductBalance(amount));
+        }
+
+        @Override
+        public CompletableFuture<Void> refund(User user, int amount) {
+            user.addBalance(amount);
+            refunds.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        void awaitCharges(int count) {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (charges.size() < count) {
+                assertTrue(System.nanoTime() < end, "no charge arrived");
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.controller.TrafficRecordingFilter;
+import com.trainticketsystem.model.RecordedRequest;
+import com.trainticketsystem.utils.TrafficLogFormat;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TrafficRecorder: requests passing the recording filter must come
+ * back from the request logs with their headers, body, status and timing.
+ */
+class TrafficRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    private AppProperties appProperties;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getRecording().setEnabled(true);
+        appProperties.getRecording().setDirectory(directory.toString());
+        appProperties.getRecording().setMaxBodyBytes(64);
+    }
+
+    private List<RecordedRequest> readAll() throws IOException {
+        List<RecordedRequest> requests = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                assertTrue(file.toString().endsWith(TrafficLogFormat.FILE_SUFFIX), "Completed logs lose the .part suffix: " + file);
+                requests.addAll(TrafficLogFormat.read(file));
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    void testFilterRecordsRequestsAsTheControllerSawThem() throws Exception {
+        TrafficRecorder recorder = new TrafficRecorder(appProperties);
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(recorder);
+
+        MockHttpServletRequest purchase = new MockHttpServletRequest("POST", "/api/train/purchase");
+        purchase.setContentType("application/json");
+        purchase.addHeader("X-Request-Timeout", "250");
+        purchase.setContent("{\"userId\":\"1\",\"seatId\":\"A1\"}".getBytes(StandardCharsets.UTF_8));
+        MockFilterChain readsBody = new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest request, jakarta.servlet.ServletResponse response) throws IOException {
+                request.getInputStream().readAllBytes();
+                ((HttpServletResponse) response).setStatus(400);
+            }
+        };
+        filter.doFilter(purchase, new MockHttpServletResponse(), readsBody);
+
+        MockHttpServletRequest seats = new MockHttpServletRequest("GET", "/api/train/seat");
+        seats.setQueryString("section=A");
+        seats.addHeader("Accept", "application/vnd.trainticket.seatmap.v1");
+        filter.doFilter(seats, new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletRequest upload = new MockHttpServletRequest("POST", "/api/train/user/import");
+        upload.setContentType("text/csv");
+        upload.setContent("id,firstName,lastName,email\n".repeat(10).getBytes(StandardCharsets.UTF_8));
+        filter.doFilter(upload, new MockHttpServletResponse(), readsBody);
+
+        recorder.shutdown();
+        assertEquals(3, recorder.getStatus().getWritten());
+        assertEquals(1, recorder.getStatus().getBodiesOmitted());
+
+        List<RecordedRequest> requests = readAll();
+        assertEquals(3, requests.size());
+        RecordedRequest first = requests.get(0);
+        assertEquals("POST", first.getMethod());
+        assertEquals("/api/train/purchase", first.getPath());
+        assertEquals("application/json", first.getContentType());
+        assertEquals("250", first.getRequestTimeout());
+        assertEquals("{\"userId\":\"1\",\"seatId\":\"A1\"}", new String(first.getBody(), StandardCharsets.UTF_8));
+        assertEquals(400, first.getStatus());
+        assertTrue(Math.abs(first.getArrivalMicros() / 1000 - System.currentTimeMillis()) < 60_000);
+
+        RecordedRequest second = requests.get(1);
+        assertEquals("/api/train/seat?section=A", second.getPath());
+        assertEquals("application/vnd.trainticket.seatmap.v1", second.getAccept());
+        assertNull(second.getBody());
+        assertFalse(second.isBodyOmitted());
+        assertEquals(200, second.getStatus());
+
+        assertTrue(requests.get(2).isBodyOmitted());
+        assertNull(requests.get(2).getBody());
+    }
+
+    @Test
+    void testLogsRollAndKeepArrivalOrderAcrossOutOfOrderCompletions() throws Exception {
+        appProperties.getRecording().setRollRequests(3);
+        TrafficRecorder recorder = new TrafficRecorder(appProperties);
+        long base = 1_700_000_000_000_000L;
+        List<RecordedRequest> sent = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Completion order differs from arrival order, so arrival deltas go negative
+            RecordedRequest request = RecordedRequest.builder()
+                    .arrivalMicros(base + (i % 2 == 0 ? i * 1_000 : i * 1_000 - 5_000))
+                    .method(i % 3 == 0 ? "GET" : "PUT")
+                    .path("/api/train/user/" + (i % 2) + "/seat")
+                    .status(200)
+                    .latencyMicros(i * 10L)
+                    .build();
+            sent.add(request);
+            recorder.record(request);
+        }
+        recorder.shutdown();
+
+        assertEquals(3, recorder.getStatus().getCompletedFiles());
+        List<RecordedRequest> read = readAll();
+        assertEquals(sent.size(), read.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(sent.get(i).getArrivalMicros(), read.get(i).getArrivalMicros());
+            assertEquals(sent.get(i).getMethod(), read.get(i).getMethod());
+            assertEquals(sent.get(i).getPath(), read.get(i).getPath());
+            assertEquals(sent.get(i).getLatencyMicros(), read.get(i).getLatencyMicros());
+        }
+    }
+
+    @Test
+    void testDisabledRecorderDropsEverything() throws Exception {
+        appProperties.getRecording().setEnabled(false);
+        TrafficRecorder recorder = new TrafficRecorder(appProperties);
+        recorder.record(RecordedRequest.builder().method("GET").path("/api/train/seat").build());
+        recorder.shutdown();
+
+        assertEquals(1, recorder.getStatus().getDropped());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.trainticketsystem.service;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.ImportStatus;
+import com.trainticketsystem.store.UserStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserImportServiceTest {
+
+    private UserStore userMap;
+    private BookingIndex bookingIndex;
+    private UserImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setWalletBalance(500);
+        appProperties.getUserImport().setParallelism(3);
+        // Small chunks so even short uploads are spread over the threads
+        appProperties.getUserImport().setChunkRows(2);
+        appProperties.getUserImport().setMaxReportedErrors(3);
+        userMap = new UserStore();
+        userMap.put(User.builder().id(1).firstName("Ann").lastName("Lee").email("ann@test.com").walletBalance(100).build());
+        bookingIndex = new BookingIndex(userMap);
+        importService = new UserImportService(userMap, bookingIndex, appProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.shutdown();
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testImportsNdjsonAndRejectsInvalidAndDuplicateRows() {
+        String upload = """
+                {"id":2,"firstName":"Bo","lastName":"Ng","email":"bo@test.com","walletBalance":70}
+                {"id":3,"firstName":"Cy","lastName":"Ito","email":"cy@test.com","nickname":{"x":1}}
+
+                {"id":1,"firstName":"Dup","lastName":"Id","email":"dup@test.com"}
+                {"id":4,"firstName":"Dup","lastName":"Email","email":"ANN@test.com"}
+                {"id":5,"firstName":"No","lastName":"Email"}
+                {"id":"x","firstName":"Bad","lastName":"Id","email":"x@test.com"}
+                not json
+                {"id":6,"firstName":"Di","lastName":"Roy","email":"di@test.com"}
+                """;
+
+        ImportStatus status = importService.importUsers(body(upload), UserImportService.NDJSON);
+
+        assertTrue(status.isComplete());
+        assertEquals(8, status.getRows());
+        assertEquals(3, status.getImported());
+        assertEquals(5, status.getRejected());
+        assertEquals(3, status.getErrors().size(), "Only the first rejections are described");
+        assertEquals(70, userMap.get(2).getWalletBalance());
+        assertEquals(500, userMap.get(3).getWalletBalance());
+        assertEquals("Roy", userMap.get(6).getLastName());
+        assertEquals(3, bookingIndex.findByEmail("cy@test.com").getId());
+        assertEquals("Lee", userMap.get(1).getLastName(), "Existing users are left as they are");
+        assertNull(userMap.get(4));
+        assertEquals(1, bookingIndex.findByEmail("ann@test.com").getId());
+    }
+
+    @Test
+    void testImportsCsvWithColumnsInAnyOrder() {
+        String upload = """
+                email,lastName,id,firstName,note
+                bo@test.com,Ng,2,Bo,
+                "cy@test.com","O'Neil, ""Jr\""",3,Cy,x
+                dup@test.com,Id,2,Dup,
+                short,row
+                """;
+
+        ImportStatus status = importService.importUsers(body(upload), UserImportService.CSV);
+
+        assertTrue(status.isComplete());
+        assertEquals(4, status.getRows());
+        assertEquals(2, status.getImported());
+        assertEquals(List.of("line 4: User 2 already exists", "line 5: Expected 5 columns but found 2"), status.getErrors());
+        assertEquals("O'Neil, \"Jr\"", userMap.get(3).getLastName());
+        assertEquals(500, userMap.get(2).getWalletBalance());
+    }
+
+    @Test
+    void testCsvWithoutRequiredColumnsIsRefused() {
+        ImportStatus status = importService.importUsers(body("id,firstName,email\n2,Bo,bo@test.com\n"), UserImportService.CSV);
+
+        assertFalse(status.isComplete());
+        assertEquals(0, status.getImported());
+        assertEquals(1, userMap.size());
+    }
+
+    @Test
+    void testRowsBeforeABrokenUploadAreKept() {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        String rows = """
+                {"id":2,"firstName":"Bo","lastName":"Ng","email":"bo@test.com"}
+                {"id":3,"firstName":"Cy","lastName":"Ito","email":"cy@test.com"}
+                {"id":4,"firstName":"Di","lastName":"Roy","email":"di@test.com"}
+                """;
+
+        ImportStatus status = importService.importUsers(new SequenceInputStream(body(rows), broken), UserImportService.NDJSON);
+
+        assertFalse(status.isComplete());
+        assertTrue(status.getImported() >= 2, "Full chunks read before the failure are imported");
+        assertTrue(status.getErrors().get(0).contains("Connection reset"), status.getErrors().toString());
+    }
+
+    @Test
+    void testConcurrentImportsNeverShareAnIdOrEmail() throws Exception {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 2; i <= 2001; i++) {
+            upload.append(String.format("{\"id\":%d,\"firstName\":\"U%d\",\"lastName\":\"T\",\"email\":\"u%d@test.com\"}%n", i, i, i));
+        }
+        ImportStatus[] statuses = new ImportStatus[2];
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < 2; t++) {
+            int slot = t;
+            threads[t] = new Thread(() -> statuses[slot] = importService.importUsers(body(upload.toString()), UserImportService.NDJSON));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2000, statuses[0].getImported() + statuses[1].getImported());
+        assertEquals(2000, statuses[0].getRejected() + statuses[1].getRejected());
+        assertEquals(2001, userMap.size());
+        for (int i = 2; i <= 2001; i++) {
+            assertEquals(i, bookingIndex.findByEmail("u" + i + "@test.com").getId());
+        }
+    }
+
+    @Test
+    void testEarlierRowWinsAndErrorsNameTheirOwnLine() {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 2; i <= 201; i++) {
+            upload.append(String.format("{\"id\":%d,\"firstName\":\"First\",\"lastName\":\"T\",\"email\":\"f%d@test.com\"}%n%n", i, i));
+        }
+        // Same ids again further down, each in a chunk of its own parsed alongside the first ones
+        for (int i = 2; i <= 201; i++) {
+            upload.append(String.format("%n{\"id\":%d,\"firstName\":\"Second\",\"lastName\":\"T\",\"email\":\"s%d@test.com\"}%n", i, i));
+        }
+
+        ImportStatus status = importService.importUsers(body(upload.toString()), UserImportService.NDJSON);
+
+        assertEquals(400, status.getRows());
+        assertEquals(200, status.getImported());
+        assertEquals(200, status.getRejected());
+        for (int i = 2; i <= 201; i++) {
+            assertEquals("First", userMap.get(i).getFirstName(), "user " + i);
+            assertNull(bookingIndex.findByEmail("s" + i + "@test.com"));
+        }
+        // Every row is followed or preceded by a blank line
+        assertEquals(List.of("line 402: User 2 already exists", "line 404: User 3 already exists",
+                "line 406: User 4 already exists"), status.getErrors());
+    }
+
+    @Test
+    void testRowsOfAFailedChunkAreCountedOnce() {
+        UserStore failing = new UserStore() {
+            @Override
+            public boolean[] putAllAbsent(List<User> users) {
+                throw new IllegalStateException("store unavailable");
+            }
+        };
+        AppProperties appProperties = new AppProperties();
+        appProperties.getUserImport().setChunkRows(2);
+        UserImportService service = new UserImportService(failing, new BookingIndex(failing), appProperties);
+        try {
+            String upload = """
+                    {"id":2,"firstName":"Bo","lastName":"Ng","email":"bo@test.com"}
+                    {"id":3,"firstName":"Cy","lastName":"Ito"}
+                    {"id":4,"firstName":"Di","lastName":"Roy","email":"di@test.com"}
+                    """;
+
+            ImportStatus status = service.importUsers(body(upload), UserImportService.NDJSON);
+
+            assertEquals(3, status.getRows());
+            assertEquals(0, status.getImported());
+            assertEquals(3, status.getRejected());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.trainticketsystem.store;
+
+import com.trainticketsystem.config.AppProperties;
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.service.SeatManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatStoreTest {
+
+    private static final int USERS = 64;
+
+    private UserStore users;
+    private AppProperties appProperties;
+
+    @BeforeEach
+    void setUp() {
+        users = new UserStore(USERS);
+        for (int i = 1; i <= USERS; i++) {
+            users.put(User.builder()
+                    .id(i)
+                    .firstName("User" + i)
+                    .lastName("Test" + i)
+                    .email("user" + i + "@test.com")
+                    .walletBalance(1_000_000)
+                    .build());
+        }
+        appProperties = new AppProperties();
+        appProperties.setTicketPrice(20);
+    }
+
+    /**
+     * A booking completes its future just before it unlocks the seat, and a locked
+     * seat keeps its block from being compacted.
+     */
+    private static void awaitUnlocked(Seat seat) {
+        while (seat.getLock().isLocked()) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void testBlocksAreBuiltOnFirstUseOnly() {
+        SeatStore store = new SeatStore("AB", 10_000, 1000, 0, users::get);
+        assertEquals(20_000, store.size());
+        assertEquals(0, store.getResidentSeats());
+
+        Seat seat = store.get("A1");
+        assertEquals("A1", seat.getId());
+        assertTrue(seat.isAvailable());
+        assertSame(seat, store.get("A1"));
+        assertSame(store.get("A1000"), store.get("A1000"));
+        assertEquals(1000, store.getResidentSeats());
+        store.get("B1");
+        assertEquals(2000, store.getResidentSeats());
+
+        assertNull(store.get("A0"));
+        assertNull(store.get("A01"));
+        assertNull(store.get("A10001"));
+        assertNull(store.get("C1"));
+        assertNull(store.get(1));
+        assertTrue(store.containsKey("B10000"));
+        assertFalse(store.containsKey("B10001"));
+
+        // Iterating reports every seat without building the blocks
+        List<String> ids = new ArrayList<>(store.keySet());
+        assertEquals(20_000, ids.size());
+        assertEquals("A1", ids.get(0));
+        assertEquals("B10000", ids.get(ids.size() - 1));
+        assertEquals(2000, store.getResidentSeats());
+    }
+
+    @Test
+    void testColdBlocksAreCompactedAndRebuiltWithTheirHolders() throws Exception {
+        SeatStore store = new SeatStore("A", 400, 100, 200, users::get);
+        SeatManager seatManager = new SeatManager(store, appProperties);
+
+        Seat booked = store.get("A5");
+        assertTrue(seatManager.bookSeats(users.get(7), "A5").join().isSuccess());
+        awaitUnlocked(booked);
+        store.get("A150");
+        store.get("A250");
+        // Over budget: the block holding A5 was the least recently used
+        assertEquals(200, store.getResidentSeats());
+        assertEquals(1, store.getCompactions());
+        assertTrue(booked.isRetired());
+
+        Seat rebuilt = store.get("A5");
+        assertNotSame(booked, rebuilt);
+        assertFalse(rebuilt.isAvailable());
+        assertEquals(7, rebuilt.getReservedBy().getId());
+
+        // A stale reference is redirected to the live instance
+        assertTrue(seatManager.releaseSeat(booked, users.get(7)));
+        assertTrue(store.get("A5").isAvailable());
+        BookingResult again = seatManager.bookSeats(users.get(8), "A5").join();
+        assertTrue(again.isSuccess());
+    }
+
+    @Test
+    void testSeatOfARemovedHolderIsRebuiltFree() throws Exception {
+        SeatStore store = new SeatStore("A", 400, 100, 100, users::get);
+        SeatManager seatManager = new SeatManager(store, appProperties);
+        assertTrue(seatManager.bookSeats(users.get(7), "A5").join().isSuccess());
+        awaitUnlocked(store.get("A5"));
+        store.get("A150");
+        assertEquals(1, store.getCompactions());
+
+        users.remove(7);
+
+        Seat rebuilt = store.get("A5");
+        assertTrue(rebuilt.isAvailable());
+        assertNull(rebuilt.getReservedBy());
+        assertTrue(seatManager.bookSeats(users.get(8), "A5").join().isSuccess());
+        assertEquals(8, store.get("A5").getReservedBy().getId());
+    }
+
+    @Test
+    void testLeastRecentlyUsedBlockIsCompactedFirst() {
+        SeatStore store = new SeatStore("A", 400, 100, 300, users::get);
+        Seat first = store.get("A1");
+        Seat second = store.get("A101");
+        store.get("A201");
+        // Used again after the second block, so the second is now the coldest
+        store.get("A1");
+
+        store.get("A301");
+
+        assertEquals(300, store.getResidentSeats());
+        assertFalse(first.isRetired());
+        assertTrue(second.isRetired());
+    }
+
+    @Test
+    void testIterationReportsCompactedState() throws Exception {
+        SeatStore store = new SeatStore("A", 400, 100, 100, users::get);
+        SeatManager seatManager = new SeatManager(store, appProperties);
+        assertTrue(seatManager.bookSeats(users.get(3), "A42").join().isSuccess());
+        awaitUnlocked(store.get("A42"));
+        store.get("A399");
+        assertEquals(100, store.getResidentSeats());
+
+        Map<String, Seat> copy = new ConcurrentHashMap<>(store);
+        assertEquals(400, copy.size());
+        Seat seat = copy.get("A42");
+        assertFalse(seat.isAvailable());
+        assertEquals(3, seat.getReservedBy().getId());
+        assertTrue(seat.isRetired());
+        assertEquals(100, store.getResidentSeats());
+    }
+
+    @Test
+    void testConcurrentBookingsUnderConstantCompactionNeverDoubleBook() throws Exception {
+        int seats = 512;
+        SeatStore store = new SeatStore("A", seats, 16, 32, users::get);
+        SeatManager seatManager = new SeatManager(store, appProperties);
+        // Bookings minus releases per seat: 1 while held, 0 while free
+        AtomicInteger[] held = new AtomicInteger[seats + 1];
+        for (int i = 1; i <= seats; i++) {
+            held[i] = new AtomicInteger();
+        }
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 1_000; i++) {
+                    int number = random.nextInt(1, seats + 1);
+                    User user = users.get(random.nextInt(1, USERS + 1));
+                    if (seatManager.bookSeats(user, "A" + number).join().isSuccess()) {
+                        held[number].incrementAndGet();
+                    }
+                    if (random.nextInt(2) == 0) {
+                        // Release through an instance that may be retired by the time it is locked
+                        int other = random.nextInt(1, seats + 1);
+                        if (seatManager.releaseSeat(store.get("A" + other)) != null) {
+                            held[other].decrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(store.getCompactions() > 0);
+        for (int i = 1; i <= seats; i++) {
+            Seat seat = store.get("A" + i);
+            assertEquals(seat.isAvailable() ? 0 : 1, held[i].get(), "A" + i);
+            assertEquals(seat.isAvailable(), seat.getReservedBy() == null, "A" + i);
+        }
+    }
+}
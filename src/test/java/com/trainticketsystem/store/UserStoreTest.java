@@ -0,0 +1,232 @@
+package com.trainticketsystem.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.model.TicketList;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.utils.SeatCodes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStoreTest {
+
+    private UserStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new UserStore();
+    }
+
+    private static User user(int id, int balance) {
+        return User.builder()
+                .id(id)
+                .firstName("User" + id)
+                .lastName("Test" + id)
+                .email("user" + id + "@test.com")
+                .walletBalance(balance)
+                .build();
+    }
+
+    @Test
+    void testViewsWriteThroughToStore() {
+        store.put(user(1, 100));
+
+        User view = store.get(1);
+        assertEquals("User1", view.getFirstName());
+        assertEquals(user(1, 100), view);
+
+        assertTrue(view.deductBalance(30));
+        assertFalse(view.deductBalance(80));
+        view.addTicket(new TicketRecord(7L, 1, SeatCodes.encode("A1"), 0, 20));
+
+        User fresh = store.get(1);
+        assertEquals(70, fresh.getWalletBalance());
+        assertEquals(7L, fresh.getTicket().getId());
+        assertEquals("A1", fresh.getSeatNumber());
+    }
+
+    @Test
+    void testPutRemoveAndGrowth() {
+        int count = 20_000;
+        for (int i = 1; i <= count; i++) {
+            assertNull(store.put(user(i, i)));
+        }
+        assertEquals(count, store.size());
+
+        // Overwrite returns the previous value
+        assertEquals(5, store.put(user(5, 50)).getWalletBalance());
+        assertEquals(count, store.size());
+
+        for (int i = 2; i <= count; i += 2) {
+            assertNotNull(store.remove(i));
+        }
+        assertEquals(count / 2, store.size());
+        assertNull(store.get(2));
+        assertNull(store.remove(2));
+        assertEquals(50, store.get(5).getWalletBalance());
+        assertEquals(count - 1, store.get(count - 1).getWalletBalance());
+
+        // Iteration sees exactly the live users, in insertion order
+        List<Integer> ids = store.keySet().stream().toList();
+        assertEquals(count / 2, ids.size());
+        assertEquals(1, ids.get(0));
+        assertEquals(count - 1, ids.get(ids.size() - 1));
+    }
+
+    @Test
+    void testVersionBumpsOnVisibleChangesOnly() {
+        store.put(user(1, 100));
+        User view = store.get(1);
+        long created = view.getVersion();
+
+        // The balance is not part of any read, so it leaves the version alone
+        assertTrue(view.deductBalance(20));
+        assertEquals(created, store.get(1).getVersion());
+
+        TicketRecord ticket = new TicketRecord(1L, 1, SeatCodes.encode("A1"), 0, 20);
+        view.addTicket(ticket);
+        long booked = store.get(1).getVersion();
+        assertTrue(booked > created);
+        assertTrue(view.removeTicket(ticket));
+        long released = store.get(1).getVersion();
+        assertTrue(released > booked);
+
+        // A user re-created under the same id never repeats an earlier version
+        store.remove(1);
+        store.put(user(1, 100));
+        assertTrue(store.get(1).getVersion() > released);
+    }
+
+    @Test
+    void testVersionsKeepRisingAfterClear() {
+        store.put(user(1, 100));
+        User view = store.get(1);
+        view.addTicket(new TicketRecord(1L, 1, SeatCodes.encode("A1"), 0, 20));
+        long before = store.get(1).getVersion();
+
+        store.clear();
+        store.put(user(1, 100));
+        assertTrue(store.get(1).getVersion() > before);
+    }
+
+    @Test
+    void testRemovedRowsAreReusedWithoutReachingStaleViews() {
+        for (int i = 1; i <= 100; i++) {
+            store.put(user(i, i));
+        }
+        User stale = store.get(7);
+        for (int i = 1; i <= 100; i++) {
+            store.remove(i);
+        }
+        for (int i = 101; i <= 200; i++) {
+            store.put(user(i, 0));
+        }
+        assertEquals(100, store.rowCount());
+
+        // The held view keeps behaving like the user as it was removed
+        assertEquals(7, stale.getId());
+        assertEquals("User7", stale.getFirstName());
+        assertEquals(7, stale.getWalletBalance());
+        stale.addBalance(50);
+        stale.setFirstName("Gone");
+        stale.addTicket(new TicketRecord(9L, 7, SeatCodes.encode("A1"), 0, 20));
+        assertEquals(57, stale.getWalletBalance());
+        assertEquals("Gone", stale.snapshot().getFirstName());
+        assertEquals(1, stale.getTicketCount());
+
+        // and never touches the users now living in the reused rows
+        for (int i = 101; i <= 200; i++) {
+            User user = store.get(i);
+            assertEquals("User" + i, user.getFirstName());
+            assertEquals(0, user.getWalletBalance());
+            assertEquals(0, user.getTicketCount());
+        }
+    }
+
+    @Test
+    void testConcurrentBalanceDeductionsNeverOverdraw() throws InterruptedException {
+        store.put(user(1, 1000));
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicInteger successCount = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            executorService.submit(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        if (store.get(1).deductBalance(1)) {
+                            successCount.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertEquals(1000, successCount.get());
+        assertEquals(0, store.get(1).getWalletBalance());
+    }
+
+    @Test
+    void testSnapshotsNeverMixFieldsFromDifferentWrites() throws InterruptedException {
+        store.put(user(1, 100));
+        int writes = 20_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicInteger torn = new AtomicInteger();
+
+        // Each overwrite pairs the last name with the ticket id, so a mixed read is detectable
+        executorService.submit(() -> {
+            try {
+                for (int i = 1; i <= writes; i++) {
+                    User next = user(1, 100);
+                    next.setLastName(String.valueOf(i));
+                    next.setTickets(TicketList.of(new TicketRecord(i, 1, SeatCodes.encode("A1"), 0, 20)));
+                    store.put(next);
+                }
+            } finally {
+                latch.countDown();
+            }
+        });
+        executorService.submit(() -> {
+            try {
+                User view = store.get(1);
+                for (int i = 0; i < writes; i++) {
+                    User snapshot = view.snapshot();
+                    TicketRecord ticket = snapshot.getTicket();
+                    if (ticket != null && !snapshot.getLastName().equals(String.valueOf(ticket.getId()))) {
+                        torn.incrementAndGet();
+                    }
+                }
+            } finally {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertEquals(0, torn.get());
+        assertEquals(String.valueOf(writes), store.get(1).snapshot().getLastName());
+    }
+
+        @Test
+    void testViewSerializesLikeUser() throws Exception {
+        store.put(user(1, 100));
+        ObjectMapper mapper = new ObjectMapper();
+
+        assertEquals(mapper.writeValueAsString(user(1, 100)), mapper.writeValueAsString(store.get(1)));
+    }
+}
@@ -0,0 +1,64 @@
+package com.trainticketsystem.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.model.BookingResult;
+import com.trainticketsystem.model.Seat;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import com.trainticketsystem.store.UserStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastJsonModuleTest {
+
+    private final ObjectMapper beanMapper = new ObjectMapper();
+    private final ObjectMapper fastMapper = new ObjectMapper().registerModule(new FastJsonModule());
+    private final TicketResponseBuilder responseBuilder = new TicketResponseBuilder();
+    private UserStore users;
+
+    @BeforeEach
+    void setUp() {
+        users = new UserStore();
+        users.put(User.builder().id(1).firstName("Ann").lastName("Lee").email("ann@test.com").walletBalance(100).build());
+        users.put(User.builder().id(2).firstName("Bo \"B\" Ng").walletBalance(100).build());
+    }
+
+    private void assertSameJson(Object value) throws Exception {
+        assertEquals(beanMapper.writeValueAsString(value), fastMapper.writeValueAsString(value));
+    }
+
+    @Test
+    void testWritesWhatTheBeanSerializersWrite() throws Exception {
+        User ann = users.get(1);
+        User bo = users.get(2);
+        TicketResponse purchase = responseBuilder.sendPurchaseSuccessResponse(ann, "A3", 20);
+        responseBuilder.sendPurchaseSuccessResponse(ann, "B7", 25);
+        Seat held = new Seat("A3", true);
+        held.reserve(ann);
+
+        assertSameJson(purchase);
+        assertSameJson(responseBuilder.sendGroupPurchaseSuccessResponse(List.of(ann, bo), List.of("A4", "A5"), List.of(20, 20)));
+        assertSameJson(responseBuilder.sendTicketPageResponse(ann, ann.getTickets().toList(), 2));
+        assertSameJson(responseBuilder.sendUserResponse(ann));
+        assertSameJson(responseBuilder.sendUserResponse(bo.snapshot()));
+        assertSameJson(responseBuilder.sendFailedResponse(BookingResult.failed("Seat is taken"), null));
+        assertSameJson(TicketResponse.builder().tickets(List.of()).totalTickets(0).build());
+        assertSameJson(User.builder().id(3).build());
+        assertSameJson(List.of(held, new Seat("B1", true)));
+        assertSameJson(List.of(ann, bo));
+    }
+
+    @Test
+    void testUserViewWritesItsCurrentTickets() throws Exception {
+        User ann = users.get(1);
+        assertEquals("{\"firstName\":\"Ann\",\"lastName\":\"Lee\",\"email\":\"ann@test.com\",\"ticketCount\":0}",
+                fastMapper.writeValueAsString(ann));
+        responseBuilder.sendPurchaseSuccessResponse(ann, "B2", 20);
+        assertEquals("{\"firstName\":\"Ann\",\"lastName\":\"Lee\",\"email\":\"ann@test.com\",\"seatNumber\":\"B2\",\"ticketCount\":1}",
+                fastMapper.writeValueAsString(ann));
+    }
+}
@@ -0,0 +1,51 @@
+package com.trainticketsystem.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trainticketsystem.model.TicketRecord;
+import com.trainticketsystem.model.User;
+import com.trainticketsystem.response.TicketResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketResponseBuilderTest {
+
+    private TicketResponseBuilder responseBuilder;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        responseBuilder = new TicketResponseBuilder();
+        user = User.builder()
+                .id(3)
+                .firstName("Test")
+                .lastName("User")
+                .email("test@example.com")
+                .walletBalance(100)
+                .build();
+    }
+
+    @Test
+    void testPurchaseStoresCompactRecord() {
+        responseBuilder.sendPurchaseSuccessResponse(user, "B12", 20);
+
+        TicketRecord record = user.getTicket();
+        assertEquals(3, record.getUserId());
+        assertEquals(SeatCodes.encode("B12"), record.getSeatCode());
+        assertEquals("B12", record.getSeatNumber());
+        assertEquals("B", record.getSection());
+        assertEquals(20, record.getPrice());
+        assertEquals("B12", user.getSeatNumber());
+    }
+
+    @Test
+    void testTicketViewSerializesToTicketJson() throws Exception {
+        TicketResponse response = responseBuilder.sendPurchaseSuccessResponse(user, "A7", 20);
+
+        String json = new ObjectMapper().writeValueAsString(response.getTicket());
+        assertEquals("{\"id\":" + user.getTicket().getId() + ",\"fromLocation\":\"London\",\"toLocation\":\"France\","
+                + "\"price\":20,\"seatNumber\":\"A7\",\"section\":\"A\",\"userFirstName\":\"Test\","
+                + "\"userLastName\":\"User\",\"userEmail\":\"test@example.com\"}", json);
+    }
+}